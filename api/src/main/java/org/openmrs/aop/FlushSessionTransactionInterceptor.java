@@ -15,15 +15,20 @@ package org.openmrs.aop;
 
 import org.aopalliance.intercept.MethodInvocation;
 import org.openmrs.api.context.Context;
+import org.openmrs.api.context.FlushPolicy;
 import org.springframework.aop.support.AopUtils;
+import org.springframework.transaction.NoTransactionException;
 import org.springframework.transaction.interceptor.TransactionAttribute;
 import org.springframework.transaction.interceptor.TransactionInterceptor;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 /**
- * Wraps TransactionInterceptor to perform flushes after methods annotated with
- * <code>@Transactional(readOnly=false)</code>.
+ * Wraps TransactionInterceptor to tell the {@link FlushPolicy} about each call of a method
+ * annotated with <code>@Transactional</code>, which decides whether to flush the session after
+ * methods annotated with <code>@Transactional(readOnly=false)</code>.
  * 
  * @see TransactionInterceptor
+ * @see FlushPolicy
  */
 public class FlushSessionTransactionInterceptor extends TransactionInterceptor {
 	
@@ -31,8 +36,6 @@ public class FlushSessionTransactionInterceptor extends TransactionInterceptor {
 	
 	@Override
 	public Object invoke(MethodInvocation invocation) throws Throwable {
-		Object result = super.invoke(invocation);
-		
 		// Work out the target class: may be <code>null</code>.
 		// The TransactionAttributeSource should be passed the target class
 		// as well as the method, which may be from an interface.
@@ -42,14 +45,37 @@ public class FlushSessionTransactionInterceptor extends TransactionInterceptor {
 		final TransactionAttribute txAttr = getTransactionAttributeSource().getTransactionAttribute(invocation.getMethod(),
 		    targetClass);
 		
-		if (txAttr != null && !txAttr.isReadOnly()) {
-			//Context.flushSession() is transactional so we need to prevent recursion and stack-overflow.
-			if (!Context.class.equals(targetClass) && !invocation.getMethod().getName().equals("flushSession")) {
-				Context.flushSession();
-			}
-		}
+		//Context.flushSession() and clearSession() are transactional and used by the flush policy itself
+		String methodName = invocation.getMethod().getName();
+		if (Context.class.equals(targetClass) || methodName.equals("flushSession") || methodName.equals("clearSession"))
+			return super.invoke(invocation);
 		
-		return result;
+		boolean saved = false;
+		FlushPolicy.beforeServiceCall();
+		try {
+			Object result = super.invoke(invocation);
+			saved = txAttr != null && !txAttr.isReadOnly();
+			return result;
+		}
+		finally {
+			FlushPolicy.afterServiceCall(saved, saved && isTransactionEnding());
+		}
+	}
+	
+	/**
+	 * @return true if the transaction of the method just called has been committed, or was begun
+	 *         by a transaction proxy around the same call and so is about to be committed
+	 */
+	private boolean isTransactionEnding() {
+		if (!TransactionSynchronizationManager.isActualTransactionActive())
+			return true;
+		try {
+			return currentTransactionStatus().isNewTransaction();
+		}
+		catch (NoTransactionException e) {
+			// begun by the caller itself, such as in a test
+			return false;
+		}
 	}
 	
 }
@@ -453,13 +453,23 @@ public interface AdministrationService extends OpenmrsService {
 	 * <p>
 	 * If <code>propertyName</code> is not found in the list of Global Properties currently in the
 	 * database, a null value is returned. This method should not have any authorization check.
+	 * <p>
+	 * The values are cached in memory and reloaded from the database every
+	 * {@link org.openmrs.util.GlobalPropertyCache#REFRESH_INTERVAL_MILLIS} milliseconds, outside of
+	 * the current transaction, so this method does not need a query. Values saved in a transaction
+	 * are seen by other threads once it commits. The {@link GlobalPropertyListener}s are notified of
+	 * the properties found to have been changed or deleted by other means when the values are
+	 * reloaded.
 	 * 
 	 * @param propertyName property key to look for
 	 * @return value of property returned or null if none
 	 * @see #getGlobalProperty(String, String)
+	 * @see #refreshGlobalPropertyCache()
 	 * @should not fail with null propertyName
 	 * @should get property value given valid property name
 	 * @should get property in case insensitive way
+	 * @should get the value of a property saved in the same transaction
+	 * @should not get the value of a property purged in the same transaction
 	 */
 	@Transactional(readOnly = true)
 	public String getGlobalProperty(String propertyName) throws APIException;
@@ -491,6 +501,23 @@ public interface AdministrationService extends OpenmrsService {
 	@Transactional(readOnly = true)
 	public GlobalProperty getGlobalPropertyObject(String propertyName);
 	
+	/**
+	 * Reloads the values of the global properties that are cached in memory from the database, to
+	 * pick up the properties that have been changed or deleted other than through this service, e.g.
+	 * by sql scripts. The current transaction sees the reloaded values at once. Once it commits, the
+	 * cache is loaded again for the other threads, and the {@link GlobalPropertyListener}s are
+	 * notified of the properties that have changed. Changes made by another server sharing the
+	 * database are picked up, and the listeners notified, periodically by
+	 * {@link #getGlobalProperty(String)} anyway. This method should not have any authorization
+	 * check.
+	 * 
+	 * @since 1.10
+	 * @should get the values of properties changed in the database
+	 * @should not get the values of properties deleted from the database
+	 */
+	@Transactional(readOnly = true)
+	public void refreshGlobalPropertyCache() throws APIException;
+	
 	/**
 	 * Gets all global properties that begin with <code>prefix</code>.
 	 * 
@@ -59,6 +59,7 @@ public interface CohortService extends OpenmrsService {
 	 * @throws APIException
 	 * @should create new cohorts
 	 * @should update an existing cohort
+	 * @should keep the persistent members when they are replaced
 	 */
 	@Authorized( { PrivilegeConstants.ADD_COHORTS, PrivilegeConstants.EDIT_COHORTS })
 	public Cohort saveCohort(Cohort cohort) throws APIException;
@@ -203,6 +204,8 @@ public interface CohortService extends OpenmrsService {
 	 * @should add a patient and save the cohort
 	 * @should add a patient and insert the cohort to database
 	 * @should not fail if cohort already contains patient
+	 * @should not load the members of a saved cohort
+	 * @should mark a saved cohort as changed
 	 */
 	@Authorized( { PrivilegeConstants.EDIT_COHORTS })
 	public Cohort addPatientToCohort(Cohort cohort, Patient patient) throws APIException;
@@ -217,6 +220,8 @@ public interface CohortService extends OpenmrsService {
 	 * @throws APIException
 	 * @should not fail if cohort doesn't contain patient
 	 * @should save cohort after removing patient
+	 * @should not load the members of a saved cohort
+	 * @should mark a saved cohort as changed
 	 */
 	@Authorized( { PrivilegeConstants.EDIT_COHORTS })
 	public Cohort removePatientFromCohort(Cohort cohort, Patient patient) throws APIException;
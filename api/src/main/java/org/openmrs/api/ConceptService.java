@@ -13,9 +13,11 @@
  */
 package org.openmrs.api;
 
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.commons.lang.NotImplementedException;
@@ -1336,6 +1338,10 @@ public interface ConceptService extends OpenmrsService {
 	 * <code>conceptCode</code> and whose {@link ConceptSource} has either a <code>name</code> or
 	 * <code>hl7Code</code> that is equal to the passed <code>mappingCode</code>. Delegates to
 	 * getConceptsByMapping(code,sourceName,includeRetired) with includeRetired=true
+	 * <p>
+	 * The concept ids are looked up in an in-memory index of the codes of each source, which is
+	 * loaded the first time a code of the source is looked up and kept up to date when concepts,
+	 * reference terms and sources are saved.
 	 * 
 	 * @param code the code associated with a concept within a given {@link ConceptSource}
 	 * @param sourceName the name or hl7Code of the {@link ConceptSource} to check
@@ -1347,12 +1353,32 @@ public interface ConceptService extends OpenmrsService {
 	 * @should get concepts with given code and source name
 	 * @should return empty list if source code does not exist
 	 * @should return empty list if mapping does not exist
+	 * @should find a mapping added after the source was looked up
+	 * @should not find a mapping removed after the source was looked up
 	 * @since 1.8
 	 */
 	@Transactional(readOnly = true)
 	@Authorized(PrivilegeConstants.VIEW_CONCEPTS)
 	public List<Concept> getConceptsByMapping(String code, String sourceName, boolean includeRetired) throws APIException;
 	
+	/**
+	 * Looks up the concepts mapped to many codes of the same {@link ConceptSource} at once, e.g. to
+	 * resolve all codes of an imported message. Each code is resolved like
+	 * {@link #getConceptByMapping(String, String)} does.
+	 * 
+	 * @param codes the codes associated with concepts within the given {@link ConceptSource}
+	 * @param sourceName the name or hl7Code of the {@link ConceptSource} to check
+	 * @return the {@link Concept} of each code that has a mapping, leaving out the other codes
+	 * @throws APIException if a code maps to more than one non-retired concept
+	 * @since 1.10
+	 * @should return the concept of each code that has a mapping
+	 * @should leave out codes that have no mapping
+	 * @should fail if a code maps to more than one non-retired concept
+	 */
+	@Transactional(readOnly = true)
+	@Authorized(PrivilegeConstants.VIEW_CONCEPTS)
+	public Map<String, Concept> getConceptsByMappingCodes(Collection<String> codes, String sourceName) throws APIException;
+	
 	/**
 	 * Get all the concept name tags defined in the database, included voided ones
 	 * 
@@ -2020,4 +2046,25 @@ public interface ConceptService extends OpenmrsService {
 	@Transactional(readOnly = true)
 	@Authorized(PrivilegeConstants.VIEW_CONCEPT_MAP_TYPES)
 	public ConceptMapType getDefaultConceptMapType() throws APIException;
+	
+	/**
+	 * Gets the concepts with the given ids together with everything needed to display them and
+	 * their answers and set members: the names, descriptions, classes and datatypes of the concepts,
+	 * their answers and set members, and the names, descriptions, classes and datatypes of the
+	 * answer and set member concepts. This takes a fixed number of queries however many concepts,
+	 * answers and set members there are, instead of one query per answer or name collection when
+	 * walking {@link Concept#getAnswers()} and {@link Concept#getConceptSets()}.
+	 * 
+	 * @param conceptIds the ids of the concepts to load
+	 * @return the concepts, in the order in which their ids were given, leaving out the ids of
+	 *         concepts that do not exist
+	 * @since 1.10
+	 * @should return the concepts in the order of the given ids
+	 * @should load the answers and set members of the concepts
+	 * @should load the names of the answer and set member concepts
+	 * @should return an empty list for no ids
+	 */
+	@Transactional(readOnly = true)
+	@Authorized(PrivilegeConstants.VIEW_CONCEPTS)
+	public List<Concept> getConceptsWithDetails(Collection<Integer> conceptIds) throws APIException;
 }
@@ -26,6 +26,7 @@ import org.openmrs.Form;
 import org.openmrs.FormField;
 import org.openmrs.FormResource;
 import org.openmrs.annotation.Authorized;
+import org.openmrs.util.FormStructure;
 import org.openmrs.util.PrivilegeConstants;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -698,6 +699,24 @@ public interface FormService extends OpenmrsService {
 	public FormField getFormField(Form form, Concept concept, Collection<FormField> ignoreFormFields, boolean force)
 	        throws APIException;
 	
+	/**
+	 * Gets the structure of the given form, i.e. the ids of the form fields on each branch of the
+	 * form and of the form fields for each concept. Structures are cached by form id and date
+	 * changed, and are forgotten when a form, form field or field is saved or purged.
+	 * 
+	 * @param form the form to get the structure of
+	 * @return the structure of the form, or null if the form has not been saved
+	 * @throws APIException
+	 * @since 1.10
+	 * @should return the structure of the form
+	 * @should return the same structure while the form is unchanged
+	 * @should return a new structure after a form field was saved
+	 * @should return null for an unsaved form
+	 */
+	@Transactional(readOnly = true)
+	@Authorized(PrivilegeConstants.VIEW_FORMS)
+	public FormStructure getFormStructure(Form form) throws APIException;
+	
 	/**
 	 * Creates or updates the given FormField
 	 * 
@@ -14,6 +14,7 @@
 package org.openmrs.api;
 
 import java.util.List;
+import java.util.Set;
 
 import org.openmrs.Address;
 import org.openmrs.Location;
@@ -388,6 +389,53 @@ public interface LocationService extends OpenmrsService {
 	@Authorized( { PrivilegeConstants.VIEW_LOCATIONS })
 	public List<Location> getRootLocations(boolean includeRetired);
 	
+	/**
+	 * Checks whether a location is a member of the tree starting at another location, like
+	 * {@link Location#isInHierarchy(Location, Location)} but without loading the parent locations.
+	 * The saved parent of each location is used, so locations which have not been saved yet are
+	 * checked with {@link Location#isInHierarchy(Location, Location)} instead.
+	 *
+	 * @param location the location to be tested
+	 * @param root the location at the top of the tree
+	 * @return true if the location is the root or one of its descendants
+	 * @since 1.10
+	 * @should return true given same location in both parameters
+	 * @should return true given a location that is somewhere below the root
+	 * @should return false given a location that is not below the root
+	 * @should return false given any null parameter
+	 * @should see a location that has been moved to another parent
+	 */
+	@Transactional(readOnly = true)
+	public boolean isLocationInHierarchy(Location location, Location root);
+	
+	/**
+	 * Gets the ids of the children, grand children, etc. of a location
+	 *
+	 * @param root the location at the top of the tree
+	 * @param includeRetired whether retired locations should be included
+	 * @return the ids of all of the locations below the root
+	 * @since 1.10
+	 * @should return the ids of all locations below the given location
+	 * @should not return the ids of retired locations if include retired is false
+	 */
+	@Transactional(readOnly = true)
+	@Authorized( { PrivilegeConstants.VIEW_LOCATIONS })
+	public Set<Integer> getDescendantLocationIds(Location root, boolean includeRetired);
+	
+	/**
+	 * Gets the children, grand children, etc. of a location with a single query
+	 *
+	 * @param root the location at the top of the tree
+	 * @param includeRetired whether retired locations should be included
+	 * @return all of the locations below the root, ordered by name
+	 * @since 1.10
+	 * @should return all locations below the given location
+	 * @should return an empty list for a location without children
+	 */
+	@Transactional(readOnly = true)
+	@Authorized( { PrivilegeConstants.VIEW_LOCATIONS })
+	public List<Location> getDescendantLocations(Location root, boolean includeRetired);
+	
 	/**
 	 * Given an Address object, returns all the possible values for the specified AddressField. This
 	 * method is not implemented in core, but is meant to overridden by implementing modules such as
@@ -29,6 +29,7 @@ import org.openmrs.Person;
 import org.openmrs.annotation.Authorized;
 import org.openmrs.api.db.ObsDAO;
 import org.openmrs.obs.ComplexObsHandler;
+import org.openmrs.obs.ObsRow;
 import org.openmrs.util.OpenmrsConstants;
 import org.openmrs.util.OpenmrsConstants.PERSON_TYPE;
 import org.openmrs.util.PrivilegeConstants;
@@ -500,6 +501,99 @@ public interface ObsService extends OpenmrsService {
 	@Authorized(PrivilegeConstants.VIEW_OBS)
 	public List<Obs> getObservationsByPersonAndConcept(Person who, Concept question) throws APIException;
 	
+	/**
+	 * Gets the obsDatetime and valueNumeric of the given person's observations for the given
+	 * question without loading the Obs themselves, e.g. for drawing the values over time. Voided
+	 * obs and obs without a numeric value are left out.
+	 * 
+	 * @param who the person to get the values of (required)
+	 * @param question the question concept to get the values for (required)
+	 * @param fromDate the earliest obsDatetime to get (optional)
+	 * @param toDate the latest obsDatetime to get (optional)
+	 * @return list of {Date obsDatetime, Double valueNumeric} pairs ordered by obsDatetime
+	 * @throws APIException
+	 * @should return datetime and value pairs ordered by obs datetime
+	 * @should not return voided obs
+	 * @should only return obs within the given dates
+	 * @since 1.10
+	 */
+	@Transactional(readOnly = true)
+	@Authorized(PrivilegeConstants.VIEW_OBS)
+	public List<Object[]> getNumericObsTimeSeries(Person who, Concept question, Date fromDate, Date toDate)
+	        throws APIException;
+	
+	/**
+	 * Gets the last time any of the given person's observations for the given question was
+	 * created or voided. Values computed from those observations can be cached as long as this
+	 * date doesn't change.
+	 * 
+	 * @param who the person whose obs to look at (required)
+	 * @param question the question concept of the obs to look at (required)
+	 * @return the latest dateCreated or dateVoided of the obs, or null if there are none
+	 * @throws APIException
+	 * @should return the latest date any obs was created or voided
+	 * @should return null if there are no obs
+	 * @since 1.10
+	 */
+	@Transactional(readOnly = true)
+	@Authorized(PrivilegeConstants.VIEW_OBS)
+	public Date getLastModifiedObsDate(Person who, Concept question) throws APIException;
+	
+	/**
+	 * Gets one page of the observations matching the given criteria, most recent first (by
+	 * obsDatetime, then by obsId). Instead of skipping an offset, each page starts right after the
+	 * last obs of the previous page, so every page is fetched with the same effort no matter how
+	 * many obs came before it, and obs added in the meantime don't shift the pages.
+	 * 
+	 * @param whom List&lt;Person&gt; to restrict obs to (optional)
+	 * @param encounters List&lt;Encounter&gt; to restrict obs to (optional)
+	 * @param questions List&lt;Concept&gt; to restrict the obs to (optional)
+	 * @param locations The org.openmrs.Location objects to restrict to (optional)
+	 * @param fromDate the earliest obsDatetime to get (optional)
+	 * @param toDate the latest obsDatetime to get (optional)
+	 * @param after the last obs of the previous page, or null to get the first page
+	 * @param pageSize the largest number of obs to return
+	 * @param includeVoidedObs true/false whether to also include the voided obs (required)
+	 * @return at most pageSize obs, or an empty list after the last page
+	 * @throws APIException
+	 * @since 1.10
+	 * @should return the most recent obs first
+	 * @should return the obs after the given obs
+	 * @should return an empty list after the last page
+	 */
+	@Transactional(readOnly = true)
+	@Authorized(PrivilegeConstants.VIEW_OBS)
+	public List<Obs> getObservationsPage(List<Person> whom, List<Encounter> encounters, List<Concept> questions,
+	        List<Location> locations, Date fromDate, Date toDate, Obs after, int pageSize, boolean includeVoidedObs)
+	        throws APIException;
+	
+	/**
+	 * Gets one page of the observations matching the given criteria like
+	 * {@link #getObservationsPage(List, List, List, List, Date, Date, Obs, int, boolean)}, but as
+	 * {@link ObsRow}s. Only the columns of the obs table are selected, so no Obs, Concept,
+	 * Encounter or Person objects are loaded.
+	 * 
+	 * @param whom List&lt;Person&gt; to restrict obs to (optional)
+	 * @param encounters List&lt;Encounter&gt; to restrict obs to (optional)
+	 * @param questions List&lt;Concept&gt; to restrict the obs to (optional)
+	 * @param locations The org.openmrs.Location objects to restrict to (optional)
+	 * @param fromDate the earliest obsDatetime to get (optional)
+	 * @param toDate the latest obsDatetime to get (optional)
+	 * @param after the last row of the previous page, or null to get the first page
+	 * @param pageSize the largest number of rows to return
+	 * @param includeVoidedObs true/false whether to also include the voided obs (required)
+	 * @return at most pageSize rows, or an empty list after the last page
+	 * @throws APIException
+	 * @since 1.10
+	 * @should return the same obs as get observations page
+	 * @should return the rows after the given row
+	 */
+	@Transactional(readOnly = true)
+	@Authorized(PrivilegeConstants.VIEW_OBS)
+	public List<ObsRow> getObsRowsPage(List<Person> whom, List<Encounter> encounters, List<Concept> questions,
+	        List<Location> locations, Date fromDate, Date toDate, ObsRow after, int pageSize, boolean includeVoidedObs)
+	        throws APIException;
+	
 	/**
 	 * @deprecated use
 	 *             {@link #getObservations(List, List, List, List, List, List, List, Integer, Integer, Date, Date, boolean)}
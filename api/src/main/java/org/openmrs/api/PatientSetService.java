@@ -13,6 +13,7 @@
  */
 package org.openmrs.api;
 
+import java.io.OutputStream;
 import java.util.Collection;
 import java.util.Date;
 import java.util.List;
@@ -58,6 +59,20 @@ public interface PatientSetService extends OpenmrsService {
 	@Transactional(readOnly = true)
 	public String exportXml(Cohort ps);
 	
+	/**
+	 * Writes the same XML as {@link #exportXml(Cohort)} to the given stream, encoded as UTF-8.
+	 * The data of the patients is loaded in chunks and evicted from the session after each chunk
+	 * has been written, so this can be used for cohorts of any size.
+	 * 
+	 * @param ps The set you want to export as XML
+	 * @param out the stream to write to, which is flushed but not closed
+	 * @since 1.10
+	 * @should write the same xml as export xml
+	 * @should write an empty patient set for an empty cohort
+	 */
+	@Transactional(readOnly = true)
+	public void exportXml(Cohort ps, OutputStream out);
+	
 	@Transactional(readOnly = true)
 	public String exportXml(Integer patientId);
 	
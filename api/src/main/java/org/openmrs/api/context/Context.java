@@ -28,6 +28,7 @@ import javax.mail.PasswordAuthentication;
 import javax.mail.Session;
 
 import org.aopalliance.aop.Advice;
+import org.apache.commons.lang3.time.FastDateFormat;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.openmrs.GlobalProperty;
@@ -742,6 +743,29 @@ public class Context {
 		getContextDAO().flushSession();
 	}
 	
+	/**
+	 * Starts flushing and clearing the session after every <code>clearInterval</code> service
+	 * methods called on this thread that save something, so that long running jobs do not keep
+	 * every object they saved in the session. Must be followed by {@link #endBatchMode()} in a
+	 * finally block.
+	 * 
+	 * @param clearInterval the number of saves after which the session is cleared
+	 * @see FlushPolicy#beginBatchMode(int)
+	 * @since 1.10
+	 */
+	public static void beginBatchMode(int clearInterval) {
+		FlushPolicy.beginBatchMode(clearInterval);
+	}
+	
+	/**
+	 * Ends the batch mode started last by {@link #beginBatchMode(int)}
+	 * 
+	 * @since 1.10
+	 */
+	public static void endBatchMode() {
+		FlushPolicy.endBatchMode();
+	}
+	
 	/**
 	 * This method tells whether {@link #openSession()} has been called or not already. If it hasn't
 	 * been called, some methods won't work correctly because a {@link UserContext} isn't available.
@@ -1175,6 +1199,43 @@ public class Context {
 		return OpenmrsUtil.getDateTimeFormat(getLocale());
 	}
 	
+	/**
+	 * Gets a thread safe formatter for the current user's locale using the same pattern as
+	 * {@link #getDateFormat()}. Use this instead of {@link #getDateFormat()} when dates only need
+	 * to be formatted, since it does not create a new object on each call.
+	 * 
+	 * @return FastDateFormat for the user's current locale
+	 * @see org.openmrs.util.OpenmrsUtil#getDateFormatter(Locale)
+	 * @since 1.10
+	 */
+	public static FastDateFormat getDateFormatter() {
+		return OpenmrsUtil.getDateFormatter(getLocale());
+	}
+	
+	/**
+	 * Gets a thread safe formatter for the current user's locale using the same pattern as
+	 * {@link #getTimeFormat()}
+	 * 
+	 * @return FastDateFormat for the user's current locale
+	 * @see org.openmrs.util.OpenmrsUtil#getTimeFormatter(Locale)
+	 * @since 1.10
+	 */
+	public static FastDateFormat getTimeFormatter() {
+		return OpenmrsUtil.getTimeFormatter(getLocale());
+	}
+	
+	/**
+	 * Gets a thread safe formatter for the current user's locale using the same pattern as
+	 * {@link #getDateTimeFormat()}
+	 * 
+	 * @return FastDateFormat for the user's current locale
+	 * @see org.openmrs.util.OpenmrsUtil#getDateTimeFormatter(Locale)
+	 * @since 1.10
+	 */
+	public static FastDateFormat getDateTimeFormatter() {
+		return OpenmrsUtil.getDateTimeFormatter(getLocale());
+	}
+	
 	/**
 	 * @return true/false whether the service context is currently being refreshed
 	 * @see org.openmrs.api.context.ServiceContext#isRefreshingContext()
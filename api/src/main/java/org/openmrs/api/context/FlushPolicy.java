@@ -0,0 +1,268 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.api.context;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openmrs.aop.FlushSessionTransactionInterceptor;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Decides when the changes in the hibernate session are flushed to the database. Flushing costs
+ * time in proportion to the number of objects in the session, so flushing after every service
+ * method that saves something makes a job that saves n objects in one transaction cost O(n^2).
+ * Instead, a service method called by another service method only marks the transaction as dirty.
+ * The changes are then flushed when the transaction commits, before the next query in the
+ * transaction so that the query sees them, or when the outermost service method returns to a
+ * caller that runs its own transaction. Queries in a transaction with nothing saved since the last
+ * flush do not flush at all. Clearing the session flushes it first if anything is waiting to be
+ * flushed, so that nothing saved by a nested service method is thrown away. <br/>
+ * <br/>
+ * Long running jobs that call a service method for each of many objects can also turn on batch
+ * mode, in which their own calls do not flush either, and the session is flushed and cleared
+ * after every so many saves so that it does not keep growing:
+ *
+ * <pre>
+ * Context.beginBatchMode(50);
+ * try {
+ * 	for (...)
+ * 		Context.getObsService().saveObs(obs, null);
+ * }
+ * finally {
+ * 	Context.endBatchMode();
+ * }
+ * </pre>
+ *
+ * Objects loaded before the session is cleared are detached, so only code that loads what it needs
+ * again after each save should use batch mode. <br/>
+ * <br/>
+ * The number of flushes on the current thread and the time spent in them are kept, so that they
+ * can be shown for each request.
+ *
+ * @see FlushSessionTransactionInterceptor
+ * @since 1.10
+ */
+public class FlushPolicy {
+	
+	private static final Log log = LogFactory.getLog(FlushPolicy.class);
+	
+	private static final ThreadLocal<ThreadState> threadState = new ThreadLocal<ThreadState>() {
+		
+		@Override
+		protected ThreadState initialValue() {
+			return new ThreadState();
+		}
+	};
+	
+	private FlushPolicy() {
+	}
+	
+	/**
+	 * Called before each transactional service method
+	 */
+	public static void beforeServiceCall() {
+		threadState.get().depth++;
+	}
+	
+	/**
+	 * Called after each transactional service method. If the method saved something, the current
+	 * transaction is marked as dirty. The session is flushed right away only if the method was
+	 * called from outside the service layer, not in batch mode, and the transaction goes on after
+	 * it. In batch mode the session is flushed and cleared once enough methods called by the batch
+	 * job itself have saved something.
+	 *
+	 * @param saved true if the method was not read only and completed normally
+	 * @param transactionEnding true if the transaction the method ran in has been or is about to be
+	 *            committed, which flushes the session anyway
+	 * @should flush when a service method called from outside the service layer returns
+	 * @should not flush when a service method called by another service method returns
+	 * @should keep what nested service methods saved when the session is cleared
+	 */
+	public static void afterServiceCall(boolean saved, boolean transactionEnding) {
+		ThreadState state = threadState.get();
+		state.depth--;
+		if (!saved)
+			return;
+		
+		BatchScope batch = state.batch;
+		if (state.depth == 0 && batch == null) {
+			// the caller may go on to use what was saved, such as the ids of cascaded objects
+			if (!transactionEnding)
+				Context.flushSession();
+			return;
+		}
+		
+		markTransactionDirty();
+		
+		if (batch != null && state.depth == batch.depth && ++batch.saves >= batch.clearInterval) {
+			batch.saves = 0;
+			Context.flushSession();
+			Context.clearSession();
+		}
+	}
+	
+	/**
+	 * @return true if something has been saved in the current transaction since it was last
+	 *         flushed, so a query has to flush the session first to see it
+	 * @should return true after a service method saved something in the transaction
+	 * @should return false after the session was flushed
+	 */
+	public static boolean isFlushNeeded() {
+		TransactionState state = getTransactionState();
+		return state != null && state.dirty;
+	}
+	
+	/**
+	 * Called after a session has been flushed
+	 *
+	 * @param nanos the time the flush took
+	 * @param transactionSession true if the session is the one of the current transaction, and not
+	 *            one opened on the side, whose flush leaves the changes of the transaction unflushed
+	 * @should keep the transaction dirty when another session is flushed
+	 */
+	public static void flushed(long nanos, boolean transactionSession) {
+		ThreadState state = threadState.get();
+		state.flushCount++;
+		state.flushNanos += nanos;
+		TransactionState transactionState = getTransactionState();
+		if (transactionState != null && transactionSession)
+			transactionState.dirty = false;
+	}
+	
+	/**
+	 * Stops flushing after each service method that saves something, and instead flushes and clears
+	 * the session after every <code>clearInterval</code> of them, counting only the methods called
+	 * at the level where batch mode was started. Batch modes may be nested, and each must be ended with {@link #endBatchMode()}.
+	 *
+	 * @param clearInterval the number of saves after which the session is cleared
+	 * @should clear the session after the given number of saves
+	 * @should not count the saves of nested service methods
+	 */
+	public static void beginBatchMode(int clearInterval) {
+		if (clearInterval < 1)
+			throw new IllegalArgumentException("The clear interval must be at least 1");
+		
+		ThreadState state = threadState.get();
+		BatchScope batch = new BatchScope();
+		batch.clearInterval = clearInterval;
+		batch.depth = state.depth;
+		batch.previous = state.batch;
+		state.batch = batch;
+	}
+	
+	/**
+	 * Ends the batch mode started last by {@link #beginBatchMode(int)}
+	 */
+	public static void endBatchMode() {
+		ThreadState state = threadState.get();
+		if (state.batch == null)
+			log.warn("Batch mode ended without having been started");
+		else
+			state.batch = state.batch.previous;
+	}
+	
+	/**
+	 * @return true if batch mode is on for the current thread
+	 */
+	public static boolean isBatchMode() {
+		return threadState.get().batch != null;
+	}
+	
+	/**
+	 * @return the number of flushes on the current thread since the statistics were last reset
+	 */
+	public static int getFlushCount() {
+		return threadState.get().flushCount;
+	}
+	
+	/**
+	 * @return the milliseconds spent flushing on the current thread since the statistics were last
+	 *         reset
+	 */
+	public static long getFlushTime() {
+		return threadState.get().flushNanos / 1000000;
+	}
+	
+	/**
+	 * Starts counting the flushes on the current thread from zero, such as at the start of a
+	 * request
+	 */
+	public static void resetStatistics() {
+		ThreadState state = threadState.get();
+		state.flushCount = 0;
+		state.flushNanos = 0;
+	}
+	
+	/**
+	 * Marks the current transaction as dirty, registering its state the first time
+	 */
+	private static void markTransactionDirty() {
+		if (!TransactionSynchronizationManager.isSynchronizationActive())
+			return;
+		
+		TransactionState state = getTransactionState();
+		if (state == null) {
+			final TransactionState newState = new TransactionState();
+			TransactionSynchronizationManager.bindResource(TransactionState.class, newState);
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				
+				@Override
+				public void afterCompletion(int status) {
+					if (TransactionSynchronizationManager.getResource(TransactionState.class) == newState)
+						TransactionSynchronizationManager.unbindResource(TransactionState.class);
+				}
+			});
+			state = newState;
+		}
+		state.dirty = true;
+	}
+	
+	private static TransactionState getTransactionState() {
+		return (TransactionState) TransactionSynchronizationManager.getResource(TransactionState.class);
+	}
+	
+	/**
+	 * Whether anything has been saved in a transaction since it was last flushed
+	 */
+	private static class TransactionState {
+		
+		private boolean dirty = false;
+	}
+	
+	/**
+	 * The service methods being called on a thread, its batch mode and its flush statistics
+	 */
+	private static class ThreadState {
+		
+		private int depth = 0;
+		
+		private BatchScope batch;
+		
+		private int flushCount = 0;
+		
+		private long flushNanos = 0;
+	}
+	
+	private static class BatchScope {
+		
+		private int clearInterval;
+		
+		private int depth;
+		
+		private int saves = 0;
+		
+		private BatchScope previous;
+	}
+}
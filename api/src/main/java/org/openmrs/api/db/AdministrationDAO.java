@@ -15,6 +15,7 @@ package org.openmrs.api.db;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import org.openmrs.GlobalProperty;
 import org.openmrs.OpenmrsObject;
@@ -110,6 +111,24 @@ public interface AdministrationDAO {
 	 */
 	public GlobalProperty getGlobalPropertyObject(String propertyName);
 	
+	/**
+	 * Gets the values of all global properties without loading the global properties themselves
+	 * 
+	 * @return the value of every global property by name
+	 * @see org.openmrs.api.AdministrationService#refreshGlobalPropertyCache()
+	 */
+	public Map<String, String> getGlobalPropertyValues() throws DAOException;
+	
+	/**
+	 * Gets the values of all global properties as they have been committed to the database, in a
+	 * session and transaction of their own, so that neither the snapshot nor the uncommitted changes
+	 * of the current transaction are seen
+	 * 
+	 * @return the value of every global property by name
+	 * @see org.openmrs.api.AdministrationService#getGlobalProperty(String)
+	 */
+	public Map<String, String> getCommittedGlobalPropertyValues() throws DAOException;
+	
 	/**
 	 * @see org.openmrs.api.AdministrationService#getAllGlobalProperties()
 	 */
@@ -69,6 +69,24 @@ public interface CohortDAO {
 	 */
 	public Cohort saveCohort(Cohort cohort) throws DAOException;
 	
+	/**
+	 * Adds a patient to a saved cohort. If the members of the cohort have not been loaded, just the
+	 * one row is inserted into the database without loading them.
+	 * 
+	 * @param cohort the saved cohort
+	 * @param patientId the id of the patient to add
+	 */
+	public void addCohortMember(Cohort cohort, Integer patientId) throws DAOException;
+	
+	/**
+	 * Removes a patient from a saved cohort. If the members of the cohort have not been loaded,
+	 * just the one row is deleted from the database without loading them.
+	 * 
+	 * @param cohort the saved cohort
+	 * @param patientId the id of the patient to remove
+	 */
+	public void removeCohortMember(Cohort cohort, Integer patientId) throws DAOException;
+	
 	/**
 	 * Finds all Cohorts with matching names
 	 * 
@@ -12,6 +12,7 @@
  */
 package org.openmrs.api.db;
 
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
@@ -343,9 +344,23 @@ public interface ConceptDAO {
 	public Iterator<Concept> conceptIterator();
 	
 	/**
-	 * @see org.openmrs.api.ConceptService@getConceptsByMapping(java.lang.String, java.lang.String)
+	 * Loads the concepts with the given ids with as few queries as possible
+	 * 
+	 * @param conceptIds the ids of the concepts
+	 * @return the concepts that exist, in no particular order
+	 * @see ConceptService#getConceptsByMappingCodes(Collection, String)
+	 */
+	public List<Concept> getConceptsByIds(Collection<Integer> conceptIds) throws DAOException;
+	
+	/**
+	 * Loads the ids of the concepts mapped to each reference term code of a source with a single
+	 * query, whatever the map type
+	 * 
+	 * @param conceptSource the source whose codes to load
+	 * @return the ids of the concepts mapped to each code of the source
+	 * @see ConceptService#getConceptsByMapping(String, String, boolean)
 	 */
-	public List<Concept> getConceptsByMapping(String code, String sourceName, boolean includeRetired);
+	public Map<String, Set<Integer>> getConceptIdsByMapping(ConceptSource conceptSource) throws DAOException;
 	
 	/**
 	 * Auto generated method comment
@@ -646,4 +661,9 @@ public interface ConceptDAO {
 	 * @see ConceptService#getConceptsByName(String, Locale)
 	 */
 	public List<Concept> getConceptsByName(String name, Locale locale);
+	
+	/**
+	 * @see ConceptService#getConceptsWithDetails(Collection)
+	 */
+	public List<Concept> getConceptsWithDetails(Collection<Integer> conceptIds);
 }
@@ -52,6 +52,7 @@ public interface ContextDAO {
 	 * @should pass regression test for 1580
 	 * @should throw a ContextAuthenticationException if username is an empty string
 	 * @should throw a ContextAuthenticationException if username is white space
+	 * @should not change the password hash before the login is committed
 	 */
 	@Transactional(noRollbackFor = ContextAuthenticationException.class)
 	public User authenticate(String username, String password) throws ContextAuthenticationException;
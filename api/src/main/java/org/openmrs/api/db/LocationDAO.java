@@ -21,6 +21,7 @@ import org.openmrs.LocationAttribute;
 import org.openmrs.LocationAttributeType;
 import org.openmrs.LocationTag;
 import org.openmrs.api.LocationService;
+import org.openmrs.util.LocationHierarchy;
 
 /**
  * Location-related database functions
@@ -152,6 +153,19 @@ public interface LocationDAO {
 	 */
 	public List<Location> getRootLocations(boolean includeRetired);
 	
+	/**
+	 * Loads the parent and retired flag of every location with a single query
+	 *
+	 * @return the index of the whole location tree
+	 * @see LocationService#isLocationInHierarchy(Location, Location)
+	 */
+	public LocationHierarchy getLocationHierarchy();
+	
+	/**
+	 * @see LocationService#getDescendantLocations(Location, boolean)
+	 */
+	public List<Location> getDescendantLocations(Location root, boolean includeRetired);
+	
 	/**
 	 * @see LocationService#getAllLocationAttributeTypes()
 	 */
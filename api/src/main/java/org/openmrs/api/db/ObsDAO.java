@@ -24,6 +24,7 @@ import org.openmrs.MimeType;
 import org.openmrs.Obs;
 import org.openmrs.Person;
 import org.openmrs.api.ObsService;
+import org.openmrs.obs.ObsRow;
 import org.openmrs.util.OpenmrsConstants.PERSON_TYPE;
 
 /**
@@ -105,4 +106,35 @@ public interface ObsDAO {
 	 */
 	public Obs getObsByUuid(String uuid);
 	
+	/**
+	 * @see org.openmrs.api.ObsService#getNumericObsTimeSeries(Person, Concept, Date, Date)
+	 */
+	public List<Object[]> getNumericObsTimeSeries(Person who, Concept question, Date fromDate, Date toDate)
+	        throws DAOException;
+	
+	/**
+	 * @see org.openmrs.api.ObsService#getLastModifiedObsDate(Person, Concept)
+	 */
+	public Date getLastModifiedObsDate(Person who, Concept question) throws DAOException;
+	
+	/**
+	 * @param afterObsDatetime the obsDatetime of the last obs of the previous page, if any
+	 * @param afterObsId the id of the last obs of the previous page, if any
+	 * @see org.openmrs.api.ObsService#getObservationsPage(List, List, List, List, Date, Date, Obs,
+	 *      int, boolean)
+	 */
+	public List<Obs> getObservationsPage(List<Person> whom, List<Encounter> encounters, List<Concept> questions,
+	        List<Location> locations, Date fromDate, Date toDate, Date afterObsDatetime, Integer afterObsId, int pageSize,
+	        boolean includeVoidedObs) throws DAOException;
+	
+	/**
+	 * @param afterObsDatetime the obsDatetime of the last row of the previous page, if any
+	 * @param afterObsId the id of the last row of the previous page, if any
+	 * @see org.openmrs.api.ObsService#getObsRowsPage(List, List, List, List, Date, Date, ObsRow,
+	 *      int, boolean)
+	 */
+	public List<ObsRow> getObsRowsPage(List<Person> whom, List<Encounter> encounters, List<Concept> questions,
+	        List<Location> locations, Date fromDate, Date toDate, Date afterObsDatetime, Integer afterObsId, int pageSize,
+	        boolean includeVoidedObs) throws DAOException;
+	
 }
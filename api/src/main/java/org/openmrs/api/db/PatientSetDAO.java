@@ -13,6 +13,7 @@
  */
 package org.openmrs.api.db;
 
+import java.io.Writer;
 import java.util.Collection;
 import java.util.Date;
 import java.util.List;
@@ -50,6 +51,11 @@ public interface PatientSetDAO {
 	 */
 	public String exportXml(Cohort ps) throws DAOException;
 	
+	/**
+	 * @see org.openmrs.api.PatientSetService#exportXml(Cohort, java.io.OutputStream)
+	 */
+	public void exportXml(Cohort ps, Writer writer) throws DAOException;
+	
 	/**
 	 * @deprecated
 	 */
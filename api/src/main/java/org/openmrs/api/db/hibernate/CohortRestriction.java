@@ -0,0 +1,289 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.api.db.hibernate;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.hibernate.Criteria;
+import org.hibernate.EntityMode;
+import org.hibernate.HibernateException;
+import org.hibernate.Session;
+import org.hibernate.criterion.CriteriaQuery;
+import org.hibernate.criterion.Criterion;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.MySQLDialect;
+import org.hibernate.engine.TypedValue;
+import org.hibernate.jdbc.Work;
+import org.hibernate.type.Type;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Restricts a criteria query to the members of a cohort without sending one enormous IN list to
+ * the database. <br/>
+ * <br/>
+ * Up to {@link #IN_LIST_CHUNK_SIZE} ids become a plain IN list. Larger cohorts are staged in a
+ * temporary table with batched inserts and then joined with a subselect. That table lives in the
+ * current connection only, and the staged rows are deleted again when the transaction completes.
+ * Temporary tables may be written even in read only transactions, so this works for the read only
+ * queries of the patient set and cohort services too. MySQL creates the table on demand without
+ * committing the current transaction. Other databases, such as H2, commit when creating a table,
+ * so there the ids are only staged if the table already exists on the connection. Otherwise, or if
+ * staging fails, the ids are split into several IN lists of at most {@link #IN_LIST_CHUNK_SIZE} ids
+ * each. <br/>
+ * <br/>
+ * Usage:
+ *
+ * <pre>
+ * if (patients != null)
+ * 	criteria.add(CohortRestriction.in(session, &quot;patient.personId&quot;, patients.getMemberIds()));
+ * </pre>
+ *
+ * @since 1.10
+ */
+public class CohortRestriction implements Criterion {
+	
+	private static final long serialVersionUID = 1L;
+	
+	private static Log log = LogFactory.getLog(CohortRestriction.class);
+	
+	/**
+	 * The largest number of ids put into a single IN list
+	 */
+	public static final int IN_LIST_CHUNK_SIZE = 1000;
+	
+	/**
+	 * The name of the temporary table the members of large cohorts are staged in
+	 */
+	public static final String TEMPORARY_TABLE = "temp_cohort_member";
+	
+	private static final AtomicInteger scopeCounter = new AtomicInteger();
+	
+	private final String propertyName;
+	
+	private final Integer[] ids;
+	
+	private final Integer scopeId;
+	
+	private CohortRestriction(String propertyName, Integer[] ids, Integer scopeId) {
+		this.propertyName = propertyName;
+		this.ids = ids;
+		this.scopeId = scopeId;
+	}
+	
+	/**
+	 * Creates a criterion restricting the given property to the given ids. Large collections of
+	 * ids are staged in a temporary table right away if possible, so the criterion should be used
+	 * within the current transaction.
+	 *
+	 * @param session the session the criteria query will be run with
+	 * @param propertyName the property holding the patient/person id, e.g. "patient.personId"
+	 * @param ids the ids to restrict to, e.g. {@link org.openmrs.Cohort#getMemberIds()}
+	 * @return the criterion to add to the criteria query
+	 * @should restrict the results to the given ids
+	 * @should restrict the results to more ids than fit in one in list
+	 * @should stage more ids than fit in one in list in the temporary table
+	 * @should return no results for no ids
+	 */
+	public static Criterion in(Session session, String propertyName, Collection<Integer> ids) {
+		Integer[] idArray = ids.toArray(new Integer[ids.size()]);
+		if (idArray.length > IN_LIST_CHUNK_SIZE) {
+			Integer scopeId = stage(session, idArray);
+			if (scopeId != null)
+				return new CohortRestriction(propertyName, null, scopeId);
+		}
+		return new CohortRestriction(propertyName, idArray, null);
+	}
+	
+	/**
+	 * @see org.hibernate.criterion.Criterion#toSqlString(org.hibernate.Criteria,
+	 *      org.hibernate.criterion.CriteriaQuery)
+	 */
+	public String toSqlString(Criteria criteria, CriteriaQuery criteriaQuery) throws HibernateException {
+		String column = criteriaQuery.getColumnsUsingProjection(criteria, propertyName)[0];
+		
+		if (scopeId != null)
+			return column + " in (select patient_id from " + TEMPORARY_TABLE + " where scope_id = " + scopeId + ")";
+		
+		if (ids.length == 0)
+			return "1=0";
+		
+		StringBuilder sql = new StringBuilder();
+		if (ids.length > IN_LIST_CHUNK_SIZE)
+			sql.append("(");
+		for (int start = 0; start < ids.length; start += IN_LIST_CHUNK_SIZE) {
+			if (start > 0)
+				sql.append(" or ");
+			sql.append(column).append(" in (");
+			int end = Math.min(start + IN_LIST_CHUNK_SIZE, ids.length);
+			for (int i = start; i < end; i++)
+				sql.append(i == start ? "?" : ", ?");
+			sql.append(")");
+		}
+		if (ids.length > IN_LIST_CHUNK_SIZE)
+			sql.append(")");
+		return sql.toString();
+	}
+	
+	/**
+	 * @see org.hibernate.criterion.Criterion#getTypedValues(org.hibernate.Criteria,
+	 *      org.hibernate.criterion.CriteriaQuery)
+	 */
+	public TypedValue[] getTypedValues(Criteria criteria, CriteriaQuery criteriaQuery) throws HibernateException {
+		if (scopeId != null)
+			return new TypedValue[0];
+		
+		Type type = criteriaQuery.getTypeUsingProjection(criteria, propertyName);
+		TypedValue[] values = new TypedValue[ids.length];
+		for (int i = 0; i < ids.length; i++)
+			values[i] = new TypedValue(type, ids[i], EntityMode.POJO);
+		return values;
+	}
+	
+	/**
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		if (scopeId != null)
+			return propertyName + " in " + TEMPORARY_TABLE + " (scope " + scopeId + ")";
+		return propertyName + " in (" + ids.length + " ids)";
+	}
+	
+	/**
+	 * Inserts the given ids into the temporary table
+	 *
+	 * @return the id the rows were inserted with, or null if they could not be staged
+	 */
+	private static Integer stage(Session session, final Integer[] ids) {
+		final Dialect dialect = HibernateUtil.getDialect(session.getSessionFactory());
+		if (!dialect.supportsTemporaryTables() || !TransactionSynchronizationManager.isSynchronizationActive())
+			return null;
+		
+		final Integer scopeId = scopeCounter.incrementAndGet();
+		final List<Boolean> staged = new ArrayList<Boolean>(1);
+		try {
+			HibernateUtil.flushIfNeeded(session);
+			session.doWork(new Work() {
+				
+				public void execute(Connection connection) throws SQLException {
+					if (dialect instanceof MySQLDialect) {
+						Statement create = connection.createStatement();
+						try {
+							create.execute(getCreateTemporaryTableSql(dialect));
+						}
+						finally {
+							create.close();
+						}
+					} else if (!temporaryTableExists(connection)) {
+						// creating it would commit the current transaction
+						return;
+					}
+					
+					PreparedStatement insert = connection.prepareStatement("insert into " + TEMPORARY_TABLE
+					        + " (scope_id, patient_id) values (?, ?)");
+					try {
+						for (int i = 0; i < ids.length; i++) {
+							insert.setInt(1, scopeId);
+							insert.setInt(2, ids[i]);
+							insert.addBatch();
+							if ((i + 1) % IN_LIST_CHUNK_SIZE == 0)
+								insert.executeBatch();
+						}
+						insert.executeBatch();
+					}
+					finally {
+						insert.close();
+					}
+					staged.add(Boolean.TRUE);
+				}
+			});
+		}
+		catch (HibernateException e) {
+			log.warn("Unable to stage cohort members in a temporary table, using in lists instead", e);
+			return null;
+		}
+		
+		if (staged.isEmpty())
+			return null;
+		
+		final Session stagingSession = session;
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+			
+			@Override
+			public void beforeCompletion() {
+				try {
+					HibernateUtil.flushIfNeeded(stagingSession);
+					stagingSession.doWork(new Work() {
+						
+						public void execute(Connection connection) throws SQLException {
+							Statement delete = connection.createStatement();
+							try {
+								delete.executeUpdate("delete from " + TEMPORARY_TABLE + " where scope_id = " + scopeId);
+							}
+							finally {
+								delete.close();
+							}
+						}
+					});
+				}
+				catch (HibernateException e) {
+					log.debug("Unable to delete staged cohort members", e);
+				}
+			}
+		});
+		
+		if (log.isDebugEnabled())
+			log.debug("Staged " + ids.length + " cohort members with scope " + scopeId);
+		
+		return scopeId;
+	}
+	
+	/**
+	 * @return the statement creating the temporary table on the given database
+	 */
+	static String getCreateTemporaryTableSql(Dialect dialect) {
+		return dialect.getCreateTemporaryTableString() + " " + TEMPORARY_TABLE
+		        + " (scope_id integer not null, patient_id integer not null, primary key (scope_id, patient_id))"
+		        + dialect.getCreateTemporaryTablePostfix();
+	}
+	
+	/**
+	 * @return true if the temporary table has already been created on the connection
+	 */
+	private static boolean temporaryTableExists(Connection connection) {
+		try {
+			Statement select = connection.createStatement();
+			try {
+				select.executeQuery("select scope_id from " + TEMPORARY_TABLE + " where 1 = 0").close();
+				return true;
+			}
+			finally {
+				select.close();
+			}
+		}
+		catch (SQLException e) {
+			return false;
+		}
+	}
+}
@@ -0,0 +1,53 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.api.db.hibernate;
+
+import org.hibernate.FlushMode;
+import org.hibernate.HibernateException;
+import org.hibernate.event.AutoFlushEvent;
+import org.hibernate.event.EventSource;
+import org.hibernate.event.def.DefaultAutoFlushEventListener;
+import org.openmrs.api.context.FlushPolicy;
+
+/**
+ * Decides whether to flush the session before a query. Transactions run in the
+ * {@link FlushMode#COMMIT} mode, in which hibernate never flushes before a query, so the session
+ * is flushed here only if the {@link FlushPolicy} says something has been saved in the
+ * transaction since the last flush. Queries in a transaction with nothing new to flush cost
+ * nothing, where hibernate would check every object in the session for changes. Sessions in the
+ * other flush modes are left to hibernate.
+ *
+ * @see HibernateTransactionManagerFlushOnCommit
+ * @see HibernateSessionFactoryBean#newConfiguration()
+ * @since 1.10
+ */
+public class DeferredAutoFlushEventListener extends DefaultAutoFlushEventListener {
+	
+	private static final long serialVersionUID = 1L;
+	
+	/**
+	 * @see org.hibernate.event.def.DefaultAutoFlushEventListener#onAutoFlush(org.hibernate.event.AutoFlushEvent)
+	 */
+	@Override
+	public void onAutoFlush(AutoFlushEvent event) throws HibernateException {
+		EventSource source = event.getSession();
+		if (source.getFlushMode() != FlushMode.COMMIT) {
+			super.onAutoFlush(event);
+		} else if (FlushPolicy.isFlushNeeded() && source.getDontFlushFromFind() == 0) {
+			source.flush();
+			event.setFlushRequired(true);
+		}
+	}
+	
+}
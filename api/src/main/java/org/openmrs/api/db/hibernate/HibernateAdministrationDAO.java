@@ -20,6 +20,7 @@ import java.sql.Timestamp;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Vector;
@@ -27,7 +28,10 @@ import java.util.Vector;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.hibernate.Criteria;
+import org.hibernate.HibernateException;
+import org.hibernate.Session;
 import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
 import org.hibernate.cfg.Configuration;
 import org.hibernate.criterion.MatchMode;
 import org.hibernate.criterion.Order;
@@ -125,7 +129,7 @@ public class HibernateAdministrationDAO implements AdministrationDAO, Applicatio
 			sql += OpenmrsConstants.DATABASE_BUSINESS_NAME + "`.ext_mrn_log ";
 			sql += "(date_generated, generated_by, site, mrn_first, mrn_count) values (?, ?, ?, ?, ?)";
 			
-			ps = sessionFactory.getCurrentSession().connection().prepareStatement(sql);
+			ps = HibernateUtil.getConnection(sessionFactory.getCurrentSession()).prepareStatement(sql);
 			
 			ps.setTimestamp(1, new Timestamp(System.currentTimeMillis()));
 			ps.setInt(2, Context.getAuthenticatedUser().getUserId());
@@ -163,7 +167,7 @@ public class HibernateAdministrationDAO implements AdministrationDAO, Applicatio
 			sql += OpenmrsConstants.DATABASE_BUSINESS_NAME + "`.ext_mrn_log ";
 			sql += "order by mrn_log_id desc";
 			
-			ps = sessionFactory.getCurrentSession().connection().prepareStatement(sql);
+			ps = HibernateUtil.getConnection(sessionFactory.getCurrentSession()).prepareStatement(sql);
 			
 			ResultSet rs = ps.executeQuery();
 			while (rs.next()) {
@@ -216,6 +220,7 @@ public class HibernateAdministrationDAO implements AdministrationDAO, Applicatio
 		if (ro.getReportObjectId() == null)
 			createReportObject(ro);
 		else {
+			HibernateUtil.flushIfNeeded(sessionFactory.getCurrentSession());
 			sessionFactory.getCurrentSession().clear();
 			ReportObjectWrapper wrappedReportObject = new ReportObjectWrapper(ro);
 			User user = Context.getAuthenticatedUser();
@@ -265,6 +270,45 @@ public class HibernateAdministrationDAO implements AdministrationDAO, Applicatio
 		return gp;
 	}
 	
+	/**
+	 * @see org.openmrs.api.db.AdministrationDAO#getGlobalPropertyValues()
+	 */
+	public Map<String, String> getGlobalPropertyValues() throws DAOException {
+		return getGlobalPropertyValues(sessionFactory.getCurrentSession());
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.AdministrationDAO#getCommittedGlobalPropertyValues()
+	 */
+	public Map<String, String> getCommittedGlobalPropertyValues() throws DAOException {
+		Session session = sessionFactory.openSession();
+		Transaction transaction = null;
+		try {
+			transaction = session.beginTransaction();
+			Map<String, String> values = getGlobalPropertyValues(session);
+			transaction.commit();
+			return values;
+		}
+		catch (HibernateException e) {
+			if (transaction != null)
+				transaction.rollback();
+			throw new DAOException("Unable to load the committed global properties", e);
+		}
+		finally {
+			session.close();
+		}
+	}
+	
+	@SuppressWarnings("unchecked")
+	private Map<String, String> getGlobalPropertyValues(Session session) {
+		List<Object[]> rows = session.createQuery("select gp.property, gp.propertyValue from GlobalProperty gp").list();
+		
+		Map<String, String> values = new LinkedHashMap<String, String>();
+		for (Object[] row : rows)
+			values.put((String) row[0], (String) row[1]);
+		return values;
+	}
+	
 	public GlobalProperty getGlobalPropertyByUuid(String uuid) throws DAOException {
 		GlobalProperty gp = (GlobalProperty) sessionFactory.getCurrentSession().createQuery(
 		    "from GlobalProperty t where t.uuid = :uuid").setString("uuid", uuid).uniqueResult();
@@ -333,7 +377,8 @@ public class HibernateAdministrationDAO implements AdministrationDAO, Applicatio
 		if (HibernateUtil.isHSQLDialect(sessionFactory)) {
 			sql = sql.replace("`", "");
 		}
-		return DatabaseUtil.executeSQL(sessionFactory.getCurrentSession().connection(), sql, selectOnly);
+		// the sql bypasses hibernate, so the connection is flushed for it to see what has been saved
+		return DatabaseUtil.executeSQL(HibernateUtil.getConnection(sessionFactory.getCurrentSession()), sql, selectOnly);
 	}
 	
 	@Override
@@ -14,16 +14,23 @@
 package org.openmrs.api.db.hibernate;
 
 import java.util.List;
+import java.util.Set;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.hibernate.Criteria;
+import org.hibernate.EntityMode;
 import org.hibernate.Query;
+import org.hibernate.Session;
 import org.hibernate.SessionFactory;
+import org.hibernate.collection.PersistentCollection;
 import org.hibernate.criterion.Expression;
 import org.hibernate.criterion.MatchMode;
 import org.hibernate.criterion.Order;
 import org.hibernate.criterion.Restrictions;
+import org.hibernate.engine.CollectionKey;
+import org.hibernate.engine.SessionImplementor;
+import org.hibernate.persister.collection.CollectionPersister;
 import org.openmrs.Cohort;
 import org.openmrs.api.db.CohortDAO;
 import org.openmrs.api.db.DAOException;
@@ -126,8 +133,72 @@ public class HibernateCohortDAO implements CohortDAO {
 	 * @see org.openmrs.api.db.CohortDAO#saveCohort(org.openmrs.Cohort)
 	 */
 	public Cohort saveCohort(Cohort cohort) throws DAOException {
-		sessionFactory.getCurrentSession().saveOrUpdate(cohort);
+		Session session = sessionFactory.getCurrentSession();
+		if (cohort.getCohortId() != null && !(cohort.getMemberIds() instanceof PersistentCollection)
+		        && session.contains(cohort)) {
+			// the members were replaced by a new set. Hibernate would delete and insert every row
+			// for that, so copy them into the persistent set to only write the differences
+			Set<Integer> persistentMemberIds = getPersistentMemberIds(cohort);
+			if (persistentMemberIds != null) {
+				Set<Integer> memberIds = cohort.getMemberIds();
+				persistentMemberIds.retainAll(memberIds);
+				persistentMemberIds.addAll(memberIds);
+				cohort.setMemberIds(persistentMemberIds);
+			}
+		}
+		
+		session.saveOrUpdate(cohort);
 		return cohort;
 	}
 	
+	/**
+	 * @see org.openmrs.api.db.CohortDAO#addCohortMember(org.openmrs.Cohort, java.lang.Integer)
+	 */
+	public void addCohortMember(Cohort cohort, Integer patientId) throws DAOException {
+		if (isLoaded(cohort.getMemberIds())) {
+			if (cohort.getMemberIds().add(patientId))
+				saveCohort(cohort);
+		} else if (!cohort.getMemberIds().contains(patientId)) {
+			sessionFactory.getCurrentSession().createSQLQuery(
+			    "insert into cohort_member (cohort_id, patient_id) values (:cohortId, :patientId)").setInteger("cohortId",
+			    cohort.getCohortId()).setInteger("patientId", patientId).executeUpdate();
+		}
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.CohortDAO#removeCohortMember(org.openmrs.Cohort, java.lang.Integer)
+	 */
+	public void removeCohortMember(Cohort cohort, Integer patientId) throws DAOException {
+		if (isLoaded(cohort.getMemberIds())) {
+			if (cohort.getMemberIds().remove(patientId))
+				saveCohort(cohort);
+		} else {
+			sessionFactory.getCurrentSession().createSQLQuery(
+			    "delete from cohort_member where cohort_id = :cohortId and patient_id = :patientId").setInteger(
+			    "cohortId", cohort.getCohortId()).setInteger("patientId", patientId).executeUpdate();
+		}
+	}
+	
+	/**
+	 * Checks whether the given members are held in memory, rather than being a lazy collection that
+	 * reads the database on demand
+	 */
+	private boolean isLoaded(Set<Integer> memberIds) {
+		return !(memberIds instanceof PersistentCollection) || ((PersistentCollection) memberIds).wasInitialized();
+	}
+	
+	/**
+	 * Looks up the collection of members that hibernate loaded for the given cohort in the current
+	 * session
+	 * 
+	 * @return the persistent collection or null if there is none
+	 */
+	@SuppressWarnings("unchecked")
+	private Set<Integer> getPersistentMemberIds(Cohort cohort) {
+		SessionImplementor session = (SessionImplementor) sessionFactory.getCurrentSession();
+		CollectionPersister persister = session.getFactory().getCollectionPersister(Cohort.class.getName() + ".memberIds");
+		return (Set<Integer>) session.getPersistenceContext().getCollection(
+		    new CollectionKey(persister, cohort.getCohortId(), EntityMode.POJO));
+	}
+	
 }
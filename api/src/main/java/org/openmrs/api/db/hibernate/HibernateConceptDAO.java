@@ -22,6 +22,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -45,7 +46,6 @@ import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Property;
 import org.hibernate.criterion.Restrictions;
 import org.hibernate.criterion.Subqueries;
-import org.hibernate.transform.DistinctRootEntityResultTransformer;
 import org.hibernate.transform.Transformers;
 import org.openmrs.Concept;
 import org.openmrs.ConceptAnswer;
@@ -88,6 +88,12 @@ public class HibernateConceptDAO implements ConceptDAO {
 	
 	protected final Log log = LogFactory.getLog(getClass());
 	
+	/**
+	 * The largest number of concepts loaded by one query of
+	 * {@link #getConceptsWithDetails(Collection)}
+	 */
+	private static final int HYDRATION_CHUNK_SIZE = 500;
+	
 	private SessionFactory sessionFactory;
 	
 	/**
@@ -144,7 +150,7 @@ public class HibernateConceptDAO implements ConceptDAO {
 	 * @param concept the concept that will be inserted
 	 */
 	private void insertRowIntoSubclassIfNecessary(Concept concept) {
-		Connection connection = sessionFactory.getCurrentSession().connection();
+		Connection connection = HibernateUtil.getConnection(sessionFactory.getCurrentSession());
 		
 		PreparedStatement ps = null;
 		PreparedStatement ps2 = null;
@@ -165,7 +171,7 @@ public class HibernateConceptDAO implements ConceptDAO {
 					// the user probably had to change the class of this object to get it
 					// to now be a numeric
 					// (must be done before the "insert into...")
-					sessionFactory.getCurrentSession().clear();
+					clearSession();
 					
 					ps2 = connection.prepareStatement("INSERT INTO concept_numeric (concept_id, precise) VALUES (?, false)");
 					ps2.setInt(1, concept.getConceptId());
@@ -222,7 +228,7 @@ public class HibernateConceptDAO implements ConceptDAO {
 					// the user probably had to change the class of this object to get it
 					// to now be a ConceptComplex
 					// (must be done before the "insert into...")
-					sessionFactory.getCurrentSession().clear();
+					clearSession();
 					
 					// Add an empty row into the concept_complex table
 					ps2 = connection.prepareStatement("INSERT INTO concept_complex (concept_id) VALUES (?)");
@@ -268,6 +274,15 @@ public class HibernateConceptDAO implements ConceptDAO {
 		}
 	}
 	
+	/**
+	 * Clears the session, first writing what nested service calls have saved so far since clearing
+	 * would otherwise throw it away
+	 */
+	private void clearSession() {
+		HibernateUtil.flushIfNeeded(sessionFactory.getCurrentSession());
+		sessionFactory.getCurrentSession().clear();
+	}
+	
 	/**
 	 * @see org.openmrs.api.db.ConceptDAO#purgeConcept(org.openmrs.Concept)
 	 */
@@ -793,26 +808,17 @@ public class HibernateConceptDAO implements ConceptDAO {
 		sessionFactory.getCurrentSession().createQuery("delete ConceptSetDerived").executeUpdate();
 		try {
 			// remake the derived table by copying over the basic concept_set table
-			sessionFactory
-			        .getCurrentSession()
-			        .connection()
-			        .prepareStatement(
+			HibernateUtil.getConnection(sessionFactory.getCurrentSession()).prepareStatement(
 			            "insert into concept_set_derived (concept_id, concept_set, sort_weight) select cs.concept_id, cs.concept_set, cs.sort_weight from concept_set cs where not exists (select concept_id from concept_set_derived csd where csd.concept_id = cs.concept_id and csd.concept_set = cs.concept_set)")
 			        .execute();
 			
 			// burst the concept sets -- make grandchildren direct children of grandparents
-			sessionFactory
-			        .getCurrentSession()
-			        .connection()
-			        .prepareStatement(
+			HibernateUtil.getConnection(sessionFactory.getCurrentSession()).prepareStatement(
 			            "insert into concept_set_derived (concept_id, concept_set, sort_weight) select cs1.concept_id, cs2.concept_set, cs1.sort_weight from concept_set cs1 join concept_set cs2 where cs2.concept_id = cs1.concept_set and not exists (select concept_id from concept_set_derived csd where csd.concept_id = cs1.concept_id and csd.concept_set = cs2.concept_set)")
 			        .execute();
 			
 			// burst the concept sets -- make greatgrandchildren direct child of greatgrandparents
-			sessionFactory
-			        .getCurrentSession()
-			        .connection()
-			        .prepareStatement(
+			HibernateUtil.getConnection(sessionFactory.getCurrentSession()).prepareStatement(
 			            "insert into concept_set_derived (concept_id, concept_set, sort_weight) select cs1.concept_id, cs3.concept_set, cs1.sort_weight from concept_set cs1 join concept_set cs2 join concept_set cs3 where cs1.concept_set = cs2.concept_id and cs2.concept_set = cs3.concept_id and not exists (select concept_id from concept_set_derived csd where csd.concept_id = cs1.concept_id and csd.concept_set = cs3.concept_set)")
 			        .execute();
 			
@@ -1091,40 +1097,35 @@ public class HibernateConceptDAO implements ConceptDAO {
 	}
 	
 	/**
-	 * @see org.openmrs.api.db.ConceptDAO#getConceptsByMapping(java.lang.String, java.lang.String)
+	 * @see org.openmrs.api.db.ConceptDAO#getConceptsByIds(java.util.Collection)
+	 */
+	public List<Concept> getConceptsByIds(Collection<Integer> conceptIds) throws DAOException {
+		List<Integer> ids = new ArrayList<Integer>(new LinkedHashSet<Integer>(conceptIds));
+		List<Concept> concepts = new ArrayList<Concept>(ids.size());
+		for (int start = 0; start < ids.size(); start += HYDRATION_CHUNK_SIZE)
+			concepts.addAll(fetchConcepts(ids.subList(start, Math.min(start + HYDRATION_CHUNK_SIZE, ids.size())), ""));
+		return concepts;
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.ConceptDAO#getConceptIdsByMapping(org.openmrs.ConceptSource)
 	 */
 	@SuppressWarnings("unchecked")
-	public List<Concept> getConceptsByMapping(String code, String sourceName, boolean includeRetired) {
-		Criteria criteria = sessionFactory.getCurrentSession().createCriteria(ConceptMap.class);
-		
-		// make this criteria return a list of concepts
-		criteria.setProjection(Projections.property("concept"));
-		
-		//join to the conceptReferenceTerm table
-		criteria.createAlias("conceptReferenceTerm", "term");
-		
-		// match the source code to the passed code
-		criteria.add(Restrictions.eq("term.code", code));
-		
-		// join to concept reference source and match to the h17Code or source name
-		criteria.createAlias("term.conceptSource", "source");
-		criteria.add(Restrictions.or(Restrictions.eq("source.name", sourceName), Restrictions.eq("source.hl7Code",
-		    sourceName)));
-		
-		criteria.createAlias("concept", "concept");
-		
-		if (!includeRetired) {
-			// ignore retired concepts
-			criteria.add(Restrictions.eq("concept.retired", false));
-		} else {
-			// sort retired concepts to the end of the list
-			criteria.addOrder(Order.asc("concept.retired"));
+	public Map<String, Set<Integer>> getConceptIdsByMapping(ConceptSource conceptSource) throws DAOException {
+		List<Object[]> rows = sessionFactory.getCurrentSession().createQuery(
+		    "select t.code, m.concept.conceptId from ConceptMap m join m.conceptReferenceTerm t "
+		            + "where t.conceptSource = :conceptSource").setParameter("conceptSource", conceptSource).list();
+		
+		Map<String, Set<Integer>> conceptIds = new HashMap<String, Set<Integer>>();
+		for (Object[] row : rows) {
+			Set<Integer> ids = conceptIds.get(row[0]);
+			if (ids == null) {
+				ids = new HashSet<Integer>();
+				conceptIds.put((String) row[0], ids);
+			}
+			ids.add((Integer) row[1]);
 		}
-		
-		// we only want distinct concepts
-		criteria.setResultTransformer(DistinctRootEntityResultTransformer.INSTANCE);
-		
-		return (List<Concept>) criteria.list();
+		return conceptIds;
 	}
 	
 	/**
@@ -1938,4 +1939,60 @@ public class HibernateConceptDAO implements ConceptDAO {
 		
 		return concepts;
 	}
+	
+	/**
+	 * @see org.openmrs.api.db.ConceptDAO#getConceptsWithDetails(java.util.Collection)
+	 */
+	@Override
+	public List<Concept> getConceptsWithDetails(Collection<Integer> conceptIds) {
+		List<Integer> ids = new ArrayList<Integer>(new LinkedHashSet<Integer>(conceptIds));
+		Map<Integer, Concept> concepts = new HashMap<Integer, Concept>();
+		Set<Integer> related = new LinkedHashSet<Integer>();
+		
+		for (int start = 0; start < ids.size(); start += HYDRATION_CHUNK_SIZE) {
+			List<Integer> chunk = ids.subList(start, Math.min(start + HYDRATION_CHUNK_SIZE, ids.size()));
+			for (Concept concept : fetchConcepts(chunk,
+			    "left join fetch c.names left join fetch c.conceptClass left join fetch c.datatype"))
+				concepts.put(concept.getConceptId(), concept);
+			fetchConcepts(chunk, "left join fetch c.descriptions");
+			fetchConcepts(chunk, "left join fetch c.answers a left join fetch a.answerConcept left join fetch a.answerDrug");
+			fetchConcepts(chunk, "left join fetch c.conceptSets s left join fetch s.concept");
+		}
+		
+		// the answer and set member concepts are displayed with their names too
+		for (Concept concept : concepts.values()) {
+			for (ConceptAnswer answer : concept.getAnswers(true)) {
+				if (answer.getAnswerConcept() != null)
+					related.add(answer.getAnswerConcept().getConceptId());
+			}
+			for (ConceptSet set : concept.getConceptSets())
+				related.add(set.getConcept().getConceptId());
+		}
+		related.removeAll(concepts.keySet());
+		List<Integer> relatedIds = new ArrayList<Integer>(related);
+		for (int start = 0; start < relatedIds.size(); start += HYDRATION_CHUNK_SIZE) {
+			List<Integer> chunk = relatedIds.subList(start, Math.min(start + HYDRATION_CHUNK_SIZE, relatedIds.size()));
+			fetchConcepts(chunk, "left join fetch c.names left join fetch c.conceptClass left join fetch c.datatype");
+			fetchConcepts(chunk, "left join fetch c.descriptions");
+		}
+		
+		List<Concept> ret = new ArrayList<Concept>(ids.size());
+		for (Integer id : ids) {
+			Concept concept = concepts.get(id);
+			if (concept != null)
+				ret.add(concept);
+		}
+		return ret;
+	}
+	
+	/**
+	 * Loads the concepts with the given ids, initializing the associations fetched by the given
+	 * joins. Fetching one collection per query keeps the rows from multiplying.
+	 */
+	@SuppressWarnings("unchecked")
+	private List<Concept> fetchConcepts(List<Integer> conceptIds, String fetchJoins) {
+		return sessionFactory.getCurrentSession().createQuery(
+		    "select distinct c from Concept c " + fetchJoins + " where c.conceptId in (:ids)").setParameterList("ids",
+		    conceptIds).list();
+	}
 }
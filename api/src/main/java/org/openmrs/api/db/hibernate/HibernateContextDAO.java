@@ -14,8 +14,10 @@
 package org.openmrs.api.db.hibernate;
 
 import java.io.InputStream;
+import java.security.MessageDigest;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
@@ -25,6 +27,7 @@ import org.hibernate.Hibernate;
 import org.hibernate.HibernateException;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
 import org.hibernate.stat.QueryStatistics;
 import org.hibernate.stat.Statistics;
 import org.hibernate.util.ConfigHelper;
@@ -38,6 +41,7 @@ import org.openmrs.util.OpenmrsUtil;
 import org.openmrs.util.Security;
 import org.springframework.orm.hibernate3.SessionFactoryUtils;
 import org.springframework.orm.hibernate3.SessionHolder;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
 import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 /**
@@ -51,6 +55,15 @@ public class HibernateContextDAO implements ContextDAO {
 	
 	private static Log log = LogFactory.getLog(HibernateContextDAO.class);
 	
+	/**
+	 * How long a password that has been checked is remembered
+	 */
+	private static final long VERIFIED_CREDENTIAL_CACHE_MILLIS = 60000;
+	
+	private static final int MAX_VERIFIED_CREDENTIALS = 1000;
+	
+	private static final Map<String, VerifiedCredential> verifiedCredentials = new ConcurrentHashMap<String, VerifiedCredential>();
+	
 	/**
 	 * Hibernate session factory
 	 */
@@ -133,7 +146,11 @@ public class HibernateContextDAO implements ContextDAO {
 			    "salt", Hibernate.STRING).setInteger(0, candidateUser.getUserId()).uniqueResult();
 			
 			// if the username and password match, hydrate the user and return it
-			if (passwordOnRecord != null && Security.hashMatches(passwordOnRecord, password + saltOnRecord)) {
+			if (passwordOnRecord != null && passwordMatches(candidateUser, passwordOnRecord, saltOnRecord, password)) {
+				// replace hashes made with an older algorithm now that the password is known
+				if (Security.isPasswordHashOutdated(passwordOnRecord))
+					replacePasswordHashAfterCommit(candidateUser.getUserId(), passwordOnRecord, password);
+				
 				// hydrate the user object
 				candidateUser.getAllRoles().size();
 				candidateUser.getUserProperties().size();
@@ -206,6 +223,91 @@ public class HibernateContextDAO implements ContextDAO {
 		return u;
 	}
 	
+	/**
+	 * Checks the password of a user against the hash on record. Once a password has been checked,
+	 * it is remembered for {@link #VERIFIED_CREDENTIAL_CACHE_MILLIS} so that clients that log in
+	 * on every request do not have to wait for the password to be hashed each time. Only a keyed
+	 * digest of the password is kept, and it is forgotten as soon as the hash on record changes.
+	 * 
+	 * @param user the user logging in
+	 * @param passwordOnRecord the hashed password of the user
+	 * @param saltOnRecord the salt of the user
+	 * @param password the password given
+	 * @return true if the password is the user's password
+	 */
+	private boolean passwordMatches(User user, String passwordOnRecord, String saltOnRecord, String password) {
+		String key = user.getUserId() + ":" + passwordOnRecord;
+		byte[] digest = Security.digestVerifiedCredential(password);
+		
+		VerifiedCredential verified = verifiedCredentials.get(key);
+		if (verified != null && System.currentTimeMillis() - verified.time < VERIFIED_CREDENTIAL_CACHE_MILLIS
+		        && MessageDigest.isEqual(verified.digest, digest))
+			return true;
+		
+		if (!Security.hashMatches(passwordOnRecord, password + saltOnRecord))
+			return false;
+		
+		if (verifiedCredentials.size() >= MAX_VERIFIED_CREDENTIALS)
+			verifiedCredentials.clear();
+		verifiedCredentials.put(key, new VerifiedCredential(digest));
+		return true;
+	}
+	
+	/**
+	 * Replaces the password hash of a user with one made by {@link Security#encodePassword(String)}
+	 * once the login has been committed. The hash is saved in a session of its own so that the
+	 * users table is not locked for the rest of the transaction the login happens in, and is left
+	 * alone if the password has been changed in the meantime.
+	 * 
+	 * @param userId the user logging in
+	 * @param passwordOnRecord the outdated hashed password of the user
+	 * @param password the password given
+	 */
+	private void replacePasswordHashAfterCommit(final Integer userId, final String passwordOnRecord, String password) {
+		if (!TransactionSynchronizationManager.isSynchronizationActive())
+			return;
+		
+		final String salt = Security.getRandomToken();
+		final String hashedPassword = Security.encodePassword(password + salt);
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+			
+			@Override
+			public void afterCommit() {
+				Session session = sessionFactory.openSession();
+				Transaction transaction = null;
+				try {
+					transaction = session.beginTransaction();
+					session.createSQLQuery("update users set password = ?, salt = ? where user_id = ? and password = ?")
+					        .setString(0, hashedPassword).setString(1, salt).setInteger(2, userId).setString(3,
+					            passwordOnRecord).executeUpdate();
+					transaction.commit();
+				}
+				catch (HibernateException e) {
+					if (transaction != null)
+						transaction.rollback();
+					log.warn("Unable to replace the outdated password hash of user " + userId, e);
+				}
+				finally {
+					session.close();
+				}
+			}
+		});
+	}
+	
+	/**
+	 * A digest of a password that matched the hash on record, with the time it was checked
+	 */
+	private static class VerifiedCredential {
+		
+		private final byte[] digest;
+		
+		private final long time = System.currentTimeMillis();
+		
+		public VerifiedCredential(byte[] digest) {
+			this.digest = digest;
+		}
+	}
+	
 	/**
 	 * Call the UserService to save the given user while proxying the privileges needed to do so.
 	 * 
@@ -282,6 +384,8 @@ public class HibernateContextDAO implements ContextDAO {
 	 * @see org.openmrs.api.db.ContextDAO#clearSession()
 	 */
 	public void clearSession() {
+		// write what nested service calls have saved so far rather than throw it away
+		HibernateUtil.flushIfNeeded(sessionFactory.getCurrentSession());
 		sessionFactory.getCurrentSession().clear();
 	}
 	
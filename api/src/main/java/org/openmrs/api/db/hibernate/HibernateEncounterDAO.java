@@ -311,7 +311,7 @@ public class HibernateEncounterDAO implements EncounterDAO {
 		
 		// only include this where clause if patients were passed in
 		if (patients != null)
-			criteria.add(Restrictions.in("patient.personId", patients.getMemberIds()));
+			criteria.add(CohortRestriction.in(sessionFactory.getCurrentSession(), "patient.personId", patients.getMemberIds()));
 		
 		criteria.add(Restrictions.eq("voided", false));
 		
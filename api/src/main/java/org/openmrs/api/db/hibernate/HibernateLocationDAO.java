@@ -13,10 +13,15 @@
  */
 package org.openmrs.api.db.hibernate;
 
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.apache.commons.lang.StringUtils;
 import org.hibernate.Criteria;
+import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.criterion.Expression;
 import org.hibernate.criterion.MatchMode;
@@ -30,6 +35,7 @@ import org.openmrs.LocationAttributeType;
 import org.openmrs.LocationTag;
 import org.openmrs.api.db.DAOException;
 import org.openmrs.api.db.LocationDAO;
+import org.openmrs.util.LocationHierarchy;
 
 /**
  * Hibernate location-related database functions
@@ -242,6 +248,39 @@ public class HibernateLocationDAO implements LocationDAO {
 		return criteria.list();
 	}
 	
+	/**
+	 * @see LocationDAO#getLocationHierarchy()
+	 */
+	@SuppressWarnings("unchecked")
+	@Override
+	public LocationHierarchy getLocationHierarchy() throws DAOException {
+		List<Object[]> rows = sessionFactory.getCurrentSession().createQuery(
+		    "select l.locationId, p.locationId, l.retired from Location l left join l.parentLocation p").list();
+		
+		Map<Integer, Integer> parentIds = new HashMap<Integer, Integer>();
+		Set<Integer> retiredIds = new HashSet<Integer>();
+		for (Object[] row : rows) {
+			parentIds.put((Integer) row[0], (Integer) row[1]);
+			if (Boolean.TRUE.equals(row[2]))
+				retiredIds.add((Integer) row[0]);
+		}
+		return new LocationHierarchy(parentIds, retiredIds);
+	}
+	
+	/**
+	 * @see LocationDAO#getDescendantLocations(Location, boolean)
+	 */
+	@SuppressWarnings("unchecked")
+	@Override
+	public List<Location> getDescendantLocations(Location root, boolean includeRetired) throws DAOException {
+		Session session = sessionFactory.getCurrentSession();
+		Criteria criteria = session.createCriteria(Location.class);
+		criteria.add(LocationHierarchyRestriction.within(session, "locationId", root, includeRetired));
+		criteria.add(Restrictions.ne("locationId", root.getLocationId()));
+		criteria.addOrder(Order.asc("name"));
+		return criteria.list();
+	}
+	
 	/**
 	 * @see org.openmrs.api.db.LocationDAO#getAllLocationAttributeTypes()
 	 */
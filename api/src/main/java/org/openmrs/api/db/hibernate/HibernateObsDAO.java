@@ -24,10 +24,12 @@ import org.hibernate.SessionFactory;
 import org.hibernate.criterion.DetachedCriteria;
 import org.hibernate.criterion.Expression;
 import org.hibernate.criterion.Order;
+import org.hibernate.criterion.ProjectionList;
 import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Property;
 import org.hibernate.criterion.Restrictions;
 import org.hibernate.criterion.Subqueries;
+import org.hibernate.transform.Transformers;
 import org.openmrs.Concept;
 import org.openmrs.ConceptName;
 import org.openmrs.Encounter;
@@ -39,6 +41,7 @@ import org.openmrs.Person;
 import org.openmrs.User;
 import org.openmrs.api.db.DAOException;
 import org.openmrs.api.db.ObsDAO;
+import org.openmrs.obs.ObsRow;
 import org.openmrs.util.OpenmrsConstants.PERSON_TYPE;
 
 /**
@@ -277,4 +280,121 @@ public class HibernateObsDAO implements ObsDAO {
 		    uuid).uniqueResult();
 	}
 	
+	/**
+	 * @see org.openmrs.api.db.ObsDAO#getNumericObsTimeSeries(org.openmrs.Person,
+	 *      org.openmrs.Concept, java.util.Date, java.util.Date)
+	 */
+	@SuppressWarnings("unchecked")
+	public List<Object[]> getNumericObsTimeSeries(Person who, Concept question, Date fromDate, Date toDate)
+	        throws DAOException {
+		Criteria criteria = sessionFactory.getCurrentSession().createCriteria(Obs.class, "obs");
+		criteria.add(Restrictions.eq("person", who));
+		criteria.add(Restrictions.eq("concept", question));
+		criteria.add(Restrictions.isNotNull("valueNumeric"));
+		criteria.add(Restrictions.eq("voided", false));
+		
+		if (fromDate != null)
+			criteria.add(Restrictions.ge("obsDatetime", fromDate));
+		
+		if (toDate != null)
+			criteria.add(Restrictions.le("obsDatetime", toDate));
+		
+		// only select the two columns instead of loading whole obs
+		criteria.setProjection(Projections.projectionList().add(Projections.property("obsDatetime")).add(
+		    Projections.property("valueNumeric")));
+		criteria.addOrder(Order.asc("obsDatetime"));
+		
+		return criteria.list();
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.ObsDAO#getLastModifiedObsDate(org.openmrs.Person,
+	 *      org.openmrs.Concept)
+	 */
+	public Date getLastModifiedObsDate(Person who, Concept question) throws DAOException {
+		Object[] dates = (Object[]) sessionFactory.getCurrentSession().createQuery(
+		    "select max(o.dateCreated), max(o.dateVoided) from Obs o where o.person = :person and o.concept = :concept")
+		        .setParameter("person", who).setParameter("concept", question).uniqueResult();
+		
+		Date created = (Date) dates[0];
+		Date voided = (Date) dates[1];
+		if (created == null || (voided != null && voided.after(created)))
+			return voided;
+		return created;
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.ObsDAO#getObservationsPage(java.util.List, java.util.List,
+	 *      java.util.List, java.util.List, java.util.Date, java.util.Date, java.util.Date,
+	 *      java.lang.Integer, int, boolean)
+	 */
+	@SuppressWarnings("unchecked")
+	public List<Obs> getObservationsPage(List<Person> whom, List<Encounter> encounters, List<Concept> questions,
+	        List<Location> locations, Date fromDate, Date toDate, Date afterObsDatetime, Integer afterObsId, int pageSize,
+	        boolean includeVoidedObs) throws DAOException {
+		Criteria criteria = createGetObservationsPageCriteria(whom, encounters, questions, locations, fromDate, toDate,
+		    afterObsDatetime, afterObsId, pageSize, includeVoidedObs);
+		return criteria.list();
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.ObsDAO#getObsRowsPage(java.util.List, java.util.List,
+	 *      java.util.List, java.util.List, java.util.Date, java.util.Date, java.util.Date,
+	 *      java.lang.Integer, int, boolean)
+	 */
+	@SuppressWarnings("unchecked")
+	public List<ObsRow> getObsRowsPage(List<Person> whom, List<Encounter> encounters, List<Concept> questions,
+	        List<Location> locations, Date fromDate, Date toDate, Date afterObsDatetime, Integer afterObsId, int pageSize,
+	        boolean includeVoidedObs) throws DAOException {
+		Criteria criteria = createGetObservationsPageCriteria(whom, encounters, questions, locations, fromDate, toDate,
+		    afterObsDatetime, afterObsId, pageSize, includeVoidedObs);
+		
+		// the ids of associated objects are read from the foreign keys of the obs table, without joins
+		ProjectionList columns = Projections.projectionList();
+		columns.add(Projections.property("obsId"), "obsId");
+		columns.add(Projections.property("uuid"), "uuid");
+		columns.add(Projections.property("personId"), "personId");
+		columns.add(Projections.property("concept.conceptId"), "conceptId");
+		columns.add(Projections.property("encounter.encounterId"), "encounterId");
+		columns.add(Projections.property("location.locationId"), "locationId");
+		columns.add(Projections.property("obsGroup.obsId"), "obsGroupId");
+		columns.add(Projections.property("obsDatetime"), "obsDatetime");
+		columns.add(Projections.property("valueCoded.conceptId"), "valueCodedId");
+		columns.add(Projections.property("valueCodedName.conceptNameId"), "valueCodedNameId");
+		columns.add(Projections.property("valueDrug.drugId"), "valueDrugId");
+		columns.add(Projections.property("valueDatetime"), "valueDatetime");
+		columns.add(Projections.property("valueNumeric"), "valueNumeric");
+		columns.add(Projections.property("valueText"), "valueText");
+		columns.add(Projections.property("valueModifier"), "valueModifier");
+		columns.add(Projections.property("valueComplex"), "valueComplex");
+		columns.add(Projections.property("comment"), "comment");
+		columns.add(Projections.property("voided"), "voided");
+		criteria.setProjection(columns);
+		criteria.setResultTransformer(Transformers.aliasToBean(ObsRow.class));
+		
+		return criteria.list();
+	}
+	
+	/**
+	 * Creates the criteria for one page of obs, most recent first, starting after the given
+	 * obsDatetime and obsId
+	 */
+	private Criteria createGetObservationsPageCriteria(List<Person> whom, List<Encounter> encounters,
+	        List<Concept> questions, List<Location> locations, Date fromDate, Date toDate, Date afterObsDatetime,
+	        Integer afterObsId, int pageSize, boolean includeVoidedObs) {
+		Criteria criteria = createGetObservationsCriteria(whom, encounters, questions, null, null, locations, null, null,
+		    null, fromDate, toDate, null, includeVoidedObs);
+		
+		// the position of the previous page's last obs in the (obsDatetime, obsId) order, which an
+		// index on obs_datetime can seek to directly
+		if (afterObsDatetime != null && afterObsId != null) {
+			criteria.add(Restrictions.or(Restrictions.lt("obsDatetime", afterObsDatetime), Restrictions.and(Restrictions
+			        .eq("obsDatetime", afterObsDatetime), Restrictions.lt("obsId", afterObsId))));
+		}
+		
+		criteria.addOrder(Order.desc("obsDatetime"));
+		criteria.addOrder(Order.desc("obsId"));
+		criteria.setMaxResults(pageSize);
+		return criteria;
+	}
 }
@@ -113,7 +113,7 @@ public class HibernatePatientDAO implements PatientDAO {
 	 * @param patient
 	 */
 	private void insertPatientStubIfNeeded(Patient patient) {
-		Connection connection = sessionFactory.getCurrentSession().connection();
+		Connection connection = HibernateUtil.getConnection(sessionFactory.getCurrentSession());
 		
 		boolean stubInsertNeeded = false;
 		
@@ -14,6 +14,7 @@
 package org.openmrs.api.db.hibernate;
 
 import java.io.StringWriter;
+import java.io.Writer;
 import java.lang.reflect.Field;
 import java.text.DateFormat;
 import java.text.ParseException;
@@ -21,6 +22,8 @@ import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -33,6 +36,7 @@ import java.util.Vector;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.transform.Result;
 import javax.xml.transform.Source;
 import javax.xml.transform.Transformer;
@@ -46,6 +50,7 @@ import org.hibernate.CacheMode;
 import org.hibernate.Criteria;
 import org.hibernate.FetchMode;
 import org.hibernate.Query;
+import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.criterion.Expression;
 import org.hibernate.criterion.ProjectionList;
@@ -86,6 +91,7 @@ import org.openmrs.api.PatientSetService.TimeModifier;
 import org.openmrs.api.context.Context;
 import org.openmrs.api.db.DAOException;
 import org.openmrs.api.db.PatientSetDAO;
+import org.openmrs.util.OpenmrsUtil;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 
@@ -117,18 +123,106 @@ public class HibernatePatientSetDAO implements PatientSetDAO {
 		this.sessionFactory = sessionFactory;
 	}
 	
+	/**
+	 * The number of patients whose data is loaded together while exporting a cohort
+	 */
+	private static final int EXPORT_CHUNK_SIZE = 100;
+	
 	/**
 	 * @deprecated
 	 * @see org.openmrs.api.db.PatientSetDAO#exportXml(org.openmrs.Cohort)
 	 */
 	public String exportXml(Cohort ps) throws DAOException {
-		// TODO: This is inefficient for large patient sets.
-		StringBuffer ret = new StringBuffer("<patientset>");
-		for (Integer patientId : ps.getMemberIds()) {
-			ret.append(exportXml(patientId));
+		StringWriter writer = new StringWriter();
+		exportXml(ps, writer);
+		return writer.toString();
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.PatientSetDAO#exportXml(org.openmrs.Cohort, java.io.Writer)
+	 */
+	@SuppressWarnings("unchecked")
+	public void exportXml(Cohort ps, Writer writer) throws DAOException {
+		Locale locale = Context.getLocale();
+		Session session = sessionFactory.getCurrentSession();
+		
+		try {
+			Transformer xformer = TransformerFactory.newInstance().newTransformer();
+			writer.write("<patientset>");
+			
+			// the data of each chunk of patients is loaded with one query per kind, written, and then
+			// evicted from the session again
+			List<Integer> patientIds = new ArrayList<Integer>(ps.getMemberIds());
+			for (int start = 0; start < patientIds.size(); start += EXPORT_CHUNK_SIZE) {
+				List<Integer> chunk = patientIds.subList(start, Math.min(start + EXPORT_CHUNK_SIZE, patientIds.size()));
+				
+				Map<Integer, Patient> patients = new HashMap<Integer, Patient>();
+				for (Patient p : (List<Patient>) session.createCriteria(Patient.class).add(
+				    Restrictions.in("patientId", chunk)).list())
+					patients.put(p.getPatientId(), p);
+				
+				Map<Integer, List<Encounter>> encounters = new HashMap<Integer, List<Encounter>>();
+				Criteria encounterCriteria = session.createCriteria(Encounter.class).createAlias("patient", "p").add(
+				    Restrictions.in("p.patientId", chunk)).add(Restrictions.eq("voided", false)).setFetchMode("obs",
+				    FetchMode.JOIN);
+				encounterCriteria.setResultTransformer(Criteria.DISTINCT_ROOT_ENTITY);
+				for (Encounter e : (List<Encounter>) encounterCriteria.list())
+					getList(encounters, e.getPatient().getPatientId()).add(e);
+				// the order of the fetched obs takes precedence in the query, so sort the encounters here
+				for (List<Encounter> encounterList : encounters.values())
+					Collections.sort(encounterList, new Comparator<Encounter>() {
+						
+						public int compare(Encounter left, Encounter right) {
+							return OpenmrsUtil.compareWithNullAsEarliest(right.getEncounterDatetime(), left
+							        .getEncounterDatetime());
+						}
+					});
+				
+				Map<Integer, List<Obs>> obsWithoutEncounter = new HashMap<Integer, List<Obs>>();
+				for (Obs obs : (List<Obs>) session.createCriteria(Obs.class).createAlias("person", "person").add(
+				    Restrictions.in("person.personId", chunk)).add(Restrictions.isNull("encounter")).add(
+				    Restrictions.eq("voided", false)).list())
+					getList(obsWithoutEncounter, obs.getPersonId()).add(obs);
+				
+				for (Integer patientId : chunk) {
+					Patient p = patients.get(patientId);
+					if (p == null)
+						throw new DAOException("There is no patient with id " + patientId);
+					Document doc = createPatientDocument(p, getList(encounters, patientId), getList(obsWithoutEncounter,
+					    patientId), locale);
+					xformer.transform(new DOMSource(doc), new StreamResult(writer));
+				}
+				
+				for (List<Obs> obsList : obsWithoutEncounter.values()) {
+					for (Obs obs : obsList)
+						session.evict(obs);
+				}
+				for (List<Encounter> encounterList : encounters.values()) {
+					for (Encounter e : encounterList)
+						session.evict(e);
+				}
+				for (Patient p : patients.values())
+					session.evict(p);
+			}
+			
+			writer.write("</patientset>");
+			writer.flush();
+		}
+		catch (DAOException ex) {
+			throw ex;
+		}
+		catch (Exception ex) {
+			throw new DAOException(ex);
 		}
-		ret.append("</patientset>");
-		return ret.toString();
+	}
+	
+	private static <T> List<T> getList(Map<Integer, List<T>> map, Integer key) {
+		List<T> list = map.get(key);
+		if (list == null) {
+			list = new ArrayList<T>();
+			map.put(key, list);
+		}
+		return list;
 	}
 	
 	private String formatUserName(User u) {
@@ -203,8 +297,13 @@ public class HibernatePatientSetDAO implements PatientSetDAO {
 				value = obs.getValueModifier() + " " + value;
 			}
 		}
-		obsNode.setAttribute("data_type", dataType);
-		obsNode.appendChild(doc.createTextNode(value));
+		// obs without a value (e.g. empty groups) can't be serialized with null text
+		if (dataType != null) {
+			obsNode.setAttribute("data_type", dataType);
+		}
+		if (value != null) {
+			obsNode.appendChild(doc.createTextNode(value));
+		}
 		
 		return obsNode;
 	}
@@ -217,243 +316,211 @@ public class HibernatePatientSetDAO implements PatientSetDAO {
 	public String exportXml(Integer patientId) throws DAOException {
 		Locale locale = Context.getLocale();
 		
-		DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-		Document doc = null;
-		
 		PatientService patientService = Context.getPatientService();
 		EncounterService encounterService = Context.getEncounterService();
 		
 		Patient p = patientService.getPatient(patientId);
 		List<Encounter> encounters = encounterService.getEncountersByPatientId(patientId);
 		
+		String ret = null;
+		
 		try {
-			DocumentBuilder builder = factory.newDocumentBuilder();
-			doc = builder.newDocument();
-			
-			Element root = (Element) doc.createElement("patient_data");
-			doc.appendChild(root);
-			
-			Element patientNode = doc.createElement("patient");
-			patientNode.setAttribute("patient_id", p.getPatientId().toString());
-			
-			boolean firstName = true;
-			Element namesNode = doc.createElement("names");
-			for (PersonName name : p.getNames()) {
-				if (firstName) {
-					if (name.getGivenName() != null) {
-						patientNode.setAttribute("given_name", name.getGivenName());
-					}
-					if (name.getMiddleName() != null) {
-						patientNode.setAttribute("middle_name", name.getMiddleName());
-					}
-					if (name.getFamilyName() != null) {
-						patientNode.setAttribute("family_name", name.getFamilyName());
-					}
-					if (name.getFamilyName2() != null) {
-						patientNode.setAttribute("family_name2", name.getFamilyName2());
+			List<Obs> obsWithoutEncounter = new ArrayList<Obs>();
+			ObsService obsService = Context.getObsService();
+			List<Obs> allObservations = obsService.getObservationsByPerson(p);
+			if (allObservations != null) {
+				log.debug("allObservations has " + allObservations.size() + " obs");
+				for (Obs obs : allObservations) {
+					if (obs.getEncounter() == null) {
+						obsWithoutEncounter.add(obs);
 					}
-					firstName = false;
 				}
-				Element nameNode = doc.createElement("name");
+			}
+			
+			Source source = new DOMSource(createPatientDocument(p, encounters, obsWithoutEncounter, locale));
+			StringWriter sw = new StringWriter();
+			Result result = new StreamResult(sw);
+			
+			Transformer xformer = TransformerFactory.newInstance().newTransformer();
+			xformer.transform(source, result);
+			ret = sw.toString();
+		}
+		catch (Exception ex) {
+			throw new DAOException(ex);
+		}
+		
+		return ret;
+	}
+	
+	/**
+	 * Creates the document with the data of one patient that is exported by
+	 * {@link #exportXml(Integer)} and {@link #exportXml(Cohort, Writer)}
+	 * 
+	 * @param p the patient
+	 * @param encounters the non voided encounters of the patient, most recent first
+	 * @param obsWithoutEncounter the non voided obs of the patient that are not in an encounter
+	 * @param locale the locale to use for concept names
+	 */
+	private Document createPatientDocument(Patient p, List<Encounter> encounters, Collection<Obs> obsWithoutEncounter,
+	        Locale locale) throws ParserConfigurationException {
+		DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+		DocumentBuilder builder = factory.newDocumentBuilder();
+		Document doc = builder.newDocument();
+		
+		Element root = (Element) doc.createElement("patient_data");
+		doc.appendChild(root);
+		
+		Element patientNode = doc.createElement("patient");
+		patientNode.setAttribute("patient_id", p.getPatientId().toString());
+		
+		boolean firstName = true;
+		Element namesNode = doc.createElement("names");
+		for (PersonName name : p.getNames()) {
+			if (firstName) {
 				if (name.getGivenName() != null) {
-					nameNode.setAttribute("given_name", name.getGivenName());
+					patientNode.setAttribute("given_name", name.getGivenName());
 				}
 				if (name.getMiddleName() != null) {
-					nameNode.setAttribute("middle_name", name.getMiddleName());
+					patientNode.setAttribute("middle_name", name.getMiddleName());
 				}
 				if (name.getFamilyName() != null) {
-					nameNode.setAttribute("family_name", name.getFamilyName());
+					patientNode.setAttribute("family_name", name.getFamilyName());
 				}
 				if (name.getFamilyName2() != null) {
-					nameNode.setAttribute("family_name2", name.getFamilyName2());
+					patientNode.setAttribute("family_name2", name.getFamilyName2());
 				}
-				namesNode.appendChild(nameNode);
-			}
-			patientNode.appendChild(namesNode);
-			patientNode.setAttribute("gender", p.getGender());
-			
-			/*
-			if (p.getRace() != null) {
-				patientNode.setAttribute("race", p.getRace());
-			}
-			 */
-			if (p.getBirthdate() != null) {
-				patientNode.setAttribute("birthdate", df.format(p.getBirthdate()));
+				firstName = false;
 			}
-			if (p.getBirthdateEstimated() != null) {
-				patientNode.setAttribute("birthdate_estimated", p.getBirthdateEstimated().toString());
+			Element nameNode = doc.createElement("name");
+			if (name.getGivenName() != null) {
+				nameNode.setAttribute("given_name", name.getGivenName());
 			}
-			/*
-			if (p.getBirthplace() != null) {
-				patientNode.setAttribute("birthplace", p.getBirthplace());
+			if (name.getMiddleName() != null) {
+				nameNode.setAttribute("middle_name", name.getMiddleName());
 			}
-			if (p.getCitizenship() != null) {
-				patientNode.setAttribute("citizenship", p.getCitizenship());
+			if (name.getFamilyName() != null) {
+				nameNode.setAttribute("family_name", name.getFamilyName());
 			}
-			 */
-			/*
-			if (p.getMothersName() != null) {
-				patientNode.setAttribute("mothers_name", p.getMothersName());
+			if (name.getFamilyName2() != null) {
+				nameNode.setAttribute("family_name2", name.getFamilyName2());
 			}
-			if (p.getCivilStatus() != null) {
-				patientNode.setAttribute("civil_status", p.getCivilStatus().getName(locale, false).getName());
-			}
-			 */
-			if (p.getDeathDate() != null) {
-				patientNode.setAttribute("death_date", df.format(p.getDeathDate()));
-			}
-			if (p.getCauseOfDeath() != null) {
-				patientNode.setAttribute("cause_of_death", p.getCauseOfDeath().getName(locale, false).getName());
-			}
-			/*
-			if (p.getHealthDistrict() != null) {
-				patientNode.setAttribute("health_district", p.getHealthDistrict());
-			}
-			if (p.getHealthCenter() != null) {
-				patientNode.setAttribute("health_center", p.getHealthCenter().getName());
-				patientNode.setAttribute("health_center_id", p.getHealthCenter().getLocationId().toString());
-			}
-			 */
+			namesNode.appendChild(nameNode);
+		}
+		patientNode.appendChild(namesNode);
+		patientNode.setAttribute("gender", p.getGender());
+		
+		/*
+		if (p.getRace() != null) {
+			patientNode.setAttribute("race", p.getRace());
+		}
+		 */
+		if (p.getBirthdate() != null) {
+			patientNode.setAttribute("birthdate", df.format(p.getBirthdate()));
+		}
+		if (p.getBirthdateEstimated() != null) {
+			patientNode.setAttribute("birthdate_estimated", p.getBirthdateEstimated().toString());
+		}
+		/*
+		if (p.getBirthplace() != null) {
+			patientNode.setAttribute("birthplace", p.getBirthplace());
+		}
+		if (p.getCitizenship() != null) {
+			patientNode.setAttribute("citizenship", p.getCitizenship());
+		}
+		 */
+		/*
+		if (p.getMothersName() != null) {
+			patientNode.setAttribute("mothers_name", p.getMothersName());
+		}
+		if (p.getCivilStatus() != null) {
+			patientNode.setAttribute("civil_status", p.getCivilStatus().getName(locale, false).getName());
+		}
+		 */
+		if (p.getDeathDate() != null) {
+			patientNode.setAttribute("death_date", df.format(p.getDeathDate()));
+		}
+		if (p.getCauseOfDeath() != null) {
+			patientNode.setAttribute("cause_of_death", p.getCauseOfDeath().getName(locale, false).getName());
+		}
+		/*
+		if (p.getHealthDistrict() != null) {
+			patientNode.setAttribute("health_district", p.getHealthDistrict());
+		}
+		if (p.getHealthCenter() != null) {
+			patientNode.setAttribute("health_center", p.getHealthCenter().getName());
+			patientNode.setAttribute("health_center_id", p.getHealthCenter().getLocationId().toString());
+		}
+		 */
 
-			for (Encounter e : encounters) {
-				Element encounterNode = doc.createElement("encounter");
-				if (e.getEncounterDatetime() != null) {
-					encounterNode.setAttribute("datetime", df.format(e.getEncounterDatetime()));
+		for (Encounter e : encounters) {
+			Element encounterNode = doc.createElement("encounter");
+			if (e.getEncounterDatetime() != null) {
+				encounterNode.setAttribute("datetime", df.format(e.getEncounterDatetime()));
+			}
+			
+			Element metadataNode = doc.createElement("metadata");
+			{
+				Location l = e.getLocation();
+				if (l != null) {
+					Element temp = doc.createElement("location");
+					temp.setAttribute("location_id", l.getLocationId().toString());
+					temp.appendChild(doc.createTextNode(l.getName()));
+					metadataNode.appendChild(temp);
 				}
-				
-				Element metadataNode = doc.createElement("metadata");
-				{
-					Location l = e.getLocation();
-					if (l != null) {
-						Element temp = doc.createElement("location");
-						temp.setAttribute("location_id", l.getLocationId().toString());
-						temp.appendChild(doc.createTextNode(l.getName()));
-						metadataNode.appendChild(temp);
-					}
-					EncounterType t = e.getEncounterType();
-					if (t != null) {
-						Element temp = doc.createElement("encounter_type");
-						temp.setAttribute("encounter_type_id", t.getEncounterTypeId().toString());
-						temp.appendChild(doc.createTextNode(t.getName()));
-						metadataNode.appendChild(temp);
-					}
-					Form f = e.getForm();
-					if (f != null) {
-						Element temp = doc.createElement("form");
-						temp.setAttribute("form_id", f.getFormId().toString());
-						temp.appendChild(doc.createTextNode(f.getName()));
-						metadataNode.appendChild(temp);
-					}
-					Person u = e.getProvider();
-					if (u != null) {
-						Element temp = doc.createElement("provider");
-						temp.setAttribute("provider_id", u.getPersonId().toString());
-						temp.appendChild(doc.createTextNode(u.getPersonName().toString()));
-						metadataNode.appendChild(temp);
-					}
+				EncounterType t = e.getEncounterType();
+				if (t != null) {
+					Element temp = doc.createElement("encounter_type");
+					temp.setAttribute("encounter_type_id", t.getEncounterTypeId().toString());
+					temp.appendChild(doc.createTextNode(t.getName()));
+					metadataNode.appendChild(temp);
 				}
-				encounterNode.appendChild(metadataNode);
-				
-				Collection<Obs> observations = e.getObs();
-				if (observations != null && observations.size() > 0) {
-					Element observationsNode = doc.createElement("observations");
-					for (Obs obs : observations) {
-						Element obsNode = obsElementHelper(doc, locale, obs);
-						observationsNode.appendChild(obsNode);
-					}
-					encounterNode.appendChild(observationsNode);
+				Form f = e.getForm();
+				if (f != null) {
+					Element temp = doc.createElement("form");
+					temp.setAttribute("form_id", f.getFormId().toString());
+					temp.appendChild(doc.createTextNode(f.getName()));
+					metadataNode.appendChild(temp);
 				}
-				
-				Set<Order> orders = e.getOrders();
-				if (orders != null && orders.size() != 0) {
-					Element ordersNode = doc.createElement("orders");
-					for (Order order : orders) {
-						Element orderNode = doc.createElement("order");
-						orderNode.setAttribute("order_id", order.getOrderId().toString());
-						orderNode.setAttribute("order_type", order.getOrderType().getName());
-						
-						Concept concept = order.getConcept();
-						orderNode.setAttribute("concept_id", concept.getConceptId().toString());
-						orderNode.appendChild(doc.createTextNode(concept.getName(locale).getName()));
-						
-						if (order.getInstructions() != null) {
-							orderNode.setAttribute("instructions", order.getInstructions());
-						}
-						if (order.getStartDate() != null) {
-							orderNode.setAttribute("start_date", df.format(order.getStartDate()));
-						}
-						if (order.getAutoExpireDate() != null) {
-							orderNode.setAttribute("auto_expire_date", df.format(order.getAutoExpireDate()));
-						}
-						if (order.getOrderer() != null) {
-							orderNode.setAttribute("orderer", formatUser(order.getOrderer()));
-						}
-						if (order.getDiscontinued() != null) {
-							orderNode.setAttribute("discontinued", order.getDiscontinued().toString());
-						}
-						if (order.getDiscontinuedDate() != null) {
-							orderNode.setAttribute("discontinued_date", df.format(order.getDiscontinuedDate()));
-						}
-						if (order.getDiscontinuedReason() != null) {
-							orderNode.setAttribute("discontinued_reason", order.getDiscontinuedReason().getName(locale,
-							    false).getName());
-						}
-						
-						ordersNode.appendChild(orderNode);
-					}
+				Person u = e.getProvider();
+				if (u != null) {
+					Element temp = doc.createElement("provider");
+					temp.setAttribute("provider_id", u.getPersonId().toString());
+					temp.appendChild(doc.createTextNode(u.getPersonName().toString()));
+					metadataNode.appendChild(temp);
 				}
-				
-				patientNode.appendChild(encounterNode);
 			}
+			encounterNode.appendChild(metadataNode);
 			
-			ObsService obsService = Context.getObsService();
-			List<Obs> allObservations = obsService.getObservationsByPerson(p);
-			if (allObservations != null && allObservations.size() > 0) {
-				log.debug("allObservations has " + allObservations.size() + " obs");
-				Set<Obs> undoneObservations = new HashSet<Obs>();
-				for (Obs obs : allObservations) {
-					if (obs.getEncounter() == null) {
-						undoneObservations.add(obs);
-					}
-				}
-				log.debug("undoneObservations has " + undoneObservations.size() + " obs");
-				
-				if (undoneObservations.size() > 0) {
-					Element observationsNode = doc.createElement("observations");
-					for (Obs obs : undoneObservations) {
-						Element obsNode = obsElementHelper(doc, locale, obs);
-						observationsNode.appendChild(obsNode);
-						log.debug("added node " + obsNode + " to observationsNode");
-					}
-					patientNode.appendChild(observationsNode);
+			Collection<Obs> observations = e.getObs();
+			if (observations != null && observations.size() > 0) {
+				Element observationsNode = doc.createElement("observations");
+				for (Obs obs : observations) {
+					Element obsNode = obsElementHelper(doc, locale, obs);
+					observationsNode.appendChild(obsNode);
 				}
+				encounterNode.appendChild(observationsNode);
 			}
 			
-			// TODO: put in orders that don't belong to any encounter
-			
-			root.appendChild(patientNode);
-			
+			patientNode.appendChild(encounterNode);
 		}
-		catch (Exception ex) {
-			throw new DAOException(ex);
+		
+		if (obsWithoutEncounter.size() > 0) {
+			Set<Obs> undoneObservations = new HashSet<Obs>(obsWithoutEncounter);
+			log.debug("undoneObservations has " + undoneObservations.size() + " obs");
+			Element observationsNode = doc.createElement("observations");
+			for (Obs obs : undoneObservations) {
+				Element obsNode = obsElementHelper(doc, locale, obs);
+				observationsNode.appendChild(obsNode);
+				log.debug("added node " + obsNode + " to observationsNode");
+			}
+			patientNode.appendChild(observationsNode);
 		}
 		
-		String ret = null;
+		// TODO: put in orders that don't belong to any encounter
 		
-		try {
-			Source source = new DOMSource(doc);
-			StringWriter sw = new StringWriter();
-			Result result = new StreamResult(sw);
-			
-			Transformer xformer = TransformerFactory.newInstance().newTransformer();
-			xformer.transform(source, result);
-			ret = sw.toString();
-		}
-		catch (Exception ex) {
-			throw new DAOException(ex);
-		}
+		root.appendChild(patientNode);
 		
-		return ret;
+		return doc;
 	}
 	
 	@SuppressWarnings("unchecked")
@@ -1080,7 +1147,7 @@ public class HibernatePatientSetDAO implements PatientSetDAO {
 		
 		// only add this where clause if patients were passed in
 		if (patients != null)
-			criteria.add(Restrictions.in("person.personId", patients.getMemberIds()));
+			criteria.add(CohortRestriction.in(sessionFactory.getCurrentSession(), "person.personId", patients.getMemberIds()));
 		
 		criteria.add(Restrictions.eq("voided", false));
 		criteria.addOrder(org.hibernate.criterion.Order.desc("obsDatetime"));
@@ -1171,7 +1238,7 @@ public class HibernatePatientSetDAO implements PatientSetDAO {
 		
 		// only restrict on patient ids if some were passed in
 		if (patients != null)
-			criteria.add(Restrictions.in("obs.personId", patients.getMemberIds()));
+			criteria.add(CohortRestriction.in(sessionFactory.getCurrentSession(), "obs.personId", patients.getMemberIds()));
 		
 		criteria.add(Expression.eq("obs.concept", c));
 		criteria.add(Expression.eq("obs.voided", false));
@@ -1264,7 +1331,7 @@ public class HibernatePatientSetDAO implements PatientSetDAO {
 		
 		// this "where clause" is only necessary if patients were passed in
 		if (patients != null && patients.size() > 0)
-			criteria.add(Restrictions.in("patient.personId", patients.getMemberIds()));
+			criteria.add(CohortRestriction.in(sessionFactory.getCurrentSession(), "patient.personId", patients.getMemberIds()));
 		
 		criteria.add(Restrictions.eq("voided", false));
 		
@@ -1301,7 +1368,7 @@ public class HibernatePatientSetDAO implements PatientSetDAO {
 		
 		// this "where clause" is only necessary if patients were passed in
 		if (patients != null && patients.size() > 0)
-			criteria.add(Restrictions.in("patient.personId", patients.getMemberIds()));
+			criteria.add(CohortRestriction.in(sessionFactory.getCurrentSession(), "patient.personId", patients.getMemberIds()));
 		
 		criteria.add(Restrictions.eq("voided", false));
 		
@@ -1326,7 +1393,7 @@ public class HibernatePatientSetDAO implements PatientSetDAO {
 		
 		// this "where clause" is only necessary if patients were specified
 		if (patients != null)
-			criteria.add(Restrictions.in("patient.personId", patients.getMemberIds()));
+			criteria.add(CohortRestriction.in(sessionFactory.getCurrentSession(), "patient.personId", patients.getMemberIds()));
 		
 		criteria.add(Restrictions.eq("voided", false));
 		
@@ -1365,7 +1432,7 @@ public class HibernatePatientSetDAO implements PatientSetDAO {
 		
 		// only include this where clause if patients were passed in
 		if (patients != null)
-			criteria.add(Restrictions.in("patient.personId", patients.getMemberIds()));
+			criteria.add(CohortRestriction.in(sessionFactory.getCurrentSession(), "patient.personId", patients.getMemberIds()));
 		
 		criteria.add(Restrictions.eq("voided", false));
 		
@@ -1394,7 +1461,7 @@ public class HibernatePatientSetDAO implements PatientSetDAO {
 		
 		// this "where clause" is only needed if patients were specified
 		if (patients != null)
-			criteria.add(Restrictions.in("patient.personId", patients.getMemberIds()));
+			criteria.add(CohortRestriction.in(sessionFactory.getCurrentSession(), "patient.personId", patients.getMemberIds()));
 		
 		criteria.add(Restrictions.eq("voided", false));
 		
@@ -1446,7 +1513,7 @@ public class HibernatePatientSetDAO implements PatientSetDAO {
 			projectionList.add(Projections.property(property));
 			
 			if (patients != null)
-				criteria.add(Restrictions.in("person.personId", patients.getMemberIds()));
+				criteria.add(CohortRestriction.in(sessionFactory.getCurrentSession(), "person.personId", patients.getMemberIds()));
 			
 			// do not include voided person rows
 			if (className.equals("org.openmrs.Person"))
@@ -1463,7 +1530,7 @@ public class HibernatePatientSetDAO implements PatientSetDAO {
 			projectionList.add(Projections.property(property));
 			
 			if (patients != null)
-				criteria.add(Restrictions.in("patient.personId", patients.getMemberIds()));
+				criteria.add(CohortRestriction.in(sessionFactory.getCurrentSession(), "patient.personId", patients.getMemberIds()));
 			
 			// do not include voided patients
 			criteria.add(Expression.eq("voided", false));
@@ -1688,7 +1755,7 @@ public class HibernatePatientSetDAO implements PatientSetDAO {
 		if (!patientIds.isEmpty()) {
 			Criteria criteria = sessionFactory.getCurrentSession().createCriteria(Patient.class);
 			criteria.setCacheMode(CacheMode.IGNORE);
-			criteria.add(Restrictions.in("patientId", patientIds));
+			criteria.add(CohortRestriction.in(sessionFactory.getCurrentSession(), "patientId", patientIds));
 			criteria.add(Restrictions.eq("voided", false));
 			log.debug("criteria: " + criteria);
 			List<Patient> temp = criteria.list();
@@ -1771,7 +1838,7 @@ public class HibernatePatientSetDAO implements PatientSetDAO {
 		
 		// only include this where clause if patients were passed in
 		if (ps != null)
-			criteria.createCriteria("patientProgram").add(Restrictions.in("patient.personId", ps.getMemberIds()));
+			criteria.createCriteria("patientProgram").add(CohortRestriction.in(sessionFactory.getCurrentSession(), "patient.personId", ps.getMemberIds()));
 		
 		//criteria.add(Restrictions.eq("state.programWorkflow", wf));
 		criteria.createCriteria("state").add(Restrictions.eq("programWorkflow", wf));
@@ -1807,7 +1874,7 @@ public class HibernatePatientSetDAO implements PatientSetDAO {
 		
 		// this "where clause" is only necessary if patients were passed in
 		if (ps != null)
-			criteria.add(Restrictions.in("patient.personId", ps.getMemberIds()));
+			criteria.add(CohortRestriction.in(sessionFactory.getCurrentSession(), "patient.personId", ps.getMemberIds()));
 		
 		criteria.add(Restrictions.eq("program", program));
 		if (!includeVoided)
@@ -1838,7 +1905,7 @@ public class HibernatePatientSetDAO implements PatientSetDAO {
 		
 		// this "where clause" is only necessary if patients were passed in
 		if (patients != null)
-			criteria.add(Restrictions.in("patient.personId", patients.getMemberIds()));
+			criteria.add(CohortRestriction.in(sessionFactory.getCurrentSession(), "patient.personId", patients.getMemberIds()));
 		
 		//criteria.add(Restrictions.in("encounter.patient.personId", ids));
 		//criteria.createCriteria("encounter").add(Restrictions.in("patient.personId", ids));
@@ -1876,7 +1943,7 @@ public class HibernatePatientSetDAO implements PatientSetDAO {
 		
 		// only include this where clause if patients were passed in
 		if (patients != null)
-			criteria.add(Restrictions.in("patient.personId", patients.getMemberIds()));
+			criteria.add(CohortRestriction.in(sessionFactory.getCurrentSession(), "patient.personId", patients.getMemberIds()));
 		
 		if (drugConcepts != null)
 			criteria.add(Restrictions.in("concept", drugConcepts));
@@ -1914,9 +1981,9 @@ public class HibernatePatientSetDAO implements PatientSetDAO {
 		criteria.add(Restrictions.eq("voided", false));
 		if (patients != null) {
 			if (forwards) {
-				criteria.add(Restrictions.in("personA.personId", patients.getMemberIds()));
+				criteria.add(CohortRestriction.in(sessionFactory.getCurrentSession(), "personA.personId", patients.getMemberIds()));
 			} else {
-				criteria.add(Restrictions.in("personB.personId", patients.getMemberIds()));
+				criteria.add(CohortRestriction.in(sessionFactory.getCurrentSession(), "personB.personId", patients.getMemberIds()));
 			}
 		}
 		log.debug("criteria: " + criteria);
@@ -1948,7 +2015,7 @@ public class HibernatePatientSetDAO implements PatientSetDAO {
 		
 		// this "where clause" is only useful if patients were passed in
 		if (patients != null)
-			criteria.createCriteria("personB").add(Restrictions.in("personId", patients.getMemberIds()));
+			criteria.createCriteria("personB").add(CohortRestriction.in(sessionFactory.getCurrentSession(), "personId", patients.getMemberIds()));
 		
 		criteria.add(Restrictions.eq("voided", false));
 		log.debug("criteria: " + criteria);
@@ -2098,7 +2165,7 @@ public class HibernatePatientSetDAO implements PatientSetDAO {
 		
 		// Add patient restriction if necessary
 		if (patients != null)
-			criteria.add(Restrictions.in("patient.personId", patients.getMemberIds()));
+			criteria.add(CohortRestriction.in(sessionFactory.getCurrentSession(), "patient.personId", patients.getMemberIds()));
 		
 		// all identifiers must be non-voided
 		criteria.add(Restrictions.eq("voided", false));
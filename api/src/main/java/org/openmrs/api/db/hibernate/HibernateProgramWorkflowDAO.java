@@ -25,6 +25,7 @@ import org.hibernate.SessionFactory;
 import org.hibernate.criterion.Expression;
 import org.hibernate.criterion.MatchMode;
 import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Restrictions;
 import org.openmrs.Cohort;
 import org.openmrs.Concept;
 import org.openmrs.ConceptStateConversion;
@@ -177,23 +178,15 @@ public class HibernateProgramWorkflowDAO implements ProgramWorkflowDAO {
 	 */
 	@SuppressWarnings("unchecked")
 	public List<PatientProgram> getPatientPrograms(Cohort cohort, Collection<Program> programs) {
-		String hql = "from PatientProgram ";
-		if (cohort != null || programs != null)
-			hql += "where ";
+		Criteria criteria = sessionFactory.getCurrentSession().createCriteria(PatientProgram.class);
 		if (cohort != null)
-			hql += "patient.patientId in (:patientIds) ";
-		if (programs != null) {
-			if (cohort != null)
-				hql += "and ";
-			hql += " program in (:programs)";
-		}
-		hql += " order by patient.patientId, dateEnrolled";
-		Query query = sessionFactory.getCurrentSession().createQuery(hql);
-		if (cohort != null)
-			query.setParameterList("patientIds", cohort.getMemberIds());
+			criteria.add(CohortRestriction.in(sessionFactory.getCurrentSession(), "patient.personId", cohort
+			        .getMemberIds()));
 		if (programs != null)
-			query.setParameterList("programs", programs);
-		return query.list();
+			criteria.add(Restrictions.in("program", programs));
+		criteria.addOrder(Order.asc("patient.personId"));
+		criteria.addOrder(Order.asc("dateEnrolled"));
+		return criteria.list();
 	}
 	
 	/**
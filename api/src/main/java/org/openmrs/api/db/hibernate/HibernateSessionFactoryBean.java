@@ -108,6 +108,10 @@ public class HibernateSessionFactoryBean extends LocalSessionFactoryBean {
 		
 		config.setInterceptor(chainingInterceptor);
 		
+		// let the flush policy decide when to flush before queries, and count the flushes
+		config.setListener("flush", new TimedFlushEventListener());
+		config.setListener("auto-flush", new DeferredAutoFlushEventListener());
+		
 		return config;
 	}
 	
@@ -19,7 +19,11 @@ import org.springframework.orm.hibernate3.HibernateTransactionManager;
 import org.springframework.transaction.TransactionDefinition;
 
 /**
- * Sets the flush mode to COMMIT for all transactions in the AUTO or ALWAYS modes.
+ * Sets the flush mode to COMMIT for all transactions in the AUTO or ALWAYS modes. Changes are then
+ * flushed at commit, or before a query when the {@link org.openmrs.api.context.FlushPolicy} says
+ * the query needs them.
+ * 
+ * @see DeferredAutoFlushEventListener
  */
 public class HibernateTransactionManagerFlushOnCommit extends HibernateTransactionManager {
 	
@@ -82,7 +82,7 @@ public class HibernateUserDAO implements UserDAO {
 		if (isNewUser && password != null) {
 			//update the new user with the password
 			String salt = Security.getRandomToken();
-			String hashedPassword = Security.encodeString(password + salt);
+			String hashedPassword = Security.encodePassword(password + salt);
 			
 			updateUserPassword(hashedPassword, salt, Context.getAuthenticatedUser().getUserId(), new Date(), user
 			        .getUserId());
@@ -254,7 +254,7 @@ public class HibernateUserDAO implements UserDAO {
 		log.debug("updating password");
 		//update the user with the new password
 		String salt = Security.getRandomToken();
-		String newHashedPassword = Security.encodeString(pw + salt);
+		String newHashedPassword = Security.encodePassword(pw + salt);
 		
 		updateUserPassword(newHashedPassword, salt, authUser.getUserId(), new Date(), u.getUserId());
 		
@@ -307,7 +307,7 @@ public class HibernateUserDAO implements UserDAO {
 		
 		// update the user with the new password
 		String salt = Security.getRandomToken();
-		String newHashedPassword = Security.encodeString(pw2 + salt);
+		String newHashedPassword = Security.encodePassword(pw2 + salt);
 		updateUserPassword(newHashedPassword, salt, u.getUserId(), new Date(), u.getUserId());
 	}
 	
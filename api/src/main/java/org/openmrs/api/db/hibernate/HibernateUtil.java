@@ -19,10 +19,12 @@ import java.sql.SQLException;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.dialect.Dialect;
 import org.hibernate.dialect.HSQLDialect;
 import org.hibernate.engine.SessionFactoryImplementor;
+import org.openmrs.api.context.FlushPolicy;
 
 /**
  * This class holds common methods and utilities that are used across the hibernate related classes
@@ -72,11 +74,41 @@ public class HibernateUtil {
 		return dialect;
 	}
 	
+	/**
+	 * Flushes the given session if something has been saved in the current transaction since it was
+	 * last flushed. Service methods called by other service methods leave what they save unflushed,
+	 * so this has to be called before clearing the session or using its jdbc connection, which
+	 * hibernate does not flush for.
+	 * 
+	 * @param session the session of the current transaction
+	 * @see FlushPolicy#isFlushNeeded()
+	 * @since 1.10
+	 */
+	public static void flushIfNeeded(Session session) {
+		if (FlushPolicy.isFlushNeeded())
+			session.flush();
+	}
+	
+	/**
+	 * Gets the jdbc connection of the given session, flushing the session first if needed so that
+	 * sql run on the connection sees everything saved in the transaction
+	 * 
+	 * @param session the session of the current transaction
+	 * @return the connection of the session
+	 * @see #flushIfNeeded(Session)
+	 * @since 1.10
+	 */
+	@SuppressWarnings("deprecation")
+	public static Connection getConnection(Session session) {
+		flushIfNeeded(session);
+		return session.connection();
+	}
+	
 	/**
 	 * @see HibernateUtil#escapeSqlWildcards(String, Connection)
 	 */
 	public static String escapeSqlWildcards(String oldString, SessionFactory sessionFactory) {
-		return escapeSqlWildcards(oldString, sessionFactory.getCurrentSession().connection());
+		return escapeSqlWildcards(oldString, getConnection(sessionFactory.getCurrentSession()));
 	}
 	
 	/**
@@ -0,0 +1,59 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.api.db.hibernate;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.hibernate.Session;
+import org.hibernate.criterion.Criterion;
+import org.openmrs.Location;
+import org.openmrs.api.context.Context;
+
+/**
+ * Restricts a criteria query to the locations within the tree of a location, e.g. to find the
+ * encounters at any location of a district. The ids of the locations in the tree are taken from
+ * the location hierarchy index, so no locations are loaded and no recursive query is needed. <br/>
+ * <br/>
+ * Usage:
+ *
+ * <pre>
+ * criteria.add(LocationHierarchyRestriction.within(session, &quot;location.locationId&quot;, district, true));
+ * </pre>
+ *
+ * @see org.openmrs.api.LocationService#getDescendantLocationIds(Location, boolean)
+ * @since 1.10
+ */
+public class LocationHierarchyRestriction {
+	
+	/**
+	 * Creates a criterion restricting the given property to the ids of the given location and all
+	 * of the locations below it
+	 *
+	 * @param session the session the criteria query will be run with
+	 * @param propertyName the property holding the location id, e.g. "location.locationId"
+	 * @param root the location at the top of the tree
+	 * @param includeRetired whether retired locations below the root should match too
+	 * @return the criterion to add to the criteria query
+	 * @should restrict the results to the locations within the tree
+	 */
+	public static Criterion within(Session session, String propertyName, Location root, boolean includeRetired) {
+		Set<Integer> ids = new HashSet<Integer>();
+		if (root != null && root.getLocationId() != null) {
+			ids.add(root.getLocationId());
+			ids.addAll(Context.getLocationService().getDescendantLocationIds(root, includeRetired));
+		}
+		return CohortRestriction.in(session, propertyName, ids);
+	}
+}
@@ -0,0 +1,54 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.api.db.hibernate;
+
+import org.hibernate.HibernateException;
+import org.hibernate.Session;
+import org.hibernate.event.FlushEvent;
+import org.hibernate.event.def.DefaultFlushEventListener;
+import org.openmrs.api.context.FlushPolicy;
+import org.springframework.orm.hibernate3.SessionHolder;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Flushes the session like hibernate does by default, and tells the {@link FlushPolicy} about
+ * each flush and the time it took. This covers explicit flushes as well as the flush at commit.
+ *
+ * @see HibernateSessionFactoryBean#newConfiguration()
+ * @since 1.10
+ */
+public class TimedFlushEventListener extends DefaultFlushEventListener {
+	
+	private static final long serialVersionUID = 1L;
+	
+	/**
+	 * @see org.hibernate.event.def.DefaultFlushEventListener#onFlush(org.hibernate.event.FlushEvent)
+	 */
+	@Override
+	public void onFlush(FlushEvent event) throws HibernateException {
+		long start = System.nanoTime();
+		super.onFlush(event);
+		FlushPolicy.flushed(System.nanoTime() - start, isTransactionSession(event.getSession()));
+	}
+	
+	/**
+	 * @return true if the session is the one bound to the current transaction, rather than one
+	 *         opened on the side, such as to read committed values
+	 */
+	private boolean isTransactionSession(Session session) {
+		SessionHolder holder = (SessionHolder) TransactionSynchronizationManager.getResource(session.getSessionFactory());
+		return holder != null && holder.containsSession(session);
+	}
+	
+}
@@ -58,6 +58,7 @@ import org.openmrs.api.EventListeners;
 import org.openmrs.api.GlobalPropertyListener;
 import org.openmrs.api.context.Context;
 import org.openmrs.api.db.AdministrationDAO;
+import org.openmrs.api.db.DAOException;
 import org.openmrs.customdatatype.CustomDatatypeUtil;
 import org.openmrs.customdatatype.SingleCustomValue;
 import org.openmrs.module.Module;
@@ -65,10 +66,13 @@ import org.openmrs.module.ModuleFactory;
 import org.openmrs.module.ModuleUtil;
 import org.openmrs.reporting.AbstractReportObject;
 import org.openmrs.reporting.Report;
+import org.openmrs.util.GlobalPropertyCache;
 import org.openmrs.util.LocaleUtility;
 import org.openmrs.util.OpenmrsConstants;
 import org.openmrs.util.OpenmrsUtil;
 import org.openmrs.util.PrivilegeConstants;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.util.StringUtils;
 
 /**
@@ -91,6 +95,11 @@ public class AdministrationServiceImpl extends BaseOpenmrsService implements Adm
 	 */
 	private GlobalLocaleList globalLocaleList;
 	
+	/**
+	 * The values of all global properties, written through on save and purge
+	 */
+	private final GlobalPropertyCache globalPropertyCache = new GlobalPropertyCache();
+	
 	/**
 	 * Default empty constructor
 	 */
@@ -641,9 +650,45 @@ public class AdministrationServiceImpl extends BaseOpenmrsService implements Adm
 		if (propertyName == null)
 			return null;
 		
+		// the values saved or reloaded in the current transaction are only seen by it until it commits
+		GlobalPropertyCache transactionValues = getTransactionGlobalPropertyValues(false);
+		if (transactionValues != null && (transactionValues.isLoaded() || transactionValues.contains(propertyName)))
+			return transactionValues.getValue(propertyName);
+		
+		if (globalPropertyCache.isStale(GlobalPropertyCache.REFRESH_INTERVAL_MILLIS))
+			loadGlobalPropertyCache();
+		if (globalPropertyCache.isLoaded())
+			return globalPropertyCache.getValue(propertyName);
+		
 		return dao.getGlobalProperty(propertyName);
 	}
 	
+	/**
+	 * Reloads the cached global property values with the ones committed to the database. They are
+	 * read in a session of their own, so that the snapshot of the current transaction, which may be
+	 * older than values other threads have put into the cache since, is not loaded over them. The
+	 * listeners are told about the properties another server or a sql script has changed or deleted.
+	 */
+	private void loadGlobalPropertyCache() {
+		long version = globalPropertyCache.getVersion();
+		Map<String, GlobalProperty> changes;
+		try {
+			changes = globalPropertyCache.load(dao.getCommittedGlobalPropertyValues(), version);
+		}
+		catch (DAOException e) {
+			log.warn("Unable to reload the global properties", e);
+			globalPropertyCache.postponeRefresh();
+			return;
+		}
+		
+		for (Map.Entry<String, GlobalProperty> change : changes.entrySet()) {
+			if (change.getValue() == null)
+				notifyGlobalPropertyDelete(change.getKey());
+			else
+				notifyGlobalPropertyChange(change.getValue());
+		}
+	}
+	
 	/**
 	 * @see org.openmrs.api.AdministrationService#getGlobalProperty(java.lang.String,
 	 *      java.lang.String)
@@ -662,6 +707,86 @@ public class AdministrationServiceImpl extends BaseOpenmrsService implements Adm
 		return dao.getGlobalPropertyObject(propertyName);
 	}
 	
+	/**
+	 * @see org.openmrs.api.AdministrationService#refreshGlobalPropertyCache()
+	 */
+	public void refreshGlobalPropertyCache() throws APIException {
+		Map<String, String> values = dao.getGlobalPropertyValues();
+		GlobalPropertyCache transactionValues = getTransactionGlobalPropertyValues(true);
+		if (transactionValues != null)
+			transactionValues.load(values, transactionValues.getVersion());
+		else
+			globalPropertyCache.load(values, globalPropertyCache.getVersion());
+	}
+	
+	/**
+	 * Sets the value of a global property in the current transaction, or in the cache if there is
+	 * no transaction
+	 * 
+	 * @param propertyName the name of the global property
+	 * @param value its new value, or null if it has been deleted
+	 */
+	private void putGlobalPropertyValue(String propertyName, String value) {
+		GlobalPropertyCache transactionValues = getTransactionGlobalPropertyValues(true);
+		if (transactionValues != null)
+			transactionValues.put(propertyName, value);
+		else if (value == null)
+			globalPropertyCache.remove(propertyName);
+		else
+			globalPropertyCache.put(propertyName, value);
+	}
+	
+	/**
+	 * Gets the global property values saved or reloaded in the current transaction. They are put
+	 * into the cache once the transaction commits, so other threads don't see them before, and are
+	 * dropped if it rolls back. Values reloaded from the database are not put into the cache, since
+	 * the snapshot of the transaction may be outdated by then, the cache expires instead, so that it
+	 * is loaded again and the listeners are told what has changed.
+	 * 
+	 * @param create whether to start holding the values of the current transaction
+	 * @return the values, loaded if they have been reloaded, or null if there is no transaction or
+	 *         nothing has been held for it yet
+	 */
+	private GlobalPropertyCache getTransactionGlobalPropertyValues(boolean create) {
+		if (!TransactionSynchronizationManager.isSynchronizationActive())
+			return null;
+		
+		// the cache of this service is the key of the values of the transaction
+		GlobalPropertyCache values = (GlobalPropertyCache) TransactionSynchronizationManager.getResource(globalPropertyCache);
+		if (values == null && create) {
+			final GlobalPropertyCache newValues = new GlobalPropertyCache();
+			TransactionSynchronizationManager.bindResource(globalPropertyCache, newValues);
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				
+				@Override
+				public void suspend() {
+					TransactionSynchronizationManager.unbindResource(globalPropertyCache);
+				}
+				
+				@Override
+				public void resume() {
+					TransactionSynchronizationManager.bindResource(globalPropertyCache, newValues);
+				}
+				
+				@Override
+				public void afterCommit() {
+					if (newValues.isLoaded())
+						globalPropertyCache.expire();
+					else
+						globalPropertyCache.putAll(newValues);
+				}
+				
+				@Override
+				public void afterCompletion(int status) {
+					if (TransactionSynchronizationManager.getResource(globalPropertyCache) == newValues)
+						TransactionSynchronizationManager.unbindResource(globalPropertyCache);
+				}
+			});
+			values = newValues;
+		}
+		return values;
+	}
+	
 	/**
 	 * @see org.openmrs.api.AdministrationService#getGlobalProperties()
 	 * @deprecated
@@ -755,6 +880,7 @@ public class AdministrationServiceImpl extends BaseOpenmrsService implements Adm
 	public void purgeGlobalProperty(GlobalProperty globalProperty) throws APIException {
 		notifyGlobalPropertyDelete(globalProperty.getProperty());
 		dao.deleteGlobalProperty(globalProperty);
+		putGlobalPropertyValue(globalProperty.getProperty(), null);
 	}
 	
 	/**
@@ -780,7 +906,8 @@ public class AdministrationServiceImpl extends BaseOpenmrsService implements Adm
 		// only try to save it if the global property has a key
 		if (gp.getProperty() != null && gp.getProperty().length() > 0) {
 			CustomDatatypeUtil.saveIfDirty(gp);
-			dao.saveGlobalProperty(gp);
+			GlobalProperty saved = dao.saveGlobalProperty(gp);
+			putGlobalPropertyValue(saved.getProperty(), saved.getPropertyValue());
 			notifyGlobalPropertyChange(gp);
 			return gp;
 		}
@@ -795,7 +922,13 @@ public class AdministrationServiceImpl extends BaseOpenmrsService implements Adm
 		if (sql == null || sql.trim().equals(""))
 			return null;
 		
-		return dao.executeSQL(sql, selectOnly);
+		List<List<Object>> results = dao.executeSQL(sql, selectOnly);
+		
+		// the sql may have changed global properties behind the back of the cache
+		if (!selectOnly)
+			refreshGlobalPropertyCache();
+		
+		return results;
 	}
 	
 	/**
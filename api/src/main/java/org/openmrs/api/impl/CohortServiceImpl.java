@@ -126,8 +126,15 @@ public class CohortServiceImpl extends BaseOpenmrsService implements CohortServi
 	 */
 	public Cohort addPatientToCohort(Cohort cohort, Patient patient) {
 		if (!cohort.contains(patient)) {
-			cohort.getMemberIds().add(patient.getPatientId());
-			saveCohort(cohort);
+			if (cohort.getCohortId() == null) {
+				cohort.getMemberIds().add(patient.getPatientId());
+				saveCohort(cohort);
+			} else {
+				// don't load all of the members of a saved cohort just to add one, but still save the
+				// cohort itself so that the save handlers mark it as changed
+				dao.addCohortMember(cohort, patient.getPatientId());
+				Context.getCohortService().saveCohort(cohort);
+			}
 		}
 		return cohort;
 	}
@@ -138,8 +145,13 @@ public class CohortServiceImpl extends BaseOpenmrsService implements CohortServi
 	 */
 	public Cohort removePatientFromCohort(Cohort cohort, Patient patient) {
 		if (cohort.contains(patient)) {
-			cohort.getMemberIds().remove(patient.getPatientId());
-			saveCohort(cohort);
+			if (cohort.getCohortId() == null) {
+				cohort.getMemberIds().remove(patient.getPatientId());
+				saveCohort(cohort);
+			} else {
+				dao.removeCohortMember(cohort, patient.getPatientId());
+				Context.getCohortService().saveCohort(cohort);
+			}
 		}
 		return cohort;
 	}
@@ -23,10 +23,12 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.UUID;
 import java.util.Vector;
 
@@ -69,9 +71,12 @@ import org.openmrs.scheduler.SchedulerException;
 import org.openmrs.scheduler.SchedulerService;
 import org.openmrs.scheduler.Task;
 import org.openmrs.scheduler.TaskDefinition;
+import org.openmrs.util.ConceptMappingIndex;
 import org.openmrs.util.OpenmrsConstants;
 import org.openmrs.util.OpenmrsUtil;
+import org.openmrs.util.TransactionUtil;
 import org.openmrs.validator.ConceptValidator;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
 import org.springframework.util.StringUtils;
 import org.springframework.validation.BindException;
 import org.springframework.validation.Errors;
@@ -102,6 +107,11 @@ public class ConceptServiceImpl extends BaseOpenmrsService implements ConceptSer
 	 */
 	private Task conceptWordUpdateTask;
 	
+	/**
+	 * The concept ids by mapping code of each concept source, loaded when first needed
+	 */
+	private volatile ConceptMappingIndex conceptMappingIndex;
+	
 	/**
 	 * @see org.openmrs.api.ConceptService#setConceptDAO(org.openmrs.api.db.ConceptDAO)
 	 */
@@ -296,6 +306,8 @@ public class ConceptServiceImpl extends BaseOpenmrsService implements ConceptSer
 		// add/remove entries in the concept_word table (used for searching)
 		this.updateConceptIndex(conceptToReturn);
 		
+		updateConceptMappingIndex(conceptToReturn);
+		
 		return conceptToReturn;
 	}
 	
@@ -323,6 +335,12 @@ public class ConceptServiceImpl extends BaseOpenmrsService implements ConceptSer
 		}
 		
 		dao.purgeConcept(concept);
+		
+		ConceptMappingIndex index = conceptMappingIndex;
+		if (index != null && concept.getConceptId() != null) {
+			index.removeConcept(concept.getConceptId());
+			forgetConceptMappingIndexOnRollback();
+		}
 	}
 	
 	/**
@@ -1351,8 +1369,16 @@ public class ConceptServiceImpl extends BaseOpenmrsService implements ConceptSer
 	 * @see org.openmrs.api.ConceptService#purgeConceptSource(org.openmrs.ConceptSource)
 	 */
 	public ConceptSource purgeConceptSource(ConceptSource cs) throws APIException {
+		Integer conceptSourceId = cs.getConceptSourceId();
+		ConceptSource deleted = dao.deleteConceptSource(cs);
+		
+		ConceptMappingIndex index = conceptMappingIndex;
+		if (index != null && conceptSourceId != null) {
+			index.removeSource(conceptSourceId);
+			forgetConceptMappingIndexOnRollback();
+		}
 		
-		return dao.deleteConceptSource(cs);
+		return deleted;
 	}
 	
 	/**
@@ -1367,7 +1393,15 @@ public class ConceptServiceImpl extends BaseOpenmrsService implements ConceptSer
 	 * @see org.openmrs.api.ConceptService#saveConceptSource(org.openmrs.ConceptSource)
 	 */
 	public ConceptSource saveConceptSource(ConceptSource conceptSource) throws APIException {
-		return dao.saveConceptSource(conceptSource);
+		ConceptSource saved = dao.saveConceptSource(conceptSource);
+		
+		ConceptMappingIndex index = conceptMappingIndex;
+		if (index != null) {
+			index.putSource(saved.getConceptSourceId(), saved.getName(), saved.getHl7Code());
+			forgetConceptMappingIndexOnRollback();
+		}
+		
+		return saved;
 	}
 	
 	/**
@@ -1498,8 +1532,13 @@ public class ConceptServiceImpl extends BaseOpenmrsService implements ConceptSer
 	 *      java.lang.Boolean)
 	 */
 	public Concept getConceptByMapping(String code, String sourceName, Boolean includeRetired) throws APIException {
-		List<Concept> concepts = getConceptsByMapping(code, sourceName, includeRetired);
-		
+		return getSingleConceptByMapping(getConceptsByMapping(code, sourceName, includeRetired), code, sourceName);
+	}
+	
+	/**
+	 * Picks the concept of a mapping from the concepts mapped to it, non-retired ones first
+	 */
+	private Concept getSingleConceptByMapping(List<Concept> concepts, String code, String sourceName) {
 		if (concepts.size() == 0) {
 			return null;
 		}
@@ -1527,7 +1566,146 @@ public class ConceptServiceImpl extends BaseOpenmrsService implements ConceptSer
 	 * @getConceptsByMapping(java.lang.String, java.lang.String, boolean)
 	 */
 	public List<Concept> getConceptsByMapping(String code, String sourceName, boolean includeRetired) throws APIException {
-		return dao.getConceptsByMapping(code, sourceName, includeRetired);
+		List<Concept> concepts = new ArrayList<Concept>();
+		for (Integer conceptId : getConceptIdsByMapping(code, sourceName)) {
+			Concept concept = dao.getConcept(conceptId);
+			if (concept != null)
+				concepts.add(concept);
+		}
+		return sortRetiredLast(concepts, includeRetired);
+	}
+	
+	/**
+	 * Moves the retired concepts to the end of the list, or leaves them out
+	 */
+	private List<Concept> sortRetiredLast(List<Concept> mappedConcepts, boolean includeRetired) {
+		List<Concept> concepts = new ArrayList<Concept>();
+		List<Concept> retiredConcepts = new ArrayList<Concept>();
+		for (Concept concept : mappedConcepts) {
+			if (!concept.isRetired())
+				concepts.add(concept);
+			else if (includeRetired)
+				retiredConcepts.add(concept);
+		}
+		
+		// sort retired concepts to the end of the list
+		concepts.addAll(retiredConcepts);
+		return concepts;
+	}
+	
+	/**
+	 * @see org.openmrs.api.ConceptService#getConceptsByMappingCodes(java.util.Collection,
+	 *      java.lang.String)
+	 */
+	public Map<String, Concept> getConceptsByMappingCodes(Collection<String> codes, String sourceName)
+	        throws APIException {
+		Map<String, Set<Integer>> conceptIdsByCode = new LinkedHashMap<String, Set<Integer>>();
+		Set<Integer> conceptIds = new HashSet<Integer>();
+		for (String code : codes) {
+			if (!conceptIdsByCode.containsKey(code)) {
+				Set<Integer> ids = getConceptIdsByMapping(code, sourceName);
+				conceptIdsByCode.put(code, ids);
+				conceptIds.addAll(ids);
+			}
+		}
+		
+		// the concepts of all codes are loaded together instead of one code at a time
+		Map<Integer, Concept> conceptsById = new HashMap<Integer, Concept>();
+		if (!conceptIds.isEmpty()) {
+			for (Concept concept : dao.getConceptsByIds(conceptIds))
+				conceptsById.put(concept.getConceptId(), concept);
+		}
+		
+		Map<String, Concept> concepts = new LinkedHashMap<String, Concept>();
+		for (Map.Entry<String, Set<Integer>> entry : conceptIdsByCode.entrySet()) {
+			List<Concept> mappedConcepts = new ArrayList<Concept>();
+			for (Integer conceptId : entry.getValue()) {
+				if (conceptsById.containsKey(conceptId))
+					mappedConcepts.add(conceptsById.get(conceptId));
+			}
+			Concept concept = getSingleConceptByMapping(sortRetiredLast(mappedConcepts, true), entry.getKey(), sourceName);
+			if (concept != null)
+				concepts.put(entry.getKey(), concept);
+		}
+		return concepts;
+	}
+	
+	/**
+	 * Looks up the ids of the concepts mapped to a code in the in-memory index, loading the codes of
+	 * the matching sources first if needed
+	 */
+	private Set<Integer> getConceptIdsByMapping(String code, String sourceName) {
+		if (code == null || sourceName == null)
+			return Collections.emptySet();
+		
+		ConceptMappingIndex index = getConceptMappingIndex();
+		Set<Integer> conceptIds = new TreeSet<Integer>();
+		for (Integer conceptSourceId : index.getSourceIds(sourceName)) {
+			if (!index.isSourceLoaded(conceptSourceId)) {
+				ConceptSource conceptSource = dao.getConceptSource(conceptSourceId);
+				if (conceptSource == null)
+					continue;
+				index.loadSource(conceptSourceId, dao.getConceptIdsByMapping(conceptSource));
+				// the codes may include changes of the current transaction
+				forgetConceptMappingIndexOnRollback();
+			}
+			conceptIds.addAll(index.getConceptIds(conceptSourceId, code));
+		}
+		return conceptIds;
+	}
+	
+	/**
+	 * Gets the index of concept mappings, creating it with the names of all sources if needed
+	 */
+	private ConceptMappingIndex getConceptMappingIndex() {
+		ConceptMappingIndex index = conceptMappingIndex;
+		if (index == null) {
+			index = new ConceptMappingIndex();
+			for (ConceptSource conceptSource : dao.getAllConceptSources())
+				index.putSource(conceptSource.getConceptSourceId(), conceptSource.getName(), conceptSource.getHl7Code());
+			conceptMappingIndex = index;
+			forgetConceptMappingIndexOnRollback();
+		}
+		return index;
+	}
+	
+	/**
+	 * Replaces the mappings of a saved concept in the index, if the index has been created already
+	 */
+	private void updateConceptMappingIndex(Concept concept) {
+		ConceptMappingIndex index = conceptMappingIndex;
+		if (index == null || concept.getConceptId() == null)
+			return;
+		
+		Map<Integer, Set<String>> codes = new HashMap<Integer, Set<String>>();
+		for (ConceptMap map : concept.getConceptMappings()) {
+			ConceptReferenceTerm term = map.getConceptReferenceTerm();
+			if (term == null || term.getConceptSource() == null || term.getConceptSource().getConceptSourceId() == null)
+				continue;
+			Set<String> sourceCodes = codes.get(term.getConceptSource().getConceptSourceId());
+			if (sourceCodes == null) {
+				sourceCodes = new HashSet<String>();
+				codes.put(term.getConceptSource().getConceptSourceId(), sourceCodes);
+			}
+			sourceCodes.add(term.getCode());
+		}
+		index.putConcept(concept.getConceptId(), codes);
+		forgetConceptMappingIndexOnRollback();
+	}
+	
+	/**
+	 * Makes sure that the index of concept mappings is created again when next needed if the
+	 * current transaction, whose changes it may contain, is rolled back
+	 */
+	private void forgetConceptMappingIndexOnRollback() {
+		TransactionUtil.registerSynchronizationOnce(ConceptMappingIndex.class, new TransactionSynchronizationAdapter() {
+			
+			@Override
+			public void afterCompletion(int status) {
+				if (status != STATUS_COMMITTED)
+					conceptMappingIndex = null;
+			}
+		});
 	}
 	
 	/**
@@ -2061,7 +2239,18 @@ public class ConceptServiceImpl extends BaseOpenmrsService implements ConceptSer
 	 */
 	@Override
 	public ConceptReferenceTerm saveConceptReferenceTerm(ConceptReferenceTerm conceptReferenceTerm) throws APIException {
-		return dao.saveConceptReferenceTerm(conceptReferenceTerm);
+		boolean isNew = conceptReferenceTerm.getConceptReferenceTermId() == null;
+		ConceptReferenceTerm saved = dao.saveConceptReferenceTerm(conceptReferenceTerm);
+		
+		// the code or source of a term that concepts may be mapped to may have changed, and the
+		// previous source is not known anymore
+		ConceptMappingIndex index = conceptMappingIndex;
+		if (index != null && !isNew) {
+			index.unloadSources();
+			forgetConceptMappingIndexOnRollback();
+		}
+		
+		return saved;
 	}
 	
 	/**
@@ -2146,4 +2335,14 @@ public class ConceptServiceImpl extends BaseOpenmrsService implements ConceptSer
 		}
 		return conceptMapType;
 	}
+	
+	/**
+	 * @see org.openmrs.api.ConceptService#getConceptsWithDetails(java.util.Collection)
+	 */
+	@Override
+	public List<Concept> getConceptsWithDetails(Collection<Integer> conceptIds) throws APIException {
+		if (conceptIds == null || conceptIds.isEmpty())
+			return new ArrayList<Concept>();
+		return dao.getConceptsWithDetails(conceptIds);
+	}
 }
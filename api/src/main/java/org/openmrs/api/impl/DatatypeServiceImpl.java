@@ -29,6 +29,7 @@ import org.openmrs.api.db.DatatypeDAO;
 import org.openmrs.customdatatype.CustomDatatype;
 import org.openmrs.customdatatype.CustomDatatypeException;
 import org.openmrs.customdatatype.CustomDatatypeHandler;
+import org.openmrs.customdatatype.CustomDatatypeUtil;
 
 /**
  * Standard implementation of {@link DatatypeService}
@@ -53,6 +54,17 @@ public class DatatypeServiceImpl extends BaseOpenmrsService implements DatatypeS
 		this.dao = dao;
 	}
 	
+	/**
+	 * Forgets the datatypes and handlers configured so far, since the context may have been
+	 * refreshed with other classes
+	 * 
+	 * @see org.openmrs.api.impl.BaseOpenmrsService#onStartup()
+	 */
+	@Override
+	public void onStartup() {
+		CustomDatatypeUtil.clearCache();
+	}
+	
 	/**
 	 * @see org.openmrs.api.DatatypeService#getAllDatatypeClasses()
 	 */
@@ -25,6 +25,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -43,8 +44,11 @@ import org.openmrs.api.context.Context;
 import org.openmrs.api.db.FormDAO;
 import org.openmrs.api.handler.SaveHandler;
 import org.openmrs.customdatatype.CustomDatatypeUtil;
+import org.openmrs.util.FormStructure;
 import org.openmrs.util.OpenmrsUtil;
+import org.openmrs.util.TransactionUtil;
 import org.openmrs.validator.FormValidator;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
 import org.springframework.validation.BindException;
 
 /**
@@ -64,6 +68,8 @@ public class FormServiceImpl extends BaseOpenmrsService implements FormService {
 	
 	private final FormValidator formValidator;
 	
+	private final Map<Integer, FormStructure> formStructures = new ConcurrentHashMap<Integer, FormStructure>();
+	
 	/**
 	 * Default empty constructor
 	 */
@@ -356,7 +362,92 @@ public class FormServiceImpl extends BaseOpenmrsService implements FormService {
 		if (ignoreFormFields == null)
 			ignoreFormFields = Collections.emptyList();
 		
-		return dao.getFormField(form, concept, ignoreFormFields, force);
+		FormStructure structure = getFormStructure(form);
+		if (structure == null)
+			return dao.getFormField(form, concept, ignoreFormFields, force);
+		
+		// the first form field for the concept that isn't ignored, else the first one unless forced
+		FormField backupPlan = null;
+		for (Integer formFieldId : structure.getFormFieldIds(concept)) {
+			FormField formField = dao.getFormField(formFieldId);
+			if (formField == null)
+				continue;
+			if (!ignoreFormFields.contains(formField))
+				return formField;
+			if (backupPlan == null)
+				backupPlan = formField;
+		}
+		
+		if (backupPlan == null || force)
+			log.debug("FormField warning.  No FormField matching concept '" + concept + "' for form '" + form + "'");
+		return force ? null : backupPlan;
+	}
+	
+	/**
+	 * @see org.openmrs.api.FormService#getFormStructure(org.openmrs.Form)
+	 */
+	public FormStructure getFormStructure(Form form) throws APIException {
+		if (form == null || form.getFormId() == null)
+			return null;
+		
+		// usually the form and its form fields are in the session already
+		Form savedForm = dao.getForm(form.getFormId());
+		if (savedForm == null)
+			return null;
+		
+		FormStructure structure = formStructures.get(form.getFormId());
+		if (structure != null && structure.isStructureOf(savedForm))
+			return structure;
+		
+		structure = new FormStructure(savedForm);
+		// form fields that haven't been saved yet can't be part of a shared structure
+		boolean saved = true;
+		if (savedForm.getFormFields() != null) {
+			for (FormField formField : savedForm.getFormFields())
+				saved &= formField.getFormFieldId() != null;
+		}
+		if (saved)
+			formStructures.put(form.getFormId(), structure);
+		return structure;
+	}
+	
+	/**
+	 * Forgets the cached structure of the form with the given id, or of all forms if it is null.
+	 * This is done again when the current transaction completes, so a structure built from changes
+	 * that are rolled back (or not committed yet) isn't kept.
+	 */
+	private void forgetFormStructure(Integer formId) {
+		removeFormStructure(formId);
+		FormStructureRemover remover = TransactionUtil.registerSynchronizationOnce(FormStructureRemover.class,
+		    new FormStructureRemover());
+		if (remover != null)
+			remover.formIds.add(formId);
+	}
+	
+	private void removeFormStructure(Integer formId) {
+		if (formId == null)
+			formStructures.clear();
+		else
+			formStructures.remove(formId);
+	}
+	
+	/**
+	 * Forgets the cached structures of the forms changed in a transaction once it completes
+	 */
+	private class FormStructureRemover extends TransactionSynchronizationAdapter {
+		
+		// a null id stands for all forms
+		private Set<Integer> formIds = new HashSet<Integer>();
+		
+		@Override
+		public void afterCompletion(int status) {
+			if (formIds.contains(null))
+				removeFormStructure(null);
+			else {
+				for (Integer formId : formIds)
+					removeFormStructure(formId);
+			}
+		}
 	}
 	
 	/**
@@ -622,6 +713,8 @@ public class FormServiceImpl extends BaseOpenmrsService implements FormService {
 			throw new APIException("Not Yet Implemented");
 		else
 			dao.deleteField(field);
+		
+		forgetFormStructure(null);
 	}
 	
 	/**
@@ -643,6 +736,7 @@ public class FormServiceImpl extends BaseOpenmrsService implements FormService {
 			Context.getFormService().purgeFormResource(resource);
 		
 		dao.deleteForm(form);
+		forgetFormStructure(form.getFormId());
 	}
 	
 	/**
@@ -650,6 +744,8 @@ public class FormServiceImpl extends BaseOpenmrsService implements FormService {
 	 */
 	public void purgeFormField(FormField formField) throws APIException {
 		dao.deleteFormField(formField);
+		if (formField.getForm() != null)
+			forgetFormStructure(formField.getForm().getFormId());
 	}
 	
 	/**
@@ -668,6 +764,8 @@ public class FormServiceImpl extends BaseOpenmrsService implements FormService {
 	 * @see org.openmrs.api.FormService#saveField(org.openmrs.Field)
 	 */
 	public Field saveField(Field field) throws APIException {
+		// the concept of the field may have changed on any form
+		forgetFormStructure(null);
 		return dao.saveField(field);
 	}
 	
@@ -690,7 +788,9 @@ public class FormServiceImpl extends BaseOpenmrsService implements FormService {
 			}
 		}
 		
-		return dao.saveForm(form);
+		form = dao.saveForm(form);
+		forgetFormStructure(form.getFormId());
+		return form;
 	}
 	
 	/**
@@ -710,7 +810,10 @@ public class FormServiceImpl extends BaseOpenmrsService implements FormService {
 		if (field.getUuid() == null)
 			field.setUuid(UUID.randomUUID().toString());
 		
-		return dao.saveFormField(formField);
+		formField = dao.saveFormField(formField);
+		if (formField.getForm() != null)
+			forgetFormStructure(formField.getForm().getFormId());
+		return formField;
 	}
 	
 	/**
@@ -804,6 +907,7 @@ public class FormServiceImpl extends BaseOpenmrsService implements FormService {
 			dao.deleteField(field);
 		}
 		
+		forgetFormStructure(null);
 		return fieldsToDelete.size();
 	}
 	
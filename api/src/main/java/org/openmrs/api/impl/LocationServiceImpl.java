@@ -14,9 +14,12 @@
 package org.openmrs.api.impl;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.Set;
 
+import org.hibernate.Hibernate;
 import org.openmrs.Address;
 import org.openmrs.Location;
 import org.openmrs.LocationAttribute;
@@ -27,8 +30,11 @@ import org.openmrs.api.LocationService;
 import org.openmrs.api.context.Context;
 import org.openmrs.api.db.LocationDAO;
 import org.openmrs.customdatatype.CustomDatatypeUtil;
+import org.openmrs.util.LocationHierarchy;
 import org.openmrs.util.OpenmrsConstants;
 import org.openmrs.util.OpenmrsUtil;
+import org.openmrs.util.TransactionUtil;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
 import org.springframework.util.StringUtils;
 
 /**
@@ -45,6 +51,8 @@ public class LocationServiceImpl extends BaseOpenmrsService implements LocationS
 	
 	private LocationDAO dao;
 	
+	private volatile LocationHierarchy locationHierarchy;
+	
 	/**
 	 * @see org.openmrs.api.LocationService#setLocationDAO(org.openmrs.api.db.LocationDAO)
 	 */
@@ -82,7 +90,9 @@ public class LocationServiceImpl extends BaseOpenmrsService implements LocationS
 		
 		CustomDatatypeUtil.saveAttributesIfNecessary(location);
 		
-		return dao.saveLocation(location);
+		Location ret = dao.saveLocation(location);
+		updateLocationHierarchy(ret);
+		return ret;
 	}
 	
 	/**
@@ -232,6 +242,10 @@ public class LocationServiceImpl extends BaseOpenmrsService implements LocationS
 	 */
 	public void purgeLocation(Location location) throws APIException {
 		dao.deleteLocation(location);
+		LocationHierarchy hierarchy = locationHierarchy;
+		if (hierarchy != null)
+			hierarchy.removeLocation(location.getLocationId());
+		forgetLocationHierarchyOnRollback();
 	}
 	
 	/**
@@ -342,6 +356,92 @@ public class LocationServiceImpl extends BaseOpenmrsService implements LocationS
 		return dao.getRootLocations(includeRetired);
 	}
 	
+	/**
+	 * @see LocationService#isLocationInHierarchy(Location, Location)
+	 */
+	@Override
+	public boolean isLocationInHierarchy(Location location, Location root) {
+		if (location == null || root == null)
+			return false;
+		
+		LocationHierarchy hierarchy = getLocationHierarchy();
+		if (location.getLocationId() == null || !hierarchy.contains(location.getLocationId())
+		        || !hierarchy.contains(root.getLocationId()))
+			return Location.isInHierarchy(location, root);
+		
+		return hierarchy.isInHierarchy(location.getLocationId(), root.getLocationId());
+	}
+	
+	/**
+	 * @see LocationService#getDescendantLocationIds(Location, boolean)
+	 */
+	@Override
+	public Set<Integer> getDescendantLocationIds(Location root, boolean includeRetired) {
+		if (root == null || root.getLocationId() == null)
+			return Collections.emptySet();
+		return getLocationHierarchy().getDescendantIds(root.getLocationId(), includeRetired);
+	}
+	
+	/**
+	 * @see LocationService#getDescendantLocations(Location, boolean)
+	 */
+	@Override
+	public List<Location> getDescendantLocations(Location root, boolean includeRetired) {
+		if (getDescendantLocationIds(root, includeRetired).isEmpty())
+			return new ArrayList<Location>();
+		return dao.getDescendantLocations(root, includeRetired);
+	}
+	
+	/**
+	 * Gets the index of the location tree, loading it with one query the first time
+	 */
+	private LocationHierarchy getLocationHierarchy() {
+		LocationHierarchy hierarchy = locationHierarchy;
+		if (hierarchy == null) {
+			hierarchy = dao.getLocationHierarchy();
+			locationHierarchy = hierarchy;
+			// the index may have seen changes of the current transaction
+			forgetLocationHierarchyOnRollback();
+		}
+		return hierarchy;
+	}
+	
+	/**
+	 * Moves a saved location and the children it was saved with to their current parents in the
+	 * index, if the index has been loaded already
+	 */
+	private void updateLocationHierarchy(Location location) {
+		LocationHierarchy hierarchy = locationHierarchy;
+		if (hierarchy == null || location.getLocationId() == null)
+			return;
+		
+		Location parent = location.getParentLocation();
+		hierarchy.putLocation(location.getLocationId(), parent == null ? null : parent.getLocationId(), location
+		        .isRetired());
+		if (location.getChildLocations() != null && Hibernate.isInitialized(location.getChildLocations())) {
+			for (Location child : location.getChildLocations()) {
+				if (child.getLocationId() != null && location.equals(child.getParentLocation()))
+					hierarchy.putLocation(child.getLocationId(), location.getLocationId(), child.isRetired());
+			}
+		}
+		forgetLocationHierarchyOnRollback();
+	}
+	
+	/**
+	 * Drops the index if the current transaction is rolled back, so that it is loaded again the
+	 * next time it is needed
+	 */
+	private void forgetLocationHierarchyOnRollback() {
+		TransactionUtil.registerSynchronizationOnce(LocationHierarchy.class, new TransactionSynchronizationAdapter() {
+			
+			@Override
+			public void afterCompletion(int status) {
+				if (status != STATUS_COMMITTED)
+					locationHierarchy = null;
+			}
+		});
+	}
+	
 	/**
 	 * @see org.openmrs.api.LocationService#getPossibleAddressValues(org.openmrs.Address, org.openmrs.AddressField)
 	 */
@@ -379,6 +479,7 @@ public class LocationServiceImpl extends BaseOpenmrsService implements LocationS
 	 */
 	@Override
 	public LocationAttributeType saveLocationAttributeType(LocationAttributeType locationAttributeType) {
+		CustomDatatypeUtil.clearCache();
 		return dao.saveLocationAttributeType(locationAttributeType);
 	}
 	
@@ -403,6 +504,7 @@ public class LocationServiceImpl extends BaseOpenmrsService implements LocationS
 	 */
 	@Override
 	public void purgeLocationAttributeType(LocationAttributeType locationAttributeType) {
+		CustomDatatypeUtil.clearCache();
 		dao.deleteLocationAttributeType(locationAttributeType);
 	}
 	
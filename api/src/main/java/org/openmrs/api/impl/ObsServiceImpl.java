@@ -39,6 +39,7 @@ import org.openmrs.api.context.Context;
 import org.openmrs.api.db.ObsDAO;
 import org.openmrs.api.handler.SaveHandler;
 import org.openmrs.obs.ComplexObsHandler;
+import org.openmrs.obs.ObsRow;
 import org.openmrs.util.OpenmrsClassLoader;
 import org.openmrs.util.OpenmrsConstants;
 import org.openmrs.util.OpenmrsConstants.PERSON_TYPE;
@@ -665,6 +666,51 @@ public class ObsServiceImpl extends BaseOpenmrsService implements ObsService {
 		return getObservations(null, null, null, null, null, null, null, null, obsGroupId, null, null, false);
 	}
 	
+	/**
+	 * @see org.openmrs.api.ObsService#getNumericObsTimeSeries(org.openmrs.Person,
+	 *      org.openmrs.Concept, java.util.Date, java.util.Date)
+	 */
+	public List<Object[]> getNumericObsTimeSeries(Person who, Concept question, Date fromDate, Date toDate)
+	        throws APIException {
+		return dao.getNumericObsTimeSeries(who, question, fromDate, toDate);
+	}
+	
+	/**
+	 * @see org.openmrs.api.ObsService#getLastModifiedObsDate(org.openmrs.Person,
+	 *      org.openmrs.Concept)
+	 */
+	public Date getLastModifiedObsDate(Person who, Concept question) throws APIException {
+		return dao.getLastModifiedObsDate(who, question);
+	}
+	
+	/**
+	 * @see org.openmrs.api.ObsService#getObservationsPage(java.util.List, java.util.List,
+	 *      java.util.List, java.util.List, java.util.Date, java.util.Date, org.openmrs.Obs, int,
+	 *      boolean)
+	 */
+	public List<Obs> getObservationsPage(List<Person> whom, List<Encounter> encounters, List<Concept> questions,
+	        List<Location> locations, Date fromDate, Date toDate, Obs after, int pageSize, boolean includeVoidedObs)
+	        throws APIException {
+		Date afterObsDatetime = after == null ? null : after.getObsDatetime();
+		Integer afterObsId = after == null ? null : after.getObsId();
+		return dao.getObservationsPage(whom, encounters, questions, locations, fromDate, toDate, afterObsDatetime,
+		    afterObsId, pageSize, includeVoidedObs);
+	}
+	
+	/**
+	 * @see org.openmrs.api.ObsService#getObsRowsPage(java.util.List, java.util.List,
+	 *      java.util.List, java.util.List, java.util.Date, java.util.Date,
+	 *      org.openmrs.obs.ObsRow, int, boolean)
+	 */
+	public List<ObsRow> getObsRowsPage(List<Person> whom, List<Encounter> encounters, List<Concept> questions,
+	        List<Location> locations, Date fromDate, Date toDate, ObsRow after, int pageSize, boolean includeVoidedObs)
+	        throws APIException {
+		Date afterObsDatetime = after == null ? null : after.getObsDatetime();
+		Integer afterObsId = after == null ? null : after.getObsId();
+		return dao.getObsRowsPage(whom, encounters, questions, locations, fromDate, toDate, afterObsDatetime, afterObsId,
+		    pageSize, includeVoidedObs);
+	}
+	
 	/**
 	 * @see org.openmrs.api.ObsService#getObsByUuid(java.lang.String)
 	 */
@@ -13,6 +13,10 @@
  */
 package org.openmrs.api.impl;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -49,6 +53,7 @@ import org.openmrs.ProgramWorkflowState;
 import org.openmrs.Relationship;
 import org.openmrs.RelationshipType;
 import org.openmrs.api.APIAuthenticationException;
+import org.openmrs.api.APIException;
 import org.openmrs.api.PatientSetService;
 import org.openmrs.api.context.Context;
 import org.openmrs.api.db.DAOException;
@@ -94,6 +99,20 @@ public class PatientSetServiceImpl extends BaseOpenmrsService implements Patient
 		return getPatientSetDAO().exportXml(ps);
 	}
 	
+	/**
+	 * @see org.openmrs.api.PatientSetService#exportXml(org.openmrs.Cohort, java.io.OutputStream)
+	 */
+	public void exportXml(Cohort ps, OutputStream out) {
+		try {
+			Writer writer = new OutputStreamWriter(out, "UTF-8");
+			getPatientSetDAO().exportXml(ps, writer);
+			writer.flush();
+		}
+		catch (IOException e) {
+			throw new APIException("Unable to write the patient set", e);
+		}
+	}
+	
 	public String exportXml(Integer patientId) {
 		return getPatientSetDAO().exportXml(patientId);
 	}
@@ -192,6 +192,7 @@ public class ProviderServiceImpl extends BaseOpenmrsService implements ProviderS
 	 */
 	@Override
 	public ProviderAttributeType saveProviderAttributeType(ProviderAttributeType providerAttributeType) {
+		CustomDatatypeUtil.clearCache();
 		return dao.saveProviderAttributeType(providerAttributeType);
 	}
 	
@@ -217,6 +218,7 @@ public class ProviderServiceImpl extends BaseOpenmrsService implements ProviderS
 	 */
 	@Override
 	public void purgeProviderAttributeType(ProviderAttributeType providerAttributeType) {
+		CustomDatatypeUtil.clearCache();
 		dao.deleteProviderAttributeType(providerAttributeType);
 	}
 	
@@ -64,6 +64,11 @@ public class SerializationServiceImpl extends BaseOpenmrsService implements Seri
 			try {
 				Class<?> clazz = Context.loadClass(prop);
 				if (clazz != null && OpenmrsSerializer.class.isAssignableFrom(clazz)) {
+					// prefer the registered instance so that serializers can keep their cached type information
+					OpenmrsSerializer registered = serializerMap.get(clazz);
+					if (registered != null) {
+						return registered;
+					}
 					return (OpenmrsSerializer) clazz.newInstance();
 				}
 			}
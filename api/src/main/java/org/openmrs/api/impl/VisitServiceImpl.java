@@ -263,6 +263,7 @@ public class VisitServiceImpl extends BaseOpenmrsService implements VisitService
 	 */
 	@Override
 	public VisitAttributeType saveVisitAttributeType(VisitAttributeType visitAttributeType) {
+		CustomDatatypeUtil.clearCache();
 		return dao.saveVisitAttributeType(visitAttributeType);
 	}
 	
@@ -288,6 +289,7 @@ public class VisitServiceImpl extends BaseOpenmrsService implements VisitService
 	 */
 	@Override
 	public void purgeVisitAttributeType(VisitAttributeType visitAttributeType) {
+		CustomDatatypeUtil.clearCache();
 		dao.deleteVisitAttributeType(visitAttributeType);
 	}
 	
@@ -18,6 +18,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
@@ -31,13 +32,29 @@ import org.openmrs.serialization.SerializationException;
 import org.openmrs.util.OpenmrsConstants;
 
 /**
- * Helper methods for dealing with custom datatypes and their handlers
+ * Helper methods for dealing with custom datatypes and their handlers. <br/>
+ * <br/>
+ * Configured datatypes and handlers are cached by their classname and configuration, so that the
+ * attributes of the same type share one instance instead of each building and configuring its own.
+ * Datatypes and handlers must therefore not change once they have been configured. The cache is
+ * cleared whenever an attribute type is saved or purged.
  * @since 1.9
  */
 public class CustomDatatypeUtil {
 	
 	private static Log log = LogFactory.getLog(CustomDatatypeUtil.class);
 	
+	/**
+	 * The largest number of datatypes, handlers or configurations that are cached
+	 */
+	private static final int MAX_CACHED_VALUES = 1000;
+	
+	private static final Map<String, CustomDatatype<?>> cachedDatatypes = new ConcurrentHashMap<String, CustomDatatype<?>>();
+	
+	private static final Map<String, CustomDatatypeHandler> cachedHandlers = new ConcurrentHashMap<String, CustomDatatypeHandler>();
+	
+	private static final Map<String, Map<String, String>> cachedConfigurations = new ConcurrentHashMap<String, Map<String, String>>();
+	
 	/**
 	 * @param descriptor
 	 * @return a configured datatype appropriate for descriptor
@@ -50,19 +67,28 @@ public class CustomDatatypeUtil {
 	 * @param datatypeClassname
 	 * @param datatypeConfig
 	 * @return a configured datatype with the given classname and configuration
+	 * @should return the same instance for the same classname and configuration
+	 * @should return another instance for another configuration
 	 */
 	public static CustomDatatype<?> getDatatype(String datatypeClassname, String datatypeConfig) {
+		String key = getCacheKey(datatypeClassname, datatypeConfig);
+		CustomDatatype<?> ret = cachedDatatypes.get(key);
+		if (ret != null)
+			return ret;
+		
 		try {
 			Class dtClass = Context.loadClass(datatypeClassname);
-			CustomDatatype<?> ret = (CustomDatatype<?>) Context.getDatatypeService().getDatatype(dtClass, datatypeConfig);
-			if (ret == null)
-				throw new CustomDatatypeException("Can't find datatype: " + datatypeClassname);
-			return ret;
+			ret = (CustomDatatype<?>) Context.getDatatypeService().getDatatype(dtClass, datatypeConfig);
 		}
 		catch (Exception ex) {
 			throw new CustomDatatypeException("Error loading " + datatypeClassname + " and configuring it with "
 			        + datatypeConfig, ex);
 		}
+		if (ret == null)
+			throw new CustomDatatypeException("Can't find datatype: " + datatypeClassname);
+		
+		cache(cachedDatatypes, key, ret);
+		return ret;
 	}
 	
 	/**
@@ -95,14 +121,20 @@ public class CustomDatatypeUtil {
 	 */
 	public static CustomDatatypeHandler getHandler(CustomDatatype<?> dt, String preferredHandlerClassname,
 	        String handlerConfig) {
+		// the default handler depends on the class of the datatype, but not on its configuration
+		String key = getCacheKey(dt.getClass().getName() + "|"
+		        + (preferredHandlerClassname == null ? "" : preferredHandlerClassname), handlerConfig);
+		CustomDatatypeHandler handler = cachedHandlers.get(key);
+		if (handler != null)
+			return handler;
+		
 		if (preferredHandlerClassname != null) {
 			try {
 				Class<? extends CustomDatatypeHandler> clazz = (Class<? extends CustomDatatypeHandler>) Context
 				        .loadClass(preferredHandlerClassname);
-				CustomDatatypeHandler handler = clazz.newInstance();
+				handler = clazz.newInstance();
 				if (handlerConfig != null)
 					handler.setHandlerConfiguration(handlerConfig);
-				return handler;
 			}
 			catch (Exception ex) {
 				log.warn("Failed to instantiate and configure preferred handler with class " + preferredHandlerClassname
@@ -111,7 +143,37 @@ public class CustomDatatypeUtil {
 		}
 		
 		// if we couldn't get the preferred handler (or none was specified) we get the default one by datatype
-		return Context.getDatatypeService().getHandler(dt, handlerConfig);
+		if (handler == null)
+			handler = Context.getDatatypeService().getHandler(dt, handlerConfig);
+		
+		if (handler != null)
+			cache(cachedHandlers, key, handler);
+		return handler;
+	}
+	
+	/**
+	 * Forgets all cached datatypes, handlers and configurations. This is called when an attribute
+	 * type is saved or purged, and when the datatype service starts up with possibly new classes.
+	 * 
+	 * @should make the next call build new instances
+	 */
+	public static void clearCache() {
+		cachedDatatypes.clear();
+		cachedHandlers.clear();
+		cachedConfigurations.clear();
+	}
+	
+	/**
+	 * @return the key of a class configured with config, keeping a null config apart from any other
+	 */
+	private static String getCacheKey(String classname, String config) {
+		return config == null ? classname : classname + "|" + config;
+	}
+	
+	private static <T> void cache(Map<String, T> cache, String key, T value) {
+		if (cache.size() >= MAX_CACHED_VALUES)
+			cache.clear();
+		cache.put(key, value);
 	}
 	
 	/**
@@ -138,19 +200,28 @@ public class CustomDatatypeUtil {
 	 * Utility method for {@link AttributeHandler}s that have property-style configuration.
 	 * 
 	 * @param serializedConfig
-	 * @return
+	 * @return the configuration, which is shared by all callers and so cannot be modified
 	 * @should deserialize a configuration serialized by the corresponding serialize method
+	 * @should return the same configuration for the same serialized form
 	 */
 	@SuppressWarnings("unchecked")
 	public static Map<String, String> deserializeSimpleConfiguration(String serializedConfig) {
 		if (StringUtils.isBlank(serializedConfig))
 			return Collections.emptyMap();
+		
+		Map<String, String> ret = cachedConfigurations.get(serializedConfig);
+		if (ret != null)
+			return ret;
+		
 		try {
-			return Context.getSerializationService().getDefaultSerializer().deserialize(serializedConfig, Map.class);
+			ret = Collections.unmodifiableMap(Context.getSerializationService().getDefaultSerializer().deserialize(
+			    serializedConfig, Map.class));
 		}
 		catch (SerializationException ex) {
 			throw new APIException(ex);
 		}
+		cache(cachedConfigurations, serializedConfig, ret);
+		return ret;
 	}
 	
 	/**
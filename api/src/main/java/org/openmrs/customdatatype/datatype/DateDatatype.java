@@ -37,7 +37,7 @@ public class DateDatatype extends SerializingCustomDatatype<Date> {
 	 */
 	@Override
 	public CustomDatatype.Summary doGetTextSummary(Date typedValue) {
-		return new CustomDatatype.Summary(Context.getDateFormat().format(typedValue), true);
+		return new CustomDatatype.Summary(Context.getDateFormatter().format(typedValue), true);
 	}
 	
 	/**
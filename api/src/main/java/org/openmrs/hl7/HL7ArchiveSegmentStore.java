@@ -0,0 +1,444 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.hl7;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openmrs.api.APIException;
+
+/**
+ * Stores the data of hl7 in archives in a few large segment files instead of one file per message.
+ * Messages are appended to the newest segment, each compressed on its own so that it can be read
+ * back without reading the rest of the segment. A new segment is started once the newest one
+ * reaches {@link #MAX_SEGMENT_SIZE} bytes. <br/>
+ * <br/>
+ * Next to each segment an index file lists the uuid and offset of every message in the segment, so
+ * that a message can be found by uuid and the archives of a segment can be purged with it. <br/>
+ * <br/>
+ * The location of a message is handed back as a reference like
+ * <code>hl7archive:segment-00000001.hl7z#1024</code>, which is stored as the hl7 data of a migrated
+ * archive. The reference is relative to the archives directory, so the directory can be moved.
+ *
+ * @see HL7Service#migrateHl7InArchivesToFileSystem(Map)
+ * @see HL7Service#loadHL7InArchiveData(HL7InArchive)
+ * @since 1.10
+ */
+public class HL7ArchiveSegmentStore {
+	
+	private static final Log log = LogFactory.getLog(HL7ArchiveSegmentStore.class);
+	
+	/**
+	 * The prefix of the references to messages in a segment
+	 */
+	public static final String REFERENCE_PREFIX = "hl7archive:";
+	
+	/**
+	 * The number of bytes after which a new segment is started
+	 */
+	public static final long MAX_SEGMENT_SIZE = 64 * 1024 * 1024;
+	
+	private static final String SEGMENT_PREFIX = "segment-";
+	
+	private static final String SEGMENT_SUFFIX = ".hl7z";
+	
+	private static final String INDEX_SUFFIX = ".idx";
+	
+	private static final String ENCODING = "UTF-8";
+	
+	private final File directory;
+	
+	private final long maxSegmentSize;
+	
+	private int currentSegmentNumber = -1;
+	
+	/**
+	 * @param directory the directory holding the segments, usually the hl7 archives directory
+	 */
+	public HL7ArchiveSegmentStore(File directory) {
+		this(directory, MAX_SEGMENT_SIZE);
+	}
+	
+	/**
+	 * @param directory the directory holding the segments
+	 * @param maxSegmentSize the number of bytes after which a new segment is started
+	 */
+	public HL7ArchiveSegmentStore(File directory, long maxSegmentSize) {
+		this.directory = directory;
+		this.maxSegmentSize = maxSegmentSize;
+	}
+	
+	/**
+	 * @return the directory holding the segments
+	 */
+	public File getDirectory() {
+		return directory;
+	}
+	
+	/**
+	 * @param hl7Data the hl7 data of a migrated archive
+	 * @return true if the data is a reference to a message in a segment rather than the location of
+	 *         a separate file
+	 */
+	public static boolean isReference(String hl7Data) {
+		return hl7Data != null && hl7Data.startsWith(REFERENCE_PREFIX);
+	}
+	
+	/**
+	 * Appends a batch of messages to the newest segment. The segment and its index are written in
+	 * one go and synced to disk once for the whole batch.
+	 *
+	 * @param messages the hl7 data of each message by uuid
+	 * @return the reference to each message by uuid
+	 * @throws APIException if the messages could not be written
+	 * @should append the messages so they can be read back
+	 * @should start a new segment when the newest one is full
+	 */
+	public synchronized Map<String, String> append(Map<String, String> messages) throws APIException {
+		Map<String, String> references = new LinkedHashMap<String, String>();
+		if (messages.isEmpty())
+			return references;
+		
+		if (!directory.isDirectory())
+			directory.mkdirs();
+		
+		SegmentWriter writer = null;
+		try {
+			writer = new SegmentWriter(getCurrentSegmentNumber());
+			for (Map.Entry<String, String> message : messages.entrySet()) {
+				if (writer.getSize() >= maxSegmentSize) {
+					writer.close();
+					currentSegmentNumber++;
+					writer = new SegmentWriter(currentSegmentNumber);
+				}
+				references.put(message.getKey(), writer.write(message.getKey(), message.getValue()));
+			}
+			writer.close();
+			writer = null;
+		}
+		catch (IOException e) {
+			throw new APIException("could not write HL7 archives to segment in " + directory, e);
+		}
+		finally {
+			if (writer != null)
+				writer.abort();
+		}
+		
+		return references;
+	}
+	
+	/**
+	 * Reads a message back from its segment
+	 *
+	 * @param reference the reference returned when the message was appended
+	 * @return the hl7 data of the message
+	 * @throws APIException if the reference is malformed or the message could not be read
+	 */
+	public String read(String reference) throws APIException {
+		if (!isReference(reference))
+			throw new APIException("malformed HL7 archive reference: " + reference);
+		
+		int hash = reference.lastIndexOf('#');
+		if (hash < 0)
+			throw new APIException("malformed HL7 archive reference: " + reference);
+		
+		int number = getSegmentNumber(reference.substring(REFERENCE_PREFIX.length(), hash));
+		long offset;
+		try {
+			offset = Long.parseLong(reference.substring(hash + 1));
+		}
+		catch (NumberFormatException e) {
+			throw new APIException("malformed HL7 archive reference: " + reference, e);
+		}
+		
+		RandomAccessFile file = null;
+		try {
+			file = new RandomAccessFile(getSegmentFile(number), "r");
+			file.seek(offset);
+			file.readUTF();
+			byte[] compressed = new byte[file.readInt()];
+			file.readFully(compressed);
+			
+			InputStream in = new InflaterInputStream(new ByteArrayInputStream(compressed));
+			return new String(IOUtils.toByteArray(in), ENCODING);
+		}
+		catch (IOException e) {
+			throw new APIException("unable to read HL7 archive from segment: " + reference, e);
+		}
+		finally {
+			if (file != null) {
+				try {
+					file.close();
+				}
+				catch (IOException e) {
+					log.debug("Unable to close HL7 archive segment", e);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Looks a message up in the indexes, starting with the newest segment
+	 *
+	 * @param uuid the uuid of the archive
+	 * @return the reference to the message, or null if it is not in any segment
+	 * @throws APIException if an index could not be read
+	 * @should find a message by uuid
+	 * @should return null if the uuid is not in any segment
+	 */
+	public String find(String uuid) throws APIException {
+		List<Integer> numbers = getSegmentNumbers();
+		Collections.reverse(numbers);
+		for (Integer number : numbers) {
+			Map<String, Long> offsets = readIndex(number);
+			Long offset = offsets.get(uuid);
+			if (offset != null)
+				return getReference(number, offset);
+		}
+		return null;
+	}
+	
+	/**
+	 * Gets the segments that only hold messages appended before a date. The newest segment is never
+	 * included, since messages are still being appended to it.
+	 *
+	 * @param date the date
+	 * @return the names of the segments, oldest first
+	 * @should not include the newest segment
+	 */
+	public synchronized List<String> getSegmentsOlderThan(Date date) {
+		List<String> names = new ArrayList<String>();
+		List<Integer> numbers = getSegmentNumbers();
+		if (!numbers.isEmpty())
+			numbers.remove(numbers.size() - 1);
+		
+		for (Integer number : numbers) {
+			File segment = getSegmentFile(number);
+			if (segment.lastModified() < date.getTime())
+				names.add(segment.getName());
+		}
+		return names;
+	}
+	
+	/**
+	 * @param segmentName the name of a segment
+	 * @return the uuids of the messages in the segment, in the order they were appended
+	 * @throws APIException if the index could not be read
+	 */
+	public Set<String> getUuids(String segmentName) throws APIException {
+		return new LinkedHashSet<String>(readIndex(getSegmentNumber(segmentName)).keySet());
+	}
+	
+	/**
+	 * Deletes a segment and its index
+	 *
+	 * @param segmentName the name of the segment
+	 * @return true if the segment was deleted
+	 * @should delete the segment and its index
+	 */
+	public synchronized boolean deleteSegment(String segmentName) {
+		int number = getSegmentNumber(segmentName);
+		if (number == currentSegmentNumber)
+			currentSegmentNumber = -1;
+		
+		getIndexFile(number).delete();
+		return getSegmentFile(number).delete();
+	}
+	
+	/**
+	 * @return the number of the newest segment, which messages are appended to
+	 */
+	private int getCurrentSegmentNumber() {
+		if (currentSegmentNumber < 0) {
+			List<Integer> numbers = getSegmentNumbers();
+			currentSegmentNumber = numbers.isEmpty() ? 1 : numbers.get(numbers.size() - 1);
+		}
+		return currentSegmentNumber;
+	}
+	
+	/**
+	 * @return the numbers of all segments in the directory, in ascending order
+	 */
+	private List<Integer> getSegmentNumbers() {
+		List<Integer> numbers = new ArrayList<Integer>();
+		String[] names = directory.list();
+		if (names != null) {
+			for (String name : names) {
+				if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+					try {
+						numbers.add(getSegmentNumber(name));
+					}
+					catch (APIException e) {
+						log.debug("Ignoring file " + name + " in the hl7 archives directory", e);
+					}
+				}
+			}
+		}
+		Collections.sort(numbers);
+		return numbers;
+	}
+	
+	private int getSegmentNumber(String segmentName) throws APIException {
+		if (!segmentName.startsWith(SEGMENT_PREFIX) || !segmentName.endsWith(SEGMENT_SUFFIX))
+			throw new APIException("not an HL7 archive segment: " + segmentName);
+		try {
+			return Integer.parseInt(segmentName.substring(SEGMENT_PREFIX.length(), segmentName.length()
+			        - SEGMENT_SUFFIX.length()));
+		}
+		catch (RuntimeException e) {
+			throw new APIException("not an HL7 archive segment: " + segmentName, e);
+		}
+	}
+	
+	private String getSegmentName(int number) {
+		return SEGMENT_PREFIX + String.format("%08d", number) + SEGMENT_SUFFIX;
+	}
+	
+	private File getSegmentFile(int number) {
+		return new File(directory, getSegmentName(number));
+	}
+	
+	private File getIndexFile(int number) {
+		return new File(directory, SEGMENT_PREFIX + String.format("%08d", number) + INDEX_SUFFIX);
+	}
+	
+	private String getReference(int number, long offset) {
+		return REFERENCE_PREFIX + getSegmentName(number) + "#" + offset;
+	}
+	
+	/**
+	 * @return the offset of each message in a segment by uuid
+	 */
+	private Map<String, Long> readIndex(int number) throws APIException {
+		Map<String, Long> offsets = new LinkedHashMap<String, Long>();
+		File index = getIndexFile(number);
+		if (!index.exists())
+			return offsets;
+		
+		BufferedReader reader = null;
+		try {
+			reader = new BufferedReader(new FileReader(index));
+			String line;
+			while ((line = reader.readLine()) != null) {
+				int tab = line.indexOf('\t');
+				// a line cut short by a crash is skipped
+				if (tab > 0) {
+					try {
+						offsets.put(line.substring(0, tab), Long.valueOf(line.substring(tab + 1)));
+					}
+					catch (NumberFormatException e) {
+						log.debug("Ignoring malformed line in " + index, e);
+					}
+				}
+			}
+		}
+		catch (IOException e) {
+			throw new APIException("unable to read HL7 archive segment index: " + index, e);
+		}
+		finally {
+			IOUtils.closeQuietly(reader);
+		}
+		return offsets;
+	}
+	
+	private static byte[] compress(String data) throws UnsupportedEncodingException, IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DeflaterOutputStream out = new DeflaterOutputStream(bytes, new Deflater(Deflater.BEST_COMPRESSION));
+		out.write(data.getBytes(ENCODING));
+		out.close();
+		return bytes.toByteArray();
+	}
+	
+	/**
+	 * Appends messages to one segment and their offsets to its index
+	 */
+	private class SegmentWriter {
+		
+		private final int number;
+		
+		private final FileOutputStream segmentFile;
+		
+		private final DataOutputStream segment;
+		
+		private final Writer index;
+		
+		private final long start;
+		
+		private SegmentWriter(int number) throws IOException {
+			this.number = number;
+			File file = getSegmentFile(number);
+			start = file.length();
+			segmentFile = new FileOutputStream(file, true);
+			segment = new DataOutputStream(new BufferedOutputStream(segmentFile, 64 * 1024));
+			index = new OutputStreamWriter(new BufferedOutputStream(new FileOutputStream(getIndexFile(number), true)),
+			        ENCODING);
+		}
+		
+		private long getSize() {
+			return start + segment.size();
+		}
+		
+		private String write(String uuid, String data) throws IOException {
+			long offset = getSize();
+			byte[] compressed = compress(data == null ? "" : data);
+			segment.writeUTF(uuid);
+			segment.writeInt(compressed.length);
+			segment.write(compressed);
+			index.write(uuid + "\t" + offset + "\n");
+			return getReference(number, offset);
+		}
+		
+		/**
+		 * Flushes and syncs the segment before its index, so that the index never points past the
+		 * end of the segment
+		 */
+		private void close() throws IOException {
+			segment.flush();
+			segmentFile.getFD().sync();
+			segment.close();
+			index.close();
+		}
+		
+		private void abort() {
+			IOUtils.closeQuietly(segment);
+			IOUtils.closeQuietly(index);
+		}
+	}
+}
@@ -0,0 +1,158 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.hl7;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.regex.Pattern;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Splits a stream of hl7 messages into the separate messages while reading it, so that the whole
+ * stream never has to be held in memory. The stream can be an hl7 batch file, with its messages
+ * wrapped in FHS/BHS and BTS/FTS segments, or simply several messages one after the other, framed
+ * by MLLP or not. <br/>
+ * <br/>
+ * A message starts with an MSH segment and runs until the next MSH segment or the end of the
+ * stream. Segments may be separated by carriage returns, line feeds or both, and are separated by
+ * carriage returns in the messages returned. The batch envelope segments and blank lines are
+ * skipped.
+ *
+ * <pre>
+ * HL7BatchReader reader = new HL7BatchReader(request.getReader());
+ * String message;
+ * while ((message = reader.nextMessage()) != null)
+ * 	...
+ * </pre>
+ *
+ * @since 1.10
+ */
+public class HL7BatchReader {
+	
+	private static final Log log = LogFactory.getLog(HL7BatchReader.class);
+	
+	private static final String SEGMENT_SEPARATOR = "\r";
+	
+	private static final char START_OF_BLOCK = 0x0b;
+	
+	private static final char END_OF_BLOCK = 0x1c;
+	
+	private final Reader reader;
+	
+	private String nextSegment;
+	
+	private boolean started = false;
+	
+	/**
+	 * @param reader the stream of messages
+	 */
+	public HL7BatchReader(Reader reader) {
+		this.reader = reader instanceof BufferedReader ? reader : new BufferedReader(reader);
+	}
+	
+	/**
+	 * Reads the next message from the stream
+	 *
+	 * @return the message, or null if there are no messages left
+	 * @throws IOException if the stream could not be read
+	 * @should split messages in a batch file
+	 * @should split messages that follow each other
+	 * @should accept any segment separator
+	 * @should return null at the end of the stream
+	 */
+	public String nextMessage() throws IOException {
+		if (!started) {
+			started = true;
+			nextSegment = readSegment();
+		}
+		
+		// skip whatever comes before the first message
+		while (nextSegment != null && !isSegment(nextSegment, "MSH")) {
+			if (!isEnvelope(nextSegment))
+				log.warn("Skipping hl7 segment outside of a message: " + nextSegment);
+			nextSegment = readSegment();
+		}
+		
+		if (nextSegment == null)
+			return null;
+		
+		StringBuilder message = new StringBuilder(nextSegment);
+		nextSegment = readSegment();
+		while (nextSegment != null && !isSegment(nextSegment, "MSH")) {
+			if (!isEnvelope(nextSegment))
+				message.append(SEGMENT_SEPARATOR).append(nextSegment);
+			nextSegment = readSegment();
+		}
+		
+		return message.toString();
+	}
+	
+	/**
+	 * Closes the stream
+	 *
+	 * @throws IOException
+	 */
+	public void close() throws IOException {
+		reader.close();
+	}
+	
+	/**
+	 * @param message an hl7 message
+	 * @return the message control id in the MSH segment, or null if it has none
+	 * @should get the message control id
+	 * @should return null if the message does not start with an msh segment
+	 */
+	public static String getMessageControlId(String message) {
+		if (message == null || !isSegment(message, "MSH") || message.length() < 4)
+			return null;
+		
+		int end = message.indexOf(SEGMENT_SEPARATOR);
+		String[] fields = (end < 0 ? message : message.substring(0, end)).split(Pattern.quote(message.substring(3, 4)),
+		    -1);
+		// the field separator itself is MSH-1, so MSH-10 follows the ninth separator
+		return fields.length > 9 && fields[9].length() > 0 ? fields[9] : null;
+	}
+	
+	/**
+	 * @return the next non blank segment, or null at the end of the stream
+	 */
+	private String readSegment() throws IOException {
+		StringBuilder segment = new StringBuilder();
+		int c;
+		while ((c = reader.read()) != -1) {
+			// the start and end of block characters of MLLP framing separate messages too
+			if (c == '\r' || c == '\n' || c == START_OF_BLOCK || c == END_OF_BLOCK) {
+				if (segment.toString().trim().length() > 0)
+					return segment.toString();
+				segment.setLength(0);
+			} else {
+				segment.append((char) c);
+			}
+		}
+		return segment.toString().trim().length() > 0 ? segment.toString() : null;
+	}
+	
+	private static boolean isSegment(String segment, String name) {
+		return segment.startsWith(name)
+		        && (segment.length() == name.length() || !Character.isLetterOrDigit(segment.charAt(name.length())));
+	}
+	
+	private static boolean isEnvelope(String segment) {
+		return isSegment(segment, "FHS") || isSegment(segment, "BHS") || isSegment(segment, "BTS")
+		        || isSegment(segment, "FTS");
+	}
+}
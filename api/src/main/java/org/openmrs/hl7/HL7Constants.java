@@ -169,6 +169,13 @@ public class HL7Constants {
 	 */
 	public static final int MIGRATION_MAX_BATCH_SIZE = 2000;
 	
+	/**
+	 * the number of queue items sent to the database per JDBC batch when many are saved at once
+	 * 
+	 * @since 1.10
+	 */
+	public static final int QUEUE_INSERT_BATCH_SIZE = 500;
+	
 	// List of datatypes that do not require complex definitions
 	public static final Hashtable<String, String> simpleDatatypes = new Hashtable<String, String>();
 	
@@ -35,10 +35,13 @@ public class HL7InQueueProcessor /* implements Runnable */{
 	
 	private static Boolean isRunning = false; // allow only one running
 	
-	private static Integer count = 0;
-	
 	// processor per JVM
 	
+	/**
+	 * The number of queue entries processed before the session is flushed and cleared
+	 */
+	private static final int CLEAR_INTERVAL = 25;
+	
 	/**
 	 * Empty constructor (requires context to be set using <code>setContext(Context)</code> method
 	 * before any other calls are made)
@@ -64,17 +67,6 @@ public class HL7InQueueProcessor /* implements Runnable */{
 			log.error("Unable to process hl7 in queue", e);
 		}
 		
-		if (++count > 25) {
-			// clean up memory after processing each queue entry (otherwise, the
-			// memory-intensive process may crash or eat up all our memory)
-			try {
-				Context.getHL7Service().garbageCollect();
-			}
-			catch (Exception e) {
-				log.error("Exception while performing garbagecollect in hl7 inbound processor", e);
-			}
-		}
-		
 	}
 	
 	/**
@@ -95,7 +87,11 @@ public class HL7InQueueProcessor /* implements Runnable */{
 	}
 	
 	/**
-	 * Starts up a thread to process all existing HL7InQueue entries
+	 * Starts up a thread to process all existing HL7InQueue entries. The entries are processed in
+	 * batch mode, so the session is flushed and cleared after every {@value #CLEAR_INTERVAL} of them
+	 * (otherwise, the memory-intensive process may crash or eat up all our memory)
+	 * 
+	 * @see Context#beginBatchMode(int)
 	 */
 	public void processHL7InQueue() throws HL7Exception {
 		synchronized (isRunning) {
@@ -105,6 +101,7 @@ public class HL7InQueueProcessor /* implements Runnable */{
 			}
 			isRunning = true;
 		}
+		Context.beginBatchMode(CLEAR_INTERVAL);
 		try {
 			log.debug("Start processing hl7 in queue");
 			while (processNextHL7InQueue()) {
@@ -113,6 +110,7 @@ public class HL7InQueueProcessor /* implements Runnable */{
 			log.debug("Done processing hl7 in queue");
 		}
 		finally {
+			Context.endBatchMode();
 			isRunning = false;
 		}
 	}
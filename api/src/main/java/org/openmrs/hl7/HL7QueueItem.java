@@ -35,6 +35,12 @@ public abstract class HL7QueueItem extends BaseOpenmrsObject {
 	
 	private Date dateCreated;
 	
+	private String messageControlId;
+	
+	private String messageType;
+	
+	private String patientIdentifier;
+	
 	/**
 	 * @return Returns the dateCreated.
 	 */
@@ -91,4 +97,52 @@ public abstract class HL7QueueItem extends BaseOpenmrsObject {
 		this.hl7SourceKey = hl7SourceKey;
 	}
 	
+	/**
+	 * @return the message control id (MSH-10) of the hl7 data
+	 * @since 1.10
+	 */
+	public String getMessageControlId() {
+		return messageControlId;
+	}
+	
+	/**
+	 * @param messageControlId the message control id to set
+	 * @since 1.10
+	 */
+	public void setMessageControlId(String messageControlId) {
+		this.messageControlId = messageControlId;
+	}
+	
+	/**
+	 * @return the message type (MSH-9) of the hl7 data, e.g. ORU^R01
+	 * @since 1.10
+	 */
+	public String getMessageType() {
+		return messageType;
+	}
+	
+	/**
+	 * @param messageType the message type to set
+	 * @since 1.10
+	 */
+	public void setMessageType(String messageType) {
+		this.messageType = messageType;
+	}
+	
+	/**
+	 * @return the first patient identifier (PID-3) in the hl7 data
+	 * @since 1.10
+	 */
+	public String getPatientIdentifier() {
+		return patientIdentifier;
+	}
+	
+	/**
+	 * @param patientIdentifier the patient identifier to set
+	 * @since 1.10
+	 */
+	public void setPatientIdentifier(String patientIdentifier) {
+		this.patientIdentifier = patientIdentifier;
+	}
+	
 }
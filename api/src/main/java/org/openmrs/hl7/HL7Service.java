@@ -14,6 +14,7 @@
 package org.openmrs.hl7;
 
 import java.util.Collection;
+import java.util.Date;
 import java.util.List;
 import java.util.Map;
 
@@ -148,10 +149,26 @@ public interface HL7Service extends OpenmrsService {
 	 * @param hl7InQueue the queue item to save
 	 * @return the saved queue item
 	 * @should add generated uuid if uuid is null
+	 * @should set the message metadata
 	 */
 	@Authorized(value = { HL7Constants.PRIV_UPDATE_HL7_IN_QUEUE, HL7Constants.PRIV_ADD_HL7_IN_QUEUE }, requireAll = false)
 	public HL7InQueue saveHL7InQueue(HL7InQueue hl7InQueue) throws APIException;
 	
+	/**
+	 * Adds many new items to the queue at once, e.g. the messages of an hl7 batch file. The items
+	 * are inserted with JDBC batches in a single transaction, so either all of them are queued or
+	 * none. The ids of the items are not set; use their uuids to find them again.
+	 * 
+	 * @param hl7InQueues the new queue items
+	 * @return the queue items
+	 * @throws APIException
+	 * @since 1.10
+	 * @should queue all of the items
+	 * @should set the date created and message state of the items
+	 */
+	@Authorized(HL7Constants.PRIV_ADD_HL7_IN_QUEUE)
+	public List<HL7InQueue> saveHL7InQueues(List<HL7InQueue> hl7InQueues) throws APIException;
+	
 	/**
 	 * @deprecated use {@link #saveHL7InQueue(HL7InQueue)}
 	 */
@@ -198,10 +215,13 @@ public interface HL7Service extends OpenmrsService {
 	 * @param start beginning index
 	 * @param length size of the batch
 	 * @param messageState status of the HL7InQueue message
-	 * @param query search string
+	 * @param query message control id, patient identifier, message type or source to search for.
+	 *            Since 1.10 the hl7 data is not searched anymore.
 	 * @return all matching hl7 queue items within batch window
 	 * @throws APIException
 	 * @since 1.7
+	 * @should find hl7s by message control id
+	 * @should continue after the previous batch
 	 */
 	@Transactional(readOnly = true)
 	@Authorized(HL7Constants.PRIV_VIEW_HL7_IN_QUEUE)
@@ -211,8 +231,9 @@ public interface HL7Service extends OpenmrsService {
 	 * the total count of all HL7InQueue objects in the database
 	 * 
 	 * @param messageState HL7InQueue status
-	 * @param query search string
-	 * @return the count of matching HL7InQueue items
+	 * @param query message control id, patient identifier, message type or source to search for.
+	 *            Since 1.10 the hl7 data is not searched anymore.
+	 * @return the count of matching HL7InQueue items (which may be up to 30 seconds old)
 	 * @throws APIException
 	 * @since 1.7
 	 */
@@ -225,7 +246,9 @@ public interface HL7Service extends OpenmrsService {
 	 * 
 	 * @param start beginning index
 	 * @param length size of the batch
-	 * @param query search string
+	 * @param query message control id, patient identifier, message type, source or the start of the
+	 *            error to search for. Since 1.10 the error details and the hl7 data are not searched
+	 *            anymore.
 	 * @return all matching hl7 queue items within batch window
 	 * @throws APIException
 	 * @since 1.7
@@ -237,8 +260,10 @@ public interface HL7Service extends OpenmrsService {
 	/**
 	 * the total count of all HL7InError objects in the database
 	 * 
-	 * @param query search string
-	 * @return the count of matching HL7InError items
+	 * @param query message control id, patient identifier, message type, source or the start of the
+	 *            error to search for. Since 1.10 the error details and the hl7 data are not searched
+	 *            anymore.
+	 * @return the count of matching HL7InError items (which may be up to 30 seconds old)
 	 * @throws APIException
 	 * @since 1.7
 	 */
@@ -252,7 +277,8 @@ public interface HL7Service extends OpenmrsService {
 	 * @param start beginning index
 	 * @param length size of the batch
 	 * @param messageState status of the HL7InArchive message
-	 * @param query search string
+	 * @param query message control id, patient identifier, message type or source to search for.
+	 *            Since 1.10 the hl7 data is not searched anymore.
 	 * @return all matching hl7 archive items within batch window
 	 * @throws APIException
 	 * @since 1.7
@@ -266,8 +292,9 @@ public interface HL7Service extends OpenmrsService {
 	 * the total count of all HL7InArchive objects in the database
 	 * 
 	 * @param messageState status of the HL7InArchive message
-	 * @param query search string
-	 * @return the count of matching HL7InArchive items
+	 * @param query message control id, patient identifier, message type or source to search for.
+	 *            Since 1.10 the hl7 data is not searched anymore.
+	 * @return the count of matching HL7InArchive items (which may be up to 30 seconds old)
 	 * @throws APIException
 	 * @since 1.7
 	 */
@@ -607,7 +634,9 @@ public interface HL7Service extends OpenmrsService {
 	
 	/**
 	 * Method is called by the archives migration thread to transfer hl7 in archives from the
-	 * hl7_in_archives database table to the file system
+	 * hl7_in_archives database table to the file system. The archives are appended a batch at a
+	 * time to the compressed segment files of the {@link HL7ArchiveSegmentStore} in the hl7
+	 * archives directory.
 	 * 
 	 * @param progressStatusMap the map holding the number of archives transferred and failed
 	 *            transfers
@@ -617,6 +646,41 @@ public interface HL7Service extends OpenmrsService {
 	        HL7Constants.PRIV_ADD_HL7_IN_QUEUE })
 	public void migrateHl7InArchivesToFileSystem(Map<String, Integer> progressStatusMap) throws APIException;
 	
+	/**
+	 * Method is called by the archives migration thread to move a batch of hl7 in archives that
+	 * earlier versions migrated to one file each into the segment files of the
+	 * {@link HL7ArchiveSegmentStore}. The separate files are deleted once the transaction commits.
+	 * 
+	 * @param afterHL7InArchiveId the id returned by the previous call, or null to start with the
+	 *            first archive
+	 * @param progressStatusMap the map holding the number of archives transferred and failed
+	 *            transfers
+	 * @return the id of the last archive in the batch, or null if there are no archives left to
+	 *         move
+	 * @throws APIException
+	 * @since 1.10
+	 * @should move the archives in separate files to segments
+	 * @should return null if there are no archives left to move
+	 */
+	@Authorized(requireAll = true, value = { HL7Constants.PRIV_VIEW_HL7_IN_ARCHIVE, HL7Constants.PRIV_PURGE_HL7_IN_ARCHIVE,
+	        HL7Constants.PRIV_ADD_HL7_IN_QUEUE })
+	public Integer migrateHL7InArchiveFilesToSegments(Integer afterHL7InArchiveId, Map<String, Integer> progressStatusMap)
+	        throws APIException;
+	
+	/**
+	 * Purges the migrated hl7 in archives in the segments that were last written to before the
+	 * given date, and deletes those segments once the transaction commits. The segment that
+	 * archives are currently appended to is never purged.
+	 * 
+	 * @param date the date before which the segments were last written to
+	 * @return the number of archives purged
+	 * @throws APIException
+	 * @since 1.10
+	 * @should purge the archives in old segments
+	 */
+	@Authorized(HL7Constants.PRIV_PURGE_HL7_IN_ARCHIVE)
+	public int purgeHL7InArchiveSegmentsOlderThan(Date date) throws APIException;
+	
 	/**
 	 * finds a UUID from an array of identifiers
 	 * 
@@ -657,11 +721,13 @@ public interface HL7Service extends OpenmrsService {
 	public void loadHL7InArchiveData(List<HL7InArchive> archives) throws APIException;
 	
 	/**
-	 * Loads HL7 data from the filesystem for an archived HL7InArchive
+	 * Loads HL7 data from the filesystem for an archived HL7InArchive, either from its segment or
+	 * from the separate file earlier versions migrated it to
 	 * 
 	 * @since 1.7
 	 * @throws APIException
 	 * @param archive
+	 * @should load the data of an archive in a segment
 	 */
 	public void loadHL7InArchiveData(HL7InArchive archive) throws APIException;
 	
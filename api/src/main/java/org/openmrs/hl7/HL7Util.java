@@ -19,6 +19,7 @@ import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.regex.Pattern;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
@@ -46,6 +47,13 @@ public class HL7Util {
 	
 	public static final String LOCAL_TIMEZONE_OFFSET = new SimpleDateFormat("Z").format(new Date());
 	
+	/**
+	 * The length of the columns holding the message metadata of queue items
+	 * 
+	 * @since 1.10
+	 */
+	public static final int MAX_MESSAGE_METADATA_LENGTH = 50;
+	
 	/**
 	 * Converts an HL7 timestamp into a java.util.Date object. HL7 timestamps can be created with
 	 * varying levels of precision &mdash; e.g., just the year or just the year and month, etc.
@@ -282,4 +290,54 @@ public class HL7Util {
 		//TODO Should take care of the case where the user is using removable media, this might explode
 		return OpenmrsUtil.getDirectoryInApplicationDataDirectory(archiveDir);
 	}
+	
+	/**
+	 * Copies the message type (MSH-9), message control id (MSH-10) and first patient identifier
+	 * (PID-3) of the hl7 data of a queue item into its own properties, so that queue items can be
+	 * searched without scanning their hl7 data. The message is only split into fields, not parsed,
+	 * and values longer than {@link #MAX_MESSAGE_METADATA_LENGTH} are cut short.
+	 * 
+	 * @param item the queue, error or archive item
+	 * @since 1.10
+	 * @should set the message metadata
+	 * @should ignore data that is not an hl7 message
+	 */
+	public static void setMessageMetadata(HL7QueueItem item) {
+		String data = item.getHL7Data();
+		if (data == null || !data.startsWith("MSH") || data.length() < 8)
+			return;
+		
+		String fieldSeparator = Pattern.quote(data.substring(3, 4));
+		String componentSeparator = Pattern.quote(data.substring(4, 5));
+		String repetitionSeparator = Pattern.quote(data.substring(5, 6));
+		
+		int start = 0;
+		while (start < data.length()) {
+			int end = start;
+			while (end < data.length() && data.charAt(end) != '\r' && data.charAt(end) != '\n')
+				end++;
+			String segment = data.substring(start, end);
+			start = end + 1;
+			
+			if (segment.startsWith("MSH")) {
+				// the field separator itself is MSH-1, so MSH-n follows the (n-1)th separator
+				String[] fields = segment.split(fieldSeparator, -1);
+				item.setMessageType(getMessageMetadataValue(fields.length > 8 ? fields[8] : null));
+				item.setMessageControlId(getMessageMetadataValue(fields.length > 9 ? fields[9] : null));
+			} else if (segment.startsWith("PID")) {
+				String[] fields = segment.split(fieldSeparator, -1);
+				String identifier = null;
+				if (fields.length > 3)
+					identifier = fields[3].split(repetitionSeparator, -1)[0].split(componentSeparator, -1)[0];
+				item.setPatientIdentifier(getMessageMetadataValue(identifier));
+				return;
+			}
+		}
+	}
+	
+	private static String getMessageMetadataValue(String value) {
+		if (StringUtils.isBlank(value))
+			return null;
+		return value.length() > MAX_MESSAGE_METADATA_LENGTH ? value.substring(0, MAX_MESSAGE_METADATA_LENGTH) : value;
+	}
 }
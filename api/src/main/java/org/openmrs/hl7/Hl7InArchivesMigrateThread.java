@@ -121,6 +121,17 @@ public class Hl7InArchivesMigrateThread extends Thread {
 				if (isActive())
 					Context.getHL7Service().migrateHl7InArchivesToFileSystem(progressStatusMap);
 				
+				// move the archives that earlier versions migrated to one file each into the segments,
+				// a batch per transaction so that their files can be deleted as the move goes along
+				Integer lastHL7InArchiveId = null;
+				while (isActive() && transferStatus == Status.RUNNING) {
+					lastHL7InArchiveId = Context.getHL7Service().migrateHL7InArchiveFilesToSegments(lastHL7InArchiveId,
+					    progressStatusMap);
+					if (lastHL7InArchiveId == null)
+						break;
+					Context.clearSession();
+				}
+				
 				//if transfer is done when user didn't just stop it
 				if (transferStatus != Status.STOPPED)
 					transferStatus = Status.COMPLETED;
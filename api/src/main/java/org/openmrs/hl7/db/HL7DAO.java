@@ -13,6 +13,7 @@
  */
 package org.openmrs.hl7.db;
 
+import java.util.Date;
 import java.util.List;
 
 import org.openmrs.api.db.DAOException;
@@ -64,6 +65,11 @@ public interface HL7DAO {
 	 */
 	public HL7InQueue saveHL7InQueue(HL7InQueue hl7InQueue) throws DAOException;
 	
+	/**
+	 * @see org.openmrs.hl7.HL7Service#saveHL7InQueues(java.util.List)
+	 */
+	public void saveHL7InQueues(List<HL7InQueue> hl7InQueues) throws DAOException;
+	
 	/**
 	 * @see org.openmrs.hl7.HL7Service#getHL7InQueue(Integer)
 	 */
@@ -102,6 +108,23 @@ public interface HL7DAO {
 	@SuppressWarnings("rawtypes")
 	public <T> List<T> getHL7Batch(Class clazz, int start, int length, Integer messageState, String query);
 	
+	/**
+	 * Returns the hl7s that come after the given one in order of date created and id, filtered by
+	 * a query. Unlike paging by index, this does not need to skip the rows on the earlier pages.
+	 * 
+	 * @param clazz the kind of hl7s
+	 * @param afterDateCreated the date created of the last hl7 of the previous page
+	 * @param afterId the id of the last hl7 of the previous page
+	 * @param length the number of hl7s to return
+	 * @param messageState the state of the hl7s, or null for any state
+	 * @param query the query to match against the message metadata, or null
+	 * @return list of hl7s
+	 * @since 1.10
+	 */
+	@SuppressWarnings("rawtypes")
+	public <T> List<T> getHL7Batch(Class clazz, Date afterDateCreated, Integer afterId, int length, Integer messageState,
+	        String query);
+	
 	/**
 	 * Returns the amount of HL7 items in the database
 	 * 
@@ -163,6 +186,25 @@ public interface HL7DAO {
 	 */
 	public List<HL7InArchive> getHL7InArchivesToMigrate();
 	
+	/**
+	 * provides a batch of archives that were migrated to separate files rather than to segments,
+	 * ordered by id
+	 * 
+	 * @param afterHL7InArchiveId only archives with a greater id are returned, or null to start with
+	 *            the first one
+	 * @since 1.10
+	 */
+	public List<HL7InArchive> getHL7InArchivesInSeparateFiles(Integer afterHL7InArchiveId);
+	
+	/**
+	 * deletes the migrated archives whose data is in the given segment
+	 * 
+	 * @param segmentName the name of the segment
+	 * @return the number of archives deleted
+	 * @since 1.10
+	 */
+	public int deleteHL7InArchivesInSegment(String segmentName) throws DAOException;
+	
 	/* HL7InError */
 
 	/**
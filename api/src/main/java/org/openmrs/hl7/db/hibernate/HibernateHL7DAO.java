@@ -13,7 +13,11 @@
  */
 package org.openmrs.hl7.db.hibernate;
 
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.util.Calendar;
+import java.util.Date;
 import java.util.List;
 
 import org.apache.commons.logging.Log;
@@ -21,13 +25,17 @@ import org.apache.commons.logging.LogFactory;
 import org.hibernate.Criteria;
 import org.hibernate.Hibernate;
 import org.hibernate.Query;
+import org.hibernate.Session;
 import org.hibernate.SessionFactory;
+import org.hibernate.criterion.Disjunction;
 import org.hibernate.criterion.MatchMode;
 import org.hibernate.criterion.Order;
 import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Restrictions;
 import org.openmrs.api.context.Context;
 import org.openmrs.api.db.DAOException;
+import org.openmrs.api.db.hibernate.HibernateUtil;
+import org.openmrs.hl7.HL7ArchiveSegmentStore;
 import org.openmrs.hl7.HL7Constants;
 import org.openmrs.hl7.HL7InArchive;
 import org.openmrs.hl7.HL7InError;
@@ -111,6 +119,56 @@ public class HibernateHL7DAO implements HL7DAO {
 		return hl7InQueue;
 	}
 	
+	/**
+	 * Inserts the rows with plain JDBC batches, since hibernate does not batch inserts into tables
+	 * with generated ids
+	 * 
+	 * @see org.openmrs.hl7.db.HL7DAO#saveHL7InQueues(java.util.List)
+	 */
+	public void saveHL7InQueues(List<HL7InQueue> hl7InQueues) throws DAOException {
+		Session session = sessionFactory.getCurrentSession();
+		PreparedStatement ps = null;
+		try {
+			// flushes earlier changes first, e.g. a new hl7 source the items refer to
+			ps = HibernateUtil.getConnection(session).prepareStatement(
+			    "insert into hl7_in_queue (hl7_source, hl7_source_key, hl7_data, date_created, message_state, uuid, "
+			            + "message_control_id, message_type, patient_identifier) values (?, ?, ?, ?, ?, ?, ?, ?, ?)");
+			int batched = 0;
+			for (HL7InQueue hl7InQueue : hl7InQueues) {
+				ps.setInt(1, hl7InQueue.getHL7Source().getHL7SourceId());
+				ps.setString(2, hl7InQueue.getHL7SourceKey());
+				ps.setString(3, hl7InQueue.getHL7Data());
+				ps.setTimestamp(4, new Timestamp(hl7InQueue.getDateCreated().getTime()));
+				ps.setInt(5, hl7InQueue.getMessageState());
+				ps.setString(6, hl7InQueue.getUuid());
+				ps.setString(7, hl7InQueue.getMessageControlId());
+				ps.setString(8, hl7InQueue.getMessageType());
+				ps.setString(9, hl7InQueue.getPatientIdentifier());
+				ps.addBatch();
+				
+				if (++batched == HL7Constants.QUEUE_INSERT_BATCH_SIZE) {
+					ps.executeBatch();
+					batched = 0;
+				}
+			}
+			if (batched > 0)
+				ps.executeBatch();
+		}
+		catch (SQLException e) {
+			throw new DAOException("Unable to insert hl7 in queue items", e);
+		}
+		finally {
+			if (ps != null) {
+				try {
+					ps.close();
+				}
+				catch (SQLException e) {
+					log.error("Error generated while closing statement", e);
+				}
+			}
+		}
+	}
+	
 	/**
 	 * @see org.openmrs.hl7.db.HL7DAO#getHL7InQueue(java.lang.Integer)
 	 */
@@ -148,13 +206,18 @@ public class HibernateHL7DAO implements HL7DAO {
 		
 		Criteria crit = sessionFactory.getCurrentSession().createCriteria(clazz);
 		
-		if (query != null && !query.isEmpty())
+		// match the indexed message metadata rather than scanning the hl7 data
+		if (query != null && !query.isEmpty()) {
+			crit.createAlias("HL7Source", "source");
+			Disjunction matches = Restrictions.disjunction();
+			matches.add(Restrictions.eq("messageControlId", query));
+			matches.add(Restrictions.eq("patientIdentifier", query));
+			matches.add(Restrictions.like("messageType", query, MatchMode.START));
+			matches.add(Restrictions.eq("source.name", query));
 			if (clazz == HL7InError.class)
-				crit.add(Restrictions.or(Restrictions.like("HL7Data", query, MatchMode.ANYWHERE), Restrictions.or(
-				    Restrictions.like("errorDetails", query, MatchMode.ANYWHERE), Restrictions.like("error", query,
-				        MatchMode.ANYWHERE))));
-			else
-				crit.add(Restrictions.like("HL7Data", query, MatchMode.ANYWHERE));
+				matches.add(Restrictions.like("error", query, MatchMode.START));
+			crit.add(matches);
+		}
 		
 		if (messageState != null)
 			crit.add(Restrictions.eq("messageState", messageState));
@@ -173,6 +236,23 @@ public class HibernateHL7DAO implements HL7DAO {
 		crit.setFirstResult(start);
 		crit.setMaxResults(length);
 		crit.addOrder(Order.asc("dateCreated"));
+		crit.addOrder(Order.asc("id"));
+		return crit.list();
+	}
+	
+	/**
+	 * @see org.openmrs.hl7.db.HL7DAO#getHL7Batch(java.lang.Class, java.util.Date, java.lang.Integer,
+	 *      int, java.lang.Integer, java.lang.String)
+	 */
+	@SuppressWarnings( { "rawtypes", "unchecked" })
+	public <T> List<T> getHL7Batch(Class clazz, Date afterDateCreated, Integer afterId, int length, Integer messageState,
+	        String query) throws DAOException {
+		Criteria crit = getHL7SearchCriteria(clazz, messageState, query);
+		crit.add(Restrictions.or(Restrictions.gt("dateCreated", afterDateCreated), Restrictions.and(Restrictions.eq(
+		    "dateCreated", afterDateCreated), Restrictions.gt("id", afterId))));
+		crit.setMaxResults(length);
+		crit.addOrder(Order.asc("dateCreated"));
+		crit.addOrder(Order.asc("id"));
 		return crit.list();
 	}
 	
@@ -346,4 +426,31 @@ public class HibernateHL7DAO implements HL7DAO {
 		return crit.list();
 	}
 	
+	
+	/**
+	 * @see org.openmrs.hl7.db.HL7DAO#getHL7InArchivesInSeparateFiles(java.lang.Integer)
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public List<HL7InArchive> getHL7InArchivesInSeparateFiles(Integer afterHL7InArchiveId) {
+		Criteria crit = getHL7SearchCriteria(HL7InArchive.class, HL7Constants.HL7_STATUS_MIGRATED, null);
+		crit.add(Restrictions.not(Restrictions.like("HL7Data", HL7ArchiveSegmentStore.REFERENCE_PREFIX,
+		    MatchMode.START)));
+		if (afterHL7InArchiveId != null)
+			crit.add(Restrictions.gt("HL7InArchiveId", afterHL7InArchiveId));
+		crit.addOrder(Order.asc("HL7InArchiveId"));
+		crit.setMaxResults(HL7Constants.MIGRATION_MAX_BATCH_SIZE);
+		return crit.list();
+	}
+	
+	/**
+	 * @see org.openmrs.hl7.db.HL7DAO#deleteHL7InArchivesInSegment(java.lang.String)
+	 */
+	@Override
+	public int deleteHL7InArchivesInSegment(String segmentName) throws DAOException {
+		return sessionFactory.getCurrentSession().createQuery(
+		    "delete from HL7InArchive where messageState = :messageState and HL7Data like :reference").setParameter(
+		    "messageState", HL7Constants.HL7_STATUS_MIGRATED).setParameter("reference",
+		    HL7ArchiveSegmentStore.REFERENCE_PREFIX + segmentName + "#%").executeUpdate();
+	}
 }
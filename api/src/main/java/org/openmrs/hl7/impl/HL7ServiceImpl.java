@@ -14,21 +14,19 @@
 package org.openmrs.hl7.impl;
 
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.text.DecimalFormat;
 import java.util.ArrayList;
-import java.util.Calendar;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
-import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
@@ -44,8 +42,8 @@ import org.openmrs.User;
 import org.openmrs.api.APIException;
 import org.openmrs.api.PatientIdentifierException;
 import org.openmrs.api.context.Context;
-import org.openmrs.api.db.DAOException;
 import org.openmrs.api.impl.BaseOpenmrsService;
+import org.openmrs.hl7.HL7ArchiveSegmentStore;
 import org.openmrs.hl7.HL7Constants;
 import org.openmrs.hl7.HL7InArchive;
 import org.openmrs.hl7.HL7InError;
@@ -60,7 +58,9 @@ import org.openmrs.hl7.db.HL7DAO;
 import org.openmrs.util.OpenmrsConstants;
 import org.openmrs.util.OpenmrsUtil;
 import org.openmrs.util.PrivilegeConstants;
+import org.openmrs.util.TransactionUtil;
 import org.openmrs.validator.PatientIdentifierValidator;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
 
 import ca.uhn.hl7v2.HL7Exception;
 import ca.uhn.hl7v2.app.Application;
@@ -90,12 +90,25 @@ public class HL7ServiceImpl extends BaseOpenmrsService implements HL7Service {
 	
 	private static HL7ServiceImpl instance;
 	
+	/**
+	 * How long counts and the last hl7s of batches are kept
+	 */
+	private static final long CACHE_MILLIS = 30000;
+	
+	private static final int MAX_CACHED_VALUES = 1000;
+	
+	private final Map<String, CachedValue> cachedCounts = new ConcurrentHashMap<String, CachedValue>();
+	
+	private final Map<String, CachedValue> batchCursors = new ConcurrentHashMap<String, CachedValue>();
+	
 	protected HL7DAO dao;
 	
 	private GenericParser parser;
 	
 	private MessageTypeRouter router;
 	
+	private HL7ArchiveSegmentStore segmentStore;
+	
 	/**
 	 * Private constructor to only support on singleton instance.
 	 * 
@@ -245,7 +258,7 @@ public class HL7ServiceImpl extends BaseOpenmrsService implements HL7Service {
 	 */
 	@Override
 	public List<HL7InQueue> getHL7InQueueBatch(int start, int length, int messageState, String query) throws APIException {
-		return dao.getHL7Batch(HL7InQueue.class, start, length, messageState, query);
+		return getHL7Batch(HL7InQueue.class, start, length, messageState, query);
 	}
 	
 	/**
@@ -253,7 +266,7 @@ public class HL7ServiceImpl extends BaseOpenmrsService implements HL7Service {
 	 */
 	@Override
 	public List<HL7InError> getHL7InErrorBatch(int start, int length, String query) throws APIException {
-		return dao.getHL7Batch(HL7InError.class, start, length, null, query);
+		return getHL7Batch(HL7InError.class, start, length, null, query);
 	}
 	
 	/**
@@ -262,7 +275,7 @@ public class HL7ServiceImpl extends BaseOpenmrsService implements HL7Service {
 	@Override
 	public List<HL7InArchive> getHL7InArchiveBatch(int start, int length, int messageState, String query)
 	        throws APIException {
-		return dao.getHL7Batch(HL7InArchive.class, start, length, messageState, query);
+		return getHL7Batch(HL7InArchive.class, start, length, messageState, query);
 	}
 	
 	/**
@@ -270,7 +283,7 @@ public class HL7ServiceImpl extends BaseOpenmrsService implements HL7Service {
 	 */
 	@Override
 	public Integer countHL7InQueue(int messageState, String query) throws APIException {
-		return dao.countHL7s(HL7InQueue.class, messageState, query);
+		return countHL7s(HL7InQueue.class, messageState, query);
 	}
 	
 	/**
@@ -278,7 +291,7 @@ public class HL7ServiceImpl extends BaseOpenmrsService implements HL7Service {
 	 */
 	@Override
 	public Integer countHL7InError(String query) throws APIException {
-		return dao.countHL7s(HL7InError.class, null, query);
+		return countHL7s(HL7InError.class, null, query);
 	}
 	
 	/**
@@ -286,7 +299,86 @@ public class HL7ServiceImpl extends BaseOpenmrsService implements HL7Service {
 	 */
 	@Override
 	public Integer countHL7InArchive(int messageState, String query) throws APIException {
-		return dao.countHL7s(HL7InArchive.class, messageState, query);
+		return countHL7s(HL7InArchive.class, messageState, query);
+	}
+	
+	/**
+	 * Gets a batch of hl7s. When the batch starts right after one that was fetched before, the hl7s
+	 * are looked up after the last hl7 of that batch, so that the database does not have to skip
+	 * over all the hl7s on the earlier pages.
+	 */
+	private <T extends HL7QueueItem> List<T> getHL7Batch(Class<T> clazz, int start, int length, Integer messageState,
+	        String query) {
+		CachedValue cursor = start > 0 ? getCachedValue(batchCursors, getCacheKey(clazz, messageState, query) + start)
+		        : null;
+		List<T> batch;
+		if (cursor != null) {
+			Object[] previous = (Object[]) cursor.value;
+			batch = dao.getHL7Batch(clazz, (Date) previous[0], (Integer) previous[1], length, messageState, query);
+		} else {
+			batch = dao.getHL7Batch(clazz, start, length, messageState, query);
+		}
+		
+		if (!batch.isEmpty()) {
+			T last = batch.get(batch.size() - 1);
+			putCachedValue(batchCursors, getCacheKey(clazz, messageState, query) + (start + batch.size()), new Object[] {
+			        last.getDateCreated(), last.getId() });
+		}
+		return batch;
+	}
+	
+	/**
+	 * Counts the hl7s, reusing a count made less than {@link #CACHE_MILLIS} ago
+	 */
+	private Integer countHL7s(Class<?> clazz, Integer messageState, String query) {
+		String key = getCacheKey(clazz, messageState, query);
+		CachedValue count = getCachedValue(cachedCounts, key);
+		if (count != null)
+			return (Integer) count.value;
+		
+		Integer value = dao.countHL7s(clazz, messageState, query);
+		putCachedValue(cachedCounts, key, value);
+		return value;
+	}
+	
+	private String getCacheKey(Class<?> clazz, Integer messageState, String query) {
+		return clazz.getSimpleName() + "|" + messageState + "|" + (query == null ? "" : query) + "|";
+	}
+	
+	private CachedValue getCachedValue(Map<String, CachedValue> cache, String key) {
+		CachedValue cached = cache.get(key);
+		if (cached == null || System.currentTimeMillis() - cached.time > CACHE_MILLIS)
+			return null;
+		return cached;
+	}
+	
+	private void putCachedValue(Map<String, CachedValue> cache, String key, Object value) {
+		if (cache.size() >= MAX_CACHED_VALUES)
+			cache.clear();
+		cache.put(key, new CachedValue(value));
+	}
+	
+	/**
+	 * Fills in the message control id, message type and patient identifier of an hl7 unless they
+	 * have been set already
+	 */
+	private void setMessageMetadata(HL7QueueItem hl7) {
+		if (hl7.getMessageControlId() == null && hl7.getMessageType() == null && hl7.getPatientIdentifier() == null)
+			HL7Util.setMessageMetadata(hl7);
+	}
+	
+	/**
+	 * A count or the date created and id of the last hl7 of a batch, with the time it was looked up
+	 */
+	private static class CachedValue {
+		
+		private final Object value;
+		
+		private final long time = System.currentTimeMillis();
+		
+		public CachedValue(Object value) {
+			this.value = value;
+		}
 	}
 	
 	/**
@@ -306,9 +398,29 @@ public class HL7ServiceImpl extends BaseOpenmrsService implements HL7Service {
 		if (hl7InQueue.getMessageState() == null)
 			hl7InQueue.setMessageState(HL7Constants.HL7_STATUS_PENDING);
 		
+		setMessageMetadata(hl7InQueue);
 		return dao.saveHL7InQueue(hl7InQueue);
 	}
 	
+	/**
+	 * @see org.openmrs.hl7.HL7Service#saveHL7InQueues(java.util.List)
+	 */
+	public List<HL7InQueue> saveHL7InQueues(List<HL7InQueue> hl7InQueues) throws APIException {
+		Date now = new Date();
+		for (HL7InQueue hl7InQueue : hl7InQueues) {
+			if (hl7InQueue.getDateCreated() == null)
+				hl7InQueue.setDateCreated(now);
+			
+			if (hl7InQueue.getMessageState() == null)
+				hl7InQueue.setMessageState(HL7Constants.HL7_STATUS_PENDING);
+			
+			setMessageMetadata(hl7InQueue);
+		}
+		
+		dao.saveHL7InQueues(hl7InQueues);
+		return hl7InQueues;
+	}
+	
 	/**
 	 * @see org.openmrs.hl7.HL7Service#createHL7InQueue(org.openmrs.hl7.HL7InQueue)
 	 * @deprecated
@@ -390,6 +502,7 @@ public class HL7ServiceImpl extends BaseOpenmrsService implements HL7Service {
 	public HL7InArchive saveHL7InArchive(HL7InArchive hl7InArchive) throws APIException {
 		if (hl7InArchive.getDateCreated() == null)
 			hl7InArchive.setDateCreated(new Date());
+		setMessageMetadata(hl7InArchive);
 		return dao.saveHL7InArchive(hl7InArchive);
 	}
 	
@@ -463,6 +576,7 @@ public class HL7ServiceImpl extends BaseOpenmrsService implements HL7Service {
 	public HL7InError saveHL7InError(HL7InError hl7InError) throws APIException {
 		if (hl7InError.getDateCreated() == null)
 			hl7InError.setDateCreated(new Date());
+		setMessageMetadata(hl7InError);
 		return dao.saveHL7InError(hl7InError);
 	}
 	
@@ -1105,6 +1219,12 @@ public class HL7ServiceImpl extends BaseOpenmrsService implements HL7Service {
 		if (!OpenmrsUtil.nullSafeEquals(archive.getMessageState(), HL7Constants.HL7_STATUS_MIGRATED) || archive.isLoaded())
 			return;
 		
+		if (HL7ArchiveSegmentStore.isReference(archive.getHL7Data())) {
+			archive.setHL7Data(getSegmentStore().read(archive.getHL7Data()));
+			archive.setLoaded(true);
+			return;
+		}
+		
 		try {
 			archive.setHL7Data(OpenmrsUtil.getFileAsString(new File(new URI(archive.getHL7Data()))));
 			archive.setLoaded(true);
@@ -1121,30 +1241,19 @@ public class HL7ServiceImpl extends BaseOpenmrsService implements HL7Service {
 	 * @see org.openmrs.hl7.HL7Service#migrateHl7InArchivesToFileSystem(Map)
 	 */
 	public void migrateHl7InArchivesToFileSystem(Map<String, Integer> progressStatusMap) throws APIException {
-		int numberTransferred = 0;
-		int numberOfFailedTransfers = 0;
-		
 		// HL7Constants.HL7_STATUS_ARCHIVED indicates the HL7 has been archived to the filesystem
 		List<HL7InArchive> hl7InArchives = getHL7InArchivesToMigrate();
 		
-		// while we still we have any archives to be processed, process them
+		// while we still we have any archives to be processed, process them a batch at a time
 		while (Hl7InArchivesMigrateThread.isActive() && Hl7InArchivesMigrateThread.getTransferStatus() == Status.RUNNING
 		        && hl7InArchives != null && hl7InArchives.size() > 0) {
 			
-			Iterator<HL7InArchive> iterator = hl7InArchives.iterator();
+			Map<String, String> messages = new LinkedHashMap<String, String>();
+			for (HL7InArchive archive : hl7InArchives)
+				messages.put(archive.getUuid(), archive.getHL7Data());
 			
-			while (Hl7InArchivesMigrateThread.isActive() && Hl7InArchivesMigrateThread.getTransferStatus() == Status.RUNNING
-			        && iterator.hasNext()) {
-				HL7InArchive archive = iterator.next();
-				
-				try {
-					migrateHL7InArchive(archive);
-					progressStatusMap.put(HL7Constants.NUMBER_TRANSFERRED_KEY, numberTransferred++);
-				}
-				catch (DAOException e) {
-					progressStatusMap.put(HL7Constants.NUMBER_OF_FAILED_TRANSFERS_KEY, numberOfFailedTransfers++);
-				}
-			}
+			Map<String, String> references = getSegmentStore().append(messages);
+			saveMigratedHL7InArchives(hl7InArchives, references, progressStatusMap);
 			
 			// fetch more archives to be processed
 			hl7InArchives = getHL7InArchivesToMigrate();
@@ -1155,96 +1264,143 @@ public class HL7ServiceImpl extends BaseOpenmrsService implements HL7Service {
 	}
 	
 	/**
-	 * moves data to the filesystem from an HL7InArchive
-	 * 
-	 * @param archive
-	 * @throws APIException
+	 * @see org.openmrs.hl7.HL7Service#migrateHL7InArchiveFilesToSegments(Integer, Map)
 	 */
-	private void migrateHL7InArchive(HL7InArchive archive) throws APIException {
-		if (archive == null)
-			throw new APIException("could not migrate a null HL7 archive");
-		
-		if (!OpenmrsUtil.nullSafeEquals(archive.getMessageState(), HL7Constants.HL7_STATUS_PROCESSED))
-			throw new APIException("could not migrate HL7 archive not in 'processed' state");
+	public Integer migrateHL7InArchiveFilesToSegments(Integer afterHL7InArchiveId, Map<String, Integer> progressStatusMap)
+	        throws APIException {
+		List<HL7InArchive> hl7InArchives = dao.getHL7InArchivesInSeparateFiles(afterHL7InArchiveId);
+		if (hl7InArchives.isEmpty())
+			return null;
 		
-		try {
-			URI uri = writeHL7InArchiveToFileSystem(archive);
-			archive.setHL7Data(uri.toString());
-			archive.setMessageState(HL7Constants.HL7_STATUS_MIGRATED);
-			archive = saveHL7InArchive(archive);
-		}
-		catch (APIException e) {
-			throw new APIException("could not migrate HL7 archive", e);
+		Map<String, String> messages = new LinkedHashMap<String, String>();
+		List<File> files = new ArrayList<File>();
+		for (HL7InArchive archive : hl7InArchives) {
+			try {
+				File file = new File(new URI(archive.getHL7Data()));
+				messages.put(archive.getUuid(), OpenmrsUtil.getFileAsString(file));
+				files.add(file);
+			}
+			catch (Exception e) {
+				log.warn("Unable to read hl7 archive with id '" + archive.getHL7InArchiveId() + "' from "
+				        + archive.getHL7Data(), e);
+				incrementProgress(progressStatusMap, HL7Constants.NUMBER_OF_FAILED_TRANSFERS_KEY);
+			}
 		}
 		
+		Map<String, String> references = getSegmentStore().append(messages);
+		saveMigratedHL7InArchives(hl7InArchives, references, progressStatusMap);
+		
+		// the separate files are only deleted once their archives point to the segments for good
+		ArchiveFileRemover remover = TransactionUtil.registerSynchronizationOnce(ArchiveFileRemover.class,
+		    new ArchiveFileRemover());
+		if (remover != null)
+			remover.files.addAll(files);
+		else
+			deleteFiles(files);
+		
+		return hl7InArchives.get(hl7InArchives.size() - 1).getHL7InArchiveId();
 	}
 	
 	/**
-	 * writes a given hl7 archive to the file system
-	 * 
-	 * @param hl7InArchive the hl7 archive to write to the file system
+	 * @see org.openmrs.hl7.HL7Service#purgeHL7InArchiveSegmentsOlderThan(Date)
 	 */
-	private URI writeHL7InArchiveToFileSystem(HL7InArchive hl7InArchive) throws APIException {
+	public int purgeHL7InArchiveSegmentsOlderThan(Date date) throws APIException {
+		HL7ArchiveSegmentStore store = getSegmentStore();
+		List<String> segmentNames = store.getSegmentsOlderThan(date);
 		
-		PrintWriter writer = null;
-		File destinationDir = HL7Util.getHl7ArchivesDirectory();
-		try {
-			// number formatter used to format month and day with zero padding
-			DecimalFormat df = new DecimalFormat("00");
-			
-			//write the archive to a separate file while grouping them according to
-			//the year, month and date of month when they were stored in the archives table
-			Calendar calendar = Calendar.getInstance(Context.getLocale());
-			calendar.setTime(hl7InArchive.getDateCreated());
-			
-			//resolve the year folder from the date of creation of the archive
-			File yearDir = new File(destinationDir, Integer.toString(calendar.get(Calendar.YEAR)));
-			if (!yearDir.isDirectory())
-				yearDir.mkdirs();
-			
-			//resolve the appropriate month folder
-			File monthDir = new File(yearDir, df.format(calendar.get(Calendar.MONTH) + 1));
-			if (!monthDir.isDirectory())
-				monthDir.mkdirs();
-			
-			//resolve the appropriate day of month folder
-			File dayDir = new File(monthDir, df.format(calendar.get(Calendar.DAY_OF_MONTH)));
-			if (!dayDir.isDirectory())
-				dayDir.mkdirs();
-			
-			//use the uuid, source id and source key(if present) to generate the file name
-			File fileToWriteTo = new File(dayDir, hl7InArchive.getUuid()
-			        + (StringUtils.isBlank(hl7InArchive.getHL7SourceKey()) ? "" : "_" + hl7InArchive.getHL7SourceKey())
-			        + ".txt");
-			
-			//write the hl7 data to the file
-			writer = new PrintWriter(fileToWriteTo);
-			writer.write(hl7InArchive.getHL7Data());
-			
-			//check if there was an error while writing to the current file
-			if (writer.checkError()) {
-				log.warn("An Error occured while writing hl7 archive with id '" + hl7InArchive.getHL7InArchiveId()
-				        + "' to the file system");
-				throw new APIException("could not write HL7 archive to the filesystem (no error provided)");
+		int purged = 0;
+		for (String segmentName : segmentNames)
+			purged += dao.deleteHL7InArchivesInSegment(segmentName);
+		
+		// the segments are only deleted once no archives point to them any more
+		ArchiveFileRemover remover = TransactionUtil.registerSynchronizationOnce(ArchiveFileRemover.class,
+		    new ArchiveFileRemover());
+		if (remover != null)
+			remover.addSegments(store, segmentNames);
+		else
+			deleteSegments(store, segmentNames);
+		
+		return purged;
+	}
+	
+	/**
+	 * Points the given archives to their messages in the segments and marks them as migrated
+	 * 
+	 * @param hl7InArchives the archives
+	 * @param references the references to the messages appended to the segments by uuid, archives
+	 *            without one are left as they are
+	 * @param progressStatusMap the map holding the number of archives transferred
+	 */
+	private void saveMigratedHL7InArchives(List<HL7InArchive> hl7InArchives, Map<String, String> references,
+	        Map<String, Integer> progressStatusMap) {
+		for (HL7InArchive archive : hl7InArchives) {
+			String reference = references.get(archive.getUuid());
+			if (reference != null) {
+				archive.setHL7Data(reference);
+				archive.setMessageState(HL7Constants.HL7_STATUS_MIGRATED);
+				archive.setLoaded(false);
+				dao.saveHL7InArchive(archive);
+				incrementProgress(progressStatusMap, HL7Constants.NUMBER_TRANSFERRED_KEY);
 			}
-			
-			// hand back the URI for the file
-			return fileToWriteTo.toURI();
-			
 		}
-		catch (FileNotFoundException e) {
-			log
-			        .warn("Failed to write hl7 archive with id '" + hl7InArchive.getHL7InArchiveId()
-			                + "' to the file system ", e);
-			throw new APIException("could not write HL7 archive to the filesystem", e);
-			
+	}
+	
+	private void incrementProgress(Map<String, Integer> progressStatusMap, String key) {
+		Integer count = progressStatusMap.get(key);
+		progressStatusMap.put(key, count == null ? 1 : count + 1);
+	}
+	
+	private void deleteFiles(List<File> files) {
+		for (File file : files) {
+			if (!file.delete())
+				log.warn("Unable to delete migrated hl7 archive file " + file);
 		}
-		finally {
-			if (writer != null)
-				writer.close();
+	}
+	
+	private void deleteSegments(HL7ArchiveSegmentStore store, List<String> segmentNames) {
+		for (String segmentName : segmentNames) {
+			if (!store.deleteSegment(segmentName))
+				log.warn("Unable to delete hl7 archive segment " + segmentName);
 		}
 	}
 	
+	/**
+	 * Deletes the archive files and segments that are no longer needed once the transaction in
+	 * which the archives were changed commits
+	 */
+	private class ArchiveFileRemover extends TransactionSynchronizationAdapter {
+		
+		private List<File> files = new ArrayList<File>();
+		
+		private Map<HL7ArchiveSegmentStore, List<String>> segmentNames = new LinkedHashMap<HL7ArchiveSegmentStore, List<String>>();
+		
+		public void addSegments(HL7ArchiveSegmentStore store, List<String> names) {
+			List<String> storeSegmentNames = segmentNames.get(store);
+			if (storeSegmentNames == null) {
+				storeSegmentNames = new ArrayList<String>();
+				segmentNames.put(store, storeSegmentNames);
+			}
+			storeSegmentNames.addAll(names);
+		}
+		
+		@Override
+		public void afterCommit() {
+			deleteFiles(files);
+			for (Map.Entry<HL7ArchiveSegmentStore, List<String>> entry : segmentNames.entrySet())
+				deleteSegments(entry.getKey(), entry.getValue());
+		}
+	}
+	
+	/**
+	 * @return the store for the segments in the current hl7 archives directory
+	 */
+	private synchronized HL7ArchiveSegmentStore getSegmentStore() throws APIException {
+		File directory = HL7Util.getHl7ArchivesDirectory();
+		if (segmentStore == null || !segmentStore.getDirectory().equals(directory))
+			segmentStore = new HL7ArchiveSegmentStore(directory);
+		return segmentStore;
+	}
+	
 	@Override
 	public HL7QueueItem getHl7QueueItemByUuid(String uuid) throws APIException {
 		HL7QueueItem result = getHL7InQueueByUuid(uuid);
@@ -628,7 +628,7 @@ public class Result extends ArrayList<Result> {
 				case CODED:
 					return (valueCoded == null ? "" : valueCoded.getBestName(Context.getLocale()).getName());
 				case DATETIME:
-					return (valueDatetime == null ? "" : Context.getDateFormat().format(valueDatetime));
+					return (valueDatetime == null ? "" : Context.getDateFormatter().format(valueDatetime));
 				case NUMERIC:
 					return (valueNumeric == null ? "" : String.valueOf(valueNumeric));
 				case TEXT:
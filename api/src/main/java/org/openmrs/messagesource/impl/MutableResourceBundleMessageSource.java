@@ -15,8 +15,10 @@ package org.openmrs.messagesource.impl;
 
 import java.io.File;
 import java.io.IOException;
+import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -24,6 +26,8 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -39,7 +43,14 @@ import org.springframework.core.io.Resource;
 
 /**
  * ResourceBundleMessageSource extends ReloadableResourceBundleMessageSource to provide the
- * additional features of a MutableMessageSource.
+ * additional features of a MutableMessageSource. <br/>
+ * <br/>
+ * Messages are resolved from an in-memory snapshot that holds, per locale, every code mapped to
+ * its message and precompiled {@link MessageFormat}, following the same basename and locale
+ * precedence as the parent class. Lookups do not re-check the properties files and do not take
+ * any locks. The snapshot is replaced as a whole by {@link #clearCache()}, which is called
+ * whenever messages are published, added or removed through this class and when a module's
+ * messages are copied into the webapp.
  */
 public class MutableResourceBundleMessageSource extends ReloadableResourceBundleMessageSource implements MutableMessageSource, ApplicationContextAware {
 	
@@ -61,6 +72,9 @@ public class MutableResourceBundleMessageSource extends ReloadableResourceBundle
 	/** Cached list of available locales. */
 	private Collection<Locale> locales;
 	
+	/** The current message snapshot, replaced as a whole when the messages change */
+	private volatile MessageSnapshot snapshot = new MessageSnapshot();
+	
 	/**
 	 * @see org.openmrs.messagesource.MessageSourceService#getLocales()
 	 */
@@ -80,6 +94,103 @@ public class MutableResourceBundleMessageSource extends ReloadableResourceBundle
 		super.setCacheSeconds(cacheSeconds);
 	}
 	
+	/**
+	 * Clears the properties cached by the parent class and replaces the message snapshot, so that
+	 * the next lookup reads the current contents of the properties files
+	 * 
+	 * @see org.springframework.context.support.ReloadableResourceBundleMessageSource#clearCache()
+	 * @should resolve messages changed on disk after the cache is cleared
+	 */
+	@Override
+	public void clearCache() {
+		super.clearCache();
+		snapshot = new MessageSnapshot();
+		locales = null;
+	}
+	
+	/**
+	 * @see org.springframework.context.support.ReloadableResourceBundleMessageSource#resolveCodeWithoutArguments(java.lang.String,
+	 *      java.util.Locale)
+	 * @should resolve a message from the most specific locale
+	 * @should prefer messages from earlier basenames
+	 * @should return null if the code is not defined
+	 */
+	@Override
+	protected String resolveCodeWithoutArguments(String code, Locale locale) {
+		ResolvedMessage message = getMessages(locale).get(code);
+		return (message != null) ? message.getMessage() : null;
+	}
+	
+	/**
+	 * @see org.springframework.context.support.ReloadableResourceBundleMessageSource#resolveCode(java.lang.String,
+	 *      java.util.Locale)
+	 * @should resolve a message format that applies the given arguments
+	 */
+	@Override
+	protected MessageFormat resolveCode(String code, Locale locale) {
+		ResolvedMessage message = getMessages(locale).get(code);
+		if (message == null)
+			return null;
+		
+		MessageFormat messageFormat = message.getMessageFormat();
+		if (messageFormat == null) {
+			// the message is not a valid pattern, let the parent class report the error as before
+			return super.resolveCode(code, locale);
+		}
+		return messageFormat;
+	}
+	
+	/**
+	 * Gets the messages for the given locale from the current snapshot, flattening the properties
+	 * files for that locale the first time it is requested
+	 * 
+	 * @param locale the locale to get the messages for
+	 * @return map from code to resolved message
+	 */
+	private Map<String, ResolvedMessage> getMessages(Locale locale) {
+		MessageSnapshot current = snapshot;
+		Map<String, ResolvedMessage> messages = current.get(locale);
+		if (messages == null)
+			messages = current.putIfAbsent(locale, loadMessages(locale));
+		return messages;
+	}
+	
+	/**
+	 * Merges the properties files for the given locale into a single map, honoring the same
+	 * precedence as the parent class: earlier basenames win over later ones and, within a basename,
+	 * more specific locales win over less specific ones
+	 * 
+	 * @param locale the locale to load the messages for
+	 * @return unmodifiable map from code to resolved message
+	 */
+	private Map<String, ResolvedMessage> loadMessages(Locale locale) {
+		Map<String, String> merged = new HashMap<String, String>();
+		for (int i = basenames.length - 1; i >= 0; i--) {
+			List<String> filenames = calculateAllFilenames(basenames[i], locale);
+			for (int j = filenames.size() - 1; j >= 0; j--) {
+				Properties props = getProperties(filenames.get(j)).getProperties();
+				if (props != null) {
+					for (String code : props.stringPropertyNames())
+						merged.put(code, props.getProperty(code));
+				}
+			}
+		}
+		
+		Map<String, ResolvedMessage> messages = new HashMap<String, ResolvedMessage>(merged.size() * 4 / 3 + 1);
+		for (Map.Entry<String, String> entry : merged.entrySet()) {
+			MessageFormat messageFormat = null;
+			try {
+				messageFormat = createMessageFormat(entry.getValue(), locale);
+			}
+			catch (IllegalArgumentException e) {
+				if (log.isDebugEnabled())
+					log.debug("Message is not a valid pattern: " + entry.getKey());
+			}
+			messages.put(entry.getKey(), new ResolvedMessage(entry.getValue(), messageFormat));
+		}
+		return Collections.unmodifiableMap(messages);
+	}
+	
 	/**
 	 * This method looks at the current property files and deduces what locales are available from
 	 * those
@@ -164,7 +275,7 @@ public class MutableResourceBundleMessageSource extends ReloadableResourceBundle
 				propertiesFile.createNewFile();
 			// append the properties to the appropriate messages file
 			OpenmrsUtil.storeProperties(props, propertiesFile, namespace + ": " + name + " v" + version);
-			
+			clearCache();
 		}
 		catch (Exception ex) {
 			log.error("Error creating new properties file");
@@ -238,6 +349,7 @@ public class MutableResourceBundleMessageSource extends ReloadableResourceBundle
 				OpenmrsUtil.loadProperties(props, propertyFile);
 				props.setProperty(message.getCode(), message.getMessage());
 				OpenmrsUtil.storeProperties(props, propertyFile, "OpenMRS Application Messages");
+				clearCache();
 			}
 			catch (Exception e) {
 				log.error("Error generated", e);
@@ -256,6 +368,7 @@ public class MutableResourceBundleMessageSource extends ReloadableResourceBundle
 				OpenmrsUtil.loadProperties(props, propertyFile);
 				props.remove(message.getCode());
 				OpenmrsUtil.storeProperties(props, propertyFile, PROPERTIES_FILE_COMMENT);
+				clearCache();
 			}
 			catch (Exception e) {
 				log.error("Error generated", e);
@@ -412,4 +525,55 @@ public class MutableResourceBundleMessageSource extends ReloadableResourceBundle
 		return null;
 	}
 	
+	/**
+	 * Holds the flattened messages of each locale that has been requested since the snapshot was
+	 * created. The per locale maps are never modified once they are added.
+	 */
+	private static class MessageSnapshot {
+		
+		private final ConcurrentMap<Locale, Map<String, ResolvedMessage>> messagesByLocale = new ConcurrentHashMap<Locale, Map<String, ResolvedMessage>>();
+		
+		public Map<String, ResolvedMessage> get(Locale locale) {
+			return messagesByLocale.get(locale);
+		}
+		
+		/**
+		 * @return the messages already in the snapshot for the locale, or the given ones if there
+		 *         were none
+		 */
+		public Map<String, ResolvedMessage> putIfAbsent(Locale locale, Map<String, ResolvedMessage> messages) {
+			Map<String, ResolvedMessage> existing = messagesByLocale.putIfAbsent(locale, messages);
+			return (existing != null) ? existing : messages;
+		}
+	}
+	
+	/**
+	 * A message together with its precompiled MessageFormat
+	 */
+	private static class ResolvedMessage {
+		
+		private final String message;
+		
+		private final MessageFormat messageFormat;
+		
+		public ResolvedMessage(String message, MessageFormat messageFormat) {
+			this.message = message;
+			this.messageFormat = messageFormat;
+		}
+		
+		public String getMessage() {
+			return message;
+		}
+		
+		/**
+		 * MessageFormat is not thread safe, so every caller gets its own copy of the precompiled
+		 * format instead of synchronizing on a shared instance
+		 * 
+		 * @return a copy of the precompiled message format or null if the message is not a valid
+		 *         pattern
+		 */
+		public MessageFormat getMessageFormat() {
+			return (messageFormat != null) ? (MessageFormat) messageFormat.clone() : null;
+		}
+	}
 }
@@ -29,6 +29,7 @@ import java.util.Map;
 import java.util.SortedMap;
 import java.util.Vector;
 import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.jar.JarFile;
 import java.util.zip.ZipEntry;
 
@@ -71,6 +72,9 @@ public class ModuleFactory {
 	// the name of the file within a module file
 	private static final String MODULE_CHANGELOG_FILENAME = "liquibase.xml";
 	
+	// sqldiff.xml files read ahead of time for the modules being started by startModules()
+	private static Map<Module, SortedMap<String, String>> preparedSqlDiffs = new ConcurrentHashMap<Module, SortedMap<String, String>>();
+	
 	/**
 	 * Add a module (in the form of a jar file) to the list of openmrs modules Returns null if an
 	 * error occurred and/or module was not successfully loaded
@@ -190,8 +194,18 @@ public class ModuleFactory {
 			try {
 				Context.addProxyPrivilege("");
 				AdministrationService as = Context.getAdministrationService();
+				List<Module> modules = getLoadedModulesCoreFirst();
+				
+				// reading the sqldiff.xml files doesn't depend on the start order, so do it in parallel
+				List<Module> modulesToStart = new ArrayList<Module>();
+				for (Module mod : modules) {
+					if (!mod.isStarted())
+						modulesToStart.add(mod);
+				}
+				preparedSqlDiffs.putAll(SqlDiffFileParser.getSqlDiffs(modulesToStart));
+				
 				// try and start the modules that should be started
-				for (Module mod : getLoadedModulesCoreFirst()) {
+				for (Module mod : modules) {
 					if (mod.isStarted())
 						continue; // skip over modules that are already started
 						
@@ -229,6 +243,9 @@ public class ModuleFactory {
 			}
 			finally {
 				Context.removeProxyPrivilege("");
+				
+				// drop the diffs of modules that were not started, the leftover modules read their own
+				preparedSqlDiffs.clear();
 			}
 			
 			// loop over the leftover modules until we can't load
@@ -523,7 +540,9 @@ public class ModuleFactory {
 				// This and the property updates are the only things that can't
 				// be undone at startup, so put these calls after any other
 				// calls that might hinder startup
-				SortedMap<String, String> diffs = SqlDiffFileParser.getSqlDiffs(module);
+				SortedMap<String, String> diffs = preparedSqlDiffs.remove(module);
+				if (diffs == null)
+					diffs = SqlDiffFileParser.getSqlDiffs(module);
 				
 				try {
 					// this method must check and run queries against the database.
@@ -546,6 +565,9 @@ public class ModuleFactory {
 				// run module's optional liquibase.xml immediately after sqldiff.xml
 				runLiquibase(module);
 				
+				// the changesets may have added or changed global properties
+				Context.getAdministrationService().refreshGlobalPropertyCache();
+				
 				// effectively mark this module as started successfully
 				getStartedModulesMap().put(moduleId, module);
 				
@@ -16,10 +16,18 @@ package org.openmrs.module;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.StringReader;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.SortedMap;
 import java.util.TreeMap;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.jar.JarFile;
 import java.util.zip.ZipEntry;
 
@@ -149,6 +157,52 @@ public class SqlDiffFileParser {
 		return map;
 	}
 	
+	/**
+	 * Gets the diff maps of all of the given modules, reading the modules' sqldiff.xml files in
+	 * parallel. Modules whose sqldiff.xml cannot be read are left out of the returned map so that
+	 * the error is reported when {@link #getSqlDiffs(Module)} is called for that module alone.
+	 * 
+	 * @param modules the modules to get the diffs for
+	 * @return map from module to its sorted map<version, sql statements>
+	 */
+	public static Map<Module, SortedMap<String, String>> getSqlDiffs(Collection<Module> modules) {
+		Map<Module, SortedMap<String, String>> diffs = new HashMap<Module, SortedMap<String, String>>();
+		if (modules.isEmpty())
+			return diffs;
+		
+		int threads = Math.min(modules.size(), Runtime.getRuntime().availableProcessors());
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			Map<Module, Future<SortedMap<String, String>>> futures = new HashMap<Module, Future<SortedMap<String, String>>>();
+			for (final Module module : modules) {
+				futures.put(module, executor.submit(new Callable<SortedMap<String, String>>() {
+					
+					public SortedMap<String, String> call() throws Exception {
+						return getSqlDiffs(module);
+					}
+				}));
+			}
+			
+			for (Map.Entry<Module, Future<SortedMap<String, String>>> entry : futures.entrySet()) {
+				try {
+					diffs.put(entry.getKey(), entry.getValue().get());
+				}
+				catch (ExecutionException e) {
+					log.debug("Unable to read sqldiff.xml for module: " + entry.getKey().getModuleId(), e.getCause());
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					break;
+				}
+			}
+		}
+		finally {
+			executor.shutdownNow();
+		}
+		
+		return diffs;
+	}
+	
 	/**
 	 * Generic method to get a module tag
 	 * 
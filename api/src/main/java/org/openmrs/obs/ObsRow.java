@@ -0,0 +1,326 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.obs;
+
+import java.util.Date;
+
+/**
+ * A lightweight, read only view of one row of the obs table. The person, concept, encounter,
+ * location, obs group and coded value are only referenced by their ids, so loading these doesn't
+ * load (or create proxies for) any other objects. Used for browsing through large numbers of obs.
+ *
+ * @see org.openmrs.api.ObsService#getObsRowsPage(java.util.List, java.util.List, java.util.List,
+ *      java.util.List, Date, Date, ObsRow, int, boolean)
+ * @since 1.10
+ */
+public class ObsRow implements java.io.Serializable {
+	
+	public static final long serialVersionUID = 1L;
+	
+	private Integer obsId;
+	
+	private String uuid;
+	
+	private Integer personId;
+	
+	private Integer conceptId;
+	
+	private Integer encounterId;
+	
+	private Integer locationId;
+	
+	private Integer obsGroupId;
+	
+	private Date obsDatetime;
+	
+	private Integer valueCodedId;
+	
+	private Integer valueCodedNameId;
+	
+	private Integer valueDrugId;
+	
+	private Date valueDatetime;
+	
+	private Double valueNumeric;
+	
+	private String valueText;
+	
+	private String valueModifier;
+	
+	private String valueComplex;
+	
+	private String comment;
+	
+	private Boolean voided;
+	
+	/**
+	 * @return the id of the obs
+	 */
+	public Integer getObsId() {
+		return obsId;
+	}
+	
+	/**
+	 * @param obsId the id of the obs
+	 */
+	public void setObsId(Integer obsId) {
+		this.obsId = obsId;
+	}
+	
+	/**
+	 * @return the uuid of the obs
+	 */
+	public String getUuid() {
+		return uuid;
+	}
+	
+	/**
+	 * @param uuid the uuid of the obs
+	 */
+	public void setUuid(String uuid) {
+		this.uuid = uuid;
+	}
+	
+	/**
+	 * @return the id of the person the obs is about
+	 */
+	public Integer getPersonId() {
+		return personId;
+	}
+	
+	/**
+	 * @param personId the id of the person the obs is about
+	 */
+	public void setPersonId(Integer personId) {
+		this.personId = personId;
+	}
+	
+	/**
+	 * @return the id of the question concept
+	 */
+	public Integer getConceptId() {
+		return conceptId;
+	}
+	
+	/**
+	 * @param conceptId the id of the question concept
+	 */
+	public void setConceptId(Integer conceptId) {
+		this.conceptId = conceptId;
+	}
+	
+	/**
+	 * @return the id of the encounter of the obs, if any
+	 */
+	public Integer getEncounterId() {
+		return encounterId;
+	}
+	
+	/**
+	 * @param encounterId the id of the encounter of the obs, if any
+	 */
+	public void setEncounterId(Integer encounterId) {
+		this.encounterId = encounterId;
+	}
+	
+	/**
+	 * @return the id of the location of the obs, if any
+	 */
+	public Integer getLocationId() {
+		return locationId;
+	}
+	
+	/**
+	 * @param locationId the id of the location of the obs, if any
+	 */
+	public void setLocationId(Integer locationId) {
+		this.locationId = locationId;
+	}
+	
+	/**
+	 * @return the id of the obs group the obs belongs to, if any
+	 */
+	public Integer getObsGroupId() {
+		return obsGroupId;
+	}
+	
+	/**
+	 * @param obsGroupId the id of the obs group the obs belongs to, if any
+	 */
+	public void setObsGroupId(Integer obsGroupId) {
+		this.obsGroupId = obsGroupId;
+	}
+	
+	/**
+	 * @return the date and time of the obs
+	 */
+	public Date getObsDatetime() {
+		return obsDatetime;
+	}
+	
+	/**
+	 * @param obsDatetime the date and time of the obs
+	 */
+	public void setObsDatetime(Date obsDatetime) {
+		this.obsDatetime = obsDatetime;
+	}
+	
+	/**
+	 * @return the id of the coded answer concept, if any
+	 */
+	public Integer getValueCodedId() {
+		return valueCodedId;
+	}
+	
+	/**
+	 * @param valueCodedId the id of the coded answer concept, if any
+	 */
+	public void setValueCodedId(Integer valueCodedId) {
+		this.valueCodedId = valueCodedId;
+	}
+	
+	/**
+	 * @return the id of the name of the coded answer concept, if any
+	 */
+	public Integer getValueCodedNameId() {
+		return valueCodedNameId;
+	}
+	
+	/**
+	 * @param valueCodedNameId the id of the name of the coded answer concept, if any
+	 */
+	public void setValueCodedNameId(Integer valueCodedNameId) {
+		this.valueCodedNameId = valueCodedNameId;
+	}
+	
+	/**
+	 * @return the id of the drug answer, if any
+	 */
+	public Integer getValueDrugId() {
+		return valueDrugId;
+	}
+	
+	/**
+	 * @param valueDrugId the id of the drug answer, if any
+	 */
+	public void setValueDrugId(Integer valueDrugId) {
+		this.valueDrugId = valueDrugId;
+	}
+	
+	/**
+	 * @return the date and time value, if any
+	 */
+	public Date getValueDatetime() {
+		return valueDatetime;
+	}
+	
+	/**
+	 * @param valueDatetime the date and time value, if any
+	 */
+	public void setValueDatetime(Date valueDatetime) {
+		this.valueDatetime = valueDatetime;
+	}
+	
+	/**
+	 * @return the numeric value, if any
+	 */
+	public Double getValueNumeric() {
+		return valueNumeric;
+	}
+	
+	/**
+	 * @param valueNumeric the numeric value, if any
+	 */
+	public void setValueNumeric(Double valueNumeric) {
+		this.valueNumeric = valueNumeric;
+	}
+	
+	/**
+	 * @return the text value, if any
+	 */
+	public String getValueText() {
+		return valueText;
+	}
+	
+	/**
+	 * @param valueText the text value, if any
+	 */
+	public void setValueText(String valueText) {
+		this.valueText = valueText;
+	}
+	
+	/**
+	 * @return the value modifier, if any
+	 */
+	public String getValueModifier() {
+		return valueModifier;
+	}
+	
+	/**
+	 * @param valueModifier the value modifier, if any
+	 */
+	public void setValueModifier(String valueModifier) {
+		this.valueModifier = valueModifier;
+	}
+	
+	/**
+	 * @return the complex value, if any
+	 */
+	public String getValueComplex() {
+		return valueComplex;
+	}
+	
+	/**
+	 * @param valueComplex the complex value, if any
+	 */
+	public void setValueComplex(String valueComplex) {
+		this.valueComplex = valueComplex;
+	}
+	
+	/**
+	 * @return the comment on the obs, if any
+	 */
+	public String getComment() {
+		return comment;
+	}
+	
+	/**
+	 * @param comment the comment on the obs, if any
+	 */
+	public void setComment(String comment) {
+		this.comment = comment;
+	}
+	
+	/**
+	 * @return whether the obs is voided
+	 */
+	public Boolean getVoided() {
+		return voided;
+	}
+	
+	/**
+	 * @param voided whether the obs is voided
+	 */
+	public void setVoided(Boolean voided) {
+		this.voided = voided;
+	}
+	
+	/**
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "ObsRow #" + obsId;
+	}
+}
@@ -66,9 +66,9 @@ public class DateOrDatetimeEditor extends PropertyEditorSupport {
 		if (date == null)
 			return "";
 		if ("0000".equals(new SimpleDateFormat("HmsS").format(date))) {
-			return Context.getDateFormat().format(date);
+			return Context.getDateFormatter().format(date);
 		} else {
-			return Context.getDateTimeFormat().format(date);
+			return Context.getDateTimeFormatter().format(date);
 		}
 	}
 	
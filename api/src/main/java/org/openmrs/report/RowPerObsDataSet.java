@@ -13,30 +13,50 @@
  */
 package org.openmrs.report;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.NoSuchElementException;
 
+import org.openmrs.Cohort;
+import org.openmrs.Concept;
+import org.openmrs.ConceptName;
+import org.openmrs.Drug;
 import org.openmrs.Obs;
+import org.openmrs.Person;
+import org.openmrs.api.ConceptService;
+import org.openmrs.api.ObsService;
 import org.openmrs.api.context.Context;
+import org.openmrs.obs.ObsRow;
 
 /**
- * A dataset with one-row-per-obs.
- * 
+ * A dataset with one-row-per-obs. <br/>
+ * <br/>
+ * If the dataset is given the patients to report on instead of the obs themselves, the obs are
+ * read while iterating, a page of {@link ObsRow}s at a time, so that the obs of a large report are
+ * never all held in memory or in the hibernate session at once.
+ *
  * @see RowPerObsDataSetDefinition
+ * @see ObsService#getObsRowsPage(List, List, List, List, java.util.Date, java.util.Date, ObsRow,
+ *      int, boolean)
  * @deprecated see reportingcompatibility module
  */
 @Deprecated
 public class RowPerObsDataSet implements DataSet<Object> {
 	
+	private static final int PAGE_SIZE = 1000;
+	
 	private RowPerObsDataSetDefinition definition;
 	
 	private EvaluationContext evaluationContext;
 	
 	private List<Obs> data;
 	
+	private Cohort patients;
+	
 	public RowPerObsDataSet() {
 	}
 	
@@ -63,21 +83,9 @@ public class RowPerObsDataSet implements DataSet<Object> {
 		 * @see java.util.Iterator#next()
 		 */
 		public Map<String, Object> next() {
-			Locale locale = Context.getLocale();
 			Obs obs = iter.next();
-			Map<String, Object> ret = new HashMap<String, Object>();
-			ret.put("patientId", obs.getPersonId());
-			ret.put("question", obs.getConcept().getName(locale, false));
-			ret.put("questionConceptId", obs.getConcept().getConceptId());
-			ret.put("answer", obs.getValueAsString(locale));
-			if (obs.getValueCoded() != null)
-				ret.put("answerConceptId", obs.getValueCoded());
-			ret.put("obsDatetime", obs.getObsDatetime());
-			if (obs.getEncounter() != null)
-				ret.put("encounterId", obs.getEncounter().getEncounterId());
-			if (obs.getObsGroup() != null)
-				ret.put("obsGroupId", obs.getObsGroup().getObsId());
-			return ret;
+			return toRow(obs, obs.getPersonId(), obs.getEncounter() == null ? null : obs.getEncounter().getEncounterId(),
+			    obs.getObsGroup() == null ? null : obs.getObsGroup().getObsId(), Context.getLocale());
 		}
 		
 		/**
@@ -89,18 +97,162 @@ public class RowPerObsDataSet implements DataSet<Object> {
 		
 	}
 	
+	/**
+	 * Reads the obs of the patients a page of {@link ObsRow}s at a time, in the order of
+	 * {@link ObsService#getObsRowsPage(List, List, List, List, java.util.Date, java.util.Date, ObsRow, int, boolean)}
+	 * . The concepts, drugs and names the rows refer to are looked up once each, and the values are
+	 * formatted through one reused {@link Obs}, so nothing is kept for the rows already returned.
+	 * This implementation is NOT thread-safe.
+	 */
+	class PagingIterator implements Iterator<Map<String, Object>> {
+		
+		private List<Person> whom = new ArrayList<Person>();
+		
+		private List<Concept> questions;
+		
+		private Iterator<ObsRow> page;
+		
+		private ObsRow last;
+		
+		private boolean lastPage = false;
+		
+		private Obs obs = new Obs();
+		
+		private Map<Integer, Concept> concepts = new HashMap<Integer, Concept>();
+		
+		private Map<Integer, Drug> drugs = new HashMap<Integer, Drug>();
+		
+		private Map<Integer, ConceptName> conceptNames = new HashMap<Integer, ConceptName>();
+		
+		public PagingIterator() {
+			if (patients != null)
+				for (Integer memberId : patients.getMemberIds())
+					whom.add(new Person(memberId));
+			questions = new ArrayList<Concept>(definition.getQuestions());
+		}
+		
+		/**
+		 * @see java.util.Iterator#hasNext()
+		 */
+		public boolean hasNext() {
+			if ((page == null || !page.hasNext()) && !lastPage) {
+				List<ObsRow> rows = Context.getObsService().getObsRowsPage(whom, null, questions, null,
+				    definition.getFromDate(), definition.getToDate(), last, PAGE_SIZE, false);
+				lastPage = rows.size() < PAGE_SIZE;
+				page = rows.iterator();
+			}
+			return page.hasNext();
+		}
+		
+		/**
+		 * @see java.util.Iterator#next()
+		 */
+		public Map<String, Object> next() {
+			if (!hasNext())
+				throw new NoSuchElementException();
+			
+			ObsRow row = page.next();
+			last = row;
+			obs.setConcept(getConcept(row.getConceptId()));
+			obs.setValueCoded(getConcept(row.getValueCodedId()));
+			obs.setValueCodedName(getConceptName(row.getValueCodedNameId()));
+			obs.setValueDrug(getDrug(row.getValueDrugId()));
+			obs.setValueDatetime(row.getValueDatetime());
+			obs.setValueNumeric(row.getValueNumeric());
+			obs.setValueText(row.getValueText());
+			obs.setValueModifier(row.getValueModifier());
+			obs.setValueComplex(row.getValueComplex());
+			obs.setObsDatetime(row.getObsDatetime());
+			return toRow(obs, row.getPersonId(), row.getEncounterId(), row.getObsGroupId(), Context.getLocale());
+		}
+		
+		/**
+		 * @see java.util.Iterator#remove()
+		 */
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+		
+		private Concept getConcept(Integer conceptId) {
+			if (conceptId == null)
+				return null;
+			Concept concept = concepts.get(conceptId);
+			if (concept == null) {
+				concept = getConceptService().getConcept(conceptId);
+				concepts.put(conceptId, concept);
+			}
+			return concept;
+		}
+		
+		private Drug getDrug(Integer drugId) {
+			if (drugId == null)
+				return null;
+			Drug drug = drugs.get(drugId);
+			if (drug == null) {
+				drug = getConceptService().getDrug(drugId);
+				drugs.put(drugId, drug);
+			}
+			return drug;
+		}
+		
+		private ConceptName getConceptName(Integer conceptNameId) {
+			if (conceptNameId == null)
+				return null;
+			ConceptName conceptName = conceptNames.get(conceptNameId);
+			if (conceptName == null) {
+				conceptName = getConceptService().getConceptName(conceptNameId);
+				conceptNames.put(conceptNameId, conceptName);
+			}
+			return conceptName;
+		}
+		
+		private ConceptService getConceptService() {
+			return Context.getConceptService();
+		}
+		
+	}
+	
+	/**
+	 * @return the columns of the row for an obs
+	 */
+	private Map<String, Object> toRow(Obs obs, Integer personId, Integer encounterId, Integer obsGroupId, Locale locale) {
+		Map<String, Object> ret = new HashMap<String, Object>();
+		ret.put("patientId", personId);
+		ret.put("question", obs.getConcept().getName(locale, false));
+		ret.put("questionConceptId", obs.getConcept().getConceptId());
+		ret.put("answer", obs.getValueAsString(locale));
+		if (obs.getValueCoded() != null)
+			ret.put("answerConceptId", obs.getValueCoded());
+		ret.put("obsDatetime", obs.getObsDatetime());
+		if (encounterId != null)
+			ret.put("encounterId", encounterId);
+		if (obsGroupId != null)
+			ret.put("obsGroupId", obsGroupId);
+		return ret;
+	}
+	
 	/**
 	 * @see org.openmrs.report.DataSet#iterator()
+	 * @should iterate over the obs of the patients a page at a time
 	 */
 	public Iterator<Map<String, Object>> iterator() {
+		if (data == null && definition != null)
+			return new PagingIterator();
 		Iterator<Map<String, Object>> ret = new HelperIterator(data.iterator());
 		return ret;
 	}
 	
 	/**
+	 * Gets the obs of this dataset. If the dataset was given the patients instead, this loads all
+	 * their obs at once, so use {@link #iterator()} to go through them.
+	 *
 	 * @return the data
 	 */
 	public List<Obs> getData() {
+		if (data == null && definition != null) {
+			data = Context.getObsService().getObservations(patients, new ArrayList<Concept>(definition.getQuestions()),
+			    definition.getFromDate(), definition.getToDate());
+		}
 		return data;
 	}
 	
@@ -111,6 +263,22 @@ public class RowPerObsDataSet implements DataSet<Object> {
 		this.data = data;
 	}
 	
+	/**
+	 * @return the patients whose obs are in this dataset
+	 * @since 1.10
+	 */
+	public Cohort getPatients() {
+		return patients;
+	}
+	
+	/**
+	 * @param patients the patients whose obs are in this dataset, or null for all patients
+	 * @since 1.10
+	 */
+	public void setPatients(Cohort patients) {
+		this.patients = patients;
+	}
+	
 	/**
 	 * @return the definition
 	 */
@@ -89,6 +89,7 @@ public abstract class DelimitedTextReportRenderer implements ReportRenderer {
 	public void render(ReportData results, String argument, Writer writer) throws IOException, RenderingException {
 		DataSet dataset = results.getDataSets().values().iterator().next();
 		List<String> colKeys = dataset.getDefinition().getColumnKeys();
+		boolean cohortDataSet = dataset instanceof CohortDataSet;
 		
 		// header row
 		writer.write(getBeforeRowDelimiter());
@@ -99,7 +100,7 @@ public abstract class DelimitedTextReportRenderer implements ReportRenderer {
 		}
 		writer.write(getAfterRowDelimiter());
 		
-		// data rows
+		// data rows, written as they are read so that a dataset can read them lazily
 		for (Iterator<Map<String, Object>> i = dataset.iterator(); i.hasNext();) {
 			writer.write(getBeforeRowDelimiter());
 			Map<String, Object> map = i.next();
@@ -107,7 +108,7 @@ public abstract class DelimitedTextReportRenderer implements ReportRenderer {
 				Object colValue = map.get(colKey);
 				writer.write(getBeforeColumnDelimiter());
 				if (colValue != null)
-					if (dataset instanceof CohortDataSet) {
+					if (cohortDataSet) {
 						writer.write(escape(Integer.toString(((Cohort) colValue).size())));
 					} else {
 						writer.write(escape(colValue.toString()));
@@ -0,0 +1,386 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.reporting;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A table that keeps the values of each column together in an array rather than each row in a
+ * map, which takes far less memory for large tables and lets rows be grouped and aggregated by
+ * their index without being copied into sub-tables. Integer and double columns are kept in
+ * primitive arrays, and all other values, such as strings and dates, are stored once per distinct
+ * value and referred to by a code. <br/>
+ * <br/>
+ * The {@link TableRowClassifier}s and {@link TableRowAggregator}s written for {@link DataTable}
+ * work on this table too: classifiers are given a view of each row, and aggregators that do not
+ * implement {@link IndexedTableRowAggregator} are given a {@link DataTable} of the rows in a group.
+ *
+ * @see TableGroupAndAggregate#run(ColumnarDataTable)
+ * @since 1.10
+ * @deprecated see reportingcompatibility module
+ */
+@Deprecated
+public class ColumnarDataTable {
+	
+	private static final int INITIAL_CAPACITY = 16;
+	
+	private Map<String, Column> columns = new LinkedHashMap<String, Column>();
+	
+	private int rowCount = 0;
+	
+	public ColumnarDataTable() {
+	}
+	
+	/**
+	 * Copies the rows of a table
+	 *
+	 * @param table the table to copy
+	 */
+	public ColumnarDataTable(DataTable table) {
+		for (TableRow row : table.getRows())
+			addRow(row);
+	}
+	
+	public int getRowCount() {
+		return rowCount;
+	}
+	
+	public List<String> getColumnNames() {
+		return new ArrayList<String>(columns.keySet());
+	}
+	
+	/**
+	 * Adds a row to the end of the table. Columns that are not in the row are null for it.
+	 *
+	 * @param row the values of the row by column name
+	 * @should keep integer columns as integers
+	 * @should keep values of other types as they are
+	 */
+	public void addRow(TableRow row) {
+		for (Map.Entry<String, Object> e : row.entrySet()) {
+			Column column = columns.get(e.getKey());
+			Object value = e.getValue();
+			if (column == null) {
+				column = Column.forValue(value);
+				columns.put(e.getKey(), column);
+			} else if (value != null && !column.accepts(value)) {
+				// the first value of another type turns the column into a dictionary column
+				column = column.isEmpty() ? Column.forValue(value) : new DictionaryColumn(column, rowCount);
+				columns.put(e.getKey(), column);
+			}
+			if (value != null)
+				column.set(rowCount, value);
+		}
+		rowCount++;
+	}
+	
+	/**
+	 * @param row the index of the row
+	 * @param columnName the name of the column
+	 * @return the value of the column in the row, or null if it has none
+	 */
+	public Object get(int row, String columnName) {
+		Column column = columns.get(columnName);
+		return column == null ? null : column.get(row);
+	}
+	
+	/**
+	 * Groups the rows of this table by the classification of each row
+	 *
+	 * @param classifier the classifier giving the group of a row
+	 * @return the indexes of the rows in each group, by classification
+	 * @should group rows by classification
+	 * @should group rows by the values of a dictionary column
+	 * @should classify each row with a subclass of the simple column classifier
+	 */
+	public Map<String, int[]> group(TableRowClassifier classifier) {
+		Map<String, IndexList> groups = new LinkedHashMap<String, IndexList>();
+		
+		// only the simple column classifier itself is known to classify by the value of the column,
+		// a subclass may classify the rows differently
+		Column column = null;
+		if (classifier.getClass() == SimpleColumnClassifier.class)
+			column = columns.get(((SimpleColumnClassifier) classifier).getColumnName());
+		
+		if (column instanceof DictionaryColumn) {
+			// classify each distinct value once and then group the rows by their codes
+			DictionaryColumn dictionaryColumn = (DictionaryColumn) column;
+			String valueIfNull = ((SimpleColumnClassifier) classifier).getValueIfNull();
+			IndexList[] groupsByCode = new IndexList[dictionaryColumn.dictionary.size()];
+			for (int code = 0; code < groupsByCode.length; code++)
+				groupsByCode[code] = getGroup(groups, dictionaryColumn.dictionary.get(code).toString());
+			
+			for (int row = 0; row < rowCount; row++) {
+				if (dictionaryColumn.present.get(row))
+					groupsByCode[dictionaryColumn.codes[row]].add(row);
+				else
+					getGroup(groups, valueIfNull).add(row);
+			}
+		} else {
+			RowView view = new RowView();
+			for (int row = 0; row < rowCount; row++) {
+				view.row = row;
+				getGroup(groups, classifier.classify(view)).add(row);
+			}
+		}
+		
+		Map<String, int[]> ret = new LinkedHashMap<String, int[]>();
+		for (Map.Entry<String, IndexList> e : groups.entrySet()) {
+			if (e.getValue().size > 0)
+				ret.put(e.getKey(), e.getValue().toArray());
+		}
+		return ret;
+	}
+	
+	/**
+	 * Aggregates some of the rows of this table
+	 *
+	 * @param aggregator the aggregator to use
+	 * @param rows the indexes of the rows
+	 * @return the aggregated value
+	 * @should aggregate the rows with an aggregator written for data tables
+	 */
+	public Object aggregate(TableRowAggregator aggregator, int[] rows) {
+		if (aggregator instanceof IndexedTableRowAggregator)
+			return ((IndexedTableRowAggregator) aggregator).aggregate(this, rows);
+		return aggregator.aggregate(toDataTable(rows));
+	}
+	
+	/**
+	 * @return a {@link DataTable} with all rows of this table
+	 */
+	public DataTable toDataTable() {
+		int[] rows = new int[rowCount];
+		for (int row = 0; row < rowCount; row++)
+			rows[row] = row;
+		return toDataTable(rows);
+	}
+	
+	/**
+	 * @param rows the indexes of the rows
+	 * @return a {@link DataTable} with the given rows of this table
+	 */
+	public DataTable toDataTable(int[] rows) {
+		DataTable table = new DataTable();
+		table.addColumns(columns.keySet());
+		for (int row : rows) {
+			TableRow tableRow = new TableRow();
+			for (Map.Entry<String, Column> e : columns.entrySet())
+				tableRow.put(e.getKey(), e.getValue().get(row));
+			table.addRow(tableRow);
+		}
+		return table;
+	}
+	
+	private IndexList getGroup(Map<String, IndexList> groups, String classification) {
+		IndexList group = groups.get(classification);
+		if (group == null) {
+			group = new IndexList();
+			groups.put(classification, group);
+		}
+		return group;
+	}
+	
+	/**
+	 * A row of this table seen as a {@link TableRow}, so that classifiers can be used without
+	 * copying the row into a map. Only the lookup methods are supported.
+	 */
+	private class RowView extends TableRow {
+		
+		private static final long serialVersionUID = 1L;
+		
+		private int row;
+		
+		@Override
+		public Object get(Object columnName) {
+			Column column = columns.get(columnName);
+			return column == null ? null : column.get(row);
+		}
+		
+		@Override
+		public boolean containsKey(Object columnName) {
+			return columns.containsKey(columnName);
+		}
+		
+		@Override
+		public Set<String> getColumnNames() {
+			return columns.keySet();
+		}
+	}
+	
+	/**
+	 * A growing list of row indexes
+	 */
+	private static class IndexList {
+		
+		private int[] indexes = new int[INITIAL_CAPACITY];
+		
+		private int size = 0;
+		
+		public void add(int index) {
+			if (size == indexes.length)
+				indexes = Arrays.copyOf(indexes, size * 2);
+			indexes[size++] = index;
+		}
+		
+		public int[] toArray() {
+			return Arrays.copyOf(indexes, size);
+		}
+	}
+	
+	/**
+	 * The values of a column, with a bit set for each row that has a value
+	 */
+	private static abstract class Column {
+		
+		protected BitSet present = new BitSet();
+		
+		/**
+		 * @return a column that can hold the given value, which may be null
+		 */
+		public static Column forValue(Object value) {
+			if (value == null || value instanceof Integer)
+				return new IntColumn();
+			else if (value instanceof Double)
+				return new DoubleColumn();
+			else
+				return new DictionaryColumn();
+		}
+		
+		public boolean isEmpty() {
+			return present.isEmpty();
+		}
+		
+		public Object get(int row) {
+			return present.get(row) ? getValue(row) : null;
+		}
+		
+		public void set(int row, Object value) {
+			setValue(row, value);
+			present.set(row);
+		}
+		
+		public abstract boolean accepts(Object value);
+		
+		protected abstract Object getValue(int row);
+		
+		protected abstract void setValue(int row, Object value);
+		
+		protected int grow(int capacity, int row) {
+			while (capacity <= row)
+				capacity *= 2;
+			return capacity;
+		}
+	}
+	
+	private static class IntColumn extends Column {
+		
+		private int[] values = new int[INITIAL_CAPACITY];
+		
+		@Override
+		public boolean accepts(Object value) {
+			return value instanceof Integer;
+		}
+		
+		@Override
+		protected Object getValue(int row) {
+			return values[row];
+		}
+		
+		@Override
+		protected void setValue(int row, Object value) {
+			if (row >= values.length)
+				values = Arrays.copyOf(values, grow(values.length, row));
+			values[row] = (Integer) value;
+		}
+	}
+	
+	private static class DoubleColumn extends Column {
+		
+		private double[] values = new double[INITIAL_CAPACITY];
+		
+		@Override
+		public boolean accepts(Object value) {
+			return value instanceof Double;
+		}
+		
+		@Override
+		protected Object getValue(int row) {
+			return values[row];
+		}
+		
+		@Override
+		protected void setValue(int row, Object value) {
+			if (row >= values.length)
+				values = Arrays.copyOf(values, grow(values.length, row));
+			values[row] = (Double) value;
+		}
+	}
+	
+	/**
+	 * A column holding each distinct value once, with the code of its value for each row
+	 */
+	private static class DictionaryColumn extends Column {
+		
+		private int[] codes = new int[INITIAL_CAPACITY];
+		
+		private List<Object> dictionary = new ArrayList<Object>();
+		
+		private Map<Object, Integer> codesByValue = new HashMap<Object, Integer>();
+		
+		public DictionaryColumn() {
+		}
+		
+		/**
+		 * Copies the first rows of another column
+		 */
+		public DictionaryColumn(Column column, int rowCount) {
+			for (int row = 0; row < rowCount; row++) {
+				Object value = column.get(row);
+				if (value != null)
+					set(row, value);
+			}
+		}
+		
+		@Override
+		public boolean accepts(Object value) {
+			return true;
+		}
+		
+		@Override
+		protected Object getValue(int row) {
+			return dictionary.get(codes[row]);
+		}
+		
+		@Override
+		protected void setValue(int row, Object value) {
+			Integer code = codesByValue.get(value);
+			if (code == null) {
+				code = dictionary.size();
+				dictionary.add(value);
+				codesByValue.put(value, code);
+			}
+			if (row >= codes.length)
+				codes = Arrays.copyOf(codes, grow(codes.length, row));
+			codes[row] = code;
+		}
+	}
+}
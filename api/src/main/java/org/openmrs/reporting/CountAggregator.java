@@ -17,7 +17,7 @@ package org.openmrs.reporting;
  * @deprecated see reportingcompatibility module
  */
 @Deprecated
-public class CountAggregator implements TableRowAggregator {
+public class CountAggregator implements IndexedTableRowAggregator {
 	
 	public CountAggregator() {
 	}
@@ -26,4 +26,8 @@ public class CountAggregator implements TableRowAggregator {
 		return table.getRowCount();
 	}
 	
+	public Object aggregate(ColumnarDataTable table, int[] rows) {
+		return rows.length;
+	}
+	
 }
@@ -0,0 +1,33 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.reporting;
+
+/**
+ * An aggregator that works on the rows of a {@link ColumnarDataTable} where they are, instead of
+ * on a {@link DataTable} copy of them
+ *
+ * @since 1.10
+ * @deprecated see reportingcompatibility module
+ */
+@Deprecated
+public interface IndexedTableRowAggregator extends TableRowAggregator {
+	
+	/**
+	 * @param table the table holding the rows
+	 * @param rows the indexes of the rows to aggregate
+	 * @return the aggregated value
+	 */
+	Object aggregate(ColumnarDataTable table, int[] rows);
+	
+}
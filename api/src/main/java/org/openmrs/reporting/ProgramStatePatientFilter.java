@@ -128,9 +128,9 @@ public class ProgramStatePatientFilter extends CachingPatientFilter {
 		}
 		// TODO untilDaysAgo untilMonthsAgo
 		if (sinceDate != null)
-			ret.append("on or after " + Context.getDateFormat().format(sinceDate) + " ");
+			ret.append("on or after " + Context.getDateFormatter().format(sinceDate) + " ");
 		if (untilDate != null)
-			ret.append("on or before " + Context.getDateFormat().format(untilDate) + " ");
+			ret.append("on or before " + Context.getDateFormatter().format(untilDate) + " ");
 		
 		return ret.toString();
 	}
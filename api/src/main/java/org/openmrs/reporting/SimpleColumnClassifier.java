@@ -33,4 +33,12 @@ public class SimpleColumnClassifier implements TableRowClassifier {
 		return temp == null ? valueIfNull : temp.toString();
 	}
 	
+	public String getColumnName() {
+		return columnName;
+	}
+	
+	public String getValueIfNull() {
+		return valueIfNull;
+	}
+	
 }
@@ -56,4 +56,27 @@ public class TableGroupAndAggregate {
 		return ret;
 	}
 	
+	/**
+	 * Groups and aggregates the rows of a columnar table by their indexes, without copying them
+	 * into a table for each group
+	 * 
+	 * @param input the table to group
+	 * @return a table with the label and aggregated value of each group
+	 * @since 1.10
+	 * @should give the same results as for a data table
+	 */
+	public DataTable run(ColumnarDataTable input) {
+		DataTable ret = new DataTable();
+		ret.addColumn(labelColumnName);
+		ret.addColumn(valueColumnName);
+		for (Map.Entry<String, int[]> e : input.group(classifier).entrySet()) {
+			Object val = input.aggregate(aggregator, e.getValue());
+			TableRow tr = new TableRow();
+			tr.put(labelColumnName, e.getKey());
+			tr.put(valueColumnName, val);
+			ret.addRow(tr);
+		}
+		return ret;
+	}
+	
 }
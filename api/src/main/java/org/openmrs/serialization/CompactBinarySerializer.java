@@ -0,0 +1,872 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.serialization;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.xerces.impl.dv.util.Base64;
+import org.hibernate.proxy.HibernateProxy;
+import org.openmrs.util.OpenmrsClassLoader;
+
+/**
+ * This serializer writes objects in a compact, versioned binary format instead of XML. The binary
+ * data is deflated and Base64 encoded so that it can be stored in the same text columns as xml
+ * serialized objects (e.g. serialized_object.serialized_data). <br/>
+ * <br/>
+ * Every serialized string starts with {@link #FORMAT_PREFIX} and the format version. When
+ * deserializing, strings without that prefix are handed to a {@link SimpleXStreamSerializer} so
+ * that existing xml rows keep loading. Objects that cannot be written in the binary format (e.g.
+ * classes without a no-arg constructor) are serialized as xml for the same reason. <br/>
+ * <br/>
+ * Field accessors and class lookups are computed once per class and cached for the lifetime of
+ * the serializer. Class descriptors are written into the stream by field name, so fields that are
+ * added to or removed from a class after an object was serialized are tolerated.
+ *
+ * @since 1.10
+ */
+public class CompactBinarySerializer implements OpenmrsSerializer {
+	
+	private static final Log log = LogFactory.getLog(CompactBinarySerializer.class);
+	
+	/**
+	 * Prefix that marks a string written by this serializer
+	 */
+	public static final String FORMAT_PREFIX = "#omrsbin:";
+	
+	/**
+	 * The version of the binary format written by this serializer
+	 */
+	public static final int FORMAT_VERSION = 1;
+	
+	// value tags
+	private static final byte TAG_NULL = 0;
+	
+	private static final byte TAG_REFERENCE = 1;
+	
+	private static final byte TAG_OBJECT = 2;
+	
+	private static final byte TAG_STRING = 3;
+	
+	private static final byte TAG_STRING_REFERENCE = 4;
+	
+	private static final byte TAG_INTEGER = 5;
+	
+	private static final byte TAG_LONG = 6;
+	
+	private static final byte TAG_DOUBLE = 7;
+	
+	private static final byte TAG_FLOAT = 8;
+	
+	private static final byte TAG_BOOLEAN = 9;
+	
+	private static final byte TAG_SHORT = 10;
+	
+	private static final byte TAG_BYTE = 11;
+	
+	private static final byte TAG_CHARACTER = 12;
+	
+	private static final byte TAG_DATE = 13;
+	
+	private static final byte TAG_ENUM = 14;
+	
+	private static final byte TAG_COLLECTION = 15;
+	
+	private static final byte TAG_MAP = 16;
+	
+	private static final byte TAG_ARRAY = 17;
+	
+	private static final byte TAG_BYTE_ARRAY = 18;
+	
+	private static final byte TAG_CLASS = 19;
+	
+	private static final byte TAG_BIG_DECIMAL = 20;
+	
+	private static final byte TAG_BIG_INTEGER = 21;
+	
+	private static final byte TAG_LOCALE = 22;
+	
+	// date subtypes
+	private static final byte DATE_UTIL = 0;
+	
+	private static final byte DATE_SQL = 1;
+	
+	private static final byte DATE_SQL_TIME = 2;
+	
+	private static final byte DATE_SQL_TIMESTAMP = 3;
+	
+	private static final Map<String, Class<?>> PRIMITIVE_TYPES = new HashMap<String, Class<?>>();
+	
+	static {
+		for (Class<?> c : new Class<?>[] { boolean.class, byte.class, char.class, short.class, int.class, long.class,
+		        float.class, double.class, void.class }) {
+			PRIMITIVE_TYPES.put(c.getName(), c);
+		}
+	}
+	
+	private final SimpleXStreamSerializer xmlSerializer;
+	
+	private final ConcurrentMap<Class<?>, ClassDescriptor> descriptors = new ConcurrentHashMap<Class<?>, ClassDescriptor>();
+	
+	private final ConcurrentMap<String, Class<?>> classesByName = new ConcurrentHashMap<String, Class<?>>();
+	
+	private final ConcurrentMap<Class<?>, Class<?>> containerTypes = new ConcurrentHashMap<Class<?>, Class<?>>();
+	
+	/**
+	 * Default Constructor
+	 *
+	 * @throws SerializationException
+	 */
+	public CompactBinarySerializer() throws SerializationException {
+		this(new SimpleXStreamSerializer());
+	}
+	
+	/**
+	 * Constructor that takes the serializer used to read and write xml
+	 *
+	 * @param xmlSerializer the serializer used for xml content
+	 */
+	public CompactBinarySerializer(SimpleXStreamSerializer xmlSerializer) {
+		this.xmlSerializer = xmlSerializer;
+	}
+	
+	/**
+	 * @see OpenmrsSerializer#serialize(java.lang.Object)
+	 * @should serialize an object into a string starting with the format prefix
+	 * @should fall back to xml for classes that cannot be instantiated
+	 */
+	public String serialize(Object o) throws SerializationException {
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(bytes));
+			new BinaryWriter(out).writeValue(o);
+			out.close();
+			return FORMAT_PREFIX + FORMAT_VERSION + ":" + Base64.encode(bytes.toByteArray());
+		}
+		catch (UnsupportedTypeException e) {
+			if (log.isDebugEnabled())
+				log.debug("Falling back to xml serialization: " + e.getMessage());
+			return xmlSerializer.serialize(o);
+		}
+		catch (IOException e) {
+			throw new SerializationException("Unable to serialize object: " + o, e);
+		}
+	}
+	
+	/**
+	 * @see OpenmrsSerializer#deserialize(String, Class)
+	 * @should deserialize a string written by this serializer
+	 * @should deserialize an xml string written by the xstream serializer
+	 * @should preserve shared and circular references
+	 * @should restore hash based collections in a circular reference
+	 * @should fail for an unknown format version
+	 */
+	@SuppressWarnings("unchecked")
+	public <T extends Object> T deserialize(String serializedObject, Class<? extends T> clazz) throws SerializationException {
+		if (!isBinaryFormat(serializedObject))
+			return xmlSerializer.deserialize(serializedObject, clazz);
+		
+		int versionEnd = serializedObject.indexOf(':', FORMAT_PREFIX.length());
+		int version;
+		try {
+			version = Integer.parseInt(serializedObject.substring(FORMAT_PREFIX.length(), versionEnd));
+		}
+		catch (RuntimeException e) {
+			throw new SerializationException("Invalid binary serialization header for class: " + clazz.getName(), e);
+		}
+		if (version > FORMAT_VERSION)
+			throw new SerializationException("Unsupported binary serialization format version: " + version);
+		
+		byte[] data = Base64.decode(serializedObject.substring(versionEnd + 1));
+		if (data == null)
+			throw new SerializationException("Invalid binary serialized data for class: " + clazz.getName());
+		
+		try {
+			DataInputStream in = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(data)));
+			return (T) new BinaryReader(in).readValue();
+		}
+		catch (IOException e) {
+			throw new SerializationException("Unable to deserialize class: " + clazz.getName(), e);
+		}
+	}
+	
+	/**
+	 * Determines whether the given serialized string was written in the binary format of this
+	 * serializer
+	 *
+	 * @param serializedObject the serialized string
+	 * @return true if the string is in binary format, false if it should be treated as xml
+	 */
+	public static boolean isBinaryFormat(String serializedObject) {
+		return serializedObject != null && serializedObject.startsWith(FORMAT_PREFIX);
+	}
+	
+	/**
+	 * @return the serializer used for xml content
+	 */
+	public SimpleXStreamSerializer getXmlSerializer() {
+		return xmlSerializer;
+	}
+	
+	/**
+	 * Gets the cached descriptor for the given class, creating it the first time the class is seen
+	 */
+	private ClassDescriptor getDescriptor(Class<?> type) {
+		ClassDescriptor descriptor = descriptors.get(type);
+		if (descriptor == null) {
+			descriptor = new ClassDescriptor(type);
+			ClassDescriptor existing = descriptors.putIfAbsent(type, descriptor);
+			if (existing != null)
+				descriptor = existing;
+		}
+		return descriptor;
+	}
+	
+	/**
+	 * Loads a class by name using the openmrs class loader so that module classes are found
+	 */
+	private Class<?> loadClass(String name) throws IOException {
+		Class<?> type = classesByName.get(name);
+		if (type == null) {
+			type = PRIMITIVE_TYPES.get(name);
+			if (type == null) {
+				try {
+					type = Class.forName(name, false, OpenmrsClassLoader.getInstance());
+				}
+				catch (ClassNotFoundException e) {
+					throw new IOException("Unable to load class: " + name);
+				}
+			}
+			classesByName.put(name, type);
+		}
+		return type;
+	}
+	
+	/**
+	 * Gets the class that is written for the given collection or map class. Plain java.util classes
+	 * are kept as is, anything else (hibernate collections, unmodifiable wrappers etc) is replaced by
+	 * the closest instantiable java.util class.
+	 */
+	private Class<?> getContainerType(Class<?> type) {
+		Class<?> containerType = containerTypes.get(type);
+		if (containerType == null) {
+			if (type.getName().startsWith("java.util.") && Modifier.isPublic(type.getModifiers())
+			        && !Modifier.isAbstract(type.getModifiers()) && hasPublicNoArgConstructor(type))
+				containerType = type;
+			else if (SortedSet.class.isAssignableFrom(type))
+				containerType = TreeSet.class;
+			else if (Set.class.isAssignableFrom(type))
+				containerType = LinkedHashSet.class;
+			else if (Collection.class.isAssignableFrom(type))
+				containerType = ArrayList.class;
+			else if (SortedMap.class.isAssignableFrom(type))
+				containerType = TreeMap.class;
+			else
+				containerType = LinkedHashMap.class;
+			containerTypes.put(type, containerType);
+		}
+		return containerType;
+	}
+	
+	private static boolean hasPublicNoArgConstructor(Class<?> type) {
+		try {
+			type.getConstructor();
+			return true;
+		}
+		catch (NoSuchMethodException e) {
+			return false;
+		}
+	}
+	
+	private static boolean isSorted(Class<?> containerType) {
+		return SortedSet.class.isAssignableFrom(containerType) || SortedMap.class.isAssignableFrom(containerType);
+	}
+	
+	/**
+	 * Creates a new, empty container of the given collection or map class
+	 */
+	private static Object newContainer(Class<?> containerType, Comparator<?> comparator) throws IOException {
+		try {
+			if (comparator != null)
+				return containerType.getConstructor(Comparator.class).newInstance(comparator);
+			return containerType.newInstance();
+		}
+		catch (Exception e) {
+			throw new IOException("Unable to create an instance of: " + containerType.getName());
+		}
+	}
+	
+	private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+		while ((value & ~0x7F) != 0) {
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+	
+	private static int readVarInt(DataInputStream in) throws IOException {
+		int value = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = in.readByte();
+			value |= (b & 0x7F) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+		return value;
+	}
+	
+	/**
+	 * Precomputed field accessors and constructor for a class written with {@link #TAG_OBJECT}
+	 */
+	private static class ClassDescriptor {
+		
+		private final Class<?> type;
+		
+		private final Constructor<?> constructor;
+		
+		private final Field[] fields;
+		
+		private final String[] fieldNames;
+		
+		private final Map<String, Field> fieldsByName = new HashMap<String, Field>();
+		
+		public ClassDescriptor(Class<?> type) {
+			this.type = type;
+			
+			Constructor<?> noArg = null;
+			try {
+				noArg = type.getDeclaredConstructor();
+				noArg.setAccessible(true);
+			}
+			catch (NoSuchMethodException e) {
+				// checked when the class is written
+			}
+			catch (SecurityException e) {
+				// checked when the class is written
+			}
+			this.constructor = noArg;
+			
+			// superclass fields come first so that e.g. the uuid of a BaseOpenmrsObject is set before
+			// the object can be added to a hash based collection further down a circular reference
+			List<Field> fieldList = new ArrayList<Field>();
+			List<String> nameList = new ArrayList<String>();
+			for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+				int index = 0;
+				for (Field field : c.getDeclaredFields()) {
+					int modifiers = field.getModifiers();
+					if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers))
+						continue;
+					
+					field.setAccessible(true);
+					// qualify fields that are hidden by a field of the same name in a subclass
+					String name = field.getName();
+					if (fieldsByName.containsKey(name))
+						name = c.getName() + "." + name;
+					fieldList.add(index, field);
+					nameList.add(index++, name);
+					fieldsByName.put(name, field);
+				}
+			}
+			this.fields = fieldList.toArray(new Field[fieldList.size()]);
+			this.fieldNames = nameList.toArray(new String[nameList.size()]);
+		}
+		
+		public Object newInstance() throws IOException {
+			if (constructor == null)
+				throw new UnsupportedTypeException(type);
+			try {
+				return constructor.newInstance();
+			}
+			catch (Exception e) {
+				throw new IOException("Unable to create an instance of: " + type.getName());
+			}
+		}
+	}
+	
+	/**
+	 * Thrown while writing when an object cannot be represented in the binary format
+	 */
+	private static class UnsupportedTypeException extends IOException {
+		
+		private static final long serialVersionUID = 1L;
+		
+		public UnsupportedTypeException(Class<?> type) {
+			super("No no-arg constructor found for class: " + type.getName());
+		}
+	}
+	
+	/**
+	 * Writes a single object graph. Shared objects and repeated strings are written once and
+	 * referenced by handle afterwards.
+	 */
+	private class BinaryWriter {
+		
+		private final DataOutputStream out;
+		
+		private final Map<Object, Integer> handles = new IdentityHashMap<Object, Integer>();
+		
+		private final Map<String, Integer> strings = new HashMap<String, Integer>();
+		
+		private final Map<Class<?>, Integer> classes = new HashMap<Class<?>, Integer>();
+		
+		private final Map<Class<?>, Integer> classDescriptors = new HashMap<Class<?>, Integer>();
+		
+		public BinaryWriter(DataOutputStream out) {
+			this.out = out;
+		}
+		
+		public void writeValue(Object o) throws IOException {
+			if (o == null) {
+				out.writeByte(TAG_NULL);
+				return;
+			}
+			if (o instanceof HibernateProxy)
+				o = ((HibernateProxy) o).getHibernateLazyInitializer().getImplementation();
+			
+			Class<?> type = o.getClass();
+			if (type == String.class) {
+				writeString((String) o);
+			} else if (type == Integer.class) {
+				out.writeByte(TAG_INTEGER);
+				out.writeInt((Integer) o);
+			} else if (type == Long.class) {
+				out.writeByte(TAG_LONG);
+				out.writeLong((Long) o);
+			} else if (type == Boolean.class) {
+				out.writeByte(TAG_BOOLEAN);
+				out.writeBoolean((Boolean) o);
+			} else if (type == Double.class) {
+				out.writeByte(TAG_DOUBLE);
+				out.writeDouble((Double) o);
+			} else if (type == Float.class) {
+				out.writeByte(TAG_FLOAT);
+				out.writeFloat((Float) o);
+			} else if (type == Short.class) {
+				out.writeByte(TAG_SHORT);
+				out.writeShort((Short) o);
+			} else if (type == Byte.class) {
+				out.writeByte(TAG_BYTE);
+				out.writeByte((Byte) o);
+			} else if (type == Character.class) {
+				out.writeByte(TAG_CHARACTER);
+				out.writeChar((Character) o);
+			} else if (o instanceof Date) {
+				writeDate((Date) o);
+			} else if (type == BigDecimal.class) {
+				out.writeByte(TAG_BIG_DECIMAL);
+				writeString(o.toString());
+			} else if (type == BigInteger.class) {
+				out.writeByte(TAG_BIG_INTEGER);
+				writeString(o.toString());
+			} else if (type == Locale.class) {
+				out.writeByte(TAG_LOCALE);
+				Locale locale = (Locale) o;
+				writeString(locale.getLanguage());
+				writeString(locale.getCountry());
+				writeString(locale.getVariant());
+			} else if (o instanceof Class) {
+				out.writeByte(TAG_CLASS);
+				writeString(((Class<?>) o).getName());
+			} else if (o instanceof Enum) {
+				out.writeByte(TAG_ENUM);
+				writeClass(((Enum<?>) o).getDeclaringClass());
+				writeString(((Enum<?>) o).name());
+			} else {
+				Integer handle = handles.get(o);
+				if (handle != null) {
+					out.writeByte(TAG_REFERENCE);
+					writeVarInt(out, handle);
+				} else if (o instanceof Collection) {
+					writeCollection((Collection<?>) o);
+				} else if (o instanceof Map) {
+					writeMap((Map<?, ?>) o);
+				} else if (type == byte[].class) {
+					register(o);
+					out.writeByte(TAG_BYTE_ARRAY);
+					byte[] bytes = (byte[]) o;
+					writeVarInt(out, bytes.length);
+					out.write(bytes);
+				} else if (type.isArray()) {
+					writeArray(o);
+				} else {
+					writeObject(o);
+				}
+			}
+		}
+		
+		private void register(Object o) {
+			handles.put(o, handles.size());
+		}
+		
+		private void writeString(String s) throws IOException {
+			Integer index = strings.get(s);
+			if (index != null) {
+				out.writeByte(TAG_STRING_REFERENCE);
+				writeVarInt(out, index);
+			} else {
+				strings.put(s, strings.size());
+				out.writeByte(TAG_STRING);
+				byte[] bytes = s.getBytes("UTF-8");
+				writeVarInt(out, bytes.length);
+				out.write(bytes);
+			}
+		}
+		
+		private void writeDate(Date date) throws IOException {
+			out.writeByte(TAG_DATE);
+			if (date instanceof java.sql.Timestamp) {
+				out.writeByte(DATE_SQL_TIMESTAMP);
+				out.writeLong(date.getTime());
+				out.writeInt(((java.sql.Timestamp) date).getNanos());
+			} else {
+				if (date instanceof java.sql.Date)
+					out.writeByte(DATE_SQL);
+				else if (date instanceof java.sql.Time)
+					out.writeByte(DATE_SQL_TIME);
+				else
+					out.writeByte(DATE_UTIL);
+				out.writeLong(date.getTime());
+			}
+		}
+		
+		private void writeClass(Class<?> type) throws IOException {
+			Integer index = classes.get(type);
+			if (index != null) {
+				writeVarInt(out, index + 1);
+			} else {
+				classes.put(type, classes.size());
+				writeVarInt(out, 0);
+				writeString(type.getName());
+			}
+		}
+		
+		private void writeCollection(Collection<?> collection) throws IOException {
+			Class<?> containerType = getContainerType(collection.getClass());
+			out.writeByte(TAG_COLLECTION);
+			writeClass(containerType);
+			if (isSorted(containerType))
+				writeValue(((SortedSet<?>) collection).comparator());
+			
+			// the handle is registered after the comparator since the reader needs it to create the collection
+			register(collection);
+			writeVarInt(out, collection.size());
+			for (Object element : collection)
+				writeValue(element);
+		}
+		
+		private void writeMap(Map<?, ?> map) throws IOException {
+			Class<?> containerType = getContainerType(map.getClass());
+			out.writeByte(TAG_MAP);
+			writeClass(containerType);
+			if (isSorted(containerType))
+				writeValue(((SortedMap<?, ?>) map).comparator());
+			
+			register(map);
+			writeVarInt(out, map.size());
+			for (Map.Entry<?, ?> entry : map.entrySet()) {
+				writeValue(entry.getKey());
+				writeValue(entry.getValue());
+			}
+		}
+		
+		private void writeArray(Object array) throws IOException {
+			register(array);
+			out.writeByte(TAG_ARRAY);
+			writeClass(array.getClass());
+			int length = Array.getLength(array);
+			writeVarInt(out, length);
+			for (int i = 0; i < length; i++)
+				writeValue(Array.get(array, i));
+		}
+		
+		private void writeObject(Object o) throws IOException {
+			ClassDescriptor descriptor = getDescriptor(o.getClass());
+			if (descriptor.constructor == null)
+				throw new UnsupportedTypeException(descriptor.type);
+			
+			register(o);
+			out.writeByte(TAG_OBJECT);
+			writeClassDescriptor(descriptor);
+			try {
+				for (Field field : descriptor.fields)
+					writeValue(field.get(o));
+			}
+			catch (IllegalAccessException e) {
+				throw new IOException("Unable to read fields of: " + descriptor.type.getName());
+			}
+		}
+		
+		private void writeClassDescriptor(ClassDescriptor descriptor) throws IOException {
+			Integer index = classDescriptors.get(descriptor.type);
+			if (index != null) {
+				writeVarInt(out, index + 1);
+			} else {
+				classDescriptors.put(descriptor.type, classDescriptors.size());
+				writeVarInt(out, 0);
+				writeString(descriptor.type.getName());
+				writeVarInt(out, descriptor.fieldNames.length);
+				for (String fieldName : descriptor.fieldNames)
+					writeString(fieldName);
+			}
+		}
+	}
+	
+	/**
+	 * Reads a single object graph written by {@link BinaryWriter}
+	 */
+	private class BinaryReader {
+		
+		private final DataInputStream in;
+		
+		private final List<Object> handles = new ArrayList<Object>();
+		
+		private final List<String> strings = new ArrayList<String>();
+		
+		private final List<Class<?>> classes = new ArrayList<Class<?>>();
+		
+		private final List<StreamClassDescriptor> classDescriptors = new ArrayList<StreamClassDescriptor>();
+		
+		public BinaryReader(DataInputStream in) {
+			this.in = in;
+		}
+		
+		public Object readValue() throws IOException {
+			byte tag = in.readByte();
+			switch (tag) {
+				case TAG_NULL:
+					return null;
+				case TAG_REFERENCE:
+					return handles.get(readVarInt(in));
+				case TAG_STRING:
+				case TAG_STRING_REFERENCE:
+					return readString(tag);
+				case TAG_INTEGER:
+					return in.readInt();
+				case TAG_LONG:
+					return in.readLong();
+				case TAG_BOOLEAN:
+					return in.readBoolean();
+				case TAG_DOUBLE:
+					return in.readDouble();
+				case TAG_FLOAT:
+					return in.readFloat();
+				case TAG_SHORT:
+					return in.readShort();
+				case TAG_BYTE:
+					return in.readByte();
+				case TAG_CHARACTER:
+					return in.readChar();
+				case TAG_DATE:
+					return readDate();
+				case TAG_BIG_DECIMAL:
+					return new BigDecimal(readString());
+				case TAG_BIG_INTEGER:
+					return new BigInteger(readString());
+				case TAG_LOCALE:
+					return new Locale(readString(), readString(), readString());
+				case TAG_CLASS:
+					return loadClass(readString());
+				case TAG_ENUM:
+					return readEnum();
+				case TAG_COLLECTION:
+					return readCollection();
+				case TAG_MAP:
+					return readMap();
+				case TAG_BYTE_ARRAY:
+					return readByteArray();
+				case TAG_ARRAY:
+					return readArray();
+				case TAG_OBJECT:
+					return readObject();
+				default:
+					throw new IOException("Unknown value tag: " + tag);
+			}
+		}
+		
+		private String readString() throws IOException {
+			return readString(in.readByte());
+		}
+		
+		private String readString(byte tag) throws IOException {
+			if (tag == TAG_STRING_REFERENCE)
+				return strings.get(readVarInt(in));
+			if (tag != TAG_STRING)
+				throw new IOException("Expected a string but found tag: " + tag);
+			
+			byte[] bytes = new byte[readVarInt(in)];
+			in.readFully(bytes);
+			String s = new String(bytes, "UTF-8");
+			strings.add(s);
+			return s;
+		}
+		
+		private Date readDate() throws IOException {
+			byte type = in.readByte();
+			long time = in.readLong();
+			switch (type) {
+				case DATE_SQL_TIMESTAMP:
+					java.sql.Timestamp timestamp = new java.sql.Timestamp(time);
+					timestamp.setNanos(in.readInt());
+					return timestamp;
+				case DATE_SQL:
+					return new java.sql.Date(time);
+				case DATE_SQL_TIME:
+					return new java.sql.Time(time);
+				default:
+					return new Date(time);
+			}
+		}
+		
+		private Class<?> readClass() throws IOException {
+			int index = readVarInt(in);
+			if (index > 0)
+				return classes.get(index - 1);
+			Class<?> type = loadClass(readString());
+			classes.add(type);
+			return type;
+		}
+		
+		@SuppressWarnings( { "unchecked", "rawtypes" })
+		private Object readEnum() throws IOException {
+			Class type = readClass();
+			return Enum.valueOf(type, readString());
+		}
+		
+		@SuppressWarnings("unchecked")
+		private Object readCollection() throws IOException {
+			Class<?> containerType = readClass();
+			Comparator<?> comparator = isSorted(containerType) ? (Comparator<?>) readValue() : null;
+			Collection<Object> collection = (Collection<Object>) newContainer(containerType, comparator);
+			handles.add(collection);
+			int size = readVarInt(in);
+			for (int i = 0; i < size; i++)
+				collection.add(readValue());
+			return collection;
+		}
+		
+		@SuppressWarnings("unchecked")
+		private Object readMap() throws IOException {
+			Class<?> containerType = readClass();
+			Comparator<?> comparator = isSorted(containerType) ? (Comparator<?>) readValue() : null;
+			Map<Object, Object> map = (Map<Object, Object>) newContainer(containerType, comparator);
+			handles.add(map);
+			int size = readVarInt(in);
+			for (int i = 0; i < size; i++) {
+				Object key = readValue();
+				map.put(key, readValue());
+			}
+			return map;
+		}
+		
+		private Object readByteArray() throws IOException {
+			byte[] bytes = new byte[readVarInt(in)];
+			handles.add(bytes);
+			in.readFully(bytes);
+			return bytes;
+		}
+		
+		private Object readArray() throws IOException {
+			int handle = handles.size();
+			handles.add(null);
+			Class<?> arrayType = readClass();
+			Object array = Array.newInstance(arrayType.getComponentType(), readVarInt(in));
+			handles.set(handle, array);
+			int length = Array.getLength(array);
+			for (int i = 0; i < length; i++)
+				Array.set(array, i, readValue());
+			return array;
+		}
+		
+		private Object readObject() throws IOException {
+			int handle = handles.size();
+			handles.add(null);
+			StreamClassDescriptor streamDescriptor = readClassDescriptor();
+			Object o = streamDescriptor.descriptor.newInstance();
+			handles.set(handle, o);
+			try {
+				for (Field field : streamDescriptor.fields) {
+					Object value = readValue();
+					// fields that no longer exist in the class are read and dropped
+					if (field != null)
+						field.set(o, value);
+				}
+			}
+			catch (IllegalAccessException e) {
+				throw new IOException("Unable to set fields of: " + streamDescriptor.descriptor.type.getName());
+			}
+			return o;
+		}
+		
+		private StreamClassDescriptor readClassDescriptor() throws IOException {
+			int index = readVarInt(in);
+			if (index > 0)
+				return classDescriptors.get(index - 1);
+			
+			ClassDescriptor descriptor = getDescriptor(loadClass(readString()));
+			Field[] fields = new Field[readVarInt(in)];
+			for (int i = 0; i < fields.length; i++)
+				fields[i] = descriptor.fieldsByName.get(readString());
+			StreamClassDescriptor streamDescriptor = new StreamClassDescriptor(descriptor, fields);
+			classDescriptors.add(streamDescriptor);
+			return streamDescriptor;
+		}
+	}
+	
+	/**
+	 * Maps the fields of a class descriptor found in the stream to the fields of the local class
+	 */
+	private static class StreamClassDescriptor {
+		
+		private final ClassDescriptor descriptor;
+		
+		private final Field[] fields;
+		
+		public StreamClassDescriptor(ClassDescriptor descriptor, Field[] fields) {
+			this.descriptor = descriptor;
+			this.fields = fields;
+		}
+	}
+}
@@ -0,0 +1,238 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Remembers which changesets of a liquibase changelog had been applied the last time the changelog
+ * was found to be fully up to date. Each entry is keyed by the changelog name, the liquibase
+ * contexts and a hash of the changelog contents, and holds the id, author and checksum of every
+ * row in the liquibasechangelog table for that changelog. <br/>
+ * <br/>
+ * As long as the changelog contents are unchanged and all of the remembered rows are still in the
+ * database with the same checksums, there can be nothing left to run, so the changelog xml does
+ * not need to be parsed and compared by Liquibase again.
+ *
+ * @see DatabaseUpdater#updatesRequired()
+ */
+public class ChangeLogSnapshot {
+	
+	private static Log log = LogFactory.getLog(ChangeLogSnapshot.class);
+	
+	/**
+	 * The name of the file in the application data directory holding the snapshot
+	 */
+	public static final String SNAPSHOT_FILE = "liquibase-snapshot.properties";
+	
+	private static final String FIELD_SEPARATOR = "\t";
+	
+	private static final String ROW_SEPARATOR = "\n";
+	
+	private File file;
+	
+	private Properties entries;
+	
+	/**
+	 * @param file the properties file to read the snapshot from and store it to
+	 */
+	public ChangeLogSnapshot(File file) {
+		this.file = file;
+	}
+	
+	/**
+	 * Computes a hash of the contents of the given changelog. The file is looked for with the given
+	 * class loader first and then on the file system, the same way Liquibase looks for it.
+	 *
+	 * @param changeLogFile the name of the changelog file
+	 * @param cl the class loader to find the changelog with
+	 * @return the hex encoded hash or null if the file cannot be found or should always be parsed
+	 * @should return the same hash for the same contents
+	 * @should return null for a changelog with changesets that always run
+	 * @should return null for a missing changelog
+	 */
+	public static String hashChangeLog(String changeLogFile, ClassLoader cl) {
+		InputStream in = null;
+		try {
+			in = cl.getResourceAsStream(changeLogFile);
+			if (in == null) {
+				File changeLog = new File(changeLogFile);
+				if (!changeLog.isFile())
+					return null;
+				in = new FileInputStream(changeLog);
+			}
+			
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			OpenmrsUtil.copyFile(in, out);
+			byte[] contents = out.toByteArray();
+			// changesets that run every time can never be skipped
+			if (new String(contents, "UTF-8").contains("runAlways=\"true\""))
+				return null;
+			
+			return toHex(MessageDigest.getInstance("SHA-1").digest(contents));
+		}
+		catch (IOException e) {
+			log.warn("Unable to read changelog: " + changeLogFile, e);
+			return null;
+		}
+		catch (NoSuchAlgorithmException e) {
+			log.warn("Unable to hash changelog: " + changeLogFile, e);
+			return null;
+		}
+		finally {
+			OpenmrsUtil.closeStream(in);
+		}
+	}
+	
+	/**
+	 * Checks whether the given changelog was fully applied when it last had the given hash and all
+	 * of the changesets applied at that time are still in the database with the same checksums.
+	 *
+	 * @param changeLogFile the name of the changelog file
+	 * @param contexts the liquibase contexts the changelog is run with
+	 * @param hash the current hash of the changelog contents
+	 * @param connection the connection to read the liquibasechangelog table with
+	 * @return true if none of the changesets in the changelog need to be run
+	 * @should return true if all remembered changesets are still applied
+	 * @should return false if the hash of the changelog changed
+	 * @should return false if a remembered changeset is no longer applied
+	 * @should return false if the checksum of a remembered changeset changed
+	 */
+	public synchronized boolean isUpToDate(String changeLogFile, String contexts, String hash, Connection connection) {
+		if (hash == null)
+			return false;
+		
+		String key = getKey(changeLogFile, contexts, hash);
+		String rows = getEntries().getProperty(key);
+		if (rows == null)
+			return false;
+		
+		try {
+			Map<String, String> applied = getAppliedChangeSets(changeLogFile, connection);
+			for (String row : rows.split(ROW_SEPARATOR)) {
+				if (row.length() == 0)
+					continue;
+				int checksumIndex = row.lastIndexOf(FIELD_SEPARATOR);
+				String changeSet = row.substring(0, checksumIndex);
+				String checksum = row.substring(checksumIndex + 1);
+				if (!applied.containsKey(changeSet) || !checksum.equals(applied.get(changeSet))) {
+					log.debug("Changeset " + changeSet + " in " + changeLogFile + " is no longer applied as remembered");
+					// the database was changed under us, so this entry can never match again
+					getEntries().remove(key);
+					store();
+					return false;
+				}
+			}
+			return true;
+		}
+		catch (SQLException e) {
+			// the liquibasechangelog table might not even exist yet
+			log.debug("Unable to compare the changelog snapshot with the database", e);
+			return false;
+		}
+	}
+	
+	/**
+	 * Remembers the changesets currently applied for the given changelog. This should only be
+	 * called once there are no changesets in the changelog left to run.
+	 *
+	 * @param changeLogFile the name of the changelog file
+	 * @param contexts the liquibase contexts the changelog was run with
+	 * @param hash the hash of the changelog contents
+	 * @param connection the connection to read the liquibasechangelog table with
+	 */
+	public synchronized void record(String changeLogFile, String contexts, String hash, Connection connection) {
+		if (hash == null)
+			return;
+		
+		try {
+			StringBuilder rows = new StringBuilder();
+			for (Map.Entry<String, String> entry : getAppliedChangeSets(changeLogFile, connection).entrySet())
+				rows.append(entry.getKey()).append(FIELD_SEPARATOR).append(entry.getValue()).append(ROW_SEPARATOR);
+			
+			getEntries().setProperty(getKey(changeLogFile, contexts, hash), rows.toString());
+			store();
+		}
+		catch (SQLException e) {
+			log.warn("Unable to record the changelog snapshot for: " + changeLogFile, e);
+		}
+	}
+	
+	/**
+	 * Reads the id, author and checksum of all rows in the liquibasechangelog table for the given
+	 * changelog
+	 *
+	 * @return map from "id\tauthor" to checksum
+	 */
+	private Map<String, String> getAppliedChangeSets(String changeLogFile, Connection connection) throws SQLException {
+		Map<String, String> applied = new HashMap<String, String>();
+		PreparedStatement statement = null;
+		try {
+			statement = connection.prepareStatement("select id, author, md5sum from liquibasechangelog where filename = ?");
+			statement.setString(1, changeLogFile);
+			ResultSet results = statement.executeQuery();
+			while (results.next())
+				applied.put(results.getString(1) + FIELD_SEPARATOR + results.getString(2), String.valueOf(results
+				        .getString(3)));
+			results.close();
+		}
+		finally {
+			if (statement != null)
+				statement.close();
+		}
+		return applied;
+	}
+	
+	private String getKey(String changeLogFile, String contexts, String hash) {
+		return changeLogFile + "@" + (contexts == null ? "" : contexts) + "@" + hash;
+	}
+	
+	private Properties getEntries() {
+		if (entries == null) {
+			entries = new Properties();
+			if (file.isFile())
+				OpenmrsUtil.loadProperties(entries, file);
+		}
+		return entries;
+	}
+	
+	private void store() {
+		OpenmrsUtil.storeProperties(entries, file, "Liquibase changesets applied per changelog hash");
+	}
+	
+	private static String toHex(byte[] bytes) {
+		StringBuilder hex = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes) {
+			hex.append(Character.forDigit((b >> 4) & 0xf, 16));
+			hex.append(Character.forDigit(b & 0xf, 16));
+		}
+		return hex.toString();
+	}
+}
@@ -0,0 +1,241 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.util;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The ids of the concepts mapped to each reference term code of the concept sources, held in
+ * memory so that a concept can be looked up by mapping without joining the concept map, reference
+ * term and concept source tables. Mappings of every map type are included. Source names, hl7 codes
+ * and term codes are matched case insensitively, like the database does. <br/>
+ * <br/>
+ * The names of all sources are known up front, but the codes of a source are only loaded the first
+ * time a code of that source is looked up. Changes to the mappings of a concept are applied to the
+ * sources that have been loaded.
+ *
+ * @see org.openmrs.api.ConceptService#getConceptsByMapping(String, String, boolean)
+ * @see org.openmrs.api.ConceptService#getConceptsByMappingCodes(Collection, String)
+ * @since 1.10
+ */
+public class ConceptMappingIndex {
+	
+	private final Map<Integer, Set<String>> sourceNames = new HashMap<Integer, Set<String>>();
+	
+	private final Map<String, Set<Integer>> sourceIds = new HashMap<String, Set<Integer>>();
+	
+	private final Map<Integer, Map<String, Set<Integer>>> conceptIdsByCode = new HashMap<Integer, Map<String, Set<Integer>>>();
+	
+	private final Map<Integer, Map<Integer, Set<String>>> codesByConceptId = new HashMap<Integer, Map<Integer, Set<String>>>();
+	
+	/**
+	 * Adds a concept source to the index, or updates its name and hl7 code
+	 *
+	 * @param sourceId the id of the source
+	 * @param name the name of the source
+	 * @param hl7Code the hl7 code of the source, if any
+	 * @should find the source by name and hl7 code
+	 * @should forget the old name of the source
+	 */
+	public synchronized void putSource(Integer sourceId, String name, String hl7Code) {
+		removeSourceNames(sourceId);
+		
+		Set<String> names = new HashSet<String>();
+		if (name != null)
+			names.add(getKey(name));
+		if (hl7Code != null)
+			names.add(getKey(hl7Code));
+		sourceNames.put(sourceId, names);
+		
+		for (String key : names) {
+			Set<Integer> ids = sourceIds.get(key);
+			if (ids == null) {
+				ids = new HashSet<Integer>();
+				sourceIds.put(key, ids);
+			}
+			ids.add(sourceId);
+		}
+	}
+	
+	/**
+	 * Removes a concept source and all of its codes from the index
+	 *
+	 * @param sourceId the id of the source
+	 */
+	public synchronized void removeSource(Integer sourceId) {
+		removeSourceNames(sourceId);
+		sourceNames.remove(sourceId);
+		unloadSource(sourceId);
+	}
+	
+	/**
+	 * @param nameOrHl7Code the name or hl7 code of a concept source, in any case
+	 * @return the ids of the sources with that name or hl7 code
+	 */
+	public synchronized Set<Integer> getSourceIds(String nameOrHl7Code) {
+		if (nameOrHl7Code == null)
+			return Collections.emptySet();
+		Set<Integer> ids = sourceIds.get(getKey(nameOrHl7Code));
+		if (ids == null)
+			return Collections.emptySet();
+		return new HashSet<Integer>(ids);
+	}
+	
+	/**
+	 * @param sourceId the id of a concept source
+	 * @return true if the codes of the source have been loaded
+	 */
+	public synchronized boolean isSourceLoaded(Integer sourceId) {
+		return conceptIdsByCode.containsKey(sourceId);
+	}
+	
+	/**
+	 * Sets the codes of a concept source, after they have been loaded from the database
+	 *
+	 * @param sourceId the id of the source
+	 * @param conceptIds the ids of the concepts mapped to each code of the source
+	 */
+	public synchronized void loadSource(Integer sourceId, Map<String, Set<Integer>> conceptIds) {
+		unloadSource(sourceId);
+		conceptIdsByCode.put(sourceId, new HashMap<String, Set<Integer>>());
+		for (Map.Entry<String, Set<Integer>> entry : conceptIds.entrySet()) {
+			for (Integer conceptId : entry.getValue())
+				addMapping(sourceId, entry.getKey(), conceptId);
+		}
+	}
+	
+	/**
+	 * Forgets the codes of a concept source, so that they are loaded again the next time they are
+	 * needed
+	 *
+	 * @param sourceId the id of the source
+	 */
+	public synchronized void unloadSource(Integer sourceId) {
+		conceptIdsByCode.remove(sourceId);
+		for (Map<Integer, Set<String>> codes : codesByConceptId.values())
+			codes.remove(sourceId);
+	}
+	
+	/**
+	 * Forgets the codes of all concept sources
+	 */
+	public synchronized void unloadSources() {
+		conceptIdsByCode.clear();
+		codesByConceptId.clear();
+	}
+	
+	/**
+	 * @param sourceId the id of a loaded concept source
+	 * @param code a code of the source, in any case
+	 * @return the ids of the concepts mapped to the code
+	 * @should find the concepts by code in a case insensitive way
+	 */
+	public synchronized Set<Integer> getConceptIds(Integer sourceId, String code) {
+		Map<String, Set<Integer>> codes = conceptIdsByCode.get(sourceId);
+		if (codes == null || code == null)
+			return Collections.emptySet();
+		Set<Integer> conceptIds = codes.get(getKey(code));
+		if (conceptIds == null)
+			return Collections.emptySet();
+		return new HashSet<Integer>(conceptIds);
+	}
+	
+	/**
+	 * Replaces the mappings of a concept, after it has been saved. Only the codes of the sources that
+	 * have been loaded are kept.
+	 *
+	 * @param conceptId the id of the concept
+	 * @param codes the codes the concept is mapped to in each source
+	 * @should replace the mappings of the concept
+	 * @should ignore the codes of sources that have not been loaded
+	 */
+	public synchronized void putConcept(Integer conceptId, Map<Integer, Set<String>> codes) {
+		removeConcept(conceptId);
+		for (Map.Entry<Integer, Set<String>> entry : codes.entrySet()) {
+			if (conceptIdsByCode.containsKey(entry.getKey())) {
+				for (String code : entry.getValue())
+					addMapping(entry.getKey(), code, conceptId);
+			}
+		}
+	}
+	
+	/**
+	 * Removes all mappings of a concept, after it has been deleted
+	 *
+	 * @param conceptId the id of the concept
+	 */
+	public synchronized void removeConcept(Integer conceptId) {
+		Map<Integer, Set<String>> codes = codesByConceptId.remove(conceptId);
+		if (codes == null)
+			return;
+		
+		for (Map.Entry<Integer, Set<String>> entry : codes.entrySet()) {
+			Map<String, Set<Integer>> conceptIds = conceptIdsByCode.get(entry.getKey());
+			for (String key : entry.getValue()) {
+				Set<Integer> ids = conceptIds.get(key);
+				ids.remove(conceptId);
+				if (ids.isEmpty())
+					conceptIds.remove(key);
+			}
+		}
+	}
+	
+	private void addMapping(Integer sourceId, String code, Integer conceptId) {
+		if (code == null || conceptId == null)
+			return;
+		String key = getKey(code);
+		
+		Map<String, Set<Integer>> conceptIds = conceptIdsByCode.get(sourceId);
+		Set<Integer> ids = conceptIds.get(key);
+		if (ids == null) {
+			ids = new HashSet<Integer>();
+			conceptIds.put(key, ids);
+		}
+		ids.add(conceptId);
+		
+		Map<Integer, Set<String>> codes = codesByConceptId.get(conceptId);
+		if (codes == null) {
+			codes = new HashMap<Integer, Set<String>>();
+			codesByConceptId.put(conceptId, codes);
+		}
+		Set<String> keys = codes.get(sourceId);
+		if (keys == null) {
+			keys = new HashSet<String>();
+			codes.put(sourceId, keys);
+		}
+		keys.add(key);
+	}
+	
+	private void removeSourceNames(Integer sourceId) {
+		Set<String> names = sourceNames.get(sourceId);
+		if (names == null)
+			return;
+		
+		for (String key : names) {
+			Set<Integer> ids = sourceIds.get(key);
+			ids.remove(sourceId);
+			if (ids.isEmpty())
+				sourceIds.remove(key);
+		}
+	}
+	
+	private String getKey(String nameOrCode) {
+		return nameOrCode.toLowerCase();
+	}
+}
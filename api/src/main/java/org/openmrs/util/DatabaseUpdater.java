@@ -82,6 +82,12 @@ public class DatabaseUpdater {
 	 */
 	private static List<String> updateWarnings = null;
 	
+	/**
+	 * The changesets applied per changelog hash, used to skip parsing changelogs that are known to
+	 * be fully applied
+	 */
+	private static ChangeLogSnapshot changeLogSnapshot = null;
+	
 	/**
 	 * Convenience method to run the changesets using Liquibase to bring the database up to a
 	 * version compatible with the code
@@ -203,6 +209,12 @@ public class DatabaseUpdater {
 		if (cl == null)
 			cl = OpenmrsClassLoader.getInstance();
 		
+		String hash = ChangeLogSnapshot.hashChangeLog(changeLogFile, cl);
+		if (isChangeLogUpToDate(changeLogFile, contexts, hash)) {
+			log.debug("Skipping changelog that is known to be fully applied: " + changeLogFile);
+			return updateWarnings;
+		}
+		
 		log.debug("Setting up liquibase object to run changelog: " + changeLogFile);
 		Liquibase liquibase = getLiquibase(changeLogFile, cl);
 		int numChangeSetsToRun = liquibase.listUnrunChangeSets(contexts).size();
@@ -224,6 +236,12 @@ public class DatabaseUpdater {
 			        new ContextChangeSetFilter(contexts), new DbmsChangeSetFilter(database));
 			database.checkDatabaseChangeLogTable(true, changeLog, new String[] { contexts });
 			logIterator.run(new OpenmrsUpdateVisitor(database, callback, numChangeSetsToRun), database);
+			
+			// remember the changelog for the next startup only if everything has been run, since
+			// changesets that are allowed to fail or continue on failure may still be left unrun
+			if (liquibase.listUnrunChangeSets(contexts).isEmpty())
+				getChangeLogSnapshot().record(changeLogFile, contexts, hash,
+				    ((JdbcConnection) database.getConnection()).getUnderlyingConnection());
 		}
 		catch (LiquibaseException e) {
 			throw e;
@@ -247,7 +265,9 @@ public class DatabaseUpdater {
 	}
 	
 	/**
-	 * Ask Liquibase if it needs to do any updates. Only looks at the {@link #CHANGE_LOG_FILE}
+	 * Ask Liquibase if it needs to do any updates. Only looks at the {@link #CHANGE_LOG_FILE}. The
+	 * changelog is only parsed if its contents or the applied changesets differ from the
+	 * {@link ChangeLogSnapshot} stored after it was last found to be fully applied.
 	 * 
 	 * @return true/false whether database updates are required
 	 * @should always have a valid update to latest file
@@ -610,6 +630,11 @@ public class DatabaseUpdater {
 			
 			List<OpenMRSChangeSet> results = new ArrayList<OpenMRSChangeSet>();
 			for (String changelogFile : changeLogFilenames) {
+				// only parse the changelog if it changed or the database changed since it was fully applied
+				String hash = ChangeLogSnapshot.hashChangeLog(changelogFile, OpenmrsClassLoader.getInstance());
+				if (isChangeLogUpToDate(changelogFile, CONTEXT, hash))
+					continue;
+				
 				Liquibase liquibase = getLiquibase(changelogFile, null);
 				database = liquibase.getDatabase();
 				List<ChangeSet> changeSets = liquibase.listUnrunChangeSets(CONTEXT);
@@ -618,6 +643,10 @@ public class DatabaseUpdater {
 					OpenMRSChangeSet omrschangeset = new OpenMRSChangeSet(changeSet, database);
 					results.add(omrschangeset);
 				}
+				
+				if (changeSets.isEmpty())
+					getChangeLogSnapshot().record(changelogFile, CONTEXT, hash,
+					    ((JdbcConnection) database.getConnection()).getUnderlyingConnection());
 			}
 			
 			return results;
@@ -637,6 +666,49 @@ public class DatabaseUpdater {
 		}
 	}
 	
+	/**
+	 * Checks the changelog snapshot to see if the given changelog is known to be fully applied
+	 * without parsing it
+	 * 
+	 * @param changeLogFile the changelog to check
+	 * @param contexts the liquibase contexts the changelog is run with
+	 * @param hash the current hash of the changelog contents (or null if it cannot be skipped)
+	 * @return true if there is nothing to run in the changelog
+	 */
+	private static boolean isChangeLogUpToDate(String changeLogFile, String contexts, String hash) {
+		if (hash == null)
+			return false;
+		
+		Connection connection = null;
+		try {
+			connection = getConnection();
+			return getChangeLogSnapshot().isUpToDate(changeLogFile, contexts, hash, connection);
+		}
+		catch (Exception e) {
+			log.debug("Unable to check the changelog snapshot for: " + changeLogFile, e);
+			return false;
+		}
+		finally {
+			try {
+				if (connection != null)
+					connection.close();
+			}
+			catch (SQLException e) {
+				//pass
+			}
+		}
+	}
+	
+	/**
+	 * @return the snapshot of fully applied changelogs stored in the application data directory
+	 */
+	private static synchronized ChangeLogSnapshot getChangeLogSnapshot() {
+		if (changeLogSnapshot == null)
+			changeLogSnapshot = new ChangeLogSnapshot(new File(OpenmrsUtil.getApplicationDataDirectory(),
+			        ChangeLogSnapshot.SNAPSHOT_FILE));
+		return changeLogSnapshot;
+	}
+	
 	/**
 	 * @return the authenticatedUserId
 	 */
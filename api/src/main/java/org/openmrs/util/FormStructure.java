@@ -0,0 +1,186 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.openmrs.Concept;
+import org.openmrs.Form;
+import org.openmrs.FormField;
+
+/**
+ * An immutable snapshot of the structure of a form, i.e. which form fields are on which branch of
+ * the form and which form fields ask for which concept. Only the ids of the form fields are held,
+ * so a snapshot can be shared between sessions and threads. It belongs to one version of the form,
+ * identified by the form's id and date changed.
+ *
+ * @see org.openmrs.api.FormService#getFormStructure(Form)
+ * @see FormUtil#getFormStructure(Form, FormStructure)
+ * @since 1.10
+ */
+public class FormStructure {
+	
+	/**
+	 * The id used as the parent of the top level form fields
+	 */
+	public static final Integer BASE = Integer.valueOf(0);
+	
+	private final Integer formId;
+	
+	private final Long dateChanged;
+	
+	private final int formFieldCount;
+	
+	private final Map<Integer, List<Integer>> childrenByParent;
+	
+	private final Map<Integer, List<Integer>> formFieldsByConcept;
+	
+	/**
+	 * Creates the structure of the given form from its form fields
+	 *
+	 * @param form the form, with all of its form fields saved
+	 * @should order the form fields of each branch like the form structure
+	 * @should index the form fields by concept in the order of their ids
+	 */
+	public FormStructure(Form form) {
+		formId = form.getFormId();
+		dateChanged = form.getDateChanged() == null ? null : form.getDateChanged().getTime();
+		
+		Set<FormField> formFields = form.getFormFields();
+		if (formFields == null)
+			formFields = Collections.emptySet();
+		formFieldCount = formFields.size();
+		
+		Map<Integer, List<Integer>> children = new HashMap<Integer, List<Integer>>();
+		for (Map.Entry<Integer, TreeSet<FormField>> branch : buildFormStructure(formFields).entrySet())
+			children.put(branch.getKey(), Collections.unmodifiableList(getIds(branch.getValue())));
+		childrenByParent = Collections.unmodifiableMap(children);
+		
+		Map<Integer, TreeSet<Integer>> sortedByConcept = new HashMap<Integer, TreeSet<Integer>>();
+		for (FormField formField : formFields) {
+			if (formField.getField() == null || formField.getField().getConcept() == null)
+				continue;
+			Integer conceptId = formField.getField().getConcept().getConceptId();
+			TreeSet<Integer> ids = sortedByConcept.get(conceptId);
+			if (ids == null) {
+				ids = new TreeSet<Integer>();
+				sortedByConcept.put(conceptId, ids);
+			}
+			ids.add(formField.getFormFieldId());
+		}
+		Map<Integer, List<Integer>> byConcept = new HashMap<Integer, List<Integer>>();
+		for (Map.Entry<Integer, TreeSet<Integer>> entry : sortedByConcept.entrySet())
+			byConcept.put(entry.getKey(), Collections.unmodifiableList(new ArrayList<Integer>(entry.getValue())));
+		formFieldsByConcept = Collections.unmodifiableMap(byConcept);
+	}
+	
+	/**
+	 * @return the id of the form
+	 */
+	public Integer getFormId() {
+		return formId;
+	}
+	
+	/**
+	 * @param form the form to compare with
+	 * @return true if this is the structure of the given version of the form, with the same number
+	 *         of form fields
+	 * @should return true for the form it was created from
+	 * @should return false if the form has been changed since
+	 * @should return false if the form fields of the form have changed
+	 */
+	public boolean isStructureOf(Form form) {
+		if (form == null || !OpenmrsUtil.nullSafeEquals(formId, form.getFormId()))
+			return false;
+		Long otherDateChanged = form.getDateChanged() == null ? null : form.getDateChanged().getTime();
+		if (!OpenmrsUtil.nullSafeEquals(dateChanged, otherDateChanged))
+			return false;
+		
+		// form fields can be added or removed without changing the form itself, saving or purging
+		// them through the form service forgets the structure, the count catches unsaved changes
+		Set<FormField> formFields = form.getFormFields();
+		return formFieldCount == (formFields == null ? 0 : formFields.size());
+	}
+	
+	/**
+	 * @return the ids of the parents of all branches, including {@link #BASE}
+	 */
+	public Set<Integer> getParentFormFieldIds() {
+		return childrenByParent.keySet();
+	}
+	
+	/**
+	 * @param parentFormFieldId the id of the parent form field, or {@link #BASE} for the top level
+	 * @return the ids of the form fields on the branch, in the order of the form
+	 */
+	public List<Integer> getChildFormFieldIds(Integer parentFormFieldId) {
+		List<Integer> ids = childrenByParent.get(parentFormFieldId);
+		if (ids == null)
+			return Collections.emptyList();
+		return ids;
+	}
+	
+	/**
+	 * @param concept the question concept
+	 * @return the ids of the form fields asking for the concept, lowest first
+	 */
+	public List<Integer> getFormFieldIds(Concept concept) {
+		List<Integer> ids = null;
+		if (concept != null)
+			ids = formFieldsByConcept.get(concept.getConceptId());
+		if (ids == null)
+			return Collections.emptyList();
+		return ids;
+	}
+	
+	/**
+	 * Sorts the given form fields into branches by their parents
+	 *
+	 * @see FormUtil#getFormStructure(Form)
+	 */
+	static TreeMap<Integer, TreeSet<FormField>> buildFormStructure(Collection<FormField> formFields) {
+		TreeMap<Integer, TreeSet<FormField>> formStructure = new TreeMap<Integer, TreeSet<FormField>>();
+		formStructure.put(BASE, new TreeSet<FormField>());
+		
+		for (FormField formField : formFields) {
+			FormField parent = formField.getParent();
+			if (parent == null) {
+				// top-level branches should be added to the base
+				formStructure.get(BASE).add(formField);
+			} else {
+				// child branches/leaves are added to their parent's branch
+				if (!formStructure.containsKey(parent.getFormFieldId()))
+					formStructure.put(parent.getFormFieldId(), new TreeSet<FormField>());
+				formStructure.get(parent.getFormFieldId()).add(formField);
+			}
+		}
+		
+		return formStructure;
+	}
+	
+	private static List<Integer> getIds(Collection<FormField> formFields) {
+		List<Integer> ids = new ArrayList<Integer>(formFields.size());
+		for (FormField formField : formFields)
+			ids.add(formField.getFormFieldId());
+		return ids;
+	}
+}
@@ -15,9 +15,14 @@ package org.openmrs.util;
 
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.Hashtable;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
@@ -153,26 +158,83 @@ public class FormUtil {
 	 *         zero and all other leaves are stored under their parent <code>FormField</code>'s id.
 	 */
 	public static TreeMap<Integer, TreeSet<FormField>> getFormStructure(Form form) {
+		return getFormStructure(form, null);
+	}
+	
+	/**
+	 * Returns the same sorted map as {@link #getFormStructure(Form)}, but takes the order of the
+	 * form fields from the given structure of the form if it is still current, so the form fields
+	 * (and their fields) don't have to be compared with each other again
+	 * 
+	 * @param form form for which structure is requested
+	 * @param structure the known structure of the form, e.g. from
+	 *            {@link org.openmrs.api.FormService#getFormStructure(Form)}, or null
+	 * @return sorted map of <code>FormField</code>s, where the top-level fields are under the key
+	 *         zero and all other leaves are stored under their parent <code>FormField</code>'s id.
+	 * @since 1.10
+	 */
+	public static TreeMap<Integer, TreeSet<FormField>> getFormStructure(Form form, FormStructure structure) {
+		Set<FormField> formFields = form.getFormFields();
+		if (formFields == null)
+			formFields = Collections.emptySet();
+		if (structure == null || !structure.isStructureOf(form))
+			return FormStructure.buildFormStructure(formFields);
+		
+		Map<Integer, FormField> formFieldsById = new HashMap<Integer, FormField>();
+		for (FormField formField : formFields) {
+			if (formField.getFormFieldId() == null)
+				return FormStructure.buildFormStructure(formFields);
+			formFieldsById.put(formField.getFormFieldId(), formField);
+		}
+		
+		Map<Integer, Integer> positions = new HashMap<Integer, Integer>();
+		for (Integer parentId : structure.getParentFormFieldIds()) {
+			List<Integer> ids = structure.getChildFormFieldIds(parentId);
+			for (int i = 0; i < ids.size(); i++)
+				positions.put(ids.get(i), i);
+		}
+		
+		Comparator<FormField> order = new PositionComparator(positions);
 		TreeMap<Integer, TreeSet<FormField>> formStructure = new TreeMap<Integer, TreeSet<FormField>>();
-		Integer base = Integer.valueOf(0);
-		formStructure.put(base, new TreeSet<FormField>());
-		
-		for (FormField formField : form.getFormFields()) {
-			FormField parent = formField.getParent();
-			if (parent == null) {
-				// top-level branches should be added to the base
-				formStructure.get(base).add(formField);
-			} else {
-				// child branches/leaves are added to their parent's branch
-				if (!formStructure.containsKey(parent.getFormFieldId()))
-					formStructure.put(parent.getFormFieldId(), new TreeSet<FormField>());
-				formStructure.get(parent.getFormFieldId()).add(formField);
+		for (Integer parentId : structure.getParentFormFieldIds()) {
+			TreeSet<FormField> branch = new TreeSet<FormField>(order);
+			for (Integer id : structure.getChildFormFieldIds(parentId)) {
+				// the form fields were swapped without changing their number
+				if (!formFieldsById.containsKey(id))
+					return FormStructure.buildFormStructure(formFields);
+				branch.add(formFieldsById.get(id));
 			}
+			formStructure.put(parentId, branch);
 		}
 		
 		return formStructure;
 	}
 	
+	/**
+	 * Orders the form fields of a branch by their known positions, and any other form fields by
+	 * their natural order after them
+	 */
+	private static class PositionComparator implements Comparator<FormField> {
+		
+		private final Map<Integer, Integer> positions;
+		
+		public PositionComparator(Map<Integer, Integer> positions) {
+			this.positions = positions;
+		}
+		
+		public int compare(FormField left, FormField right) {
+			Integer leftPosition = positions.get(left.getFormFieldId());
+			Integer rightPosition = positions.get(right.getFormFieldId());
+			if (leftPosition != null && rightPosition != null)
+				return leftPosition.compareTo(rightPosition);
+			if (leftPosition != null)
+				return -1;
+			if (rightPosition != null)
+				return 1;
+			return left.compareTo(right);
+		}
+	}
+	
 	public static String dateToString() {
 		return dateToString(new Date());
 	}
@@ -0,0 +1,202 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.util;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.openmrs.GlobalProperty;
+
+/**
+ * The values of all global properties, held in memory so that reading a global property does not
+ * need a query. Property names are matched case insensitively, like the database does. <br/>
+ * <br/>
+ * The service puts the values of global properties saved or deleted in a transaction into the cache
+ * after the transaction commits, and reloads the cache from the database every now and then to pick
+ * up changes made by other means, e.g. by another server sharing the same database. Each change
+ * counts up the version of the cache, so that values read from the database before a change are not
+ * loaded over it. The values are never changed in place: each change publishes a new map, so that
+ * readers, who don't lock, see either all of the old values or all of the new ones.
+ *
+ * @see org.openmrs.api.AdministrationService#getGlobalProperty(String)
+ * @see org.openmrs.api.AdministrationService#refreshGlobalPropertyCache()
+ * @since 1.10
+ */
+public class GlobalPropertyCache {
+	
+	/**
+	 * The number of milliseconds after which the values are reloaded from the database
+	 */
+	public static final long REFRESH_INTERVAL_MILLIS = 30 * 1000;
+	
+	private volatile SortedMap<String, String> values = newValues();
+	
+	private volatile boolean loaded = false;
+	
+	private volatile long checkedTime = 0;
+	
+	private volatile long version = 0;
+	
+	/**
+	 * @return true if the values have been loaded from the database
+	 */
+	public boolean isLoaded() {
+		return loaded;
+	}
+	
+	/**
+	 * @param maxAgeMillis the number of milliseconds the values may be used after being loaded
+	 * @return true if the values have not been loaded yet or were loaded too long ago
+	 * @should return true if the values have not been loaded
+	 * @should return false if the values have been loaded recently
+	 * @should return false if the refresh has been postponed
+	 * @should return true if the values have expired
+	 */
+	public boolean isStale(long maxAgeMillis) {
+		return System.currentTimeMillis() - checkedTime >= maxAgeMillis;
+	}
+	
+	/**
+	 * Keeps using the current values for another refresh interval, e.g. when they could not be
+	 * reloaded
+	 */
+	public void postponeRefresh() {
+		checkedTime = System.currentTimeMillis();
+	}
+	
+	/**
+	 * Makes the values stale, so that they are reloaded the next time they are needed. They are kept
+	 * until then, to find out what has changed.
+	 */
+	public synchronized void expire() {
+		checkedTime = 0;
+		version++;
+	}
+	
+	/**
+	 * @return the number of times the values have been changed
+	 */
+	public long getVersion() {
+		return version;
+	}
+	
+	/**
+	 * @param propertyName the name of a global property, in any case
+	 * @return true if the global property exists
+	 */
+	public boolean contains(String propertyName) {
+		return values.containsKey(propertyName);
+	}
+	
+	/**
+	 * @param propertyName the name of a global property, in any case
+	 * @return the value of the global property, or null if it does not exist
+	 * @should get the value in a case insensitive way
+	 */
+	public String getValue(String propertyName) {
+		return values.get(propertyName);
+	}
+	
+	/**
+	 * Sets the value of a global property, after it has been saved
+	 *
+	 * @param propertyName the name of the global property
+	 * @param value its new value
+	 */
+	public synchronized void put(String propertyName, String value) {
+		SortedMap<String, String> newValues = copyValues();
+		newValues.put(propertyName, value);
+		publish(newValues);
+	}
+	
+	/**
+	 * Sets the values of all global properties that have been put into the given cache
+	 *
+	 * @param changes the values to set
+	 * @should set the values put into the given cache
+	 */
+	public synchronized void putAll(GlobalPropertyCache changes) {
+		SortedMap<String, String> newValues = copyValues();
+		newValues.putAll(changes.values);
+		publish(newValues);
+	}
+	
+	/**
+	 * Removes a global property, after it has been deleted
+	 *
+	 * @param propertyName the name of the global property, in any case
+	 */
+	public synchronized void remove(String propertyName) {
+		SortedMap<String, String> newValues = copyValues();
+		newValues.remove(propertyName);
+		publish(newValues);
+	}
+	
+	/**
+	 * Replaces the cached values with the ones just loaded from the database, unless the cache has
+	 * been changed since they were read
+	 *
+	 * @param loadedValues the value of every global property by name
+	 * @param version the version of the cache before the values were read
+	 * @return the global properties whose values differ from the cached ones, with their new values,
+	 *         or null for the ones that have been deleted. Empty if the values had not been loaded
+	 *         before or have not been replaced.
+	 * @should replace the cached values
+	 * @should not replace values changed since the given version
+	 * @should return the changed and deleted properties
+	 * @should return nothing the first time the values are loaded
+	 */
+	public synchronized Map<String, GlobalProperty> load(Map<String, String> loadedValues, long version) {
+		Map<String, GlobalProperty> changes = new LinkedHashMap<String, GlobalProperty>();
+		if (this.version != version)
+			return changes;
+		
+		SortedMap<String, String> newValues = newValues();
+		newValues.putAll(loadedValues);
+		if (loaded) {
+			// a property without a value is the same as no property to a reader
+			for (Map.Entry<String, String> value : newValues.entrySet()) {
+				if (!OpenmrsUtil.nullSafeEquals(values.get(value.getKey()), value.getValue()))
+					changes.put(value.getKey(), new GlobalProperty(value.getKey(), value.getValue()));
+			}
+			for (Map.Entry<String, String> value : values.entrySet()) {
+				if (value.getValue() != null && !newValues.containsKey(value.getKey()))
+					changes.put(value.getKey(), null);
+			}
+		}
+		
+		publish(newValues);
+		loaded = true;
+		checkedTime = System.currentTimeMillis();
+		return changes;
+	}
+	
+	private SortedMap<String, String> copyValues() {
+		SortedMap<String, String> copy = newValues();
+		copy.putAll(values);
+		return copy;
+	}
+	
+	private void publish(SortedMap<String, String> newValues) {
+		values = Collections.unmodifiableSortedMap(newValues);
+		version++;
+	}
+	
+	private static SortedMap<String, String> newValues() {
+		return new TreeMap<String, String>(String.CASE_INSENSITIVE_ORDER);
+	}
+}
@@ -0,0 +1,247 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.util;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openmrs.api.APIException;
+
+/**
+ * The transitive closure of the location tree, held as ids only. Every location knows the set of
+ * its ancestors and the set of its descendants, so whether a location is within the tree of
+ * another one, or which locations are within the tree of a location, can be answered without
+ * loading any parent or child locations. <br/>
+ * <br/>
+ * The index is updated incrementally when a location is added, moved to another parent, retired or
+ * removed. The sets handed out are never changed afterwards; an update replaces the sets it
+ * touches instead, so callers may keep them.
+ *
+ * @see org.openmrs.api.LocationService#isLocationInHierarchy(org.openmrs.Location,
+ *      org.openmrs.Location)
+ * @see org.openmrs.api.LocationService#getDescendantLocationIds(org.openmrs.Location, boolean)
+ * @since 1.10
+ */
+public class LocationHierarchy {
+	
+	private static Log log = LogFactory.getLog(LocationHierarchy.class);
+	
+	private final Map<Integer, Integer> parentIds = new HashMap<Integer, Integer>();
+	
+	private final Set<Integer> retiredIds = new HashSet<Integer>();
+	
+	private final Map<Integer, Set<Integer>> ancestorIds = new HashMap<Integer, Set<Integer>>();
+	
+	private final Map<Integer, Set<Integer>> descendantIds = new HashMap<Integer, Set<Integer>>();
+	
+	/**
+	 * Creates an empty index
+	 */
+	public LocationHierarchy() {
+	}
+	
+	/**
+	 * Creates the index of all locations at once
+	 *
+	 * @param parentIds the id of the parent of each location, or null for root locations
+	 * @param retiredIds the ids of the retired locations
+	 * @should index the ancestors and descendants of every location
+	 */
+	public LocationHierarchy(Map<Integer, Integer> parentIds, Set<Integer> retiredIds) {
+		this.parentIds.putAll(parentIds);
+		this.retiredIds.addAll(retiredIds);
+		
+		Map<Integer, Set<Integer>> descendants = new HashMap<Integer, Set<Integer>>();
+		for (Integer locationId : parentIds.keySet()) {
+			Set<Integer> ancestors = new HashSet<Integer>();
+			Integer parentId = parentIds.get(locationId);
+			while (parentId != null && !parentId.equals(locationId) && ancestors.add(parentId)) {
+				Set<Integer> siblings = descendants.get(parentId);
+				if (siblings == null) {
+					siblings = new HashSet<Integer>();
+					descendants.put(parentId, siblings);
+				}
+				siblings.add(locationId);
+				parentId = parentIds.get(parentId);
+			}
+			if (parentId != null)
+				log.warn("The parents of location " + locationId + " form a loop");
+			ancestorIds.put(locationId, Collections.unmodifiableSet(ancestors));
+		}
+		for (Map.Entry<Integer, Set<Integer>> entry : descendants.entrySet())
+			descendantIds.put(entry.getKey(), Collections.unmodifiableSet(entry.getValue()));
+	}
+	
+	/**
+	 * @param locationId the id of a location
+	 * @return true if the location is in this index
+	 */
+	public synchronized boolean contains(Integer locationId) {
+		return parentIds.containsKey(locationId);
+	}
+	
+	/**
+	 * Checks whether a location is within the tree starting at another one, like
+	 * {@link org.openmrs.Location#isInHierarchy(org.openmrs.Location, org.openmrs.Location)}
+	 *
+	 * @param locationId the id of the location to test
+	 * @param rootId the id of the location at the top of the tree
+	 * @return true if the location is the root or one of its descendants
+	 * @should return true given the same location in both parameters
+	 * @should return true given a descendant of the root
+	 * @should return false given an ancestor of the root
+	 * @should return false given any null parameter
+	 */
+	public synchronized boolean isInHierarchy(Integer locationId, Integer rootId) {
+		if (locationId == null || rootId == null)
+			return false;
+		if (locationId.equals(rootId))
+			return true;
+		return getAncestors(locationId).contains(rootId);
+	}
+	
+	/**
+	 * @param locationId the id of a location
+	 * @return the ids of the parent, grand parent, etc. of the location
+	 */
+	public synchronized Set<Integer> getAncestorIds(Integer locationId) {
+		return getAncestors(locationId);
+	}
+	
+	/**
+	 * @param locationId the id of a location
+	 * @param includeRetired whether retired descendants should be returned too
+	 * @return the ids of the children, grand children, etc. of the location
+	 * @should not return retired descendants if include retired is false
+	 */
+	public synchronized Set<Integer> getDescendantIds(Integer locationId, boolean includeRetired) {
+		Set<Integer> descendants = getDescendants(locationId);
+		if (includeRetired || retiredIds.isEmpty())
+			return descendants;
+		
+		Set<Integer> ret = new HashSet<Integer>();
+		for (Integer descendantId : descendants) {
+			if (!retiredIds.contains(descendantId))
+				ret.add(descendantId);
+		}
+		return Collections.unmodifiableSet(ret);
+	}
+	
+	/**
+	 * Adds a location to the index, or updates it. If the location has been moved to another parent
+	 * the whole tree below it moves along.
+	 *
+	 * @param locationId the id of the location
+	 * @param parentId the id of its parent location, or null for a root location
+	 * @param retired whether the location is retired
+	 * @should add a new location below its parent
+	 * @should move the descendants of a location along with it
+	 * @should fail if the new parent is a descendant of the location
+	 */
+	public synchronized void putLocation(Integer locationId, Integer parentId, boolean retired) {
+		if (retired)
+			retiredIds.add(locationId);
+		else
+			retiredIds.remove(locationId);
+		
+		if (parentIds.containsKey(locationId) && OpenmrsUtil.nullSafeEquals(parentIds.get(locationId), parentId))
+			return;
+		
+		if (parentId != null && (parentId.equals(locationId) || getDescendants(locationId).contains(parentId)))
+			throw new APIException("Location hierarchy loop detected! Location " + parentId
+			        + " cannot be the parent of location " + locationId);
+		
+		if (parentId != null && !parentIds.containsKey(parentId))
+			putLocation(parentId, null, false);
+		
+		Set<Integer> newAncestors = new HashSet<Integer>();
+		if (parentId != null) {
+			newAncestors.add(parentId);
+			newAncestors.addAll(getAncestors(parentId));
+		}
+		move(locationId, newAncestors);
+		parentIds.put(locationId, parentId);
+	}
+	
+	/**
+	 * Removes a location from the index. Its children become root locations.
+	 *
+	 * @param locationId the id of the location
+	 * @should make the children of the location root locations
+	 */
+	public synchronized void removeLocation(Integer locationId) {
+		if (!parentIds.containsKey(locationId))
+			return;
+		
+		for (Map.Entry<Integer, Integer> entry : new HashMap<Integer, Integer>(parentIds).entrySet()) {
+			if (locationId.equals(entry.getValue())) {
+				move(entry.getKey(), Collections.<Integer> emptySet());
+				parentIds.put(entry.getKey(), null);
+			}
+		}
+		move(locationId, Collections.<Integer> emptySet());
+		
+		parentIds.remove(locationId);
+		retiredIds.remove(locationId);
+		ancestorIds.remove(locationId);
+		descendantIds.remove(locationId);
+	}
+	
+	/**
+	 * Gives a location and all of its descendants the given ancestors instead of its current ones
+	 */
+	private void move(Integer locationId, Set<Integer> newAncestors) {
+		Set<Integer> oldAncestors = getAncestors(locationId);
+		Set<Integer> subtree = new HashSet<Integer>(getDescendants(locationId));
+		subtree.add(locationId);
+		
+		for (Integer ancestorId : oldAncestors) {
+			Set<Integer> descendants = new HashSet<Integer>(getDescendants(ancestorId));
+			descendants.removeAll(subtree);
+			descendantIds.put(ancestorId, Collections.unmodifiableSet(descendants));
+		}
+		
+		for (Integer memberId : subtree) {
+			Set<Integer> ancestors = new HashSet<Integer>(getAncestors(memberId));
+			ancestors.removeAll(oldAncestors);
+			ancestors.addAll(newAncestors);
+			ancestorIds.put(memberId, Collections.unmodifiableSet(ancestors));
+		}
+		
+		for (Integer ancestorId : newAncestors) {
+			Set<Integer> descendants = new HashSet<Integer>(getDescendants(ancestorId));
+			descendants.addAll(subtree);
+			descendantIds.put(ancestorId, Collections.unmodifiableSet(descendants));
+		}
+	}
+	
+	private Set<Integer> getAncestors(Integer locationId) {
+		Set<Integer> ancestors = ancestorIds.get(locationId);
+		if (ancestors == null)
+			return Collections.emptySet();
+		return ancestors;
+	}
+	
+	private Set<Integer> getDescendants(Integer locationId) {
+		Set<Integer> descendants = descendantIds.get(locationId);
+		if (descendants == null)
+			return Collections.emptySet();
+		return descendants;
+	}
+}
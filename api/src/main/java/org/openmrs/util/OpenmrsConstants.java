@@ -998,6 +998,13 @@ public final class OpenmrsConstants {
 	
 	public static final String GP_ALLOWED_FAILED_LOGINS_BEFORE_LOCKOUT = "security.allowedFailedLoginsBeforeLockout";
 	
+	/**
+	 * The number of PBKDF2 iterations passwords are hashed with
+	 * 
+	 * @since 1.10
+	 */
+	public static final String GP_PASSWORD_HASH_ITERATIONS = "security.passwordHashIterations";
+	
 	/**
 	 * At OpenMRS startup these global properties/default values/descriptions are inserted into the
 	 * database if they do not exist yet.
@@ -1401,6 +1408,10 @@ public final class OpenmrsConstants {
 		props.add(new GlobalProperty(GP_ALLOWED_FAILED_LOGINS_BEFORE_LOCKOUT, "7",
 		        "Maximum number of failed logins allowed after which username is locked out"));
 		
+		props.add(new GlobalProperty(GP_PASSWORD_HASH_ITERATIONS, "10000",
+		        "The number of PBKDF2 iterations passwords are hashed with. Passwords hashed with fewer iterations "
+		                + "or an older algorithm are hashed again when their users log in"));
+		
 		for (GlobalProperty gp : ModuleFactory.getGlobalProperties()) {
 			props.add(gp);
 		}
@@ -61,6 +61,7 @@ import java.util.SortedSet;
 import java.util.StringTokenizer;
 import java.util.TreeSet;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.jar.JarFile;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -75,6 +76,7 @@ import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
 
 import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang3.time.FastDateFormat;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.log4j.Level;
@@ -138,9 +140,9 @@ public class OpenmrsUtil {
 	
 	private static Log log = LogFactory.getLog(OpenmrsUtil.class);
 	
-	private static Map<Locale, SimpleDateFormat> dateFormatCache = new HashMap<Locale, SimpleDateFormat>();
+	private static Map<Locale, SimpleDateFormat> dateFormatCache = new ConcurrentHashMap<Locale, SimpleDateFormat>();
 	
-	private static Map<Locale, SimpleDateFormat> timeFormatCache = new HashMap<Locale, SimpleDateFormat>();
+	private static Map<Locale, SimpleDateFormat> timeFormatCache = new ConcurrentHashMap<Locale, SimpleDateFormat>();
 	
 	/**
 	 * @param idWithoutCheckdigit
@@ -1328,8 +1330,20 @@ public class OpenmrsUtil {
 	 * @since 1.5
 	 */
 	public static SimpleDateFormat getDateFormat(Locale locale) {
-		if (dateFormatCache.containsKey(locale))
-			return (SimpleDateFormat) dateFormatCache.get(locale).clone();
+		return (SimpleDateFormat) getCachedDateFormat(locale).clone();
+	}
+	
+	/**
+	 * Gets the shared date format for the given locale, building it the first time the locale is
+	 * asked for. The returned object must never be modified or used for parsing or formatting.
+	 * 
+	 * @param locale the locale to get the date format for
+	 * @return the cached date format
+	 */
+	private static SimpleDateFormat getCachedDateFormat(Locale locale) {
+		SimpleDateFormat cached = dateFormatCache.get(locale);
+		if (cached != null)
+			return cached;
 		
 		// note that we are using the custom OpenmrsDateFormat class here which prevents erroneous parsing of 2-digit years
 		SimpleDateFormat sdf = new OpenmrsDateFormat(
@@ -1354,7 +1368,7 @@ public class OpenmrsUtil {
 		
 		dateFormatCache.put(locale, sdf);
 		
-		return (SimpleDateFormat) sdf.clone();
+		return sdf;
 	}
 	
 	/**
@@ -1366,8 +1380,20 @@ public class OpenmrsUtil {
 	 * @since 1.9
 	 */
 	public static SimpleDateFormat getTimeFormat(Locale locale) {
-		if (timeFormatCache.containsKey(locale))
-			return (SimpleDateFormat) timeFormatCache.get(locale).clone();
+		return (SimpleDateFormat) getCachedTimeFormat(locale).clone();
+	}
+	
+	/**
+	 * Gets the shared time format for the given locale, building it the first time the locale is
+	 * asked for. The returned object must never be modified or used for parsing or formatting.
+	 * 
+	 * @param locale the locale to get the time format for
+	 * @return the cached time format
+	 */
+	private static SimpleDateFormat getCachedTimeFormat(Locale locale) {
+		SimpleDateFormat cached = timeFormatCache.get(locale);
+		if (cached != null)
+			return cached;
 		
 		SimpleDateFormat sdf = (SimpleDateFormat) DateFormat.getTimeInstance(DateFormat.SHORT, locale);
 		String pattern = sdf.toPattern();
@@ -1380,7 +1406,7 @@ public class OpenmrsUtil {
 		
 		timeFormatCache.put(locale, sdf);
 		
-		return (SimpleDateFormat) sdf.clone();
+		return sdf;
 	}
 	
 	/**
@@ -1405,6 +1431,48 @@ public class OpenmrsUtil {
 		return sdf;
 	}
 	
+	/**
+	 * Gets an immutable, thread safe formatter using the same pattern as
+	 * {@link #getDateFormat(Locale)}. Formatters are cached by pattern and locale, so this should be
+	 * preferred over {@link #getDateFormat(Locale)} whenever dates only need to be formatted.
+	 * 
+	 * @param locale the locale to format dates for
+	 * @return a shared date formatter
+	 * @should format dates like the date format of the same locale
+	 * @should return the same instance for the same locale
+	 * @since 1.10
+	 */
+	public static FastDateFormat getDateFormatter(Locale locale) {
+		return FastDateFormat.getInstance(getCachedDateFormat(locale).toPattern(), locale);
+	}
+	
+	/**
+	 * Gets an immutable, thread safe formatter using the same pattern as
+	 * {@link #getTimeFormat(Locale)}
+	 * 
+	 * @param locale the locale to format times for
+	 * @return a shared time formatter
+	 * @should format times like the time format of the same locale
+	 * @since 1.10
+	 */
+	public static FastDateFormat getTimeFormatter(Locale locale) {
+		return FastDateFormat.getInstance(getCachedTimeFormat(locale).toPattern(), locale);
+	}
+	
+	/**
+	 * Gets an immutable, thread safe formatter using the same pattern as
+	 * {@link #getDateTimeFormat(Locale)}
+	 * 
+	 * @param locale the locale to format datetimes for
+	 * @return a shared datetime formatter
+	 * @should format datetimes like the datetime format of the same locale
+	 * @since 1.10
+	 */
+	public static FastDateFormat getDateTimeFormatter(Locale locale) {
+		return FastDateFormat.getInstance(getCachedDateFormat(locale).toPattern() + " "
+		        + getCachedTimeFormat(locale).toPattern(), locale);
+	}
+	
 	/**
 	 * @deprecated see reportingcompatibility module
 	 */
@@ -1567,7 +1635,7 @@ public class OpenmrsUtil {
 							Object evaluated = evalContext.evaluateExpression(testForExpression);
 							if (evaluated != null) {
 								if (evaluated instanceof Date)
-									valueAsString = Context.getDateFormat().format((Date) evaluated);
+									valueAsString = Context.getDateFormatter().format((Date) evaluated);
 								else
 									valueAsString = evaluated.toString();
 							}
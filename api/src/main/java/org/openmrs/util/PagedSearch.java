@@ -0,0 +1,156 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.util;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A search that returns one page of matches together with the total number of matches, running as
+ * few count queries as possible:
+ * <ul>
+ * <li>The page is loaded first. If it is not full it holds the last matches, so the count follows
+ * from it and no count query is needed.</li>
+ * <li>Otherwise the count is taken from a short lived cache of the counts of recent searches with
+ * the same parameters, e.g. while the user pages through the results.</li>
+ * <li>Otherwise, if the caller accepts an estimated count, the count of an earlier search with the
+ * same parameters or the number of matches seen so far is returned.</li>
+ * <li>Only then is the count query run.</li>
+ * </ul>
+ * Usage:
+ *
+ * <pre>
+ * PagedSearchResult&lt;Encounter&gt; result = new PagedSearch&lt;Encounter&gt;(&quot;encounters&quot;, phrase, includeVoided) {
+ *
+ * 	protected List&lt;Encounter&gt; getPage(Integer start, Integer length) {
+ * 		return es.getEncounters(phrase, start, length, includeVoided);
+ * 	}
+ *
+ * 	protected int getCount() {
+ * 		return es.getCountOfEncounters(phrase, includeVoided);
+ * 	}
+ * }.search(start, length, false);
+ * </pre>
+ *
+ * @see PagedSearchResult
+ * @since 1.10
+ */
+public abstract class PagedSearch<T> {
+	
+	/**
+	 * The number of milliseconds the count of a search is reused for
+	 */
+	public static final long COUNT_CACHE_MILLIS = 30 * 1000;
+	
+	/**
+	 * The largest number of searches whose counts are cached
+	 */
+	public static final int MAX_CACHED_COUNTS = 1000;
+	
+	private static final Map<String, CachedCount> cachedCounts = new ConcurrentHashMap<String, CachedCount>();
+	
+	private final String key;
+	
+	/**
+	 * @param name the name of the kind of search, e.g. "patients"
+	 * @param parameters all of the parameters that change the number of matches, e.g. the search
+	 *            phrase and whether voided objects are included
+	 */
+	public PagedSearch(String name, Object... parameters) {
+		key = name + Arrays.deepToString(parameters);
+	}
+	
+	/**
+	 * Loads one page of matches
+	 *
+	 * @param start the index of the first match to return, or null to start with the first one
+	 * @param length the number of matches to return, or null for all of them
+	 * @return the matches
+	 */
+	protected abstract List<T> getPage(Integer start, Integer length);
+	
+	/**
+	 * Counts all matches
+	 *
+	 * @return the total number of matches
+	 */
+	protected abstract int getCount();
+	
+	/**
+	 * Loads one page of matches and the total number of matches
+	 *
+	 * @param start the index of the first match to return, or null to start with the first one
+	 * @param length the number of matches to return, or null for all of them
+	 * @param acceptEstimatedCount whether an estimated count is good enough
+	 * @return the page and the count
+	 * @should not count the matches if the page is not full
+	 * @should count the matches if the page is full
+	 * @should reuse the count of a recent search with the same parameters
+	 * @should not count the matches if an estimated count is accepted
+	 */
+	public PagedSearchResult<T> search(Integer start, Integer length, boolean acceptEstimatedCount) {
+		int first = start == null ? 0 : start;
+		List<T> page = getPage(start, length);
+		int seen = first + page.size();
+		
+		if ((length == null || page.size() < length) && (!page.isEmpty() || first == 0)) {
+			cacheCount(seen);
+			return new PagedSearchResult<T>(page, seen, false);
+		}
+		
+		CachedCount cached = cachedCounts.get(key);
+		if (cached != null && cached.count >= seen) {
+			if (System.currentTimeMillis() - cached.time < COUNT_CACHE_MILLIS)
+				return new PagedSearchResult<T>(page, cached.count, false);
+			if (acceptEstimatedCount)
+				return new PagedSearchResult<T>(page, cached.count, true);
+		}
+		
+		if (acceptEstimatedCount)
+			return new PagedSearchResult<T>(page, seen, true);
+		
+		int count = getCount();
+		cacheCount(count);
+		return new PagedSearchResult<T>(page, count, false);
+	}
+	
+	/**
+	 * Forgets the counts of all recent searches, e.g. after many objects have been created
+	 */
+	public static void clearCachedCounts() {
+		cachedCounts.clear();
+	}
+	
+	private void cacheCount(int count) {
+		if (cachedCounts.size() >= MAX_CACHED_COUNTS)
+			cachedCounts.clear();
+		cachedCounts.put(key, new CachedCount(count));
+	}
+	
+	/**
+	 * The count of a search and when it was counted
+	 */
+	private static class CachedCount {
+		
+		private final int count;
+		
+		private final long time = System.currentTimeMillis();
+		
+		private CachedCount(int count) {
+			this.count = count;
+		}
+	}
+}
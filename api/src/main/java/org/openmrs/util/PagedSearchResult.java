@@ -0,0 +1,64 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.util;
+
+import java.util.List;
+
+/**
+ * One page of the results of a search together with the total number of matches
+ *
+ * @see PagedSearch
+ * @since 1.10
+ */
+public class PagedSearchResult<T> {
+	
+	private final List<T> results;
+	
+	private final int count;
+	
+	private final boolean countEstimated;
+	
+	/**
+	 * @param results the matches on the page
+	 * @param count the total number of matches
+	 * @param countEstimated whether the count is only an estimate
+	 */
+	public PagedSearchResult(List<T> results, int count, boolean countEstimated) {
+		this.results = results;
+		this.count = count;
+		this.countEstimated = countEstimated;
+	}
+	
+	/**
+	 * @return the matches on the page
+	 */
+	public List<T> getResults() {
+		return results;
+	}
+	
+	/**
+	 * @return the total number of matches, on all pages
+	 */
+	public int getCount() {
+		return count;
+	}
+	
+	/**
+	 * @return true if the count is only an estimate, which is never less than the number of matches
+	 *         up to and including this page
+	 */
+	public boolean isCountEstimated() {
+		return countEstimated;
+	}
+}
@@ -23,8 +23,11 @@ import java.util.Random;
 
 import javax.crypto.Cipher;
 import javax.crypto.KeyGenerator;
+import javax.crypto.Mac;
 import javax.crypto.SecretKey;
+import javax.crypto.SecretKeyFactory;
 import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.PBEKeySpec;
 import javax.crypto.spec.SecretKeySpec;
 
 import org.apache.commons.logging.Log;
@@ -35,7 +38,9 @@ import org.openmrs.api.context.Context;
 import org.springframework.util.StringUtils;
 
 /**
- * OpenMRS's security class deals with the hashing of passwords.
+ * OpenMRS's security class deals with the hashing of passwords. Passwords are stored as PBKDF2
+ * hashes, and the SHA-512 and SHA-1 hashes of older versions are still matched so that they can be
+ * replaced when their users log in.
  */
 public class Security {
 	
@@ -49,6 +54,28 @@ public class Security {
 	 */
 	public static Log log = LogFactory.getLog(Security.class);
 	
+	/**
+	 * The start of password hashes made by {@link #encodePassword(String)}
+	 */
+	private static final String PBKDF2_PREFIX = "pbkdf2_sha1$";
+	
+	private static final int DEFAULT_PASSWORD_HASH_ITERATIONS = 10000;
+	
+	private static final int MIN_PASSWORD_HASH_ITERATIONS = 1000;
+	
+	private static final SecureRandom random = new SecureRandom();
+	
+	private static final SecretKey verifiedCredentialKey;
+	
+	static {
+		byte[] key = new byte[32];
+		random.nextBytes(key);
+		verifiedCredentialKey = new SecretKeySpec(key, "HmacSHA256");
+	}
+	
+	private static final char[] HEX_CHARS = { '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e',
+	        'f' };
+	
 	/**
 	 * Compare the given hash and the given string-to-hash to see if they are equal. The
 	 * string-to-hash is usually of the form password + salt. <br/>
@@ -63,99 +90,156 @@ public class Security {
 	 * @should match strings hashed with incorrect sha1 algorithm
 	 * @should match strings hashed with sha1 algorithm
 	 * @should match strings hashed with sha512 algorithm and 128 characters salt
+	 * @should match strings hashed with pbkdf2
+	 * @should not match other strings hashed with pbkdf2
 	 */
 	public static boolean hashMatches(String hashedPassword, String passwordToHash) {
 		if (hashedPassword == null || passwordToHash == null)
 			throw new APIException("Neither the hashed password or the password to hash cannot be null");
 		
-		return hashedPassword.equals(encodeString(passwordToHash))
-		        || hashedPassword.equals(encodeStringSHA1(passwordToHash))
-		        || hashedPassword.equals(incorrectlyEncodeString(passwordToHash));
+		if (hashedPassword.startsWith(PBKDF2_PREFIX)) {
+			String[] parts = hashedPassword.split("\\$");
+			if (parts.length != 4)
+				return false;
+			try {
+				String hash = encodePBKDF2(passwordToHash, parts[2], Integer.parseInt(parts[1]));
+				return MessageDigest.isEqual(hashedPassword.getBytes(encoding), hash.getBytes(encoding));
+			}
+			catch (NumberFormatException e) {
+				return false;
+			}
+			catch (UnsupportedEncodingException e) {
+				throw new APIException("System cannot find " + encoding + " encoding", e);
+			}
+		}
+		
+		if (hashedPassword.length() == 128)
+			return hashedPassword.equals(encodeString(passwordToHash));
+		
+		// both of the old SHA-1 hashes are made from the same digest
+		byte[] sha1 = digest("SHA1", passwordToHash);
+		return hashedPassword.equals(hexString(sha1)) || hashedPassword.equals(incorrectHexString(sha1));
 	}
 	
 	/**
-	 * This method will hash <code>strToEncode</code> using the preferred algorithm. Currently,
-	 * OpenMRS's preferred algorithm is hard coded to be SHA-512.
+	 * Hashes <code>passwordToHash</code>, which is usually of the form password + salt, with the
+	 * key derivation function passwords are stored with. The hash starts with the name of the
+	 * function and holds the number of iterations and a random salt, so {@link #hashMatches} can
+	 * still check it after the number of iterations has been raised.
 	 * 
-	 * @param strToEncode string to encode
-	 * @return the SHA-512 encryption of a given string
-	 * @should encode strings to 128 characters
+	 * @param passwordToHash the string to hash
+	 * @return the hash to store
+	 * @since 1.10
+	 * @see OpenmrsConstants#GP_PASSWORD_HASH_ITERATIONS
+	 * @should hash strings so that they match
+	 * @should use a random salt
 	 */
-	public static String encodeString(String strToEncode) throws APIException {
-		String algorithm = "SHA-512";
-		MessageDigest md;
-		byte[] input;
+	public static String encodePassword(String passwordToHash) throws APIException {
+		byte[] salt = new byte[16];
+		random.nextBytes(salt);
+		return encodePBKDF2(passwordToHash, hexString(salt), getPasswordHashIterations());
+	}
+	
+	/**
+	 * Whether a stored password hash was made with an older algorithm or fewer iterations than
+	 * {@link #encodePassword(String)} uses now, and so should be replaced the next time the
+	 * password is known
+	 * 
+	 * @param hashedPassword a stored password hash
+	 * @return true if the password should be hashed again
+	 * @since 1.10
+	 * @should return true for sha512 hashes
+	 * @should return false for hashes made by encodePassword
+	 */
+	public static boolean isPasswordHashOutdated(String hashedPassword) {
+		if (hashedPassword == null || !hashedPassword.startsWith(PBKDF2_PREFIX))
+			return true;
+		
+		String[] parts = hashedPassword.split("\\$");
 		try {
-			md = MessageDigest.getInstance(algorithm);
-			input = strToEncode.getBytes(encoding);
+			return parts.length != 4 || Integer.parseInt(parts[1]) < getPasswordHashIterations();
 		}
-		catch (NoSuchAlgorithmException e) {
-			// Yikes! Can't encode password...what to do?
-			log.error("Can't encode password because the given algorithm: " + algorithm + "was not found! (fail)", e);
-			throw new APIException("System cannot find password encryption algorithm", e);
+		catch (NumberFormatException e) {
+			return true;
+		}
+	}
+	
+	/**
+	 * Makes a keyed digest of a password that has been checked, which is quick to compare against
+	 * but, unlike the password, only useful while this instance of the application runs. The key
+	 * is random and is never stored.
+	 * 
+	 * @param password the password
+	 * @return the digest of the password
+	 * @since 1.10
+	 * @should digest the same password to the same bytes
+	 */
+	public static byte[] digestVerifiedCredential(String password) throws APIException {
+		try {
+			Mac mac = Mac.getInstance("HmacSHA256");
+			mac.init(verifiedCredentialKey);
+			return mac.doFinal(password.getBytes(encoding));
+		}
+		catch (GeneralSecurityException e) {
+			throw new APIException("System cannot find HmacSHA256 algorithm", e);
 		}
 		catch (UnsupportedEncodingException e) {
 			throw new APIException("System cannot find " + encoding + " encoding", e);
 		}
-		return hexString(md.digest(input));
 	}
 	
 	/**
-	 * This method will hash <code>strToEncode</code> using the old SHA-1 algorithm.
-	 * 
-	 * @param strToEncode string to encode
-	 * @return the SHA-1 encryption of a given string
+	 * @return the number of iterations new password hashes are made with
 	 */
-	private static String encodeStringSHA1(String strToEncode) throws APIException {
-		String algorithm = "SHA1";
-		MessageDigest md;
-		byte[] input;
+	private static int getPasswordHashIterations() {
 		try {
-			md = MessageDigest.getInstance(algorithm);
-			input = strToEncode.getBytes(encoding);
+			String iterations = Context.getAdministrationService().getGlobalProperty(
+			    OpenmrsConstants.GP_PASSWORD_HASH_ITERATIONS);
+			if (StringUtils.hasText(iterations))
+				return Math.max(Integer.valueOf(iterations.trim()), MIN_PASSWORD_HASH_ITERATIONS);
 		}
-		catch (NoSuchAlgorithmException e) {
-			// Yikes! Can't encode password...what to do?
-			log.error("Can't encode password because the given algorithm: " + algorithm + "was not found! (fail)", e);
-			throw new APIException("System cannot find SHA1 encryption algorithm", e);
+		catch (Exception e) {
+			log.error("Unable to get the global property " + OpenmrsConstants.GP_PASSWORD_HASH_ITERATIONS
+			        + " as a valid integer. Using the default value of " + DEFAULT_PASSWORD_HASH_ITERATIONS);
+		}
+		return DEFAULT_PASSWORD_HASH_ITERATIONS;
+	}
+	
+	private static String encodePBKDF2(String passwordToHash, String salt, int iterations) throws APIException {
+		try {
+			SecretKeyFactory factory = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA1");
+			PBEKeySpec spec = new PBEKeySpec(passwordToHash.toCharArray(), salt.getBytes(encoding), iterations, 256);
+			return PBKDF2_PREFIX + iterations + "$" + salt + "$" + hexString(factory.generateSecret(spec).getEncoded());
+		}
+		catch (GeneralSecurityException e) {
+			log.error("Can't encode password because PBKDF2 was not found! (fail)", e);
+			throw new APIException("System cannot find password encryption algorithm", e);
 		}
 		catch (UnsupportedEncodingException e) {
 			throw new APIException("System cannot find " + encoding + " encoding", e);
 		}
-		return hexString(md.digest(input));
 	}
 	
 	/**
-	 * Convenience method to convert a byte array to a string
+	 * This method will hash <code>strToEncode</code> using the preferred algorithm. Currently,
+	 * OpenMRS's preferred algorithm is hard coded to be SHA-512.
 	 * 
-	 * @param b Byte array to convert to HexString
-	 * @return Hexidecimal based string
+	 * @param strToEncode string to encode
+	 * @return the SHA-512 encryption of a given string
+	 * @should encode strings to 128 characters
 	 */
-	private static String hexString(byte[] block) {
-		StringBuffer buf = new StringBuffer();
-		char[] hexChars = { '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f' };
-		int len = block.length;
-		int high = 0;
-		int low = 0;
-		for (int i = 0; i < len; i++) {
-			high = ((block[i] & 0xf0) >> 4);
-			low = (block[i] & 0x0f);
-			buf.append(hexChars[high]);
-			buf.append(hexChars[low]);
-		}
-		
-		return buf.toString();
+	public static String encodeString(String strToEncode) throws APIException {
+		return hexString(digest("SHA-512", strToEncode));
 	}
 	
 	/**
-	 * This method will hash <code>strToEncode</code> using SHA-1 and the incorrect hashing method
-	 * that sometimes dropped out leading zeros.
+	 * This method will hash <code>strToEncode</code> using the given digest algorithm.
 	 * 
+	 * @param algorithm the name of the digest algorithm
 	 * @param strToEncode string to encode
-	 * @return the SHA-1 encryption of a given string
+	 * @return the digest of the given string
 	 */
-	private static String incorrectlyEncodeString(String strToEncode) throws APIException {
-		String algorithm = "SHA1";
+	private static byte[] digest(String algorithm, String strToEncode) throws APIException {
 		MessageDigest md;
 		byte[] input;
 		try {
@@ -165,12 +249,28 @@ public class Security {
 		catch (NoSuchAlgorithmException e) {
 			// Yikes! Can't encode password...what to do?
 			log.error("Can't encode password because the given algorithm: " + algorithm + "was not found! (fail)", e);
-			throw new APIException("System cannot find SHA1 encryption algorithm", e);
+			throw new APIException("System cannot find password encryption algorithm", e);
 		}
 		catch (UnsupportedEncodingException e) {
 			throw new APIException("System cannot find " + encoding + " encoding", e);
 		}
-		return incorrectHexString(md.digest(input));
+		return md.digest(input);
+	}
+	
+	/**
+	 * Convenience method to convert a byte array to a string
+	 * 
+	 * @param b Byte array to convert to HexString
+	 * @return Hexidecimal based string
+	 */
+	private static String hexString(byte[] block) {
+		char[] buf = new char[block.length * 2];
+		for (int i = 0; i < block.length; i++) {
+			buf[2 * i] = HEX_CHARS[(block[i] & 0xf0) >> 4];
+			buf[2 * i + 1] = HEX_CHARS[block[i] & 0x0f];
+		}
+		
+		return new String(buf);
 	}
 	
 	/**
@@ -0,0 +1,97 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.util;
+
+/**
+ * Reduces the number of points in a time series before it is drawn, while keeping its visual
+ * shape. This uses the "Largest Triangle Three Buckets" algorithm: the first and last points are
+ * always kept, the points in between are split into equally sized buckets, and from each bucket
+ * the point forming the largest triangle with the point kept from the previous bucket and the
+ * average of the next bucket is kept.
+ *
+ * @since 1.10
+ */
+public class TimeSeriesDownsampler {
+	
+	/**
+	 * Chooses at most <code>threshold</code> of the given points to draw
+	 *
+	 * @param x the x values (e.g. times) of the points, in ascending order
+	 * @param y the y values of the points
+	 * @param threshold the maximum number of points to keep, e.g. the width of the chart in pixels.
+	 *            Must be at least 3
+	 * @return the ascending indexes of the points to keep
+	 * @should keep all points if there are no more than the threshold
+	 * @should keep the first and last points
+	 * @should keep at most threshold points
+	 * @should keep peaks in the series
+	 */
+	public static int[] largestTriangleThreeBuckets(long[] x, double[] y, int threshold) {
+		if (x.length != y.length)
+			throw new IllegalArgumentException("x and y must have the same number of values");
+		if (threshold < 3)
+			throw new IllegalArgumentException("threshold must be at least 3");
+		
+		int length = x.length;
+		if (threshold >= length) {
+			int[] all = new int[length];
+			for (int i = 0; i < length; i++)
+				all[i] = i;
+			return all;
+		}
+		
+		int[] kept = new int[threshold];
+		int keptCount = 0;
+		kept[keptCount++] = 0;
+		
+		// the first and last points are kept, the others are split into buckets
+		double bucketSize = (double) (length - 2) / (threshold - 2);
+		int previous = 0;
+		
+		for (int bucket = 0; bucket < threshold - 2; bucket++) {
+			// the average of the next bucket is the third point of the triangles
+			int nextStart = (int) Math.floor((bucket + 1) * bucketSize) + 1;
+			int nextEnd = Math.min((int) Math.floor((bucket + 2) * bucketSize) + 1, length);
+			double averageX = 0;
+			double averageY = 0;
+			for (int i = nextStart; i < nextEnd; i++) {
+				averageX += x[i];
+				averageY += y[i];
+			}
+			int nextCount = nextEnd - nextStart;
+			averageX /= nextCount;
+			averageY /= nextCount;
+			
+			int start = (int) Math.floor(bucket * bucketSize) + 1;
+			int end = (int) Math.floor((bucket + 1) * bucketSize) + 1;
+			double maxArea = -1;
+			int chosen = start;
+			for (int i = start; i < end; i++) {
+				// twice the area of the triangle, which is enough for comparing
+				double area = Math.abs((x[previous] - averageX) * (y[i] - y[previous]) - (x[previous] - x[i])
+				        * (averageY - y[previous]));
+				if (area > maxArea) {
+					maxArea = area;
+					chosen = i;
+				}
+			}
+			
+			kept[keptCount++] = chosen;
+			previous = chosen;
+		}
+		
+		kept[keptCount++] = length - 1;
+		return kept;
+	}
+}
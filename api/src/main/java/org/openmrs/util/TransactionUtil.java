@@ -0,0 +1,88 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.util;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Utility methods for working with the current transaction
+ *
+ * @since 1.10
+ */
+public class TransactionUtil {
+	
+	/**
+	 * Registers the given synchronization with the current transaction, unless one has already
+	 * been registered under the same key in it. Callers that would otherwise register a
+	 * synchronization on every call, e.g. on every save, use this to have only one per transaction,
+	 * and add what it has to do to the one returned.
+	 *
+	 * @param key identifies the synchronization within the transaction
+	 * @param synchronization the synchronization to register if there is none for the key yet
+	 * @return the synchronization registered under the key in the current transaction, or null if
+	 *         transaction synchronization is not active
+	 * @should register the synchronization the first time it is called in a transaction
+	 * @should return the synchronization already registered under the same key
+	 * @should register a synchronization for each key
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T extends TransactionSynchronization> T registerSynchronizationOnce(Object key, T synchronization) {
+		if (!TransactionSynchronizationManager.isSynchronizationActive())
+			return null;
+		
+		Map<Object, TransactionSynchronization> registered = getRegisteredSynchronizations();
+		if (registered == null) {
+			final Map<Object, TransactionSynchronization> newRegistered = new HashMap<Object, TransactionSynchronization>();
+			TransactionSynchronizationManager.bindResource(TransactionUtil.class, newRegistered);
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				
+				@Override
+				public void suspend() {
+					TransactionSynchronizationManager.unbindResource(TransactionUtil.class);
+				}
+				
+				@Override
+				public void resume() {
+					TransactionSynchronizationManager.bindResource(TransactionUtil.class, newRegistered);
+				}
+				
+				@Override
+				public void afterCompletion(int status) {
+					if (getRegisteredSynchronizations() == newRegistered)
+						TransactionSynchronizationManager.unbindResource(TransactionUtil.class);
+				}
+			});
+			registered = newRegistered;
+		}
+		
+		TransactionSynchronization existing = registered.get(key);
+		if (existing != null)
+			return (T) existing;
+		
+		TransactionSynchronizationManager.registerSynchronization(synchronization);
+		registered.put(key, synchronization);
+		return synchronization;
+	}
+	
+	@SuppressWarnings("unchecked")
+	private static Map<Object, TransactionSynchronization> getRegisteredSynchronizations() {
+		return (Map<Object, TransactionSynchronization>) TransactionSynchronizationManager
+		        .getResource(TransactionUtil.class);
+	}
+}
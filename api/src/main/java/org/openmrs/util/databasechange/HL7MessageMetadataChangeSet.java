@@ -0,0 +1,150 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.util.databasechange;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import liquibase.change.custom.CustomChange;
+import liquibase.change.custom.CustomTaskChange;
+import liquibase.database.Database;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.exception.CustomChangeException;
+import liquibase.exception.DatabaseException;
+import liquibase.exception.SetupException;
+import liquibase.exception.ValidationErrors;
+import liquibase.resource.ResourceAccessor;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openmrs.hl7.HL7InQueue;
+import org.openmrs.hl7.HL7QueueItem;
+import org.openmrs.hl7.HL7Util;
+
+/**
+ * This change set fills in the message control id, message type and patient identifier of the hl7s
+ * already in the queue, error and archive tables, a batch of rows at a time. Archives that have
+ * been migrated to the file system are left out, since their hl7 data is not in the database.
+ *
+ * @see HL7Util#setMessageMetadata(HL7QueueItem)
+ */
+public class HL7MessageMetadataChangeSet implements CustomTaskChange {
+	
+	protected final static Log log = LogFactory.getLog(HL7MessageMetadataChangeSet.class);
+	
+	private static final int BATCH_SIZE = 1000;
+	
+	/**
+	 * @see CustomTaskChange#execute(Database)
+	 */
+	@Override
+	public void execute(Database database) throws CustomChangeException {
+		JdbcConnection connection = (JdbcConnection) database.getConnection();
+		
+		try {
+			for (String table : new String[] { "hl7_in_queue", "hl7_in_error", "hl7_in_archive" })
+				updateTable(connection, table);
+		}
+		catch (SQLException e) {
+			throw new CustomChangeException("Unable to extract the message metadata of the existing hl7s", e);
+		}
+		catch (DatabaseException dbex) {
+			throw new CustomChangeException("Unable to extract the message metadata of the existing hl7s", dbex);
+		}
+	}
+	
+	/**
+	 * Sets the metadata of all rows of a table, walking through them in order of id
+	 */
+	private void updateTable(JdbcConnection connection, String table) throws SQLException, DatabaseException {
+		String id = table + "_id";
+		PreparedStatement selectStatement = null;
+		PreparedStatement updateStatement = null;
+		
+		try {
+			selectStatement = connection.prepareStatement("SELECT " + id + ", hl7_data FROM " + table + " WHERE " + id
+			        + " > ? AND message_control_id IS NULL ORDER BY " + id);
+			selectStatement.setMaxRows(BATCH_SIZE);
+			updateStatement = connection.prepareStatement("UPDATE " + table
+			        + " SET message_control_id = ?, message_type = ?, patient_identifier = ? WHERE " + id + " = ?");
+			
+			int lastId = 0;
+			int rows;
+			do {
+				rows = 0;
+				selectStatement.setInt(1, lastId);
+				ResultSet results = selectStatement.executeQuery();
+				while (results.next()) {
+					rows++;
+					lastId = results.getInt(1);
+					
+					HL7QueueItem item = new HL7InQueue();
+					item.setHL7Data(results.getString(2));
+					HL7Util.setMessageMetadata(item);
+					
+					if (item.getMessageControlId() != null || item.getMessageType() != null
+					        || item.getPatientIdentifier() != null) {
+						updateStatement.setString(1, item.getMessageControlId());
+						updateStatement.setString(2, item.getMessageType());
+						updateStatement.setString(3, item.getPatientIdentifier());
+						updateStatement.setInt(4, lastId);
+						updateStatement.addBatch();
+					}
+				}
+				results.close();
+				updateStatement.executeBatch();
+			} while (rows == BATCH_SIZE);
+			
+			if (log.isDebugEnabled())
+				log.debug("Extracted the message metadata of the rows in " + table);
+		}
+		finally {
+			if (selectStatement != null)
+				selectStatement.close();
+			if (updateStatement != null)
+				updateStatement.close();
+		}
+	}
+	
+	/**
+	 * @see CustomChange#getConfirmationMessage()
+	 */
+	@Override
+	public String getConfirmationMessage() {
+		return "Finished extracting the message metadata of the existing hl7s";
+	}
+	
+	/**
+	 * @see CustomChange#setFileOpener(FileOpener)
+	 */
+	@Override
+	public void setFileOpener(ResourceAccessor fo) {
+	}
+	
+	/**
+	 * @see CustomChange#setUp()
+	 */
+	@Override
+	public void setUp() throws SetupException {
+	}
+	
+	/**
+	 * @see CustomChange#validate(Database)
+	 */
+	@Override
+	public ValidationErrors validate(Database db) {
+		return new ValidationErrors();
+	}
+}
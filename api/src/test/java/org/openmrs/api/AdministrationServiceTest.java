@@ -17,6 +17,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.fail;
 
+import java.sql.PreparedStatement;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
@@ -612,4 +613,110 @@ public class AdministrationServiceTest extends BaseContextSensitiveTest {
 		adminService.saveGlobalProperty(gp);
 		Assert.assertNotNull(gp.getValueReference());
 	}
+	
+	/**
+	 * @see {@link AdministrationService#getGlobalProperty(String)}
+	 */
+	@Test
+	@Verifies(value = "should get the value of a property saved in the same transaction", method = "getGlobalProperty(String)")
+	public void getGlobalProperty_shouldGetTheValueOfAPropertySavedInTheSameTransaction() throws Exception {
+		executeDataSet("org/openmrs/api/include/AdministrationServiceTest-globalproperties.xml");
+		Assert.assertEquals("anothervalue", adminService.getGlobalProperty("another-global-property"));
+		
+		adminService.saveGlobalProperty(new GlobalProperty("another-global-property", "changed"));
+		Assert.assertEquals("changed", adminService.getGlobalProperty("ANOTHER-global-property"));
+		
+		adminService.saveGlobalProperty(new GlobalProperty("a-new-global-property", "new"));
+		Assert.assertEquals("new", adminService.getGlobalProperty("a-new-global-property"));
+	}
+	
+	/**
+	 * @see {@link AdministrationService#getGlobalProperty(String)}
+	 */
+	@Test
+	@Verifies(value = "should not get the value of a property purged in the same transaction", method = "getGlobalProperty(String)")
+	public void getGlobalProperty_shouldNotGetTheValueOfAPropertyPurgedInTheSameTransaction() throws Exception {
+		executeDataSet("org/openmrs/api/include/AdministrationServiceTest-globalproperties.xml");
+		Assert.assertEquals("anothervalue", adminService.getGlobalProperty("another-global-property"));
+		
+		adminService.purgeGlobalProperty(adminService.getGlobalPropertyObject("another-global-property"));
+		Assert.assertNull(adminService.getGlobalProperty("another-global-property"));
+	}
+	
+	/**
+	 * @see {@link AdministrationService#refreshGlobalPropertyCache()}
+	 */
+	@Test
+	@Verifies(value = "should get the values of properties changed in the database", method = "refreshGlobalPropertyCache()")
+	public void refreshGlobalPropertyCache_shouldGetTheValuesOfPropertiesChangedInTheDatabase() throws Exception {
+		executeDataSet("org/openmrs/api/include/AdministrationServiceTest-globalproperties.xml");
+		Assert.assertEquals("anothervalue", adminService.getGlobalProperty("another-global-property"));
+		
+		RecordingListener listener = new RecordingListener();
+		adminService.addGlobalPropertyListener(listener);
+		try {
+			updateDatabase("update global_property set property_value = 'changed' where property = 'another-global-property'");
+			adminService.refreshGlobalPropertyCache();
+		}
+		finally {
+			adminService.removeGlobalPropertyListener(listener);
+		}
+		
+		Assert.assertNull(listener.changedProperty);
+		Assert.assertEquals("changed", adminService.getGlobalProperty("another-global-property"));
+	}
+	
+	/**
+	 * @see {@link AdministrationService#refreshGlobalPropertyCache()}
+	 */
+	@Test
+	@Verifies(value = "should not get the values of properties deleted from the database", method = "refreshGlobalPropertyCache()")
+	public void refreshGlobalPropertyCache_shouldNotGetTheValuesOfPropertiesDeletedFromTheDatabase() throws Exception {
+		executeDataSet("org/openmrs/api/include/AdministrationServiceTest-globalproperties.xml");
+		Assert.assertEquals("anothervalue", adminService.getGlobalProperty("another-global-property"));
+		
+		RecordingListener listener = new RecordingListener();
+		adminService.addGlobalPropertyListener(listener);
+		try {
+			updateDatabase("delete from global_property where property = 'another-global-property'");
+			adminService.refreshGlobalPropertyCache();
+		}
+		finally {
+			adminService.removeGlobalPropertyListener(listener);
+		}
+		
+		Assert.assertNull(listener.deletedPropertyName);
+		Assert.assertNull(adminService.getGlobalProperty("another-global-property"));
+	}
+	
+	/**
+	 * Runs the sql directly on the connection, as another server sharing the database would
+	 */
+	private void updateDatabase(String sql) throws Exception {
+		PreparedStatement ps = getConnection().prepareStatement(sql);
+		ps.executeUpdate();
+		ps.close();
+	}
+	
+	/**
+	 * Remembers the last global property it was told about
+	 */
+	private static class RecordingListener implements GlobalPropertyListener {
+		
+		private GlobalProperty changedProperty;
+		
+		private String deletedPropertyName;
+		
+		public boolean supportsPropertyName(String propertyName) {
+			return propertyName.startsWith("another-");
+		}
+		
+		public void globalPropertyChanged(GlobalProperty newValue) {
+			changedProperty = newValue;
+		}
+		
+		public void globalPropertyDeleted(String propertyName) {
+			deletedPropertyName = propertyName;
+		}
+	}
 }
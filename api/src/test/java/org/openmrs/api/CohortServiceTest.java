@@ -16,10 +16,15 @@ package org.openmrs.api;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.util.Arrays;
 import java.util.List;
+import java.util.TreeSet;
 
+import org.hibernate.Hibernate;
+import org.hibernate.collection.PersistentCollection;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -193,6 +198,25 @@ public class CohortServiceTest extends BaseContextSensitiveTest {
 		assertTrue(service.getCohort(2).getDescription().equals(modifiedCohortDescription));
 	}
 	
+	/**
+	 * @see {@link CohortService#saveCohort(Cohort)}
+	 */
+	@Test
+	@Verifies(value = "should keep the persistent members when they are replaced", method = "saveCohort(Cohort)")
+	public void saveCohort_shouldKeepThePersistentMembersWhenTheyAreReplaced() throws Exception {
+		executeDataSet(COHORT_XML);
+		
+		Cohort cohort = service.getCohort(2);
+		cohort.setMemberIds(new TreeSet<Integer>(Arrays.asList(3, 7)));
+		service.saveCohort(cohort);
+		
+		// hibernate only writes the differences for its own collection
+		assertTrue(cohort.getMemberIds() instanceof PersistentCollection);
+		Context.flushSession();
+		Context.evictFromSession(cohort);
+		assertEquals(new TreeSet<Integer>(Arrays.asList(3, 7)), new TreeSet<Integer>(service.getCohort(2).getMemberIds()));
+	}
+	
 	/**
 	 * @see {@link CohortService#voidCohort(Cohort,String)}
 	 * 
@@ -551,4 +575,76 @@ public class CohortServiceTest extends BaseContextSensitiveTest {
 		service.removePatientFromCohort(service.getCohort(2), patientToAddThenRemove);
 		assertFalse(service.getCohort(2).contains(patientToAddThenRemove));
 	}
+	
+	/**
+	 * @see {@link CohortService#addPatientToCohort(Cohort,Patient)}
+	 */
+	@Test
+	@Verifies(value = "should not load the members of a saved cohort", method = "addPatientToCohort(Cohort,Patient)")
+	public void addPatientToCohort_shouldNotLoadTheMembersOfASavedCohort() throws Exception {
+		executeDataSet(COHORT_XML);
+		
+		Cohort cohort = service.getCohort(2);
+		service.addPatientToCohort(cohort, new Patient(7));
+		
+		assertTrue(cohort.contains(7));
+		assertEquals(3, cohort.size());
+		assertFalse(Hibernate.isInitialized(cohort.getMemberIds()));
+		
+		Context.evictFromSession(cohort);
+		assertEquals(new TreeSet<Integer>(Arrays.asList(2, 3, 7)), new TreeSet<Integer>(service.getCohort(2).getMemberIds()));
+	}
+	
+	/**
+	 * @see {@link CohortService#removePatientFromCohort(Cohort,Patient)}
+	 */
+	@Test
+	@Verifies(value = "should not load the members of a saved cohort", method = "removePatientFromCohort(Cohort,Patient)")
+	public void removePatientFromCohort_shouldNotLoadTheMembersOfASavedCohort() throws Exception {
+		executeDataSet(COHORT_XML);
+		
+		Cohort cohort = service.getCohort(2);
+		service.removePatientFromCohort(cohort, new Patient(2));
+		
+		assertFalse(cohort.contains(2));
+		assertEquals(1, cohort.size());
+		assertFalse(Hibernate.isInitialized(cohort.getMemberIds()));
+		
+		Context.evictFromSession(cohort);
+		assertEquals(new TreeSet<Integer>(Arrays.asList(3)), new TreeSet<Integer>(service.getCohort(2).getMemberIds()));
+	}
+	
+	/**
+	 * @see {@link CohortService#addPatientToCohort(Cohort,Patient)}
+	 */
+	@Test
+	@Verifies(value = "should mark a saved cohort as changed", method = "addPatientToCohort(Cohort,Patient)")
+	public void addPatientToCohort_shouldMarkASavedCohortAsChanged() throws Exception {
+		executeDataSet(COHORT_XML);
+		
+		Cohort cohort = service.getCohort(2);
+		assertNull(cohort.getDateChanged());
+		service.addPatientToCohort(cohort, new Patient(7));
+		
+		assertEquals(Context.getAuthenticatedUser(), cohort.getChangedBy());
+		assertNotNull(cohort.getDateChanged());
+		assertFalse(Hibernate.isInitialized(cohort.getMemberIds()));
+	}
+	
+	/**
+	 * @see {@link CohortService#removePatientFromCohort(Cohort,Patient)}
+	 */
+	@Test
+	@Verifies(value = "should mark a saved cohort as changed", method = "removePatientFromCohort(Cohort,Patient)")
+	public void removePatientFromCohort_shouldMarkASavedCohortAsChanged() throws Exception {
+		executeDataSet(COHORT_XML);
+		
+		Cohort cohort = service.getCohort(2);
+		assertNull(cohort.getDateChanged());
+		service.removePatientFromCohort(cohort, new Patient(2));
+		
+		assertEquals(Context.getAuthenticatedUser(), cohort.getChangedBy());
+		assertNotNull(cohort.getDateChanged());
+		assertFalse(Hibernate.isInitialized(cohort.getMemberIds()));
+	}
 }
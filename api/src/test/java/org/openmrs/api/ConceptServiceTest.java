@@ -28,11 +28,13 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
 
 import junit.framework.Assert;
 
 import org.apache.commons.collections.CollectionUtils;
+import org.hibernate.Hibernate;
 import org.junit.Before;
 import org.junit.Test;
 import org.openmrs.Concept;
@@ -2214,4 +2216,147 @@ public class ConceptServiceTest extends BaseContextSensitiveTest {
 		Assert.assertNotSame(name, term.getName());
 		Assert.assertEquals(1, term.getId().intValue());
 	}
+	
+	/**
+	 * @see {@link ConceptService#getConceptsWithDetails(Collection)}
+	 */
+	@Test
+	@Verifies(value = "should return the concepts in the order of the given ids", method = "getConceptsWithDetails(Collection)")
+	public void getConceptsWithDetails_shouldReturnTheConceptsInTheOrderOfTheGivenIds() throws Exception {
+		List<Concept> concepts = Context.getConceptService().getConceptsWithDetails(Arrays.asList(23, 9999, 21));
+		
+		Assert.assertEquals(2, concepts.size());
+		Assert.assertEquals(23, concepts.get(0).getConceptId().intValue());
+		Assert.assertEquals(21, concepts.get(1).getConceptId().intValue());
+	}
+	
+	/**
+	 * @see {@link ConceptService#getConceptsWithDetails(Collection)}
+	 */
+	@Test
+	@Verifies(value = "should load the answers and set members of the concepts", method = "getConceptsWithDetails(Collection)")
+	public void getConceptsWithDetails_shouldLoadTheAnswersAndSetMembersOfTheConcepts() throws Exception {
+		Context.clearSession();
+		List<Concept> concepts = Context.getConceptService().getConceptsWithDetails(Arrays.asList(21, 23));
+		Concept question = concepts.get(0);
+		Concept set = concepts.get(1);
+		
+		Assert.assertTrue(Hibernate.isInitialized(question.getNames()));
+		Assert.assertTrue(Hibernate.isInitialized(question.getAnswers(true)));
+		Assert.assertEquals(3, question.getAnswers(true).size());
+		Assert.assertTrue(Hibernate.isInitialized(set.getConceptSets()));
+		Assert.assertEquals(3, set.getConceptSets().size());
+		
+		// the set members keep their sort order
+		Iterator<ConceptSet> members = set.getConceptSets().iterator();
+		Assert.assertEquals(18, members.next().getConcept().getConceptId().intValue());
+		Assert.assertEquals(20, members.next().getConcept().getConceptId().intValue());
+		Assert.assertEquals(19, members.next().getConcept().getConceptId().intValue());
+	}
+	
+	/**
+	 * @see {@link ConceptService#getConceptsWithDetails(Collection)}
+	 */
+	@Test
+	@Verifies(value = "should load the names of the answer and set member concepts", method = "getConceptsWithDetails(Collection)")
+	public void getConceptsWithDetails_shouldLoadTheNamesOfTheAnswerAndSetMemberConcepts() throws Exception {
+		Context.clearSession();
+		List<Concept> concepts = Context.getConceptService().getConceptsWithDetails(Arrays.asList(21, 23));
+		
+		for (ConceptAnswer answer : concepts.get(0).getAnswers(true)) {
+			Assert.assertTrue(Hibernate.isInitialized(answer.getAnswerConcept()));
+			Assert.assertTrue(Hibernate.isInitialized(answer.getAnswerConcept().getNames()));
+		}
+		for (ConceptSet member : concepts.get(1).getConceptSets()) {
+			Assert.assertTrue(Hibernate.isInitialized(member.getConcept()));
+			Assert.assertTrue(Hibernate.isInitialized(member.getConcept().getNames()));
+		}
+	}
+	
+	/**
+	 * @see {@link ConceptService#getConceptsWithDetails(Collection)}
+	 */
+	@Test
+	@Verifies(value = "should return an empty list for no ids", method = "getConceptsWithDetails(Collection)")
+	public void getConceptsWithDetails_shouldReturnAnEmptyListForNoIds() throws Exception {
+		Assert.assertTrue(Context.getConceptService().getConceptsWithDetails(Collections.<Integer> emptyList()).isEmpty());
+	}
+	
+	/**
+	 * @see {@link ConceptService#getConceptsByMapping(String,String,boolean)}
+	 */
+	@Test
+	@Verifies(value = "should find a mapping added after the source was looked up", method = "getConceptsByMapping(String,String,boolean)")
+	public void getConceptsByMapping_shouldFindAMappingAddedAfterTheSourceWasLookedUp() throws Exception {
+		Assert.assertEquals(5497, conceptService.getConceptByMapping("CD41003", "SSTRM").getId().intValue());
+		
+		Concept concept = conceptService.getConcept(5089);
+		concept.addConceptMapping(new ConceptMap(conceptService.getConceptReferenceTerm(2), conceptService
+		        .getConceptMapType(2)));
+		conceptService.saveConcept(concept);
+		
+		List<Concept> concepts = conceptService.getConceptsByMapping("CD41003", "SSTRM", true);
+		Assert.assertEquals(2, concepts.size());
+		Assert.assertTrue(containsId(concepts, 5089));
+		Assert.assertTrue(containsId(concepts, 5497));
+	}
+	
+	/**
+	 * @see {@link ConceptService#getConceptsByMapping(String,String,boolean)}
+	 */
+	@Test
+	@Verifies(value = "should not find a mapping removed after the source was looked up", method = "getConceptsByMapping(String,String,boolean)")
+	public void getConceptsByMapping_shouldNotFindAMappingRemovedAfterTheSourceWasLookedUp() throws Exception {
+		Assert.assertEquals(5089, conceptService.getConceptByMapping("WGT234", "SSTRM").getId().intValue());
+		
+		Concept concept = conceptService.getConcept(5089);
+		for (ConceptMap map : new HashSet<ConceptMap>(concept.getConceptMappings())) {
+			if ("WGT234".equals(map.getConceptReferenceTerm().getCode()))
+				concept.removeConceptMapping(map);
+		}
+		conceptService.saveConcept(concept);
+		
+		Assert.assertTrue(conceptService.getConceptsByMapping("WGT234", "SSTRM", true).isEmpty());
+		// the other mappings of the concept are kept
+		Assert.assertEquals(5089, conceptService.getConceptByMapping("2332523", "SNOMED CT").getId().intValue());
+	}
+	
+	/**
+	 * @see {@link ConceptService#getConceptsByMappingCodes(Collection,String)}
+	 */
+	@Test
+	@Verifies(value = "should return the concept of each code that has a mapping", method = "getConceptsByMappingCodes(Collection,String)")
+	public void getConceptsByMappingCodes_shouldReturnTheConceptOfEachCodeThatHasAMapping() throws Exception {
+		Map<String, Concept> concepts = conceptService.getConceptsByMappingCodes(Arrays.asList("WGT234", "CD41003",
+		    "454545"), "SSTRM");
+		
+		Assert.assertEquals(3, concepts.size());
+		Assert.assertEquals(5089, concepts.get("WGT234").getId().intValue());
+		Assert.assertEquals(5497, concepts.get("CD41003").getId().intValue());
+		Assert.assertEquals(24, concepts.get("454545").getId().intValue());
+	}
+	
+	/**
+	 * @see {@link ConceptService#getConceptsByMappingCodes(Collection,String)}
+	 */
+	@Test
+	@Verifies(value = "should leave out codes that have no mapping", method = "getConceptsByMappingCodes(Collection,String)")
+	public void getConceptsByMappingCodes_shouldLeaveOutCodesThatHaveNoMapping() throws Exception {
+		Map<String, Concept> concepts = conceptService.getConceptsByMappingCodes(Arrays.asList("WGT234",
+		    "A random concept code"), "SSTRM");
+		
+		Assert.assertEquals(1, concepts.size());
+		Assert.assertEquals(5089, concepts.get("WGT234").getId().intValue());
+		Assert.assertTrue(conceptService.getConceptsByMappingCodes(Arrays.asList("WGT234"), "A random source code")
+		        .isEmpty());
+	}
+	
+	/**
+	 * @see {@link ConceptService#getConceptsByMappingCodes(Collection,String)}
+	 */
+	@Test(expected = APIException.class)
+	@Verifies(value = "should fail if a code maps to more than one non-retired concept", method = "getConceptsByMappingCodes(Collection,String)")
+	public void getConceptsByMappingCodes_shouldFailIfACodeMapsToMoreThanOneNonRetiredConcept() throws Exception {
+		conceptService.getConceptsByMappingCodes(Arrays.asList("WGT234", "127689"), "SSTRM");
+	}
 }
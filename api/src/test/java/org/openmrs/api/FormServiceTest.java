@@ -24,8 +24,10 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 import java.util.Vector;
@@ -41,6 +43,7 @@ import org.openmrs.FormResource;
 import org.openmrs.api.context.Context;
 import org.openmrs.test.BaseContextSensitiveTest;
 import org.openmrs.test.Verifies;
+import org.openmrs.util.FormStructure;
 
 /**
  * TODO clean up and finish this test for all methods in FormService
@@ -683,6 +686,59 @@ public class FormServiceTest extends BaseContextSensitiveTest {
 		Assert.assertEquals(expected, actual.getValue());
 	}
 	
+	/**
+	 * @see {@link FormService#getFormStructure(Form)}
+	 */
+	@Test
+	@Verifies(value = "should return the structure of the form", method = "getFormStructure(Form)")
+	public void getFormStructure_shouldReturnTheStructureOfTheForm() throws Exception {
+		FormStructure structure = Context.getFormService().getFormStructure(new Form(1));
+		
+		assertEquals(1, structure.getFormId().intValue());
+		assertEquals(Arrays.asList(2, 3, 5), structure.getChildFormFieldIds(FormStructure.BASE));
+		assertEquals(Arrays.asList(2, 3, 5), structure.getFormFieldIds(new Concept(3)));
+	}
+	
+	/**
+	 * @see {@link FormService#getFormStructure(Form)}
+	 */
+	@Test
+	@Verifies(value = "should return the same structure while the form is unchanged", method = "getFormStructure(Form)")
+	public void getFormStructure_shouldReturnTheSameStructureWhileTheFormIsUnchanged() throws Exception {
+		Form form = Context.getFormService().getForm(1);
+		
+		assertSame(Context.getFormService().getFormStructure(form), Context.getFormService().getFormStructure(form));
+	}
+	
+	/**
+	 * @see {@link FormService#getFormStructure(Form)}
+	 */
+	@Test
+	@Verifies(value = "should return a new structure after a form field was saved", method = "getFormStructure(Form)")
+	public void getFormStructure_shouldReturnANewStructureAfterAFormFieldWasSaved() throws Exception {
+		FormService formService = Context.getFormService();
+		Form form = formService.getForm(1);
+		FormStructure structure = formService.getFormStructure(form);
+		
+		FormField formField = formService.getFormField(5);
+		formField.setSortWeight(5.0f);
+		formService.saveFormField(formField);
+		
+		FormStructure newStructure = formService.getFormStructure(form);
+		assertNotSame(structure, newStructure);
+		assertEquals(Arrays.asList(5, 2, 3), newStructure.getChildFormFieldIds(FormStructure.BASE));
+	}
+	
+	/**
+	 * @see {@link FormService#getFormStructure(Form)}
+	 */
+	@Test
+	@Verifies(value = "should return null for an unsaved form", method = "getFormStructure(Form)")
+	public void getFormStructure_shouldReturnNullForAnUnsavedForm() throws Exception {
+		assertNull(Context.getFormService().getFormStructure(new Form()));
+		assertNull(Context.getFormService().getFormStructure(new Form(12345)));
+	}
+	
 	/**
 	 * convert a resource path to a file into a string containing the file's contents
 	 * 
@@ -21,8 +21,10 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 
 import org.junit.Assert;
 import org.junit.Before;
@@ -272,6 +274,125 @@ public class LocationServiceTest extends BaseContextSensitiveTest {
 		Assert.assertEquals(2, locations.size());
 	}
 	
+	/**
+	 * @see {@link LocationService#isLocationInHierarchy(Location,Location)}
+	 */
+	@Test
+	@Verifies(value = "should return true given same location in both parameters", method = "isLocationInHierarchy(Location,Location)")
+	public void isLocationInHierarchy_shouldReturnTrueGivenSameLocationInBothParameters() throws Exception {
+		LocationService ls = Context.getLocationService();
+		Assert.assertTrue(ls.isLocationInHierarchy(ls.getLocation(3), ls.getLocation(3)));
+	}
+	
+	/**
+	 * @see {@link LocationService#isLocationInHierarchy(Location,Location)}
+	 */
+	@Test
+	@Verifies(value = "should return true given a location that is somewhere below the root", method = "isLocationInHierarchy(Location,Location)")
+	public void isLocationInHierarchy_shouldReturnTrueGivenALocationThatIsSomewhereBelowTheRoot() throws Exception {
+		LocationService ls = Context.getLocationService();
+		Assert.assertTrue(ls.isLocationInHierarchy(ls.getLocation(2), ls.getLocation(1)));
+		Assert.assertTrue(ls.isLocationInHierarchy(ls.getLocation(4), ls.getLocation(1)));
+	}
+	
+	/**
+	 * @see {@link LocationService#isLocationInHierarchy(Location,Location)}
+	 */
+	@Test
+	@Verifies(value = "should return false given a location that is not below the root", method = "isLocationInHierarchy(Location,Location)")
+	public void isLocationInHierarchy_shouldReturnFalseGivenALocationThatIsNotBelowTheRoot() throws Exception {
+		LocationService ls = Context.getLocationService();
+		Assert.assertFalse(ls.isLocationInHierarchy(ls.getLocation(1), ls.getLocation(3)));
+		Assert.assertFalse(ls.isLocationInHierarchy(ls.getLocation(4), ls.getLocation(2)));
+		Assert.assertFalse(ls.isLocationInHierarchy(ls.getLocation(6), ls.getLocation(1)));
+	}
+	
+	/**
+	 * @see {@link LocationService#isLocationInHierarchy(Location,Location)}
+	 */
+	@Test
+	@Verifies(value = "should return false given any null parameter", method = "isLocationInHierarchy(Location,Location)")
+	public void isLocationInHierarchy_shouldReturnFalseGivenAnyNullParameter() throws Exception {
+		LocationService ls = Context.getLocationService();
+		Assert.assertFalse(ls.isLocationInHierarchy(null, ls.getLocation(1)));
+		Assert.assertFalse(ls.isLocationInHierarchy(ls.getLocation(1), null));
+	}
+	
+	/**
+	 * @see {@link LocationService#isLocationInHierarchy(Location,Location)}
+	 */
+	@Test
+	@Verifies(value = "should see a location that has been moved to another parent", method = "isLocationInHierarchy(Location,Location)")
+	public void isLocationInHierarchy_shouldSeeALocationThatHasBeenMovedToAnotherParent() throws Exception {
+		LocationService ls = Context.getLocationService();
+		Location root = ls.getLocation(1);
+		Location moved = ls.getLocation(3);
+		Assert.assertTrue(ls.isLocationInHierarchy(ls.getLocation(4), root));
+		
+		// move location 3, and location 4 below it, under location 6
+		moved.setParentLocation(ls.getLocation(6));
+		moved.setDescription("moved");
+		ls.saveLocation(moved);
+		
+		Assert.assertFalse(ls.isLocationInHierarchy(ls.getLocation(4), root));
+		Assert.assertTrue(ls.isLocationInHierarchy(ls.getLocation(4), ls.getLocation(6)));
+	}
+	
+	/**
+	 * @see {@link LocationService#getDescendantLocationIds(Location,boolean)}
+	 */
+	@Test
+	@Verifies(value = "should return the ids of all locations below the given location", method = "getDescendantLocationIds(Location,boolean)")
+	public void getDescendantLocationIds_shouldReturnTheIdsOfAllLocationsBelowTheGivenLocation() throws Exception {
+		LocationService ls = Context.getLocationService();
+		Set<Integer> ids = ls.getDescendantLocationIds(ls.getLocation(1), true);
+		
+		Assert.assertEquals(3, ids.size());
+		Assert.assertTrue(ids.containsAll(Arrays.asList(2, 3, 4)));
+		Assert.assertTrue(ls.getDescendantLocationIds(ls.getLocation(4), true).isEmpty());
+	}
+	
+	/**
+	 * @see {@link LocationService#getDescendantLocationIds(Location,boolean)}
+	 */
+	@Test
+	@Verifies(value = "should not return the ids of retired locations if include retired is false", method = "getDescendantLocationIds(Location,boolean)")
+	public void getDescendantLocationIds_shouldNotReturnTheIdsOfRetiredLocationsIfIncludeRetiredIsFalse() throws Exception {
+		LocationService ls = Context.getLocationService();
+		ls.getDescendantLocationIds(ls.getLocation(1), false);
+		ls.retireLocation(ls.getLocation(4), "test");
+		
+		Set<Integer> ids = ls.getDescendantLocationIds(ls.getLocation(1), false);
+		Assert.assertEquals(2, ids.size());
+		Assert.assertFalse(ids.contains(4));
+		Assert.assertTrue(ls.getDescendantLocationIds(ls.getLocation(1), true).contains(4));
+	}
+	
+	/**
+	 * @see {@link LocationService#getDescendantLocations(Location,boolean)}
+	 */
+	@Test
+	@Verifies(value = "should return all locations below the given location", method = "getDescendantLocations(Location,boolean)")
+	public void getDescendantLocations_shouldReturnAllLocationsBelowTheGivenLocation() throws Exception {
+		LocationService ls = Context.getLocationService();
+		List<Location> locations = ls.getDescendantLocations(ls.getLocation(1), true);
+		
+		Assert.assertEquals(3, locations.size());
+		Assert.assertEquals(ls.getLocation(2), locations.get(0));
+		Assert.assertEquals(ls.getLocation(3), locations.get(1));
+		Assert.assertEquals(ls.getLocation(4), locations.get(2));
+	}
+	
+	/**
+	 * @see {@link LocationService#getDescendantLocations(Location,boolean)}
+	 */
+	@Test
+	@Verifies(value = "should return an empty list for a location without children", method = "getDescendantLocations(Location,boolean)")
+	public void getDescendantLocations_shouldReturnAnEmptyListForALocationWithoutChildren() throws Exception {
+		LocationService ls = Context.getLocationService();
+		Assert.assertTrue(ls.getDescendantLocations(ls.getLocation(4), true).isEmpty());
+	}
+	
 	/**
 	 * @see {@link LocationService#getAllLocations(null)}
 	 */
@@ -53,6 +53,7 @@ import org.openmrs.api.context.Context;
 import org.openmrs.api.impl.ObsServiceImpl;
 import org.openmrs.obs.ComplexData;
 import org.openmrs.obs.ComplexObsHandler;
+import org.openmrs.obs.ObsRow;
 import org.openmrs.obs.handler.BinaryDataHandler;
 import org.openmrs.obs.handler.ImageHandler;
 import org.openmrs.obs.handler.TextHandler;
@@ -1185,6 +1186,184 @@ public class ObsServiceTest extends BaseContextSensitiveTest {
 		obsService.getObservationsByPersonAndConcept(null, new Concept(7));
 	}
 	
+	/**
+	 * @see {@link ObsService#getNumericObsTimeSeries(Person,Concept,Date,Date)}
+	 */
+	@Test
+	@Verifies(value = "should return datetime and value pairs ordered by obs datetime", method = "getNumericObsTimeSeries(Person,Concept,Date,Date)")
+	public void getNumericObsTimeSeries_shouldReturnDatetimeAndValuePairsOrderedByObsDatetime() throws Exception {
+		DateFormat ymd = new SimpleDateFormat("yyyy-MM-dd");
+		
+		List<Object[]> values = Context.getObsService().getNumericObsTimeSeries(new Person(7), new Concept(5089), null,
+		    null);
+		
+		Assert.assertEquals(3, values.size());
+		Assert.assertEquals(ymd.parse("2008-07-01").getTime(), ((Date) values.get(0)[0]).getTime());
+		Assert.assertEquals(50.0, values.get(0)[1]);
+		Assert.assertEquals(ymd.parse("2008-08-15").getTime(), ((Date) values.get(1)[0]).getTime());
+		Assert.assertEquals(55.0, values.get(1)[1]);
+		Assert.assertEquals(ymd.parse("2008-08-19").getTime(), ((Date) values.get(2)[0]).getTime());
+		Assert.assertEquals(61.0, values.get(2)[1]);
+	}
+	
+	/**
+	 * @see {@link ObsService#getNumericObsTimeSeries(Person,Concept,Date,Date)}
+	 */
+	@Test
+	@Verifies(value = "should not return voided obs", method = "getNumericObsTimeSeries(Person,Concept,Date,Date)")
+	public void getNumericObsTimeSeries_shouldNotReturnVoidedObs() throws Exception {
+		ObsService obsService = Context.getObsService();
+		obsService.voidObs(obsService.getObs(10), "testing time series");
+		
+		List<Object[]> values = obsService.getNumericObsTimeSeries(new Person(7), new Concept(5089), null, null);
+		
+		Assert.assertEquals(2, values.size());
+		Assert.assertEquals(50.0, values.get(0)[1]);
+		Assert.assertEquals(61.0, values.get(1)[1]);
+	}
+	
+	/**
+	 * @see {@link ObsService#getNumericObsTimeSeries(Person,Concept,Date,Date)}
+	 */
+	@Test
+	@Verifies(value = "should only return obs within the given dates", method = "getNumericObsTimeSeries(Person,Concept,Date,Date)")
+	public void getNumericObsTimeSeries_shouldOnlyReturnObsWithinTheGivenDates() throws Exception {
+		DateFormat ymd = new SimpleDateFormat("yyyy-MM-dd");
+		
+		List<Object[]> values = Context.getObsService().getNumericObsTimeSeries(new Person(7), new Concept(5089),
+		    ymd.parse("2008-08-01"), ymd.parse("2008-08-15"));
+		
+		Assert.assertEquals(1, values.size());
+		Assert.assertEquals(55.0, values.get(0)[1]);
+	}
+	
+	/**
+	 * @see {@link ObsService#getLastModifiedObsDate(Person,Concept)}
+	 */
+	@Test
+	@Verifies(value = "should return the latest date any obs was created or voided", method = "getLastModifiedObsDate(Person,Concept)")
+	public void getLastModifiedObsDate_shouldReturnTheLatestDateAnyObsWasCreatedOrVoided() throws Exception {
+		ObsService obsService = Context.getObsService();
+		DateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+		Assert.assertEquals(format.parse("2008-08-19 12:35:30").getTime(), obsService.getLastModifiedObsDate(
+		    new Person(7), new Concept(5089)).getTime());
+		
+		Date beforeVoiding = new Date(System.currentTimeMillis() - 1000);
+		obsService.voidObs(obsService.getObs(7), "testing last modified");
+		Context.flushSession();
+		
+		Assert.assertFalse(obsService.getLastModifiedObsDate(new Person(7), new Concept(5089)).before(beforeVoiding));
+	}
+	
+	/**
+	 * @see {@link ObsService#getLastModifiedObsDate(Person,Concept)}
+	 */
+	@Test
+	@Verifies(value = "should return null if there are no obs", method = "getLastModifiedObsDate(Person,Concept)")
+	public void getLastModifiedObsDate_shouldReturnNullIfThereAreNoObs() throws Exception {
+		Assert.assertNull(Context.getObsService().getLastModifiedObsDate(new Person(7), new Concept(3)));
+	}
+	
+	/**
+	 * @see {@link ObsService#getObservationsPage(List,List,List,List,Date,Date,Obs,int,boolean)}
+	 */
+	@Test
+	@Verifies(value = "should return the most recent obs first", method = "getObservationsPage(List,List,List,List,Date,Date,Obs,int,boolean)")
+	public void getObservationsPage_shouldReturnTheMostRecentObsFirst() throws Exception {
+		List<Obs> page = Context.getObsService().getObservationsPage(Collections.singletonList(new Person(7)), null,
+		    null, null, null, null, null, 3, false);
+		
+		// obs 15 and 14 have the same obsDatetime, so the higher id comes first
+		Assert.assertEquals(Arrays.asList(16, 15, 14), getObsIds(page));
+	}
+	
+	/**
+	 * @see {@link ObsService#getObservationsPage(List,List,List,List,Date,Date,Obs,int,boolean)}
+	 */
+	@Test
+	@Verifies(value = "should return the obs after the given obs", method = "getObservationsPage(List,List,List,List,Date,Date,Obs,int,boolean)")
+	public void getObservationsPage_shouldReturnTheObsAfterTheGivenObs() throws Exception {
+		ObsService obsService = Context.getObsService();
+		List<Person> whom = Collections.<Person> singletonList(new Person(7));
+		
+		List<Obs> page = obsService.getObservationsPage(whom, null, null, null, null, null, obsService.getObs(14), 3,
+		    false);
+		Assert.assertEquals(Arrays.asList(13, 12, 11), getObsIds(page));
+		
+		page = obsService.getObservationsPage(whom, null, Collections.singletonList(new Concept(5089)), null, null, null,
+		    obsService.getObs(16), 3, false);
+		Assert.assertEquals(Arrays.asList(10, 7), getObsIds(page));
+	}
+	
+	/**
+	 * @see {@link ObsService#getObservationsPage(List,List,List,List,Date,Date,Obs,int,boolean)}
+	 */
+	@Test
+	@Verifies(value = "should return an empty list after the last page", method = "getObservationsPage(List,List,List,List,Date,Date,Obs,int,boolean)")
+	public void getObservationsPage_shouldReturnAnEmptyListAfterTheLastPage() throws Exception {
+		ObsService obsService = Context.getObsService();
+		
+		Assert.assertTrue(obsService.getObservationsPage(Collections.singletonList(new Person(7)), null, null, null,
+		    null, null, obsService.getObs(7), 3, false).isEmpty());
+	}
+	
+	/**
+	 * @see {@link ObsService#getObsRowsPage(List,List,List,List,Date,Date,ObsRow,int,boolean)}
+	 */
+	@Test
+	@Verifies(value = "should return the same obs as get observations page", method = "getObsRowsPage(List,List,List,List,Date,Date,ObsRow,int,boolean)")
+	public void getObsRowsPage_shouldReturnTheSameObsAsGetObservationsPage() throws Exception {
+		ObsService obsService = Context.getObsService();
+		List<Person> whom = Collections.<Person> singletonList(new Person(7));
+		
+		List<ObsRow> rows = obsService.getObsRowsPage(whom, null, null, null, null, null, null, 20, false);
+		List<Obs> page = obsService.getObservationsPage(whom, null, null, null, null, null, null, 20, false);
+		Assert.assertEquals(page.size(), rows.size());
+		for (int i = 0; i < rows.size(); i++) {
+			ObsRow row = rows.get(i);
+			Obs obs = page.get(i);
+			Assert.assertEquals(obs.getObsId(), row.getObsId());
+			Assert.assertEquals(obs.getUuid(), row.getUuid());
+			Assert.assertEquals(obs.getPersonId(), row.getPersonId());
+			Assert.assertEquals(obs.getConcept().getConceptId(), row.getConceptId());
+			Assert.assertEquals(obs.getEncounter().getEncounterId(), row.getEncounterId());
+			Assert.assertEquals(obs.getValueNumeric(), row.getValueNumeric());
+			Assert.assertEquals(obs.getValueText(), row.getValueText());
+			Assert.assertEquals(obs.getValueCoded() == null ? null : obs.getValueCoded().getConceptId(), row
+			        .getValueCodedId());
+			Assert.assertEquals(0, OpenmrsUtil.compare(obs.getObsDatetime(), row.getObsDatetime()));
+		}
+	}
+	
+	/**
+	 * @see {@link ObsService#getObsRowsPage(List,List,List,List,Date,Date,ObsRow,int,boolean)}
+	 */
+	@Test
+	@Verifies(value = "should return the rows after the given row", method = "getObsRowsPage(List,List,List,List,Date,Date,ObsRow,int,boolean)")
+	public void getObsRowsPage_shouldReturnTheRowsAfterTheGivenRow() throws Exception {
+		ObsService obsService = Context.getObsService();
+		List<Person> whom = Collections.<Person> singletonList(new Person(7));
+		
+		List<Integer> ids = new ArrayList<Integer>();
+		ObsRow after = null;
+		List<ObsRow> rows;
+		do {
+			rows = obsService.getObsRowsPage(whom, null, null, null, null, null, after, 4, false);
+			for (ObsRow row : rows)
+				ids.add(row.getObsId());
+			after = rows.isEmpty() ? null : rows.get(rows.size() - 1);
+		} while (!rows.isEmpty());
+		
+		Assert.assertEquals(Arrays.asList(16, 15, 14, 13, 12, 11, 10, 9, 7), ids);
+	}
+	
+	private List<Integer> getObsIds(List<Obs> obsList) {
+		List<Integer> ids = new ArrayList<Integer>();
+		for (Obs obs : obsList)
+			ids.add(obs.getObsId());
+		return ids;
+	}
+	
 	/**
 	 * @see ObsService#purgeObs(Obs)
 	 */
@@ -17,6 +17,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayOutputStream;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
@@ -382,4 +383,36 @@ public class PatientSetServiceTest extends BaseContextSensitiveTest {
 		Assert.assertEquals("Xanadu", ret.get(7));
 		Assert.assertEquals("Xanadu", ret.get(8));
 	}
+	
+	/**
+	 * @see {@link PatientSetService#exportXml(Cohort,OutputStream)}
+	 */
+	@Test
+	@Verifies(value = "should write the same xml as export xml", method = "exportXml(Cohort,OutputStream)")
+	public void exportXml_shouldWriteTheSameXmlAsExportXml() throws Exception {
+		Cohort cohort = new Cohort(Arrays.asList(2, 6, 7));
+		StringBuilder expected = new StringBuilder("<patientset>");
+		for (Integer patientId : cohort.getMemberIds())
+			expected.append(service.exportXml(patientId));
+		expected.append("</patientset>");
+		
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		service.exportXml(cohort, out);
+		
+		assertEquals(expected.toString(), out.toString("UTF-8"));
+		assertEquals(expected.toString(), service.exportXml(cohort));
+		assertTrue(expected.toString().contains("<observations>"));
+	}
+	
+	/**
+	 * @see {@link PatientSetService#exportXml(Cohort,OutputStream)}
+	 */
+	@Test
+	@Verifies(value = "should write an empty patient set for an empty cohort", method = "exportXml(Cohort,OutputStream)")
+	public void exportXml_shouldWriteAnEmptyPatientSetForAnEmptyCohort() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		service.exportXml(new Cohort(), out);
+		
+		assertEquals("<patientset></patientset>", out.toString("UTF-8"));
+	}
 }
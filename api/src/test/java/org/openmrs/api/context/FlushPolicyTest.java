@@ -0,0 +1,202 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.api.context;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.Location;
+import org.openmrs.test.BaseContextSensitiveTest;
+import org.openmrs.test.Verifies;
+
+/**
+ * Tests the {@link FlushPolicy} class. Calling {@link FlushPolicy#beforeServiceCall()} in a test
+ * makes the service methods it calls afterwards look like they are called by another service
+ * method.
+ */
+public class FlushPolicyTest extends BaseContextSensitiveTest {
+	
+	@After
+	public void endServiceCalls() {
+		while (FlushPolicy.isBatchMode())
+			FlushPolicy.endBatchMode();
+	}
+	
+	/**
+	 * @see {@link FlushPolicy#isFlushNeeded()}
+	 */
+	@Test
+	@Verifies(value = "should return true after a service method saved something in the transaction", method = "isFlushNeeded()")
+	public void isFlushNeeded_shouldReturnTrueAfterAServiceMethodSavedSomethingInTheTransaction() throws Exception {
+		FlushPolicy.beforeServiceCall();
+		try {
+			Assert.assertFalse(FlushPolicy.isFlushNeeded());
+			Context.getLocationService().saveLocation(createLocation("first"));
+			Assert.assertTrue(FlushPolicy.isFlushNeeded());
+		}
+		finally {
+			FlushPolicy.afterServiceCall(false, false);
+		}
+	}
+	
+	/**
+	 * @see {@link FlushPolicy#isFlushNeeded()}
+	 */
+	@Test
+	@Verifies(value = "should return false after the session was flushed", method = "isFlushNeeded()")
+	public void isFlushNeeded_shouldReturnFalseAfterTheSessionWasFlushed() throws Exception {
+		FlushPolicy.beforeServiceCall();
+		try {
+			Context.getLocationService().saveLocation(createLocation("first"));
+			Context.flushSession();
+			Assert.assertFalse(FlushPolicy.isFlushNeeded());
+		}
+		finally {
+			FlushPolicy.afterServiceCall(false, false);
+		}
+	}
+	
+	/**
+	 * @see {@link FlushPolicy#afterServiceCall(boolean,boolean)}
+	 */
+	@Test
+	@Verifies(value = "should flush when a service method called from outside the service layer returns", method = "afterServiceCall(boolean,boolean)")
+	public void afterServiceCall_shouldFlushWhenAServiceMethodCalledFromOutsideTheServiceLayerReturns() throws Exception {
+		FlushPolicy.resetStatistics();
+		Context.getLocationService().saveLocation(createLocation("first"));
+		Assert.assertEquals(1, FlushPolicy.getFlushCount());
+		Assert.assertFalse(FlushPolicy.isFlushNeeded());
+	}
+	
+	/**
+	 * @see {@link FlushPolicy#afterServiceCall(boolean,boolean)}
+	 */
+	@Test
+	@Verifies(value = "should not flush when a service method called by another service method returns", method = "afterServiceCall(boolean,boolean)")
+	public void afterServiceCall_shouldNotFlushWhenAServiceMethodCalledByAnotherServiceMethodReturns() throws Exception {
+		FlushPolicy.beforeServiceCall();
+		try {
+			FlushPolicy.resetStatistics();
+			Location location = Context.getLocationService().saveLocation(createLocation("first"));
+			Assert.assertEquals(0, FlushPolicy.getFlushCount());
+			
+			// a query flushes what was saved so that it can find it
+			Assert.assertTrue(Context.getLocationService().getAllLocations().contains(location));
+			Assert.assertEquals(1, FlushPolicy.getFlushCount());
+			Context.getLocationService().getAllLocations();
+			Assert.assertEquals(1, FlushPolicy.getFlushCount());
+		}
+		finally {
+			FlushPolicy.afterServiceCall(false, false);
+		}
+	}
+	
+	/**
+	 * @see {@link FlushPolicy#afterServiceCall(boolean,boolean)}
+	 */
+	@Test
+	@Verifies(value = "should keep what nested service methods saved when the session is cleared", method = "afterServiceCall(boolean,boolean)")
+	public void afterServiceCall_shouldKeepWhatNestedServiceMethodsSavedWhenTheSessionIsCleared() throws Exception {
+		FlushPolicy.beforeServiceCall();
+		try {
+			Location location = Context.getLocationService().getLocation(1);
+			location.setName("renamed");
+			Context.getLocationService().saveLocation(location);
+			Assert.assertTrue(FlushPolicy.isFlushNeeded());
+			
+			Context.clearSession();
+			Assert.assertFalse(FlushPolicy.isFlushNeeded());
+			Location reloaded = Context.getLocationService().getLocation(1);
+			Assert.assertNotSame(location, reloaded);
+			Assert.assertEquals("renamed", reloaded.getName());
+		}
+		finally {
+			FlushPolicy.afterServiceCall(false, false);
+		}
+	}
+	
+	/**
+	 * @see {@link FlushPolicy#flushed(long,boolean)}
+	 */
+	@Test
+	@Verifies(value = "should keep the transaction dirty when another session is flushed", method = "flushed(long,boolean)")
+	public void flushed_shouldKeepTheTransactionDirtyWhenAnotherSessionIsFlushed() throws Exception {
+		FlushPolicy.beforeServiceCall();
+		try {
+			Location location = Context.getLocationService().getLocation(1);
+			location.setName("renamed");
+			Context.getLocationService().saveLocation(location);
+			
+			// like reading the committed global properties, committing a session of its own
+			Session session = ((SessionFactory) applicationContext.getBean("sessionFactory")).openSession();
+			try {
+				session.beginTransaction().commit();
+			}
+			finally {
+				session.close();
+			}
+			Assert.assertTrue(FlushPolicy.isFlushNeeded());
+			
+			Context.clearSession();
+			Assert.assertEquals("renamed", Context.getLocationService().getLocation(1).getName());
+		}
+		finally {
+			FlushPolicy.afterServiceCall(false, false);
+		}
+	}
+	
+	/**
+	 * @see {@link FlushPolicy#beginBatchMode(int)}
+	 */
+	@Test
+	@Verifies(value = "should clear the session after the given number of saves", method = "beginBatchMode(int)")
+	public void beginBatchMode_shouldClearTheSessionAfterTheGivenNumberOfSaves() throws Exception {
+		FlushPolicy.beginBatchMode(2);
+		Location location = Context.getLocationService().saveLocation(createLocation("first"));
+		Assert.assertTrue(FlushPolicy.isFlushNeeded());
+		Assert.assertSame(location, Context.getLocationService().getLocation(location.getLocationId()));
+		
+		Context.getLocationService().saveLocation(createLocation("second"));
+		Assert.assertFalse(FlushPolicy.isFlushNeeded());
+		Location reloaded = Context.getLocationService().getLocation(location.getLocationId());
+		Assert.assertNotSame(location, reloaded);
+		Assert.assertEquals("first", reloaded.getName());
+	}
+	
+	/**
+	 * @see {@link FlushPolicy#beginBatchMode(int)}
+	 */
+	@Test
+	@Verifies(value = "should not count the saves of nested service methods", method = "beginBatchMode(int)")
+	public void beginBatchMode_shouldNotCountTheSavesOfNestedServiceMethods() throws Exception {
+		FlushPolicy.beginBatchMode(1);
+		FlushPolicy.beforeServiceCall();
+		try {
+			Location location = Context.getLocationService().saveLocation(createLocation("first"));
+			Assert.assertSame(location, Context.getLocationService().getLocation(location.getLocationId()));
+		}
+		finally {
+			FlushPolicy.afterServiceCall(false, false);
+		}
+	}
+	
+	private Location createLocation(String name) {
+		Location location = new Location();
+		location.setName(name);
+		location.setDescription(name);
+		return location;
+	}
+}
@@ -13,6 +13,9 @@
  */
 package org.openmrs.api.db;
 
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
 import org.junit.AfterClass;
 import org.junit.Assert;
 import org.junit.Before;
@@ -25,6 +28,7 @@ import org.openmrs.api.context.ContextAuthenticationException;
 import org.openmrs.api.db.hibernate.HibernateContextDAO;
 import org.openmrs.test.BaseContextSensitiveTest;
 import org.openmrs.test.Verifies;
+import org.openmrs.util.Security;
 
 /**
  * This class tests the {@link ContextDAO} linked to from the Context. Currently that file is the
@@ -351,4 +355,30 @@ public class ContextDAOTest extends BaseContextSensitiveTest {
 		dao.authenticate("  ", "password");
 	}
 	
+	/**
+	 * @see {@link ContextDAO#authenticate(String,String)}
+	 */
+	@Test
+	@Verifies(value = "should not change the password hash before the login is committed", method = "authenticate(String,String)")
+	public void authenticate_shouldNotChangeThePasswordHashBeforeTheLoginIsCommitted() throws Exception {
+		String hashedPassword = getHashedPassword("correct");
+		Assert.assertTrue(Security.isPasswordHashOutdated(hashedPassword));
+		
+		dao.authenticate("correct", "test");
+		Assert.assertEquals(hashedPassword, getHashedPassword("correct"));
+		
+		// the second login is checked against the remembered password
+		Assert.assertEquals("correct", dao.authenticate("correct", "test").getUsername());
+	}
+	
+	private String getHashedPassword(String username) throws Exception {
+		PreparedStatement statement = getConnection().prepareStatement("select password from users where username = ?");
+		statement.setString(1, username);
+		ResultSet results = statement.executeQuery();
+		Assert.assertTrue(results.next());
+		String hashedPassword = results.getString(1);
+		statement.close();
+		return hashedPassword;
+	}
+	
 }
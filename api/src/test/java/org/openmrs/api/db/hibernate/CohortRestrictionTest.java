@@ -0,0 +1,134 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.api.db.hibernate;
+
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.hibernate.Criteria;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.criterion.Criterion;
+import org.hibernate.criterion.Restrictions;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.Patient;
+import org.openmrs.test.BaseContextSensitiveTest;
+import org.openmrs.test.Verifies;
+
+/**
+ * Tests the {@link CohortRestriction} class
+ */
+public class CohortRestrictionTest extends BaseContextSensitiveTest {
+	
+	private Session session;
+	
+	@Before
+	public void before() throws Exception {
+		session = ((SessionFactory) applicationContext.getBean("sessionFactory")).getCurrentSession();
+	}
+	
+	/**
+	 * @see {@link CohortRestriction#in(Session,String,Collection)}
+	 */
+	@Test
+	@Verifies(value = "should restrict the results to the given ids", method = "in(Session,String,Collection)")
+	public void in_shouldRestrictTheResultsToTheGivenIds() throws Exception {
+		List<Patient> patients = getPatients(Arrays.asList(2, 7));
+		
+		Assert.assertEquals(2, patients.size());
+		Set<Integer> patientIds = new HashSet<Integer>();
+		for (Patient patient : patients)
+			patientIds.add(patient.getPatientId());
+		Assert.assertTrue(patientIds.contains(2));
+		Assert.assertTrue(patientIds.contains(7));
+	}
+	
+	/**
+	 * @see {@link CohortRestriction#in(Session,String,Collection)}
+	 */
+	@Test
+	@Verifies(value = "should restrict the results to more ids than fit in one in list", method = "in(Session,String,Collection)")
+	public void in_shouldRestrictTheResultsToMoreIdsThanFitInOneInList() throws Exception {
+		List<Integer> ids = new ArrayList<Integer>();
+		for (int i = 3; i < CohortRestriction.IN_LIST_CHUNK_SIZE * 2 + 500; i++)
+			ids.add(i);
+		
+		List<Patient> patients = getPatients(ids);
+		
+		Criteria all = session.createCriteria(Patient.class);
+		all.add(Restrictions.gt("patientId", 2));
+		all.add(Restrictions.eq("voided", false));
+		Assert.assertFalse(patients.isEmpty());
+		Assert.assertEquals(all.list().size(), patients.size());
+		for (Patient patient : patients)
+			Assert.assertTrue(patient.getPatientId() > 2);
+	}
+	
+	/**
+	 * @see {@link CohortRestriction#in(Session,String,Collection)}
+	 */
+	@Test
+	@Verifies(value = "should stage more ids than fit in one in list in the temporary table", method = "in(Session,String,Collection)")
+	public void in_shouldStageMoreIdsThanFitInOneInListInTheTemporaryTable() throws Exception {
+		// creating the table commits the transaction on h2, but all test data is deleted after each test anyway
+		Statement statement = getConnection().createStatement();
+		statement.execute(CohortRestriction.getCreateTemporaryTableSql(HibernateUtil.getDialect(session
+		        .getSessionFactory())));
+		
+		List<Integer> ids = new ArrayList<Integer>();
+		for (int i = 3; i < CohortRestriction.IN_LIST_CHUNK_SIZE * 2 + 500; i++)
+			ids.add(i);
+		Criterion criterion = CohortRestriction.in(session, "patientId", ids);
+		Assert.assertTrue(criterion.toString().contains(CohortRestriction.TEMPORARY_TABLE));
+		
+		ResultSet staged = statement.executeQuery("select count(*) from " + CohortRestriction.TEMPORARY_TABLE);
+		staged.next();
+		Assert.assertEquals(ids.size(), staged.getInt(1));
+		statement.close();
+		
+		Criteria criteria = session.createCriteria(Patient.class);
+		criteria.add(criterion);
+		criteria.add(Restrictions.eq("voided", false));
+		Criteria all = session.createCriteria(Patient.class);
+		all.add(Restrictions.gt("patientId", 2));
+		all.add(Restrictions.eq("voided", false));
+		Assert.assertFalse(all.list().isEmpty());
+		Assert.assertEquals(all.list().size(), criteria.list().size());
+	}
+	
+	/**
+	 * @see {@link CohortRestriction#in(Session,String,Collection)}
+	 */
+	@Test
+	@Verifies(value = "should return no results for no ids", method = "in(Session,String,Collection)")
+	public void in_shouldReturnNoResultsForNoIds() throws Exception {
+		Assert.assertEquals(0, getPatients(new ArrayList<Integer>()).size());
+	}
+	
+	@SuppressWarnings("unchecked")
+	private List<Patient> getPatients(Collection<Integer> ids) {
+		Criteria criteria = session.createCriteria(Patient.class);
+		criteria.add(CohortRestriction.in(session, "patientId", ids));
+		criteria.add(Restrictions.eq("voided", false));
+		return criteria.list();
+	}
+}
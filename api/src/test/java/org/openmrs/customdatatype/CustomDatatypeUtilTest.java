@@ -5,6 +5,7 @@ import java.util.Map;
 
 import org.junit.Assert;
 import org.junit.Test;
+import org.openmrs.customdatatype.datatype.RegexValidatedTextDatatype;
 import org.openmrs.test.BaseContextSensitiveTest;
 
 public class CustomDatatypeUtilTest extends BaseContextSensitiveTest {
@@ -26,4 +27,56 @@ public class CustomDatatypeUtilTest extends BaseContextSensitiveTest {
 		Assert.assertEquals("one value", deserialized.get("one property"));
 		Assert.assertEquals("another value < with > strange&nbsp;characters", deserialized.get("another property"));
 	}
+	
+	/**
+	 * @see CustomDatatypeUtil#deserializeSimpleConfiguration(String)
+	 * @verifies return the same configuration for the same serialized form
+	 */
+	@Test
+	public void deserializeSimpleConfiguration_shouldReturnTheSameConfigurationForTheSameSerializedForm() throws Exception {
+		Map<String, String> config = new HashMap<String, String>();
+		config.put("rows", "5");
+		
+		String serialized = CustomDatatypeUtil.serializeSimpleConfiguration(config);
+		Assert.assertSame(CustomDatatypeUtil.deserializeSimpleConfiguration(serialized), CustomDatatypeUtil
+		        .deserializeSimpleConfiguration(serialized));
+	}
+	
+	/**
+	 * @see CustomDatatypeUtil#getDatatype(String,String)
+	 * @verifies return the same instance for the same classname and configuration
+	 */
+	@Test
+	public void getDatatype_shouldReturnTheSameInstanceForTheSameClassnameAndConfiguration() throws Exception {
+		String classname = RegexValidatedTextDatatype.class.getName();
+		CustomDatatype<?> datatype = CustomDatatypeUtil.getDatatype(classname, "[a-z]+");
+		Assert.assertTrue(datatype instanceof RegexValidatedTextDatatype);
+		Assert.assertSame(datatype, CustomDatatypeUtil.getDatatype(classname, "[a-z]+"));
+	}
+	
+	/**
+	 * @see CustomDatatypeUtil#getDatatype(String,String)
+	 * @verifies return another instance for another configuration
+	 */
+	@Test
+	public void getDatatype_shouldReturnAnotherInstanceForAnotherConfiguration() throws Exception {
+		String classname = RegexValidatedTextDatatype.class.getName();
+		CustomDatatype<?> lowerCase = CustomDatatypeUtil.getDatatype(classname, "[a-z]+");
+		CustomDatatype<?> upperCase = CustomDatatypeUtil.getDatatype(classname, "[A-Z]+");
+		Assert.assertNotSame(lowerCase, upperCase);
+		((RegexValidatedTextDatatype) lowerCase).validate("abc");
+		((RegexValidatedTextDatatype) upperCase).validate("ABC");
+	}
+	
+	/**
+	 * @see CustomDatatypeUtil#clearCache()
+	 * @verifies make the next call build new instances
+	 */
+	@Test
+	public void clearCache_shouldMakeTheNextCallBuildNewInstances() throws Exception {
+		String classname = RegexValidatedTextDatatype.class.getName();
+		CustomDatatype<?> datatype = CustomDatatypeUtil.getDatatype(classname, "[a-z]+");
+		CustomDatatypeUtil.clearCache();
+		Assert.assertNotSame(datatype, CustomDatatypeUtil.getDatatype(classname, "[a-z]+"));
+	}
 }
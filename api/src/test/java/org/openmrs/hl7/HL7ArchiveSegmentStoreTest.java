@@ -0,0 +1,147 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.hl7;
+
+import java.io.File;
+import java.util.Calendar;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.test.Verifies;
+import org.openmrs.util.OpenmrsUtil;
+
+/**
+ * Tests the {@link HL7ArchiveSegmentStore} class
+ */
+public class HL7ArchiveSegmentStoreTest {
+	
+	private File directory;
+	
+	@Before
+	public void before() throws Exception {
+		directory = File.createTempFile("hl7segments", "");
+		directory.delete();
+		directory.mkdirs();
+	}
+	
+	@After
+	public void after() throws Exception {
+		OpenmrsUtil.deleteDirectory(directory);
+	}
+	
+	/**
+	 * @see {@link HL7ArchiveSegmentStore#append(Map)}
+	 */
+	@Test
+	@Verifies(value = "should append the messages so they can be read back", method = "append(Map)")
+	public void append_shouldAppendTheMessagesSoTheyCanBeReadBack() throws Exception {
+		HL7ArchiveSegmentStore store = new HL7ArchiveSegmentStore(directory);
+		Map<String, String> references = store.append(getMessages("a", "b"));
+		references.putAll(new HL7ArchiveSegmentStore(directory).append(getMessages("c")));
+		
+		Assert.assertEquals(3, references.size());
+		Assert.assertEquals("MSH|a", store.read(references.get("a")));
+		Assert.assertEquals("MSH|b", store.read(references.get("b")));
+		Assert.assertEquals("MSH|c", store.read(references.get("c")));
+		
+		// all messages go to the same segment
+		Assert.assertEquals(2, directory.list().length);
+	}
+	
+	/**
+	 * @see {@link HL7ArchiveSegmentStore#append(Map)}
+	 */
+	@Test
+	@Verifies(value = "should start a new segment when the newest one is full", method = "append(Map)")
+	public void append_shouldStartANewSegmentWhenTheNewestOneIsFull() throws Exception {
+		HL7ArchiveSegmentStore store = new HL7ArchiveSegmentStore(directory, 1);
+		Map<String, String> references = store.append(getMessages("a", "b"));
+		
+		Assert.assertEquals("hl7archive:segment-00000001.hl7z#0", references.get("a"));
+		Assert.assertEquals("hl7archive:segment-00000002.hl7z#0", references.get("b"));
+		Assert.assertEquals("MSH|b", store.read(references.get("b")));
+	}
+	
+	/**
+	 * @see {@link HL7ArchiveSegmentStore#find(String)}
+	 */
+	@Test
+	@Verifies(value = "should find a message by uuid", method = "find(String)")
+	public void find_shouldFindAMessageByUuid() throws Exception {
+		HL7ArchiveSegmentStore store = new HL7ArchiveSegmentStore(directory, 1);
+		Map<String, String> references = store.append(getMessages("a", "b", "c"));
+		
+		Assert.assertEquals(references.get("b"), store.find("b"));
+	}
+	
+	/**
+	 * @see {@link HL7ArchiveSegmentStore#find(String)}
+	 */
+	@Test
+	@Verifies(value = "should return null if the uuid is not in any segment", method = "find(String)")
+	public void find_shouldReturnNullIfTheUuidIsNotInAnySegment() throws Exception {
+		HL7ArchiveSegmentStore store = new HL7ArchiveSegmentStore(directory);
+		store.append(getMessages("a"));
+		
+		Assert.assertNull(store.find("z"));
+	}
+	
+	/**
+	 * @see {@link HL7ArchiveSegmentStore#getSegmentsOlderThan(Date)}
+	 */
+	@Test
+	@Verifies(value = "should not include the newest segment", method = "getSegmentsOlderThan(Date)")
+	public void getSegmentsOlderThan_shouldNotIncludeTheNewestSegment() throws Exception {
+		HL7ArchiveSegmentStore store = new HL7ArchiveSegmentStore(directory, 1);
+		store.append(getMessages("a", "b", "c"));
+		
+		Calendar tomorrow = Calendar.getInstance();
+		tomorrow.add(Calendar.DATE, 1);
+		List<String> segments = store.getSegmentsOlderThan(tomorrow.getTime());
+		Assert.assertEquals(2, segments.size());
+		Assert.assertEquals("segment-00000001.hl7z", segments.get(0));
+		Assert.assertEquals("segment-00000002.hl7z", segments.get(1));
+	}
+	
+	/**
+	 * @see {@link HL7ArchiveSegmentStore#deleteSegment(String)}
+	 */
+	@Test
+	@Verifies(value = "should delete the segment and its index", method = "deleteSegment(String)")
+	public void deleteSegment_shouldDeleteTheSegmentAndItsIndex() throws Exception {
+		HL7ArchiveSegmentStore store = new HL7ArchiveSegmentStore(directory, 1);
+		store.append(getMessages("a", "b"));
+		Assert.assertEquals("a", store.getUuids("segment-00000001.hl7z").iterator().next());
+		
+		Assert.assertTrue(store.deleteSegment("segment-00000001.hl7z"));
+		Assert.assertEquals(2, directory.list().length);
+		Assert.assertNull(store.find("a"));
+		Assert.assertNotNull(store.find("b"));
+	}
+	
+	/**
+	 * @return a message for each of the given uuids
+	 */
+	private Map<String, String> getMessages(String... uuids) {
+		Map<String, String> messages = new LinkedHashMap<String, String>();
+		for (String uuid : uuids)
+			messages.put(uuid, "MSH|" + uuid);
+		return messages;
+	}
+}
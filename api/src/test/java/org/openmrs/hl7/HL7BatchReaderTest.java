@@ -0,0 +1,100 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.hl7;
+
+import java.io.StringReader;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.test.Verifies;
+
+/**
+ * Tests the {@link HL7BatchReader} class
+ */
+public class HL7BatchReaderTest {
+	
+	private static final String MSH_1 = "MSH|^~\\&|FORMENTRY|AMRS.ELD|HL7LISTENER|AMRS.ELD|20080226102656||ORU^R01|ctrl1|P|2.5|1";
+	
+	private static final String MSH_2 = "MSH|^~\\&|FORMENTRY|AMRS.ELD|HL7LISTENER|AMRS.ELD|20080226102656||ORU^R01|ctrl2|P|2.5|1";
+	
+	private static final String PID = "PID|||3^^^^||John3^Doe^";
+	
+	/**
+	 * @see {@link HL7BatchReader#nextMessage()}
+	 */
+	@Test
+	@Verifies(value = "should split messages in a batch file", method = "nextMessage()")
+	public void nextMessage_shouldSplitMessagesInABatchFile() throws Exception {
+		HL7BatchReader reader = new HL7BatchReader(new StringReader("FHS|^~\\&|LAB\rBHS|^~\\&|LAB\r" + MSH_1 + "\r" + PID
+		        + "\r" + MSH_2 + "\r" + PID + "\rBTS|2\rFTS|1\r"));
+		
+		Assert.assertEquals(MSH_1 + "\r" + PID, reader.nextMessage());
+		Assert.assertEquals(MSH_2 + "\r" + PID, reader.nextMessage());
+		Assert.assertNull(reader.nextMessage());
+	}
+	
+	/**
+	 * @see {@link HL7BatchReader#nextMessage()}
+	 */
+	@Test
+	@Verifies(value = "should split messages that follow each other", method = "nextMessage()")
+	public void nextMessage_shouldSplitMessagesThatFollowEachOther() throws Exception {
+		HL7BatchReader reader = new HL7BatchReader(new StringReader(MSH_1 + "\r" + PID + "\r" + MSH_2));
+		
+		Assert.assertEquals(MSH_1 + "\r" + PID, reader.nextMessage());
+		Assert.assertEquals(MSH_2, reader.nextMessage());
+		Assert.assertNull(reader.nextMessage());
+	}
+	
+	/**
+	 * @see {@link HL7BatchReader#nextMessage()}
+	 */
+	@Test
+	@Verifies(value = "should accept any segment separator", method = "nextMessage()")
+	public void nextMessage_shouldAcceptAnySegmentSeparator() throws Exception {
+		HL7BatchReader reader = new HL7BatchReader(new StringReader("\u000b" + MSH_1 + "\r\n" + PID + "\n\n\u001c\r"
+		        + MSH_2 + "\n" + PID + "\n"));
+		
+		Assert.assertEquals(MSH_1 + "\r" + PID, reader.nextMessage());
+		Assert.assertEquals(MSH_2 + "\r" + PID, reader.nextMessage());
+	}
+	
+	/**
+	 * @see {@link HL7BatchReader#nextMessage()}
+	 */
+	@Test
+	@Verifies(value = "should return null at the end of the stream", method = "nextMessage()")
+	public void nextMessage_shouldReturnNullAtTheEndOfTheStream() throws Exception {
+		Assert.assertNull(new HL7BatchReader(new StringReader("")).nextMessage());
+		Assert.assertNull(new HL7BatchReader(new StringReader("FHS|^~\\&|LAB\rFTS|0\r")).nextMessage());
+	}
+	
+	/**
+	 * @see {@link HL7BatchReader#getMessageControlId(String)}
+	 */
+	@Test
+	@Verifies(value = "should get the message control id", method = "getMessageControlId(String)")
+	public void getMessageControlId_shouldGetTheMessageControlId() throws Exception {
+		Assert.assertEquals("ctrl1", HL7BatchReader.getMessageControlId(MSH_1 + "\r" + PID));
+	}
+	
+	/**
+	 * @see {@link HL7BatchReader#getMessageControlId(String)}
+	 */
+	@Test
+	@Verifies(value = "should return null if the message does not start with an msh segment", method = "getMessageControlId(String)")
+	public void getMessageControlId_shouldReturnNullIfTheMessageDoesNotStartWithAnMshSegment() throws Exception {
+		Assert.assertNull(HL7BatchReader.getMessageControlId(PID));
+	}
+}
@@ -16,11 +16,17 @@ package org.openmrs.hl7;
 import static org.junit.Assert.assertEquals;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.junit.Assert;
@@ -727,4 +733,211 @@ public class HL7ServiceTest extends BaseContextSensitiveTest {
 		Assert.assertNull(locationId);
 	}
 	
+	
+	/**
+	 * @see {@link HL7Service#loadHL7InArchiveData(HL7InArchive)}
+	 */
+	@Test
+	@Verifies(value = "should load the data of an archive in a segment", method = "loadHL7InArchiveData(HL7InArchive)")
+	public void loadHL7InArchiveData_shouldLoadTheDataOfAnArchiveInASegment() throws Exception {
+		File archivesDir = useTempArchivesDirectory();
+		HL7InArchive archive = createMigratedArchive("MSH|^~\\&|1");
+		archive.setHL7Data(new HL7ArchiveSegmentStore(archivesDir).append(
+		    Collections.singletonMap(archive.getUuid(), "MSH|^~\\&|1")).get(archive.getUuid()));
+		
+		Context.getHL7Service().loadHL7InArchiveData(archive);
+		
+		Assert.assertTrue(archive.isLoaded());
+		Assert.assertEquals("MSH|^~\\&|1", archive.getHL7Data());
+	}
+	
+	/**
+	 * @see {@link HL7Service#migrateHL7InArchiveFilesToSegments(Integer,Map)}
+	 */
+	@Test
+	@Verifies(value = "should move the archives in separate files to segments", method = "migrateHL7InArchiveFilesToSegments(Integer,Map)")
+	public void migrateHL7InArchiveFilesToSegments_shouldMoveTheArchivesInSeparateFilesToSegments() throws Exception {
+		File archivesDir = useTempArchivesDirectory();
+		File file = new File(archivesDir, "separate.txt");
+		FileUtils.writeStringToFile(file, "MSH|^~\\&|2");
+		HL7InArchive archive = createMigratedArchive(file.toURI().toString());
+		
+		HL7Service hl7service = Context.getHL7Service();
+		Map<String, Integer> progressStatusMap = new HashMap<String, Integer>();
+		Integer lastHL7InArchiveId = hl7service.migrateHL7InArchiveFilesToSegments(null, progressStatusMap);
+		Assert.assertEquals(archive.getHL7InArchiveId(), lastHL7InArchiveId.intValue());
+		
+		Assert.assertTrue(HL7ArchiveSegmentStore.isReference(archive.getHL7Data()));
+		Assert.assertEquals(1, progressStatusMap.get(HL7Constants.NUMBER_TRANSFERRED_KEY).intValue());
+		hl7service.loadHL7InArchiveData(archive);
+		Assert.assertEquals("MSH|^~\\&|2", archive.getHL7Data());
+	}
+	
+	/**
+	 * @see {@link HL7Service#migrateHL7InArchiveFilesToSegments(Integer,Map)}
+	 */
+	@Test
+	@Verifies(value = "should return null if there are no archives left to move", method = "migrateHL7InArchiveFilesToSegments(Integer,Map)")
+	public void migrateHL7InArchiveFilesToSegments_shouldReturnNullIfThereAreNoArchivesLeftToMove() throws Exception {
+		useTempArchivesDirectory();
+		Assert.assertNull(Context.getHL7Service().migrateHL7InArchiveFilesToSegments(null,
+		    new HashMap<String, Integer>()));
+	}
+	
+	/**
+	 * @see {@link HL7Service#purgeHL7InArchiveSegmentsOlderThan(Date)}
+	 */
+	@Test
+	@Verifies(value = "should purge the archives in old segments", method = "purgeHL7InArchiveSegmentsOlderThan(Date)")
+	public void purgeHL7InArchiveSegmentsOlderThan_shouldPurgeTheArchivesInOldSegments() throws Exception {
+		File archivesDir = useTempArchivesDirectory();
+		HL7InArchive oldArchive = createMigratedArchive("old");
+		HL7InArchive newArchive = createMigratedArchive("new");
+		
+		// a segment size of one byte puts each message in a segment of its own
+		Map<String, String> messages = new LinkedHashMap<String, String>();
+		messages.put(oldArchive.getUuid(), "old");
+		messages.put(newArchive.getUuid(), "new");
+		Map<String, String> references = new HL7ArchiveSegmentStore(archivesDir, 1).append(messages);
+		oldArchive.setHL7Data(references.get(oldArchive.getUuid()));
+		newArchive.setHL7Data(references.get(newArchive.getUuid()));
+		
+		HL7Service hl7service = Context.getHL7Service();
+		hl7service.saveHL7InArchive(oldArchive);
+		hl7service.saveHL7InArchive(newArchive);
+		
+		Calendar tomorrow = Calendar.getInstance();
+		tomorrow.add(Calendar.DATE, 1);
+		Assert.assertEquals(1, hl7service.purgeHL7InArchiveSegmentsOlderThan(tomorrow.getTime()));
+		
+		Context.clearSession();
+		Assert.assertNull(hl7service.getHL7InArchiveByUuid(oldArchive.getUuid()));
+		Assert.assertNotNull(hl7service.getHL7InArchiveByUuid(newArchive.getUuid()));
+	}
+	
+	/**
+	 * @see {@link HL7Service#saveHL7InQueues(List)}
+	 */
+	@Test
+	@Verifies(value = "should queue all of the items", method = "saveHL7InQueues(List)")
+	public void saveHL7InQueues_shouldQueueAllOfTheItems() throws Exception {
+		HL7Service hl7service = Context.getHL7Service();
+		int queued = hl7service.getAllHL7InQueues().size();
+		
+		List<HL7InQueue> hl7InQueues = new ArrayList<HL7InQueue>();
+		for (int i = 0; i < HL7Constants.QUEUE_INSERT_BATCH_SIZE + 1; i++) {
+			HL7InQueue hl7InQueue = new HL7InQueue();
+			hl7InQueue.setHL7Data("MSH|" + i);
+			hl7InQueue.setHL7Source(new HL7Source(1));
+			hl7InQueues.add(hl7InQueue);
+		}
+		hl7service.saveHL7InQueues(hl7InQueues);
+		
+		Assert.assertEquals(queued + hl7InQueues.size(), hl7service.getAllHL7InQueues().size());
+		HL7InQueue last = hl7service.getHL7InQueueByUuid(hl7InQueues.get(hl7InQueues.size() - 1).getUuid());
+		Assert.assertEquals("MSH|" + HL7Constants.QUEUE_INSERT_BATCH_SIZE, last.getHL7Data());
+	}
+	
+	/**
+	 * @see {@link HL7Service#saveHL7InQueues(List)}
+	 */
+	@Test
+	@Verifies(value = "should set the date created and message state of the items", method = "saveHL7InQueues(List)")
+	public void saveHL7InQueues_shouldSetTheDateCreatedAndMessageStateOfTheItems() throws Exception {
+		HL7InQueue hl7InQueue = new HL7InQueue();
+		hl7InQueue.setHL7Data("MSH|1");
+		hl7InQueue.setHL7Source(new HL7Source(1));
+		Context.getHL7Service().saveHL7InQueues(Collections.singletonList(hl7InQueue));
+		
+		Assert.assertNotNull(hl7InQueue.getDateCreated());
+		Assert.assertEquals(HL7Constants.HL7_STATUS_PENDING, hl7InQueue.getMessageState());
+		Assert.assertNotNull(Context.getHL7Service().getHL7InQueueByUuid(hl7InQueue.getUuid()));
+	}
+	
+	/**
+	 * @see {@link HL7Service#saveHL7InQueue(HL7InQueue)}
+	 */
+	@Test
+	@Verifies(value = "should set the message metadata", method = "saveHL7InQueue(HL7InQueue)")
+	public void saveHL7InQueue_shouldSetTheMessageMetadata() throws Exception {
+		HL7InQueue hl7InQueue = createQueueItem("ctrl1", new Date());
+		Context.getHL7Service().saveHL7InQueue(hl7InQueue);
+		
+		Assert.assertEquals("ctrl1", hl7InQueue.getMessageControlId());
+		Assert.assertEquals("ZZZ^Z01", hl7InQueue.getMessageType());
+		Assert.assertEquals("3", hl7InQueue.getPatientIdentifier());
+	}
+	
+	/**
+	 * @see {@link HL7Service#getHL7InQueueBatch(int,int,int,String)}
+	 */
+	@Test
+	@Verifies(value = "should find hl7s by message control id", method = "getHL7InQueueBatch(int,int,int,String)")
+	public void getHL7InQueueBatch_shouldFindHl7sByMessageControlId() throws Exception {
+		HL7Service hl7service = Context.getHL7Service();
+		hl7service.saveHL7InQueue(createQueueItem("ctrl1", new Date()));
+		hl7service.saveHL7InQueue(createQueueItem("ctrl2", new Date()));
+		
+		List<HL7InQueue> batch = hl7service.getHL7InQueueBatch(0, 10, HL7Constants.HL7_STATUS_PENDING, "ctrl2");
+		Assert.assertEquals(1, batch.size());
+		Assert.assertEquals("ctrl2", batch.get(0).getMessageControlId());
+	}
+	
+	/**
+	 * @see {@link HL7Service#getHL7InQueueBatch(int,int,int,String)}
+	 */
+	@Test
+	@Verifies(value = "should continue after the previous batch", method = "getHL7InQueueBatch(int,int,int,String)")
+	public void getHL7InQueueBatch_shouldContinueAfterThePreviousBatch() throws Exception {
+		HL7Service hl7service = Context.getHL7Service();
+		Date dateCreated = new Date();
+		for (int i = 1; i <= 5; i++)
+			hl7service.saveHL7InQueue(createQueueItem("ctrl" + i, dateCreated));
+		
+		List<HL7InQueue> first = hl7service.getHL7InQueueBatch(0, 2, HL7Constants.HL7_STATUS_PENDING, "ZZZ");
+		List<HL7InQueue> second = hl7service.getHL7InQueueBatch(2, 2, HL7Constants.HL7_STATUS_PENDING, "ZZZ");
+		List<HL7InQueue> third = hl7service.getHL7InQueueBatch(4, 2, HL7Constants.HL7_STATUS_PENDING, "ZZZ");
+		
+		Assert.assertEquals("ctrl2", first.get(1).getMessageControlId());
+		Assert.assertEquals(2, second.size());
+		Assert.assertEquals("ctrl3", second.get(0).getMessageControlId());
+		Assert.assertEquals("ctrl4", second.get(1).getMessageControlId());
+		Assert.assertEquals(1, third.size());
+		Assert.assertEquals("ctrl5", third.get(0).getMessageControlId());
+	}
+	
+	private HL7InQueue createQueueItem(String messageControlId, Date dateCreated) {
+		HL7InQueue hl7InQueue = new HL7InQueue();
+		hl7InQueue.setHL7Data("MSH|^~\\&|FORMENTRY|AMRS.ELD|HL7LISTENER|AMRS.ELD|20080226102656||ZZZ^Z01|"
+		        + messageControlId + "|P|2.5|1\rPID|||3^^^^||John3^Doe^");
+		hl7InQueue.setHL7Source(new HL7Source(1));
+		hl7InQueue.setDateCreated(dateCreated);
+		return hl7InQueue;
+	}
+	
+	/**
+	 * Points the hl7 archives directory to an empty temporary folder
+	 * 
+	 * @return the folder
+	 */
+	private File useTempArchivesDirectory() throws Exception {
+		File tempDir = new File(System.getProperty("java.io.tmpdir"), HL7Constants.HL7_ARCHIVE_DIRECTORY_NAME);
+		if (tempDir.exists() && tempDir.isDirectory())
+			Assert.assertEquals(true, OpenmrsUtil.deleteDirectory(tempDir));
+		tempDir.mkdirs();
+		
+		GlobalProperty gp = new GlobalProperty(OpenmrsConstants.GLOBAL_PROPERTY_HL7_ARCHIVE_DIRECTORY, tempDir
+		        .getAbsolutePath());
+		Context.getAdministrationService().saveGlobalProperty(gp);
+		return tempDir;
+	}
+	
+	private HL7InArchive createMigratedArchive(String hl7Data) {
+		HL7InArchive archive = new HL7InArchive();
+		archive.setHL7Source(new HL7Source(1));
+		archive.setHL7Data(hl7Data);
+		archive.setMessageState(HL7Constants.HL7_STATUS_MIGRATED);
+		archive.setDateCreated(new Date());
+		return Context.getHL7Service().saveHL7InArchive(archive);
+	}
 }
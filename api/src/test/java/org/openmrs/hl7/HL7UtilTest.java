@@ -103,4 +103,35 @@ public class HL7UtilTest {
 		TimeZone.setDefault(originalTimeZone);
 	}
 	
+	/**
+	 * @see {@link HL7Util#setMessageMetadata(HL7QueueItem)}
+	 */
+	@Test
+	@Verifies(value = "should set the message metadata", method = "setMessageMetadata(HL7QueueItem)")
+	public void setMessageMetadata_shouldSetTheMessageMetadata() throws Exception {
+		HL7InQueue hl7InQueue = new HL7InQueue();
+		hl7InQueue.setHL7Data("MSH|^~\\&|FORMENTRY|AMRS.ELD|HL7LISTENER|AMRS.ELD|20080226102656||ORU^R01|ctrl1|P|2.5|1\r"
+		        + "PID|||3^^^^~4^^^^||John3^Doe^\rOBR|1");
+		HL7Util.setMessageMetadata(hl7InQueue);
+		
+		Assert.assertEquals("ctrl1", hl7InQueue.getMessageControlId());
+		Assert.assertEquals("ORU^R01", hl7InQueue.getMessageType());
+		Assert.assertEquals("3", hl7InQueue.getPatientIdentifier());
+	}
+	
+	/**
+	 * @see {@link HL7Util#setMessageMetadata(HL7QueueItem)}
+	 */
+	@Test
+	@Verifies(value = "should ignore data that is not an hl7 message", method = "setMessageMetadata(HL7QueueItem)")
+	public void setMessageMetadata_shouldIgnoreDataThatIsNotAnHl7Message() throws Exception {
+		HL7InQueue hl7InQueue = new HL7InQueue();
+		hl7InQueue.setHL7Data("hl7archive:segment-00000001.hl7z#0");
+		HL7Util.setMessageMetadata(hl7InQueue);
+		
+		Assert.assertNull(hl7InQueue.getMessageControlId());
+		Assert.assertNull(hl7InQueue.getMessageType());
+		Assert.assertNull(hl7InQueue.getPatientIdentifier());
+	}
+	
 }
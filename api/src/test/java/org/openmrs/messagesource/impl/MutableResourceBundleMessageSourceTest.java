@@ -0,0 +1,115 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.messagesource.impl;
+
+import java.io.File;
+import java.util.Locale;
+import java.util.Properties;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.test.Verifies;
+import org.openmrs.util.OpenmrsUtil;
+
+public class MutableResourceBundleMessageSourceTest {
+	
+	private File directory;
+	
+	private MutableResourceBundleMessageSource messageSource;
+	
+	@Before
+	public void before() throws Exception {
+		directory = File.createTempFile("messages", "");
+		directory.delete();
+		directory.mkdir();
+		
+		writeMessages("custom_messages.properties", "greeting", "Custom hello");
+		writeMessages("messages.properties", "greeting", "Hello", "farewell", "Goodbye", "welcome", "Welcome {0}");
+		writeMessages("messages_fr.properties", "farewell", "Au revoir");
+		
+		messageSource = new MutableResourceBundleMessageSource();
+		messageSource.setBasenames(new String[] { "file:" + directory.getAbsolutePath() + "/custom_messages",
+		        "file:" + directory.getAbsolutePath() + "/messages" });
+		messageSource.setFallbackToSystemLocale(false);
+		messageSource.setCacheSeconds(5);
+	}
+	
+	@After
+	public void after() throws Exception {
+		OpenmrsUtil.deleteDirectory(directory);
+	}
+	
+	/**
+	 * @see {@link MutableResourceBundleMessageSource#resolveCodeWithoutArguments(String,Locale)}
+	 */
+	@Test
+	@Verifies(value = "should resolve a message from the most specific locale", method = "resolveCodeWithoutArguments(String,Locale)")
+	public void resolveCodeWithoutArguments_shouldResolveAMessageFromTheMostSpecificLocale() throws Exception {
+		Assert.assertEquals("Au revoir", messageSource.getMessage("farewell", null, Locale.FRENCH));
+		Assert.assertEquals("Au revoir", messageSource.getMessage("farewell", null, Locale.CANADA_FRENCH));
+		Assert.assertEquals("Goodbye", messageSource.getMessage("farewell", null, Locale.ENGLISH));
+	}
+	
+	/**
+	 * @see {@link MutableResourceBundleMessageSource#resolveCodeWithoutArguments(String,Locale)}
+	 */
+	@Test
+	@Verifies(value = "should prefer messages from earlier basenames", method = "resolveCodeWithoutArguments(String,Locale)")
+	public void resolveCodeWithoutArguments_shouldPreferMessagesFromEarlierBasenames() throws Exception {
+		Assert.assertEquals("Custom hello", messageSource.getMessage("greeting", null, Locale.FRENCH));
+	}
+	
+	/**
+	 * @see {@link MutableResourceBundleMessageSource#resolveCodeWithoutArguments(String,Locale)}
+	 */
+	@Test
+	@Verifies(value = "should return null if the code is not defined", method = "resolveCodeWithoutArguments(String,Locale)")
+	public void resolveCodeWithoutArguments_shouldReturnNullIfTheCodeIsNotDefined() throws Exception {
+		Assert.assertNull(messageSource.resolveCodeWithoutArguments("undefined", Locale.ENGLISH));
+		Assert.assertEquals("default", messageSource.getMessage("undefined", null, "default", Locale.ENGLISH));
+	}
+	
+	/**
+	 * @see {@link MutableResourceBundleMessageSource#resolveCode(String,Locale)}
+	 */
+	@Test
+	@Verifies(value = "should resolve a message format that applies the given arguments", method = "resolveCode(String,Locale)")
+	public void resolveCode_shouldResolveAMessageFormatThatAppliesTheGivenArguments() throws Exception {
+		Assert.assertEquals("Welcome Jane", messageSource.getMessage("welcome", new Object[] { "Jane" }, Locale.ENGLISH));
+		Assert.assertEquals("Welcome John", messageSource.getMessage("welcome", new Object[] { "John" }, Locale.ENGLISH));
+	}
+	
+	/**
+	 * @see {@link MutableResourceBundleMessageSource#clearCache()}
+	 */
+	@Test
+	@Verifies(value = "should resolve messages changed on disk after the cache is cleared", method = "clearCache()")
+	public void clearCache_shouldResolveMessagesChangedOnDiskAfterTheCacheIsCleared() throws Exception {
+		Assert.assertEquals("Goodbye", messageSource.getMessage("farewell", null, Locale.ENGLISH));
+		
+		writeMessages("custom_messages.properties", "greeting", "Custom hello", "farewell", "See you");
+		messageSource.clearCache();
+		
+		Assert.assertEquals("See you", messageSource.getMessage("farewell", null, Locale.ENGLISH));
+	}
+	
+	private void writeMessages(String filename, String... codesAndMessages) {
+		Properties props = new Properties();
+		for (int i = 0; i < codesAndMessages.length; i += 2)
+			props.setProperty(codesAndMessages[i], codesAndMessages[i + 1]);
+		OpenmrsUtil.storeProperties(props, new File(directory, filename), null);
+	}
+}
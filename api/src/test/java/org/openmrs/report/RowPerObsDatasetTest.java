@@ -17,13 +17,20 @@ import static org.junit.Assert.assertEquals;
 
 import java.io.StringWriter;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.GregorianCalendar;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.custommonkey.xmlunit.XMLAssert;
+import org.junit.Assert;
 import org.junit.Test;
 import org.openmrs.Cohort;
+import org.openmrs.Concept;
+import org.openmrs.Obs;
 import org.openmrs.api.DataSetService;
 import org.openmrs.api.context.Context;
 import org.openmrs.report.impl.TsvReportRenderer;
@@ -31,6 +38,7 @@ import org.openmrs.reporting.PatientCharacteristicFilter;
 import org.openmrs.reporting.PatientSearch;
 import org.openmrs.test.BaseContextSensitiveTest;
 import org.openmrs.test.SkipBaseSetup;
+import org.openmrs.test.Verifies;
 import org.openmrs.util.OpenmrsUtil;
 import org.simpleframework.xml.Serializer;
 
@@ -108,4 +116,32 @@ public class RowPerObsDatasetTest extends BaseContextSensitiveTest {
 		
 	}
 	
+	/**
+	 * @see {@link RowPerObsDataSet#iterator()}
+	 */
+	@Test
+	@Verifies(value = "should iterate over the obs of the patients a page at a time", method = "iterator()")
+	public void iterator_shouldIterateOverTheObsOfThePatientsAPageAtATime() throws Exception {
+		Concept weight = Context.getConceptService().getConcept(5089);
+		RowPerObsDataSetDefinition definition = new RowPerObsDataSetDefinition();
+		definition.getQuestions().add(weight);
+		
+		RowPerObsDataSet paged = new RowPerObsDataSet();
+		paged.setDefinition(definition);
+		
+		List<Obs> obs = Context.getObsService().getObservations(null, Collections.singletonList(weight), null, null);
+		RowPerObsDataSet loaded = new RowPerObsDataSet();
+		loaded.setDefinition(definition);
+		loaded.setData(obs);
+		
+		Assert.assertTrue(obs.size() > 1);
+		int rows = 0;
+		Iterator<Map<String, Object>> expected = loaded.iterator();
+		for (Iterator<Map<String, Object>> i = paged.iterator(); i.hasNext();) {
+			Assert.assertEquals(expected.next(), i.next());
+			rows++;
+		}
+		Assert.assertEquals(obs.size(), rows);
+	}
+	
 }
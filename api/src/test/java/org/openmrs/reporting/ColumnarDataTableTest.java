@@ -0,0 +1,153 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.reporting;
+
+import java.util.Date;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.test.Verifies;
+
+/**
+ * Tests the {@link ColumnarDataTable} class
+ */
+@SuppressWarnings("deprecation")
+public class ColumnarDataTableTest {
+	
+	/**
+	 * @see {@link ColumnarDataTable#addRow(TableRow)}
+	 */
+	@Test
+	@Verifies(value = "should keep integer columns as integers", method = "addRow(TableRow)")
+	public void addRow_shouldKeepIntegerColumnsAsIntegers() throws Exception {
+		ColumnarDataTable table = new ColumnarDataTable();
+		table.addRow(new TableRow("age", 12));
+		table.addRow(new TableRow("name", "John"));
+		table.addRow(new TableRow("age", 40));
+		
+		Assert.assertEquals(3, table.getRowCount());
+		Assert.assertEquals(12, table.get(0, "age"));
+		Assert.assertNull(table.get(1, "age"));
+		Assert.assertEquals(40, table.get(2, "age"));
+		Assert.assertNull(table.get(0, "name"));
+	}
+	
+	/**
+	 * @see {@link ColumnarDataTable#addRow(TableRow)}
+	 */
+	@Test
+	@Verifies(value = "should keep values of other types as they are", method = "addRow(TableRow)")
+	public void addRow_shouldKeepValuesOfOtherTypesAsTheyAre() throws Exception {
+		Date date = new Date();
+		ColumnarDataTable table = new ColumnarDataTable();
+		table.addRow(new TableRow("value", 1));
+		table.addRow(new TableRow("value", 2.5));
+		table.addRow(new TableRow("value", "unknown"));
+		table.addRow(new TableRow("value", date));
+		
+		Assert.assertEquals(1, table.get(0, "value"));
+		Assert.assertEquals(2.5, table.get(1, "value"));
+		Assert.assertEquals("unknown", table.get(2, "value"));
+		Assert.assertEquals(date, table.get(3, "value"));
+	}
+	
+	/**
+	 * @see {@link ColumnarDataTable#group(TableRowClassifier)}
+	 */
+	@Test
+	@Verifies(value = "should group rows by classification", method = "group(TableRowClassifier)")
+	public void group_shouldGroupRowsByClassification() throws Exception {
+		ColumnarDataTable table = new ColumnarDataTable();
+		for (int age : new int[] { 5, 30, 8, 70 })
+			table.addRow(new TableRow("age", age));
+		table.addRow(new TableRow("age", null));
+		
+		NumericRangeColumnClassifier classifier = new NumericRangeColumnClassifier("age", "missing");
+		classifier.addCutoff(15, null);
+		classifier.addLastLabel("adult");
+		Map<String, int[]> groups = table.group(classifier);
+		
+		Assert.assertEquals(3, groups.size());
+		Assert.assertArrayEquals(new int[] { 0, 2 }, groups.get("< 15"));
+		Assert.assertArrayEquals(new int[] { 1, 3 }, groups.get("adult"));
+		Assert.assertArrayEquals(new int[] { 4 }, groups.get("missing"));
+	}
+	
+	/**
+	 * @see {@link ColumnarDataTable#group(TableRowClassifier)}
+	 */
+	@Test
+	@Verifies(value = "should group rows by the values of a dictionary column", method = "group(TableRowClassifier)")
+	public void group_shouldGroupRowsByTheValuesOfADictionaryColumn() throws Exception {
+		ColumnarDataTable table = new ColumnarDataTable();
+		for (String gender : new String[] { "M", "F", "F", null, "M" })
+			table.addRow(new TableRow("gender", gender));
+		
+		Map<String, int[]> groups = table.group(new SimpleColumnClassifier("gender", "unknown"));
+		
+		Assert.assertEquals(3, groups.size());
+		Assert.assertArrayEquals(new int[] { 0, 4 }, groups.get("M"));
+		Assert.assertArrayEquals(new int[] { 1, 2 }, groups.get("F"));
+		Assert.assertArrayEquals(new int[] { 3 }, groups.get("unknown"));
+	}
+	
+	/**
+	 * @see {@link ColumnarDataTable#group(TableRowClassifier)}
+	 */
+	@Test
+	@Verifies(value = "should classify each row with a subclass of the simple column classifier", method = "group(TableRowClassifier)")
+	public void group_shouldClassifyEachRowWithASubclassOfTheSimpleColumnClassifier() throws Exception {
+		ColumnarDataTable table = new ColumnarDataTable();
+		for (String gender : new String[] { "M", "F", "f", null })
+			table.addRow(new TableRow("gender", gender));
+		
+		Map<String, int[]> groups = table.group(new SimpleColumnClassifier("gender", "unknown") {
+			
+			@Override
+			public String classify(TableRow row) {
+				return super.classify(row).toUpperCase();
+			}
+		});
+		
+		Assert.assertEquals(3, groups.size());
+		Assert.assertArrayEquals(new int[] { 0 }, groups.get("M"));
+		Assert.assertArrayEquals(new int[] { 1, 2 }, groups.get("F"));
+		Assert.assertArrayEquals(new int[] { 3 }, groups.get("UNKNOWN"));
+	}
+	
+	/**
+	 * @see {@link ColumnarDataTable#aggregate(TableRowAggregator,int[])}
+	 */
+	@Test
+	@Verifies(value = "should aggregate the rows with an aggregator written for data tables", method = "aggregate(TableRowAggregator,int[])")
+	public void aggregate_shouldAggregateTheRowsWithAnAggregatorWrittenForDataTables() throws Exception {
+		ColumnarDataTable table = new ColumnarDataTable();
+		for (int age : new int[] { 5, 30, 8, 70 })
+			table.addRow(new TableRow("age", age));
+		
+		TableRowAggregator sum = new TableRowAggregator() {
+			
+			public Object aggregate(DataTable dataTable) {
+				int total = 0;
+				for (TableRow row : dataTable.getRows())
+					total += (Integer) row.get("age");
+				return total;
+			}
+		};
+		
+		Assert.assertEquals(100, table.aggregate(sum, new int[] { 1, 3 }));
+		Assert.assertEquals(2, table.aggregate(new CountAggregator(), new int[] { 1, 3 }));
+	}
+}
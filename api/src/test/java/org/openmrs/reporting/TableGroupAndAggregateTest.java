@@ -0,0 +1,59 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.reporting;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.test.Verifies;
+
+/**
+ * Tests the {@link TableGroupAndAggregate} class
+ */
+@SuppressWarnings("deprecation")
+public class TableGroupAndAggregateTest {
+	
+	/**
+	 * @see {@link TableGroupAndAggregate#run(ColumnarDataTable)}
+	 */
+	@Test
+	@Verifies(value = "should give the same results as for a data table", method = "run(ColumnarDataTable)")
+	public void run_shouldGiveTheSameResultsAsForADataTable() throws Exception {
+		DataTable input = new DataTable();
+		String[] genders = { "M", "F", "F", null, "M", "F" };
+		for (int i = 0; i < genders.length; i++) {
+			TableRow row = new TableRow("gender", genders[i]);
+			row.put("patientId", i);
+			input.addRow(row);
+		}
+		
+		TableGroupAndAggregate groupAndAggregate = new TableGroupAndAggregate(new SimpleColumnClassifier("gender",
+		        "unknown"), new CountAggregator(), "label", "value");
+		Map<Object, Object> expected = getValuesByLabel(groupAndAggregate.run(input));
+		Map<Object, Object> actual = getValuesByLabel(groupAndAggregate.run(new ColumnarDataTable(input)));
+		
+		Assert.assertEquals(3, expected.size());
+		Assert.assertEquals(3, expected.get("F"));
+		Assert.assertEquals(expected, actual);
+	}
+	
+	private Map<Object, Object> getValuesByLabel(DataTable table) {
+		Map<Object, Object> values = new HashMap<Object, Object>();
+		for (TableRow row : table.getRows())
+			values.put(row.get("label"), row.get("value"));
+		return values;
+	}
+}
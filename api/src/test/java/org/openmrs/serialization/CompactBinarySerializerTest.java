@@ -0,0 +1,204 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.serialization;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.Cohort;
+import org.openmrs.Location;
+import org.openmrs.test.Verifies;
+
+public class CompactBinarySerializerTest {
+	
+	private static final Log log = LogFactory.getLog(CompactBinarySerializerTest.class);
+	
+	/**
+	 * @see {@link CompactBinarySerializer#serialize(Object)}
+	 */
+	@Test
+	@Verifies(value = "should serialize an object into a string starting with the format prefix", method = "serialize(Object)")
+	public void serialize_shouldSerializeAnObjectIntoAStringStartingWithTheFormatPrefix() throws Exception {
+		Cohort cohort = new Cohort("test", "a test cohort", new Integer[] { 1, 2, 3 });
+		
+		String serialized = new CompactBinarySerializer().serialize(cohort);
+		
+		Assert.assertTrue(serialized.startsWith(CompactBinarySerializer.FORMAT_PREFIX
+		        + CompactBinarySerializer.FORMAT_VERSION + ":"));
+		Assert.assertTrue(CompactBinarySerializer.isBinaryFormat(serialized));
+	}
+	
+	/**
+	 * @see {@link CompactBinarySerializer#serialize(Object)}
+	 */
+	@Test
+	@Verifies(value = "should fall back to xml for classes that cannot be instantiated", method = "serialize(Object)")
+	public void serialize_shouldFallBackToXmlForClassesThatCannotBeInstantiated() throws Exception {
+		// Foo has no no-arg constructor
+		Foo foo = new Foo("test", 1);
+		
+		String serialized = new CompactBinarySerializer().serialize(foo);
+		
+		Assert.assertFalse(CompactBinarySerializer.isBinaryFormat(serialized));
+		Assert.assertTrue(serialized.startsWith("<org.openmrs.serialization.Foo>"));
+	}
+	
+	/**
+	 * @see {@link CompactBinarySerializer#deserialize(String,Class)}
+	 */
+	@Test
+	@Verifies(value = "should deserialize a string written by this serializer", method = "deserialize(String,Class)")
+	public void deserialize_shouldDeserializeAStringWrittenByThisSerializer() throws Exception {
+		Cohort cohort = new Cohort("test", "a test cohort", new Integer[] { 1, 2, 3 });
+		cohort.setDateCreated(new Date(1234567890L));
+		CompactBinarySerializer serializer = new CompactBinarySerializer();
+		
+		Cohort deserialized = serializer.deserialize(serializer.serialize(cohort), Cohort.class);
+		
+		Assert.assertEquals("test", deserialized.getName());
+		Assert.assertEquals("a test cohort", deserialized.getDescription());
+		Assert.assertEquals(cohort.getUuid(), deserialized.getUuid());
+		Assert.assertEquals(new Date(1234567890L), deserialized.getDateCreated());
+		Assert.assertEquals(cohort.getMemberIds(), deserialized.getMemberIds());
+	}
+	
+	/**
+	 * @see {@link CompactBinarySerializer#deserialize(String,Class)}
+	 */
+	@Test
+	@Verifies(value = "should deserialize an xml string written by the xstream serializer", method = "deserialize(String,Class)")
+	public void deserialize_shouldDeserializeAnXmlStringWrittenByTheXstreamSerializer() throws Exception {
+		Cohort cohort = new Cohort("test", "a test cohort", new Integer[] { 1, 2, 3 });
+		String xml = new SimpleXStreamSerializer().serialize(cohort);
+		
+		Cohort deserialized = new CompactBinarySerializer().deserialize(xml, Cohort.class);
+		
+		Assert.assertEquals("test", deserialized.getName());
+		Assert.assertEquals(cohort.getMemberIds(), deserialized.getMemberIds());
+	}
+	
+	/**
+	 * @see {@link CompactBinarySerializer#deserialize(String,Class)}
+	 */
+	@Test
+	@Verifies(value = "should preserve shared and circular references", method = "deserialize(String,Class)")
+	public void deserialize_shouldPreserveSharedAndCircularReferences() throws Exception {
+		Location parent = new Location();
+		parent.setName("parent");
+		Location child = new Location();
+		child.setName("child");
+		parent.addChildLocation(child);
+		CompactBinarySerializer serializer = new CompactBinarySerializer();
+		
+		Location deserialized = serializer.deserialize(serializer.serialize(parent), Location.class);
+		
+		Assert.assertEquals("parent", deserialized.getName());
+		Assert.assertEquals(1, deserialized.getChildLocations().size());
+		Location deserializedChild = deserialized.getChildLocations().iterator().next();
+		Assert.assertEquals("child", deserializedChild.getName());
+		Assert.assertSame(deserialized, deserializedChild.getParentLocation());
+	}
+	
+	/**
+	 * @see {@link CompactBinarySerializer#deserialize(String,Class)}
+	 */
+	@Test
+	@Verifies(value = "should restore hash based collections in a circular reference", method = "deserialize(String,Class)")
+	public void deserialize_shouldRestoreHashBasedCollectionsInACircularReference() throws Exception {
+		Location parent = new Location();
+		parent.setName("parent");
+		Location child = new Location();
+		child.setName("child");
+		parent.addChildLocation(child);
+		CompactBinarySerializer serializer = new CompactBinarySerializer();
+		
+		// the child is added to the set of its parent while the child itself is being read
+		Location deserialized = serializer.deserialize(serializer.serialize(child), Location.class);
+		
+		Assert.assertEquals(child.getUuid(), deserialized.getUuid());
+		Assert.assertTrue(deserialized.getParentLocation().getChildLocations().contains(deserialized));
+	}
+	
+	/**
+	 * @see {@link CompactBinarySerializer#deserialize(String,Class)}
+	 */
+	@Test(expected = SerializationException.class)
+	@Verifies(value = "should fail for an unknown format version", method = "deserialize(String,Class)")
+	public void deserialize_shouldFailForAnUnknownFormatVersion() throws Exception {
+		new CompactBinarySerializer().deserialize(CompactBinarySerializer.FORMAT_PREFIX + "99:AAAA", Cohort.class);
+	}
+	
+	/**
+	 * Round trips the same object graph through the xstream and the binary serializer and logs the
+	 * throughput and size of both formats
+	 */
+	@Test
+	public void shouldRoundTripFasterAndSmallerThanXml() throws Exception {
+		List<Cohort> cohorts = new ArrayList<Cohort>();
+		Map<String, Location> locations = new HashMap<String, Location>();
+		for (int i = 0; i < 50; i++) {
+			Integer[] ids = new Integer[200];
+			for (int j = 0; j < ids.length; j++)
+				ids[j] = i * 1000 + j;
+			cohorts.add(new Cohort("cohort " + i, "benchmark cohort " + i, ids));
+			Location location = new Location();
+			location.setName("location " + i);
+			locations.put(location.getName(), location);
+		}
+		Map<String, Object> graph = new HashMap<String, Object>();
+		graph.put("cohorts", cohorts);
+		graph.put("locations", locations);
+		
+		OpenmrsSerializer xml = new SimpleXStreamSerializer();
+		OpenmrsSerializer binary = new CompactBinarySerializer();
+		
+		int iterations = 20;
+		// warm up both serializers so that class metadata is cached
+		String xmlData = roundTrip(xml, graph, 2);
+		String binaryData = roundTrip(binary, graph, 2);
+		
+		long start = System.nanoTime();
+		roundTrip(xml, graph, iterations);
+		long xmlNanos = System.nanoTime() - start;
+		
+		start = System.nanoTime();
+		roundTrip(binary, graph, iterations);
+		long binaryNanos = System.nanoTime() - start;
+		
+		log.info("xml round trips/sec: " + (iterations * 1000000000L / Math.max(1, xmlNanos)) + ", size: "
+		        + xmlData.length() + " chars");
+		log.info("binary round trips/sec: " + (iterations * 1000000000L / Math.max(1, binaryNanos)) + ", size: "
+		        + binaryData.length() + " chars");
+		
+		Assert.assertTrue(binaryData.length() < xmlData.length());
+	}
+	
+	@SuppressWarnings("unchecked")
+	private String roundTrip(OpenmrsSerializer serializer, Map<String, Object> graph, int iterations) throws Exception {
+		String data = null;
+		for (int i = 0; i < iterations; i++) {
+			data = serializer.serialize(graph);
+			Map<String, Object> result = serializer.deserialize(data, Map.class);
+			Assert.assertEquals(50, ((List<Cohort>) result.get("cohorts")).size());
+		}
+		return data;
+	}
+}
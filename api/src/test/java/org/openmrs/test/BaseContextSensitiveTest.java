@@ -571,6 +571,9 @@ public abstract class BaseContextSensitiveTest extends AbstractJUnit4SpringConte
 		// insert new rows, update existing rows, and leave others alone
 		DatabaseOperation.REFRESH.execute(dbUnitConn, dataset);
 		
+		// the dataset may contain global properties
+		Context.getAdministrationService().refreshGlobalPropertyCache();
+		
 		//turn foreign key checks back on
 		if (useInMemoryDatabase()) {
 			// for the hsql database
@@ -0,0 +1,169 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.util;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.test.Verifies;
+
+/**
+ * Tests the {@link ChangeLogSnapshot} class against an in memory database
+ */
+public class ChangeLogSnapshotTest {
+	
+	private static final String CHANGELOG = "test-changelog.xml";
+	
+	private Connection connection;
+	
+	private File snapshotFile;
+	
+	@Before
+	public void before() throws Exception {
+		Class.forName("org.h2.Driver");
+		connection = DriverManager.getConnection("jdbc:h2:mem:changelogsnapshot", "sa", "");
+		execute("create table liquibasechangelog (id varchar(63), author varchar(63), filename varchar(200), md5sum varchar(35))");
+		execute("insert into liquibasechangelog values ('1', 'joe', '" + CHANGELOG + "', '3:aaa')");
+		execute("insert into liquibasechangelog values ('2', 'jane', '" + CHANGELOG + "', '3:bbb')");
+		execute("insert into liquibasechangelog values ('1', 'joe', 'other.xml', '3:ccc')");
+		
+		snapshotFile = File.createTempFile("snapshot", ".properties");
+		snapshotFile.delete();
+	}
+	
+	@After
+	public void after() throws Exception {
+		execute("drop table liquibasechangelog");
+		connection.close();
+		snapshotFile.delete();
+	}
+	
+	/**
+	 * @see {@link ChangeLogSnapshot#isUpToDate(String,String,String,Connection)}
+	 */
+	@Test
+	@Verifies(value = "should return true if all remembered changesets are still applied", method = "isUpToDate(String,String,String,Connection)")
+	public void isUpToDate_shouldReturnTrueIfAllRememberedChangesetsAreStillApplied() throws Exception {
+		new ChangeLogSnapshot(snapshotFile).record(CHANGELOG, "core", "abc", connection);
+		// a changeset applied since then doesn't matter
+		execute("insert into liquibasechangelog values ('3', 'joe', '" + CHANGELOG + "', '3:ddd')");
+		
+		// read the snapshot back from the file like on the next startup
+		Assert.assertTrue(new ChangeLogSnapshot(snapshotFile).isUpToDate(CHANGELOG, "core", "abc", connection));
+	}
+	
+	/**
+	 * @see {@link ChangeLogSnapshot#isUpToDate(String,String,String,Connection)}
+	 */
+	@Test
+	@Verifies(value = "should return false if the hash of the changelog changed", method = "isUpToDate(String,String,String,Connection)")
+	public void isUpToDate_shouldReturnFalseIfTheHashOfTheChangelogChanged() throws Exception {
+		ChangeLogSnapshot snapshot = new ChangeLogSnapshot(snapshotFile);
+		snapshot.record(CHANGELOG, "core", "abc", connection);
+		
+		Assert.assertFalse(snapshot.isUpToDate(CHANGELOG, "core", "def", connection));
+		Assert.assertFalse(snapshot.isUpToDate(CHANGELOG, null, "abc", connection));
+	}
+	
+	/**
+	 * @see {@link ChangeLogSnapshot#isUpToDate(String,String,String,Connection)}
+	 */
+	@Test
+	@Verifies(value = "should return false if a remembered changeset is no longer applied", method = "isUpToDate(String,String,String,Connection)")
+	public void isUpToDate_shouldReturnFalseIfARememberedChangesetIsNoLongerApplied() throws Exception {
+		ChangeLogSnapshot snapshot = new ChangeLogSnapshot(snapshotFile);
+		snapshot.record(CHANGELOG, "core", "abc", connection);
+		execute("delete from liquibasechangelog where id = '2'");
+		
+		Assert.assertFalse(snapshot.isUpToDate(CHANGELOG, "core", "abc", connection));
+	}
+	
+	/**
+	 * @see {@link ChangeLogSnapshot#isUpToDate(String,String,String,Connection)}
+	 */
+	@Test
+	@Verifies(value = "should return false if the checksum of a remembered changeset changed", method = "isUpToDate(String,String,String,Connection)")
+	public void isUpToDate_shouldReturnFalseIfTheChecksumOfARememberedChangesetChanged() throws Exception {
+		ChangeLogSnapshot snapshot = new ChangeLogSnapshot(snapshotFile);
+		snapshot.record(CHANGELOG, "core", "abc", connection);
+		execute("update liquibasechangelog set md5sum = '3:eee' where id = '2'");
+		
+		Assert.assertFalse(snapshot.isUpToDate(CHANGELOG, "core", "abc", connection));
+	}
+	
+	/**
+	 * @see {@link ChangeLogSnapshot#hashChangeLog(String,ClassLoader)}
+	 */
+	@Test
+	@Verifies(value = "should return the same hash for the same contents", method = "hashChangeLog(String,ClassLoader)")
+	public void hashChangeLog_shouldReturnTheSameHashForTheSameContents() throws Exception {
+		File changeLog = writeChangeLog("<changeSet id=\"1\" author=\"joe\"/>");
+		String hash = ChangeLogSnapshot.hashChangeLog(changeLog.getAbsolutePath(), getClass().getClassLoader());
+		
+		Assert.assertNotNull(hash);
+		Assert.assertEquals(hash, ChangeLogSnapshot.hashChangeLog(changeLog.getAbsolutePath(), getClass()
+		        .getClassLoader()));
+		
+		writeChangeLog(changeLog, "<changeSet id=\"2\" author=\"joe\"/>");
+		Assert.assertFalse(hash.equals(ChangeLogSnapshot.hashChangeLog(changeLog.getAbsolutePath(), getClass()
+		        .getClassLoader())));
+		changeLog.delete();
+	}
+	
+	/**
+	 * @see {@link ChangeLogSnapshot#hashChangeLog(String,ClassLoader)}
+	 */
+	@Test
+	@Verifies(value = "should return null for a changelog with changesets that always run", method = "hashChangeLog(String,ClassLoader)")
+	public void hashChangeLog_shouldReturnNullForAChangelogWithChangesetsThatAlwaysRun() throws Exception {
+		File changeLog = writeChangeLog("<changeSet id=\"1\" author=\"joe\" runAlways=\"true\"/>");
+		
+		Assert.assertNull(ChangeLogSnapshot.hashChangeLog(changeLog.getAbsolutePath(), getClass().getClassLoader()));
+		changeLog.delete();
+	}
+	
+	/**
+	 * @see {@link ChangeLogSnapshot#hashChangeLog(String,ClassLoader)}
+	 */
+	@Test
+	@Verifies(value = "should return null for a missing changelog", method = "hashChangeLog(String,ClassLoader)")
+	public void hashChangeLog_shouldReturnNullForAMissingChangelog() throws Exception {
+		Assert.assertNull(ChangeLogSnapshot.hashChangeLog("no-such-changelog.xml", getClass().getClassLoader()));
+	}
+	
+	private void execute(String sql) throws Exception {
+		Statement statement = connection.createStatement();
+		statement.execute(sql);
+		statement.close();
+	}
+	
+	private File writeChangeLog(String changeSets) throws Exception {
+		File changeLog = File.createTempFile("changelog", ".xml");
+		writeChangeLog(changeLog, changeSets);
+		return changeLog;
+	}
+	
+	private void writeChangeLog(File changeLog, String changeSets) throws Exception {
+		FileWriter writer = new FileWriter(changeLog);
+		writer.write("<databaseChangeLog>" + changeSets + "</databaseChangeLog>");
+		writer.close();
+	}
+}
@@ -0,0 +1,114 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.util;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.test.Verifies;
+
+/**
+ * Tests the {@link ConceptMappingIndex} class
+ */
+public class ConceptMappingIndexTest {
+	
+	private ConceptMappingIndex index;
+	
+	/**
+	 * Creates the sources 1 (loaded, with code A mapped to concepts 10 and 11) and 2 (not loaded)
+	 */
+	@Before
+	public void before() {
+		index = new ConceptMappingIndex();
+		index.putSource(1, "Some Source", "SSRC");
+		index.putSource(2, "Other Source", null);
+		
+		Map<String, Set<Integer>> conceptIds = new HashMap<String, Set<Integer>>();
+		conceptIds.put("A", new HashSet<Integer>(Arrays.asList(10, 11)));
+		index.loadSource(1, conceptIds);
+	}
+	
+	/**
+	 * @see {@link ConceptMappingIndex#putSource(Integer,String,String)}
+	 */
+	@Test
+	@Verifies(value = "should find the source by name and hl7 code", method = "putSource(Integer,String,String)")
+	public void putSource_shouldFindTheSourceByNameAndHl7Code() throws Exception {
+		Assert.assertEquals(Collections.singleton(1), index.getSourceIds("some source"));
+		Assert.assertEquals(Collections.singleton(1), index.getSourceIds("SSRC"));
+		Assert.assertEquals(Collections.singleton(2), index.getSourceIds("Other Source"));
+		Assert.assertTrue(index.getSourceIds("A random source").isEmpty());
+	}
+	
+	/**
+	 * @see {@link ConceptMappingIndex#putSource(Integer,String,String)}
+	 */
+	@Test
+	@Verifies(value = "should forget the old name of the source", method = "putSource(Integer,String,String)")
+	public void putSource_shouldForgetTheOldNameOfTheSource() throws Exception {
+		index.putSource(1, "Renamed Source", "SSRC");
+		
+		Assert.assertTrue(index.getSourceIds("Some Source").isEmpty());
+		Assert.assertEquals(Collections.singleton(1), index.getSourceIds("Renamed Source"));
+		Assert.assertTrue(index.isSourceLoaded(1));
+	}
+	
+	/**
+	 * @see {@link ConceptMappingIndex#getConceptIds(Integer,String)}
+	 */
+	@Test
+	@Verifies(value = "should find the concepts by code in a case insensitive way", method = "getConceptIds(Integer,String)")
+	public void getConceptIds_shouldFindTheConceptsByCodeInACaseInsensitiveWay() throws Exception {
+		Assert.assertEquals(new HashSet<Integer>(Arrays.asList(10, 11)), index.getConceptIds(1, "a"));
+		Assert.assertTrue(index.getConceptIds(1, "B").isEmpty());
+	}
+	
+	/**
+	 * @see {@link ConceptMappingIndex#putConcept(Integer,Map)}
+	 */
+	@Test
+	@Verifies(value = "should replace the mappings of the concept", method = "putConcept(Integer,Map)")
+	public void putConcept_shouldReplaceTheMappingsOfTheConcept() throws Exception {
+		Map<Integer, Set<String>> codes = new HashMap<Integer, Set<String>>();
+		codes.put(1, Collections.singleton("B"));
+		index.putConcept(10, codes);
+		
+		Assert.assertEquals(Collections.singleton(11), index.getConceptIds(1, "A"));
+		Assert.assertEquals(Collections.singleton(10), index.getConceptIds(1, "B"));
+		
+		index.removeConcept(10);
+		Assert.assertTrue(index.getConceptIds(1, "B").isEmpty());
+	}
+	
+	/**
+	 * @see {@link ConceptMappingIndex#putConcept(Integer,Map)}
+	 */
+	@Test
+	@Verifies(value = "should ignore the codes of sources that have not been loaded", method = "putConcept(Integer,Map)")
+	public void putConcept_shouldIgnoreTheCodesOfSourcesThatHaveNotBeenLoaded() throws Exception {
+		Map<Integer, Set<String>> codes = new HashMap<Integer, Set<String>>();
+		codes.put(2, Collections.singleton("C"));
+		index.putConcept(12, codes);
+		
+		Assert.assertFalse(index.isSourceLoaded(2));
+		Assert.assertTrue(index.getConceptIds(2, "C").isEmpty());
+	}
+}
@@ -0,0 +1,122 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.util;
+
+import java.util.Arrays;
+import java.util.Date;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.Concept;
+import org.openmrs.Field;
+import org.openmrs.Form;
+import org.openmrs.FormField;
+import org.openmrs.api.context.Context;
+import org.openmrs.test.BaseContextSensitiveTest;
+import org.openmrs.test.Verifies;
+
+/**
+ * Tests the {@link FormStructure} class
+ */
+public class FormStructureTest extends BaseContextSensitiveTest {
+	
+	/**
+	 * @see {@link FormStructure#FormStructure(Form)}
+	 */
+	@Test
+	@Verifies(value = "should order the form fields of each branch like the form structure", method = "FormStructure(Form)")
+	public void FormStructure_shouldOrderTheFormFieldsOfEachBranchLikeTheFormStructure() throws Exception {
+		Form form = Context.getFormService().getForm(1);
+		FormField child = addFormField(form, 5089, 5.0f);
+		child.setParent(Context.getFormService().getFormField(3));
+		
+		FormStructure structure = new FormStructure(form);
+		
+		Assert.assertEquals(Arrays.asList(2, 3, 5), structure.getChildFormFieldIds(FormStructure.BASE));
+		Assert.assertEquals(Arrays.asList(child.getFormFieldId()), structure.getChildFormFieldIds(3));
+		Assert.assertTrue(structure.getChildFormFieldIds(2).isEmpty());
+		Assert.assertEquals(FormUtil.getFormStructure(form).keySet(), structure.getParentFormFieldIds());
+	}
+	
+	/**
+	 * @see {@link FormStructure#FormStructure(Form)}
+	 */
+	@Test
+	@Verifies(value = "should index the form fields by concept in the order of their ids", method = "FormStructure(Form)")
+	public void FormStructure_shouldIndexTheFormFieldsByConceptInTheOrderOfTheirIds() throws Exception {
+		Form form = Context.getFormService().getForm(1);
+		FormField other = addFormField(form, 5497, 40.0f);
+		
+		FormStructure structure = new FormStructure(form);
+		
+		Assert.assertEquals(Arrays.asList(2, 3, 5), structure.getFormFieldIds(new Concept(3)));
+		Assert.assertEquals(Arrays.asList(other.getFormFieldId()), structure.getFormFieldIds(new Concept(5497)));
+		Assert.assertTrue(structure.getFormFieldIds(new Concept(5089)).isEmpty());
+	}
+	
+	/**
+	 * @see {@link FormStructure#isStructureOf(Form)}
+	 */
+	@Test
+	@Verifies(value = "should return true for the form it was created from", method = "isStructureOf(Form)")
+	public void isStructureOf_shouldReturnTrueForTheFormItWasCreatedFrom() throws Exception {
+		Form form = Context.getFormService().getForm(1);
+		
+		Assert.assertTrue(new FormStructure(form).isStructureOf(form));
+		Assert.assertFalse(new FormStructure(form).isStructureOf(new Form(2)));
+	}
+	
+	/**
+	 * @see {@link FormStructure#isStructureOf(Form)}
+	 */
+	@Test
+	@Verifies(value = "should return false if the form has been changed since", method = "isStructureOf(Form)")
+	public void isStructureOf_shouldReturnFalseIfTheFormHasBeenChangedSince() throws Exception {
+		Form form = Context.getFormService().getForm(1);
+		FormStructure structure = new FormStructure(form);
+		
+		form.setDateChanged(new Date(System.currentTimeMillis() + 1000));
+		
+		Assert.assertFalse(structure.isStructureOf(form));
+	}
+	
+	/**
+	 * @see {@link FormStructure#isStructureOf(Form)}
+	 */
+	@Test
+	@Verifies(value = "should return false if the form fields of the form have changed", method = "isStructureOf(Form)")
+	public void isStructureOf_shouldReturnFalseIfTheFormFieldsOfTheFormHaveChanged() throws Exception {
+		Form form = Context.getFormService().getForm(1);
+		FormStructure structure = new FormStructure(form);
+		
+		form.removeFormField(Context.getFormService().getFormField(5));
+		
+		Assert.assertFalse(structure.isStructureOf(form));
+	}
+	
+	/**
+	 * Saves a new form field with a new field for the given concept on the given form
+	 */
+	private FormField addFormField(Form form, Integer conceptId, Float sortWeight) {
+		Field field = new Field();
+		field.setName("Field for concept " + conceptId);
+		field.setFieldType(Context.getFormService().getFieldType(1));
+		field.setConcept(Context.getConceptService().getConcept(conceptId));
+		FormField formField = new FormField();
+		formField.setField(field);
+		formField.setSortWeight(sortWeight);
+		form.addFormField(formField);
+		return Context.getFormService().saveFormField(formField);
+	}
+}
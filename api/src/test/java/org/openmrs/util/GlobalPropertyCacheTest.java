@@ -0,0 +1,180 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.util;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.GlobalProperty;
+import org.openmrs.test.Verifies;
+
+/**
+ * Tests the {@link GlobalPropertyCache} class
+ */
+public class GlobalPropertyCacheTest {
+	
+	private GlobalPropertyCache cache;
+	
+	private Map<String, String> values;
+	
+	@Before
+	public void before() {
+		cache = new GlobalPropertyCache();
+		values = new HashMap<String, String>();
+		values.put("first.property", "one");
+		values.put("second.property", "two");
+	}
+	
+	/**
+	 * @see {@link GlobalPropertyCache#isStale(long)}
+	 */
+	@Test
+	@Verifies(value = "should return true if the values have not been loaded", method = "isStale(long)")
+	public void isStale_shouldReturnTrueIfTheValuesHaveNotBeenLoaded() throws Exception {
+		Assert.assertTrue(cache.isStale(GlobalPropertyCache.REFRESH_INTERVAL_MILLIS));
+	}
+	
+	/**
+	 * @see {@link GlobalPropertyCache#isStale(long)}
+	 */
+	@Test
+	@Verifies(value = "should return true if the values have expired", method = "isStale(long)")
+	public void isStale_shouldReturnTrueIfTheValuesHaveExpired() throws Exception {
+		cache.load(values, cache.getVersion());
+		cache.expire();
+		
+		Assert.assertTrue(cache.isStale(GlobalPropertyCache.REFRESH_INTERVAL_MILLIS));
+		Assert.assertEquals("one", cache.getValue("first.property"));
+	}
+	
+	/**
+	 * @see {@link GlobalPropertyCache#isStale(long)}
+	 */
+	@Test
+	@Verifies(value = "should return false if the values have been loaded recently", method = "isStale(long)")
+	public void isStale_shouldReturnFalseIfTheValuesHaveBeenLoadedRecently() throws Exception {
+		cache.load(values, cache.getVersion());
+		Assert.assertFalse(cache.isStale(GlobalPropertyCache.REFRESH_INTERVAL_MILLIS));
+	}
+	
+	/**
+	 * @see {@link GlobalPropertyCache#getValue(String)}
+	 */
+	@Test
+	@Verifies(value = "should get the value in a case insensitive way", method = "getValue(String)")
+	public void getValue_shouldGetTheValueInACaseInsensitiveWay() throws Exception {
+		cache.load(values, cache.getVersion());
+		cache.put("Third.Property", "three");
+		
+		Assert.assertEquals("one", cache.getValue("FIRST.property"));
+		Assert.assertEquals("three", cache.getValue("third.property"));
+		Assert.assertNull(cache.getValue("fourth.property"));
+	}
+	
+	/**
+	 * @see {@link GlobalPropertyCache#isStale(long)}
+	 */
+	@Test
+	@Verifies(value = "should return false if the refresh has been postponed", method = "isStale(long)")
+	public void isStale_shouldReturnFalseIfTheRefreshHasBeenPostponed() throws Exception {
+		cache.postponeRefresh();
+		Assert.assertFalse(cache.isStale(GlobalPropertyCache.REFRESH_INTERVAL_MILLIS));
+		Assert.assertFalse(cache.isLoaded());
+	}
+	
+	/**
+	 * @see {@link GlobalPropertyCache#putAll(GlobalPropertyCache)}
+	 */
+	@Test
+	@Verifies(value = "should set the values put into the given cache", method = "putAll(GlobalPropertyCache)")
+	public void putAll_shouldSetTheValuesPutIntoTheGivenCache() throws Exception {
+		cache.load(values, cache.getVersion());
+		GlobalPropertyCache changes = new GlobalPropertyCache();
+		changes.put("SECOND.property", "2");
+		changes.put("third.property", "3");
+		
+		cache.putAll(changes);
+		
+		Assert.assertEquals("one", cache.getValue("first.property"));
+		Assert.assertEquals("2", cache.getValue("second.property"));
+		Assert.assertEquals("3", cache.getValue("third.property"));
+	}
+	
+	/**
+	 * @see {@link GlobalPropertyCache#load(Map,long)}
+	 */
+	@Test
+	@Verifies(value = "should replace the cached values", method = "load(Map,long)")
+	public void load_shouldReplaceTheCachedValues() throws Exception {
+		cache.load(values, cache.getVersion());
+		
+		values.remove("first.property");
+		values.put("second.property", "2");
+		cache.load(values, cache.getVersion());
+		
+		Assert.assertTrue(cache.isLoaded());
+		Assert.assertFalse(cache.contains("first.property"));
+		Assert.assertEquals("2", cache.getValue("second.property"));
+	}
+	
+	/**
+	 * @see {@link GlobalPropertyCache#load(Map,long)}
+	 */
+	@Test
+	@Verifies(value = "should not replace values changed since the given version", method = "load(Map,long)")
+	public void load_shouldNotReplaceValuesChangedSinceTheGivenVersion() throws Exception {
+		long version = cache.getVersion();
+		cache.put("first.property", "1");
+		
+		Assert.assertTrue(cache.load(values, version).isEmpty());
+		
+		Assert.assertFalse(cache.isLoaded());
+		Assert.assertEquals("1", cache.getValue("first.property"));
+	}
+	
+	/**
+	 * @see {@link GlobalPropertyCache#load(Map,long)}
+	 */
+	@Test
+	@Verifies(value = "should return the changed and deleted properties", method = "load(Map,long)")
+	public void load_shouldReturnTheChangedAndDeletedProperties() throws Exception {
+		values.put("Third.Property", null);
+		cache.load(values, cache.getVersion());
+		
+		values.remove("first.property");
+		values.put("second.property", "2");
+		values.put("fourth.property", "4");
+		Map<String, GlobalProperty> changes = cache.load(values, cache.getVersion());
+		
+		Assert.assertEquals(3, changes.size());
+		Assert.assertTrue(changes.containsKey("first.property"));
+		Assert.assertNull(changes.get("first.property"));
+		Assert.assertEquals("2", changes.get("second.property").getPropertyValue());
+		Assert.assertEquals("fourth.property", changes.get("fourth.property").getProperty());
+		Assert.assertEquals("4", changes.get("fourth.property").getPropertyValue());
+	}
+	
+	/**
+	 * @see {@link GlobalPropertyCache#load(Map,long)}
+	 */
+	@Test
+	@Verifies(value = "should return nothing the first time the values are loaded", method = "load(Map,long)")
+	public void load_shouldReturnNothingTheFirstTimeTheValuesAreLoaded() throws Exception {
+		Assert.assertTrue(cache.load(values, cache.getVersion()).isEmpty());
+		Assert.assertEquals("two", cache.getValue("second.property"));
+	}
+}
@@ -0,0 +1,160 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.util;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.api.APIException;
+import org.openmrs.test.Verifies;
+
+/**
+ * Tests the {@link LocationHierarchy} class
+ */
+public class LocationHierarchyTest {
+	
+	private LocationHierarchy hierarchy;
+	
+	/**
+	 * Creates the tree 1 -> (2, 3 -> (4)) and the single location 5
+	 */
+	@Before
+	public void before() {
+		Map<Integer, Integer> parentIds = new HashMap<Integer, Integer>();
+		parentIds.put(1, null);
+		parentIds.put(2, 1);
+		parentIds.put(3, 1);
+		parentIds.put(4, 3);
+		parentIds.put(5, null);
+		hierarchy = new LocationHierarchy(parentIds, Collections.singleton(4));
+	}
+	
+	/**
+	 * @see {@link LocationHierarchy#LocationHierarchy(Map,Set)}
+	 */
+	@Test
+	@Verifies(value = "should index the ancestors and descendants of every location", method = "LocationHierarchy(Map,Set)")
+	public void LocationHierarchy_shouldIndexTheAncestorsAndDescendantsOfEveryLocation() throws Exception {
+		Assert.assertEquals(new HashSet<Integer>(Arrays.asList(2, 3, 4)), hierarchy.getDescendantIds(1, true));
+		Assert.assertEquals(new HashSet<Integer>(Arrays.asList(4)), hierarchy.getDescendantIds(3, true));
+		Assert.assertEquals(new HashSet<Integer>(Arrays.asList(1, 3)), hierarchy.getAncestorIds(4));
+		Assert.assertTrue(hierarchy.getAncestorIds(5).isEmpty());
+		Assert.assertTrue(hierarchy.getDescendantIds(5, true).isEmpty());
+	}
+	
+	/**
+	 * @see {@link LocationHierarchy#isInHierarchy(Integer,Integer)}
+	 */
+	@Test
+	@Verifies(value = "should return true given the same location in both parameters", method = "isInHierarchy(Integer,Integer)")
+	public void isInHierarchy_shouldReturnTrueGivenTheSameLocationInBothParameters() throws Exception {
+		Assert.assertTrue(hierarchy.isInHierarchy(3, 3));
+	}
+	
+	/**
+	 * @see {@link LocationHierarchy#isInHierarchy(Integer,Integer)}
+	 */
+	@Test
+	@Verifies(value = "should return true given a descendant of the root", method = "isInHierarchy(Integer,Integer)")
+	public void isInHierarchy_shouldReturnTrueGivenADescendantOfTheRoot() throws Exception {
+		Assert.assertTrue(hierarchy.isInHierarchy(4, 1));
+		Assert.assertTrue(hierarchy.isInHierarchy(4, 3));
+	}
+	
+	/**
+	 * @see {@link LocationHierarchy#isInHierarchy(Integer,Integer)}
+	 */
+	@Test
+	@Verifies(value = "should return false given an ancestor of the root", method = "isInHierarchy(Integer,Integer)")
+	public void isInHierarchy_shouldReturnFalseGivenAnAncestorOfTheRoot() throws Exception {
+		Assert.assertFalse(hierarchy.isInHierarchy(1, 4));
+		Assert.assertFalse(hierarchy.isInHierarchy(2, 3));
+		Assert.assertFalse(hierarchy.isInHierarchy(5, 1));
+	}
+	
+	/**
+	 * @see {@link LocationHierarchy#isInHierarchy(Integer,Integer)}
+	 */
+	@Test
+	@Verifies(value = "should return false given any null parameter", method = "isInHierarchy(Integer,Integer)")
+	public void isInHierarchy_shouldReturnFalseGivenAnyNullParameter() throws Exception {
+		Assert.assertFalse(hierarchy.isInHierarchy(null, 1));
+		Assert.assertFalse(hierarchy.isInHierarchy(1, null));
+	}
+	
+	/**
+	 * @see {@link LocationHierarchy#getDescendantIds(Integer,boolean)}
+	 */
+	@Test
+	@Verifies(value = "should not return retired descendants if include retired is false", method = "getDescendantIds(Integer,boolean)")
+	public void getDescendantIds_shouldNotReturnRetiredDescendantsIfIncludeRetiredIsFalse() throws Exception {
+		Assert.assertEquals(new HashSet<Integer>(Arrays.asList(2, 3)), hierarchy.getDescendantIds(1, false));
+	}
+	
+	/**
+	 * @see {@link LocationHierarchy#putLocation(Integer,Integer,boolean)}
+	 */
+	@Test
+	@Verifies(value = "should add a new location below its parent", method = "putLocation(Integer,Integer,boolean)")
+	public void putLocation_shouldAddANewLocationBelowItsParent() throws Exception {
+		hierarchy.putLocation(6, 4, false);
+		
+		Assert.assertTrue(hierarchy.contains(6));
+		Assert.assertEquals(new HashSet<Integer>(Arrays.asList(1, 3, 4)), hierarchy.getAncestorIds(6));
+		Assert.assertTrue(hierarchy.getDescendantIds(1, false).contains(6));
+		Assert.assertTrue(hierarchy.getDescendantIds(4, false).contains(6));
+	}
+	
+	/**
+	 * @see {@link LocationHierarchy#putLocation(Integer,Integer,boolean)}
+	 */
+	@Test
+	@Verifies(value = "should move the descendants of a location along with it", method = "putLocation(Integer,Integer,boolean)")
+	public void putLocation_shouldMoveTheDescendantsOfALocationAlongWithIt() throws Exception {
+		hierarchy.putLocation(3, 5, false);
+		
+		Assert.assertEquals(new HashSet<Integer>(Arrays.asList(2)), hierarchy.getDescendantIds(1, true));
+		Assert.assertEquals(new HashSet<Integer>(Arrays.asList(3, 4)), hierarchy.getDescendantIds(5, true));
+		Assert.assertEquals(new HashSet<Integer>(Arrays.asList(3, 5)), hierarchy.getAncestorIds(4));
+		Assert.assertFalse(hierarchy.isInHierarchy(4, 1));
+	}
+	
+	/**
+	 * @see {@link LocationHierarchy#putLocation(Integer,Integer,boolean)}
+	 */
+	@Test(expected = APIException.class)
+	@Verifies(value = "should fail if the new parent is a descendant of the location", method = "putLocation(Integer,Integer,boolean)")
+	public void putLocation_shouldFailIfTheNewParentIsADescendantOfTheLocation() throws Exception {
+		hierarchy.putLocation(1, 4, false);
+	}
+	
+	/**
+	 * @see {@link LocationHierarchy#removeLocation(Integer)}
+	 */
+	@Test
+	@Verifies(value = "should make the children of the location root locations", method = "removeLocation(Integer)")
+	public void removeLocation_shouldMakeTheChildrenOfTheLocationRootLocations() throws Exception {
+		hierarchy.removeLocation(3);
+		
+		Assert.assertFalse(hierarchy.contains(3));
+		Assert.assertEquals(new HashSet<Integer>(Arrays.asList(2)), hierarchy.getDescendantIds(1, true));
+		Assert.assertTrue(hierarchy.getAncestorIds(4).isEmpty());
+	}
+}
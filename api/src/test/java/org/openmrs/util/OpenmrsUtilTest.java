@@ -28,6 +28,8 @@ import java.util.Locale;
 import java.util.SortedSet;
 import java.util.TreeSet;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -48,6 +50,8 @@ import org.openmrs.test.Verifies;
  */
 public class OpenmrsUtilTest extends BaseContextSensitiveTest {
 	
+	private static Log log = LogFactory.getLog(OpenmrsUtilTest.class);
+	
 	private static GlobalProperty luhnGP = new GlobalProperty(
 	        OpenmrsConstants.GLOBAL_PROPERTY_DEFAULT_PATIENT_IDENTIFIER_VALIDATOR,
 	        OpenmrsConstants.LUHN_IDENTIFIER_VALIDATOR);
@@ -774,4 +778,86 @@ public class OpenmrsUtilTest extends BaseContextSensitiveTest {
 	public void nullSafeEqualsIgnoreCase_shouldReturnFalseIfOnlyOneOfTheStringsIsNull() throws Exception {
 		Assert.assertFalse(OpenmrsUtil.nullSafeEqualsIgnoreCase(null, ""));
 	}
+	
+	/**
+	 * @see {@link OpenmrsUtil#getDateFormatter(Locale)}
+	 */
+	@Test
+	@Verifies(value = "should format dates like the date format of the same locale", method = "getDateFormatter(Locale)")
+	public void getDateFormatter_shouldFormatDatesLikeTheDateFormatOfTheSameLocale() throws Exception {
+		Date date = new SimpleDateFormat("yyyy-MM-dd").parse("2001-02-03");
+		for (Locale locale : new Locale[] { Locale.US, Locale.UK, Locale.GERMAN, new Locale("pt", "pt") }) {
+			Assert.assertEquals(OpenmrsUtil.getDateFormat(locale).format(date), OpenmrsUtil.getDateFormatter(locale).format(
+			    date));
+		}
+		Assert.assertEquals("02/03/2001", OpenmrsUtil.getDateFormatter(Locale.US).format(date));
+	}
+	
+	/**
+	 * @see {@link OpenmrsUtil#getDateFormatter(Locale)}
+	 */
+	@Test
+	@Verifies(value = "should return the same instance for the same locale", method = "getDateFormatter(Locale)")
+	public void getDateFormatter_shouldReturnTheSameInstanceForTheSameLocale() throws Exception {
+		Assert.assertSame(OpenmrsUtil.getDateFormatter(Locale.UK), OpenmrsUtil.getDateFormatter(Locale.UK));
+		Assert.assertNotSame(OpenmrsUtil.getDateFormatter(Locale.UK), OpenmrsUtil.getDateFormatter(Locale.US));
+	}
+	
+	/**
+	 * @see {@link OpenmrsUtil#getTimeFormatter(Locale)}
+	 */
+	@Test
+	@Verifies(value = "should format times like the time format of the same locale", method = "getTimeFormatter(Locale)")
+	public void getTimeFormatter_shouldFormatTimesLikeTheTimeFormatOfTheSameLocale() throws Exception {
+		Date date = new SimpleDateFormat("yyyy-MM-dd HH:mm").parse("2001-02-03 04:05");
+		for (Locale locale : new Locale[] { Locale.US, Locale.UK, Locale.GERMAN }) {
+			Assert.assertEquals(OpenmrsUtil.getTimeFormat(locale).format(date), OpenmrsUtil.getTimeFormatter(locale).format(
+			    date));
+		}
+	}
+	
+	/**
+	 * @see {@link OpenmrsUtil#getDateTimeFormatter(Locale)}
+	 */
+	@Test
+	@Verifies(value = "should format datetimes like the datetime format of the same locale", method = "getDateTimeFormatter(Locale)")
+	public void getDateTimeFormatter_shouldFormatDatetimesLikeTheDatetimeFormatOfTheSameLocale() throws Exception {
+		Date date = new SimpleDateFormat("yyyy-MM-dd HH:mm").parse("2001-02-03 16:05");
+		Assert.assertEquals(OpenmrsUtil.getDateTimeFormat(Locale.UK).toPattern(), OpenmrsUtil.getDateTimeFormatter(
+		    Locale.UK).getPattern());
+		Assert.assertEquals(OpenmrsUtil.getDateTimeFormat(Locale.US).format(date), OpenmrsUtil.getDateTimeFormatter(
+		    Locale.US).format(date));
+	}
+	
+	/**
+	 * Formats the same dates with a cloned date format per call, like callers of
+	 * {@link OpenmrsUtil#getDateFormat(Locale)} do, and with the shared formatter and logs the
+	 * throughput of both
+	 */
+	@Test
+	public void getDateFormatter_shouldFormatFasterThanCloningTheDateFormat() throws Exception {
+		Date date = new Date();
+		int iterations = 200000;
+		String expected = OpenmrsUtil.getDateFormat(Locale.UK).format(date);
+		
+		// warm up both paths
+		for (int i = 0; i < 10000; i++) {
+			OpenmrsUtil.getDateFormat(Locale.UK).format(date);
+			OpenmrsUtil.getDateFormatter(Locale.UK).format(date);
+		}
+		
+		long start = System.nanoTime();
+		for (int i = 0; i < iterations; i++)
+			Assert.assertEquals(expected, OpenmrsUtil.getDateFormat(Locale.UK).format(date));
+		long cloneNanos = System.nanoTime() - start;
+		
+		start = System.nanoTime();
+		for (int i = 0; i < iterations; i++)
+			Assert.assertEquals(expected, OpenmrsUtil.getDateFormatter(Locale.UK).format(date));
+		long formatterNanos = System.nanoTime() - start;
+		
+		log.info("cloned date format: " + (iterations * 1000000000L / Math.max(1, cloneNanos))
+		        + " dates/sec, shared formatter: " + (iterations * 1000000000L / Math.max(1, formatterNanos))
+		        + " dates/sec");
+	}
 }
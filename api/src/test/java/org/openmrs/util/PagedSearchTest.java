@@ -0,0 +1,127 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.test.Verifies;
+
+/**
+ * Tests the {@link PagedSearch} class
+ */
+public class PagedSearchTest {
+	
+	@Before
+	public void before() {
+		PagedSearch.clearCachedCounts();
+	}
+	
+	/**
+	 * @see {@link PagedSearch#search(Integer,Integer,boolean)}
+	 */
+	@Test
+	@Verifies(value = "should not count the matches if the page is not full", method = "search(Integer,Integer,boolean)")
+	public void search_shouldNotCountTheMatchesIfThePageIsNotFull() throws Exception {
+		NumberSearch search = new NumberSearch(25);
+		PagedSearchResult<Integer> result = search.search(20, 10, false);
+		
+		Assert.assertEquals(5, result.getResults().size());
+		Assert.assertEquals(25, result.getCount());
+		Assert.assertFalse(result.isCountEstimated());
+		Assert.assertEquals(0, search.counted);
+	}
+	
+	/**
+	 * @see {@link PagedSearch#search(Integer,Integer,boolean)}
+	 */
+	@Test
+	@Verifies(value = "should count the matches if the page is full", method = "search(Integer,Integer,boolean)")
+	public void search_shouldCountTheMatchesIfThePageIsFull() throws Exception {
+		NumberSearch search = new NumberSearch(25);
+		PagedSearchResult<Integer> result = search.search(0, 10, false);
+		
+		Assert.assertEquals(10, result.getResults().size());
+		Assert.assertEquals(25, result.getCount());
+		Assert.assertFalse(result.isCountEstimated());
+		Assert.assertEquals(1, search.counted);
+	}
+	
+	/**
+	 * @see {@link PagedSearch#search(Integer,Integer,boolean)}
+	 */
+	@Test
+	@Verifies(value = "should reuse the count of a recent search with the same parameters", method = "search(Integer,Integer,boolean)")
+	public void search_shouldReuseTheCountOfARecentSearchWithTheSameParameters() throws Exception {
+		new NumberSearch(25).search(0, 10, false);
+		
+		NumberSearch search = new NumberSearch(25);
+		PagedSearchResult<Integer> result = search.search(10, 10, false);
+		Assert.assertEquals(25, result.getCount());
+		Assert.assertFalse(result.isCountEstimated());
+		Assert.assertEquals(0, search.counted);
+		
+		// a search with other parameters is counted again
+		search = new NumberSearch(30);
+		Assert.assertEquals(30, search.search(10, 10, false).getCount());
+		Assert.assertEquals(1, search.counted);
+	}
+	
+	/**
+	 * @see {@link PagedSearch#search(Integer,Integer,boolean)}
+	 */
+	@Test
+	@Verifies(value = "should not count the matches if an estimated count is accepted", method = "search(Integer,Integer,boolean)")
+	public void search_shouldNotCountTheMatchesIfAnEstimatedCountIsAccepted() throws Exception {
+		NumberSearch search = new NumberSearch(25);
+		PagedSearchResult<Integer> result = search.search(10, 10, true);
+		
+		Assert.assertEquals(10, result.getResults().size());
+		Assert.assertEquals(20, result.getCount());
+		Assert.assertTrue(result.isCountEstimated());
+		Assert.assertEquals(0, search.counted);
+	}
+	
+	/**
+	 * Searches the numbers from 0 to a maximum, counting how often the count query is run
+	 */
+	private static class NumberSearch extends PagedSearch<Integer> {
+		
+		private final int total;
+		
+		private int counted = 0;
+		
+		public NumberSearch(int total) {
+			super("numbers", total);
+			this.total = total;
+		}
+		
+		@Override
+		protected List<Integer> getPage(Integer start, Integer length) {
+			List<Integer> page = new ArrayList<Integer>();
+			for (int i = start; i < total && i < start + length; i++)
+				page.add(i);
+			return page;
+		}
+		
+		@Override
+		protected int getCount() {
+			counted++;
+			return total;
+		}
+	}
+}
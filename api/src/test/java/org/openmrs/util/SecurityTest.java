@@ -13,6 +13,8 @@
  */
 package org.openmrs.util;
 
+import java.util.Arrays;
+
 import org.apache.xerces.impl.dv.util.Base64;
 import org.junit.Assert;
 import org.junit.Test;
@@ -26,6 +28,8 @@ public class SecurityTest {
 	
 	private static final int HASH_LENGTH = 128;
 	
+	private static final String PBKDF2_HASH = "78f62cb6477f530bfb10be2872945f89f7296cb589bd8e0bf6f6b3b4448af1b7";
+	
 	/**
 	 * @see {@link Security#encodeString(String)}
 	 */
@@ -220,4 +224,77 @@ public class SecurityTest {
 		Assert.assertTrue(OpenmrsUtil.nullSafeEquals(expected, actual));
 	}
 	
+	/**
+	 * @see {@link Security#hashMatches(String,String)}
+	 */
+	@Test
+	@Verifies(value = "should match strings hashed with pbkdf2", method = "hashMatches(String,String)")
+	public void hashMatches_shouldMatchStringsHashedWithPbkdf2() throws Exception {
+		String hash = "pbkdf2_sha1$1000$c1dd7b8a6e0cdbd7e1b9b0c7f1a8e8d2$" + PBKDF2_HASH;
+		Assert.assertTrue(Security.hashMatches(hash, "test" + "c788c6ad82a157b712392ca695dfcf2eed193d7f"));
+	}
+	
+	/**
+	 * @see {@link Security#hashMatches(String,String)}
+	 */
+	@Test
+	@Verifies(value = "should not match other strings hashed with pbkdf2", method = "hashMatches(String,String)")
+	public void hashMatches_shouldNotMatchOtherStringsHashedWithPbkdf2() throws Exception {
+		String hash = "pbkdf2_sha1$1000$c1dd7b8a6e0cdbd7e1b9b0c7f1a8e8d2$" + PBKDF2_HASH;
+		Assert.assertFalse(Security.hashMatches(hash, "tset" + "c788c6ad82a157b712392ca695dfcf2eed193d7f"));
+		Assert.assertFalse(Security.hashMatches(hash.replace("$1000$", "$1001$"), "test"
+		        + "c788c6ad82a157b712392ca695dfcf2eed193d7f"));
+	}
+	
+	/**
+	 * @see {@link Security#encodePassword(String)}
+	 */
+	@Test
+	@Verifies(value = "should hash strings so that they match", method = "encodePassword(String)")
+	public void encodePassword_shouldHashStringsSoThatTheyMatch() throws Exception {
+		String hash = Security.encodePassword("test" + "c788c6ad82a157b712392ca695dfcf2eed193d7f");
+		Assert.assertTrue(hash.startsWith("pbkdf2_sha1$"));
+		Assert.assertTrue(Security.hashMatches(hash, "test" + "c788c6ad82a157b712392ca695dfcf2eed193d7f"));
+	}
+	
+	/**
+	 * @see {@link Security#encodePassword(String)}
+	 */
+	@Test
+	@Verifies(value = "should use a random salt", method = "encodePassword(String)")
+	public void encodePassword_shouldUseARandomSalt() throws Exception {
+		Assert.assertFalse(Security.encodePassword("test").equals(Security.encodePassword("test")));
+	}
+	
+	/**
+	 * @see {@link Security#isPasswordHashOutdated(String)}
+	 */
+	@Test
+	@Verifies(value = "should return true for sha512 hashes", method = "isPasswordHashOutdated(String)")
+	public void isPasswordHashOutdated_shouldReturnTrueForSha512Hashes() throws Exception {
+		Assert.assertTrue(Security.isPasswordHashOutdated(Security.encodeString("test")));
+		Assert.assertTrue(Security.isPasswordHashOutdated("pbkdf2_sha1$1000$c1dd7b8a6e0cdbd7e1b9b0c7f1a8e8d2$"
+		        + PBKDF2_HASH));
+	}
+	
+	/**
+	 * @see {@link Security#isPasswordHashOutdated(String)}
+	 */
+	@Test
+	@Verifies(value = "should return false for hashes made by encodePassword", method = "isPasswordHashOutdated(String)")
+	public void isPasswordHashOutdated_shouldReturnFalseForHashesMadeByEncodePassword() throws Exception {
+		Assert.assertFalse(Security.isPasswordHashOutdated(Security.encodePassword("test")));
+	}
+	
+	/**
+	 * @see {@link Security#digestVerifiedCredential(String)}
+	 */
+	@Test
+	@Verifies(value = "should digest the same password to the same bytes", method = "digestVerifiedCredential(String)")
+	public void digestVerifiedCredential_shouldDigestTheSamePasswordToTheSameBytes() throws Exception {
+		Assert.assertArrayEquals(Security.digestVerifiedCredential("test"), Security.digestVerifiedCredential("test"));
+		Assert.assertFalse(Arrays.equals(Security.digestVerifiedCredential("test"), Security
+		        .digestVerifiedCredential("tset")));
+	}
+	
 }
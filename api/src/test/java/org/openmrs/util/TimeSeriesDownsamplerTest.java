@@ -0,0 +1,100 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.test.Verifies;
+
+/**
+ * Tests the {@link TimeSeriesDownsampler} class
+ */
+public class TimeSeriesDownsamplerTest {
+	
+	/**
+	 * @see {@link TimeSeriesDownsampler#largestTriangleThreeBuckets(long[],double[],int)}
+	 */
+	@Test
+	@Verifies(value = "should keep all points if there are no more than the threshold", method = "largestTriangleThreeBuckets(long[],double[],int)")
+	public void largestTriangleThreeBuckets_shouldKeepAllPointsIfThereAreNoMoreThanTheThreshold() throws Exception {
+		int[] kept = TimeSeriesDownsampler.largestTriangleThreeBuckets(new long[] { 1, 2, 3 },
+		    new double[] { 5, 1, 5 }, 3);
+		
+		Assert.assertArrayEquals(new int[] { 0, 1, 2 }, kept);
+	}
+	
+	/**
+	 * @see {@link TimeSeriesDownsampler#largestTriangleThreeBuckets(long[],double[],int)}
+	 */
+	@Test
+	@Verifies(value = "should keep the first and last points", method = "largestTriangleThreeBuckets(long[],double[],int)")
+	public void largestTriangleThreeBuckets_shouldKeepTheFirstAndLastPoints() throws Exception {
+		long[] x = new long[1000];
+		double[] y = new double[1000];
+		for (int i = 0; i < x.length; i++) {
+			x[i] = i * 1000L;
+			y[i] = Math.sin(i / 10.0);
+		}
+		
+		int[] kept = TimeSeriesDownsampler.largestTriangleThreeBuckets(x, y, 50);
+		
+		Assert.assertEquals(0, kept[0]);
+		Assert.assertEquals(999, kept[kept.length - 1]);
+	}
+	
+	/**
+	 * @see {@link TimeSeriesDownsampler#largestTriangleThreeBuckets(long[],double[],int)}
+	 */
+	@Test
+	@Verifies(value = "should keep at most threshold points", method = "largestTriangleThreeBuckets(long[],double[],int)")
+	public void largestTriangleThreeBuckets_shouldKeepAtMostThresholdPoints() throws Exception {
+		long[] x = new long[1234];
+		double[] y = new double[1234];
+		for (int i = 0; i < x.length; i++) {
+			x[i] = i;
+			y[i] = i % 7;
+		}
+		
+		int[] kept = TimeSeriesDownsampler.largestTriangleThreeBuckets(x, y, 100);
+		
+		Assert.assertEquals(100, kept.length);
+		for (int i = 1; i < kept.length; i++)
+			Assert.assertTrue("indexes should be ascending", kept[i] > kept[i - 1]);
+	}
+	
+	/**
+	 * @see {@link TimeSeriesDownsampler#largestTriangleThreeBuckets(long[],double[],int)}
+	 */
+	@Test
+	@Verifies(value = "should keep peaks in the series", method = "largestTriangleThreeBuckets(long[],double[],int)")
+	public void largestTriangleThreeBuckets_shouldKeepPeaksInTheSeries() throws Exception {
+		long[] x = new long[500];
+		double[] y = new double[500];
+		for (int i = 0; i < x.length; i++)
+			x[i] = i;
+		y[123] = 100;
+		y[321] = -100;
+		
+		int[] kept = TimeSeriesDownsampler.largestTriangleThreeBuckets(x, y, 20);
+		
+		boolean keptHigh = false;
+		boolean keptLow = false;
+		for (int index : kept) {
+			keptHigh |= index == 123;
+			keptLow |= index == 321;
+		}
+		Assert.assertTrue(keptHigh);
+		Assert.assertTrue(keptLow);
+	}
+}
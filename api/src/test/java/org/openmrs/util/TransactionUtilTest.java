@@ -0,0 +1,70 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.test.BaseContextSensitiveTest;
+import org.openmrs.test.Verifies;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Tests the {@link TransactionUtil} class
+ */
+public class TransactionUtilTest extends BaseContextSensitiveTest {
+	
+	/**
+	 * @see {@link TransactionUtil#registerSynchronizationOnce(Object,TransactionSynchronization)}
+	 */
+	@Test
+	@Verifies(value = "should register the synchronization the first time it is called in a transaction", method = "registerSynchronizationOnce(Object,TransactionSynchronization)")
+	public void registerSynchronizationOnce_shouldRegisterTheSynchronizationTheFirstTimeItIsCalledInATransaction()
+	        throws Exception {
+		TransactionSynchronization synchronization = new TransactionSynchronizationAdapter() {};
+		
+		Assert.assertSame(synchronization, TransactionUtil.registerSynchronizationOnce("key", synchronization));
+		Assert.assertTrue(TransactionSynchronizationManager.getSynchronizations().contains(synchronization));
+	}
+	
+	/**
+	 * @see {@link TransactionUtil#registerSynchronizationOnce(Object,TransactionSynchronization)}
+	 */
+	@Test
+	@Verifies(value = "should return the synchronization already registered under the same key", method = "registerSynchronizationOnce(Object,TransactionSynchronization)")
+	public void registerSynchronizationOnce_shouldReturnTheSynchronizationAlreadyRegisteredUnderTheSameKey()
+	        throws Exception {
+		TransactionSynchronization first = new TransactionSynchronizationAdapter() {};
+		TransactionSynchronization second = new TransactionSynchronizationAdapter() {};
+		TransactionUtil.registerSynchronizationOnce("key", first);
+		
+		Assert.assertSame(first, TransactionUtil.registerSynchronizationOnce("key", second));
+		Assert.assertFalse(TransactionSynchronizationManager.getSynchronizations().contains(second));
+	}
+	
+	/**
+	 * @see {@link TransactionUtil#registerSynchronizationOnce(Object,TransactionSynchronization)}
+	 */
+	@Test
+	@Verifies(value = "should register a synchronization for each key", method = "registerSynchronizationOnce(Object,TransactionSynchronization)")
+	public void registerSynchronizationOnce_shouldRegisterASynchronizationForEachKey() throws Exception {
+		TransactionSynchronization first = new TransactionSynchronizationAdapter() {};
+		TransactionSynchronization second = new TransactionSynchronizationAdapter() {};
+		TransactionUtil.registerSynchronizationOnce("first key", first);
+		
+		Assert.assertSame(second, TransactionUtil.registerSynchronizationOnce("second key", second));
+		Assert.assertTrue(TransactionSynchronizationManager.getSynchronizations().contains(second));
+	}
+}
@@ -101,7 +101,7 @@ public class Hl7InArchiveListController {
 	private Object[] splitHL7InArchive(HL7InArchive q) {
 		// try to stick to basic types; String, Integer, etc (not Date)
 		return new Object[] { Integer.toString(q.getHL7InArchiveId()), q.getHL7Source().getName(),
-		        Context.getDateFormat().format(q.getDateCreated()), q.getHL7Data() };
+		        Context.getDateFormatter().format(q.getDateCreated()), q.getHL7Data() };
 	}
 	
 }
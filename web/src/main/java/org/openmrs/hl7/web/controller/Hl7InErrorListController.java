@@ -145,7 +145,7 @@ public class Hl7InErrorListController {
 	private Object[] splitHL7InError(HL7InError q) {
 		// try to stick to basic types; String, Integer, etc (not Date)
 		return new Object[] { q.getHL7InErrorId().toString(), q.getHL7Source().getName(),
-		        Context.getDateFormat().format(q.getDateCreated()), q.getHL7Data(), q.getError(), q.getErrorDetails() };
+		        Context.getDateFormatter().format(q.getDateCreated()), q.getHL7Data(), q.getError(), q.getErrorDetails() };
 	}
 	
 }
@@ -163,7 +163,7 @@ public class Hl7InQueueListController {
 	private Object[] splitHL7InQueue(HL7InQueue q) {
 		// try to stick to basic types; String, Integer, etc (not Date)
 		return new Object[] { q.getHL7InQueueId().toString(), q.getHL7Source().getName(),
-		        Context.getDateFormat().format(q.getDateCreated()), q.getHL7Data() };
+		        Context.getDateFormatter().format(q.getDateCreated()), q.getHL7Data() };
 	}
 	
 }
@@ -21,6 +21,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.StringReader;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Enumeration;
@@ -48,6 +49,8 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.log4j.xml.DOMConfigurator;
 import org.openmrs.api.context.Context;
+import org.openmrs.messagesource.MutableMessageSource;
+import org.openmrs.messagesource.impl.MutableResourceBundleMessageSource;
 import org.openmrs.module.Module;
 import org.openmrs.module.ModuleException;
 import org.openmrs.module.ModuleFactory;
@@ -55,6 +58,7 @@ import org.openmrs.module.ModuleUtil;
 import org.openmrs.module.web.filter.ModuleFilterConfig;
 import org.openmrs.module.web.filter.ModuleFilterDefinition;
 import org.openmrs.module.web.filter.ModuleFilterMapping;
+import org.openmrs.module.web.filter.ModuleFilterMatcher;
 import org.openmrs.util.OpenmrsUtil;
 import org.openmrs.util.PrivilegeConstants;
 import org.openmrs.web.DispatcherServlet;
@@ -90,6 +94,10 @@ public class WebModuleUtil {
 	private static List<ModuleFilterMapping> moduleFilterMappings = Collections
 	        .synchronizedList(new Vector<ModuleFilterMapping>());
 	
+	// the filter mappings compiled for matching request paths, replaced whenever they change
+	private static volatile ModuleFilterMatcher moduleFilterMatcher = new ModuleFilterMatcher(
+	        new ArrayList<ModuleFilterMapping>(), new HashMap<String, Filter>());
+	
 	/**
 	 * Performs the webapp specific startup needs for modules Normal startup is done in
 	 * {@link ModuleFactory#startModule(Module)} If delayContextRefresh is true, the spring context
@@ -160,6 +168,7 @@ public class WebModuleUtil {
 				// append the properties to the appropriate messages file
 				OpenmrsUtil.storeProperties(props, file, "Module: " + mod.getName() + " v" + mod.getVersion());
 			}
+			refreshMessageSource();
 			log.debug("Done copying messages");
 			
 			// flag to tell whether we added any xml/dwr/etc changes that necessitate a refresh
@@ -540,6 +549,8 @@ public class WebModuleUtil {
 		List<ModuleFilterMapping> modMappings = ModuleFilterMapping.retrieveFilterMappings(module);
 		moduleFilterMappings.addAll(modMappings);
 		log.debug("Module: " + module.getModuleId() + " successfully loaded " + modMappings.size() + " filter mappings.");
+		
+		compileFilterMappings();
 	}
 	
 	/**
@@ -581,6 +592,24 @@ public class WebModuleUtil {
 				}
 			}
 		}
+		
+		compileFilterMappings();
+	}
+	
+	/**
+	 * Replaces the compiled filter mappings with ones built from the current filters and filter
+	 * mappings. Requests keep using the previous ones until the new ones are complete.
+	 */
+	private static void compileFilterMappings() {
+		List<ModuleFilterMapping> mappings;
+		synchronized (moduleFilterMappings) {
+			mappings = new ArrayList<ModuleFilterMapping>(moduleFilterMappings);
+		}
+		Map<String, Filter> filtersByName;
+		synchronized (moduleFiltersByName) {
+			filtersByName = new HashMap<String, Filter>(moduleFiltersByName);
+		}
+		moduleFilterMatcher = new ModuleFilterMatcher(mappings, filtersByName);
 	}
 	
 	/**
@@ -611,7 +640,6 @@ public class WebModuleUtil {
 	 */
 	public static List<Filter> getFiltersForRequest(ServletRequest request) {
 		
-		List<Filter> filters = new Vector<Filter>();
 		if (request != null) {
 			HttpServletRequest httpRequest = (HttpServletRequest) request;
 			String requestPath = httpRequest.getRequestURI();
@@ -619,20 +647,10 @@ public class WebModuleUtil {
 			if (requestPath != null) {
 				if (requestPath.startsWith(httpRequest.getContextPath()))
 					requestPath = requestPath.substring(httpRequest.getContextPath().length());
-				for (ModuleFilterMapping filterMapping : WebModuleUtil.getFilterMappings()) {
-					if (ModuleFilterMapping.filterMappingPasses(filterMapping, requestPath)) {
-						Filter passedFilter = moduleFiltersByName.get(filterMapping.getFilterName());
-						if (passedFilter != null) {
-							filters.add(passedFilter);
-						} else {
-							log.warn("Unable to retrieve filter that has a name of " + filterMapping.getFilterName()
-							        + " in filter mapping.");
-						}
-					}
-				}
+				return moduleFilterMatcher.getFilters(requestPath);
 			}
 		}
-		return filters;
+		return Collections.emptyList();
 	}
 	
 	/**
@@ -663,6 +681,16 @@ public class WebModuleUtil {
 		return dwrmodulexml;
 	}
 	
+	/**
+	 * Makes the active message source drop its cached messages so that changes to the module
+	 * message files are picked up
+	 */
+	private static void refreshMessageSource() {
+		MutableMessageSource messageSource = Context.getMessageSourceService().getActiveMessageSource();
+		if (messageSource instanceof MutableResourceBundleMessageSource)
+			((MutableResourceBundleMessageSource) messageSource).clearCache();
+	}
+	
 	/**
 	 * Reverses all activities done by startModule(org.openmrs.module.Module) Normal stop/shutdown
 	 * is done by ModuleFactory
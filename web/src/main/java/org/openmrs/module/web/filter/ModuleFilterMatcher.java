@@ -0,0 +1,209 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.web.filter;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.servlet.Filter;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * An immutable, precompiled form of the module filter mappings, used to find the filters for a
+ * request path without checking every pattern of every mapping. The url patterns are split into
+ * a map of exact paths, a trie of path prefixes (for patterns ending with "/*") and a map of
+ * extensions (for patterns like "*.form"), so the work per request only depends on the length of
+ * the path. The filters found for a path are cached. <br/>
+ * <br/>
+ * The filters are returned in the same order as the mappings, exactly as
+ * {@link ModuleFilterMapping#filterMappingPasses(ModuleFilterMapping, String)} would have matched
+ * them one by one.
+ *
+ * @see org.openmrs.module.web.WebModuleUtil#getFiltersForRequest(javax.servlet.ServletRequest)
+ * @since 1.10
+ */
+public class ModuleFilterMatcher {
+	
+	private static Log log = LogFactory.getLog(ModuleFilterMatcher.class);
+	
+	/**
+	 * The largest number of request paths whose filters are cached
+	 */
+	public static final int MAX_CACHED_PATHS = 1000;
+	
+	private final Filter[] filters;
+	
+	private final BitSet matchAll = new BitSet();
+	
+	private final Map<String, BitSet> exactPaths = new HashMap<String, BitSet>();
+	
+	private final PrefixNode prefixes = new PrefixNode();
+	
+	private final Map<String, BitSet> extensions = new HashMap<String, BitSet>();
+	
+	private final Map<String, List<Filter>> cache = new ConcurrentHashMap<String, List<Filter>>();
+	
+	/**
+	 * Compiles the given mappings
+	 *
+	 * @param mappings the filter mappings, in the order their filters should be applied
+	 * @param filtersByName the filters the mappings refer to by name
+	 */
+	public ModuleFilterMatcher(List<ModuleFilterMapping> mappings, Map<String, Filter> filtersByName) {
+		filters = new Filter[mappings.size()];
+		for (int i = 0; i < filters.length; i++) {
+			ModuleFilterMapping mapping = mappings.get(i);
+			filters[i] = filtersByName.get(mapping.getFilterName());
+			if (filters[i] == null) {
+				log.warn("Unable to retrieve filter that has a name of " + mapping.getFilterName() + " in filter mapping.");
+				continue;
+			}
+			
+			for (String pattern : mapping.getUrlPatterns())
+				addUrlPattern(pattern, i);
+			for (String servletName : mapping.getServletNames()) {
+				// servlet names are compared with the request path as well
+				if ("*".equals(servletName))
+					matchAll.set(i);
+				else if (servletName != null)
+					add(exactPaths, servletName, i);
+			}
+		}
+	}
+	
+	/**
+	 * Gets the filters of all of the mappings that match the given request path
+	 *
+	 * @param requestPath the request path, relative to the context path
+	 * @return the filters in the order of their mappings
+	 * @should return the filters of mappings with a matching exact path
+	 * @should return the filters of mappings with a matching path prefix
+	 * @should return the filters of mappings with a matching extension
+	 * @should return the filters of mappings with a matching servlet name
+	 * @should return the filters in the order of their mappings
+	 * @should not return filters of mappings that do not match
+	 * @should match the same paths as the filter mappings
+	 */
+	public List<Filter> getFilters(String requestPath) {
+		if (requestPath == null)
+			return Collections.emptyList();
+		
+		List<Filter> ret = cache.get(requestPath);
+		if (ret == null) {
+			ret = match(requestPath);
+			if (cache.size() >= MAX_CACHED_PATHS)
+				cache.clear();
+			cache.put(requestPath, ret);
+		}
+		return ret;
+	}
+	
+	private List<Filter> match(String requestPath) {
+		BitSet matches = (BitSet) matchAll.clone();
+		
+		BitSet exact = exactPaths.get(requestPath);
+		if (exact != null)
+			matches.or(exact);
+		
+		// walk the prefix trie one path segment at a time
+		PrefixNode node = prefixes;
+		int start = 0;
+		while (node != null) {
+			int end = requestPath.indexOf('/', start);
+			String segment = requestPath.substring(start, end < 0 ? requestPath.length() : end);
+			node = node.children.get(segment);
+			if (node != null && node.mappings != null)
+				matches.or(node.mappings);
+			if (end < 0)
+				break;
+			start = end + 1;
+		}
+		
+		int slash = requestPath.lastIndexOf('/');
+		int period = requestPath.lastIndexOf('.');
+		if (slash >= 0 && period > slash && period != requestPath.length() - 1) {
+			BitSet extension = extensions.get(requestPath.substring(period + 1));
+			if (extension != null)
+				matches.or(extension);
+		}
+		
+		if (matches.isEmpty())
+			return Collections.emptyList();
+		
+		List<Filter> ret = new ArrayList<Filter>(matches.cardinality());
+		for (int i = matches.nextSetBit(0); i >= 0; i = matches.nextSetBit(i + 1))
+			ret.add(filters[i]);
+		return Collections.unmodifiableList(ret);
+	}
+	
+	/**
+	 * Adds a url pattern, following the rules of
+	 * {@link ModuleFilterMapping#urlPatternMatches(String, String)}
+	 */
+	private void addUrlPattern(String pattern, int mappingIndex) {
+		if (pattern == null)
+			return;
+		
+		if (pattern.equals("*") || pattern.equals("/*")) {
+			matchAll.set(mappingIndex);
+			return;
+		}
+		
+		// a pattern always matches a path that is exactly the same
+		add(exactPaths, pattern, mappingIndex);
+		
+		if (pattern.endsWith("/*")) {
+			PrefixNode node = prefixes;
+			for (String segment : pattern.substring(0, pattern.length() - 2).split("/", -1)) {
+				PrefixNode child = node.children.get(segment);
+				if (child == null) {
+					child = new PrefixNode();
+					node.children.put(segment, child);
+				}
+				node = child;
+			}
+			if (node.mappings == null)
+				node.mappings = new BitSet();
+			node.mappings.set(mappingIndex);
+		} else if (pattern.startsWith("*.")) {
+			add(extensions, pattern.substring(2), mappingIndex);
+		}
+	}
+	
+	private static void add(Map<String, BitSet> map, String key, int mappingIndex) {
+		BitSet mappings = map.get(key);
+		if (mappings == null) {
+			mappings = new BitSet();
+			map.put(key, mappings);
+		}
+		mappings.set(mappingIndex);
+	}
+	
+	/**
+	 * A node in the trie of path prefixes, with one child per path segment
+	 */
+	private static class PrefixNode {
+		
+		private final Map<String, PrefixNode> children = new HashMap<String, PrefixNode>();
+		
+		private BitSet mappings;
+	}
+}
@@ -91,6 +91,6 @@ public class DateFieldGenDatatypeHandler implements FieldGenDatatypeHandler<Date
 	 */
 	@Override
 	public String toHtml(CustomDatatype<Date> datatype, String valueReference) {
-		return Context.getDateFormat().format(datatype.fromReferenceString(valueReference));
+		return Context.getDateFormatter().format(datatype.fromReferenceString(valueReference));
 	}
 }
@@ -41,7 +41,7 @@ public class ActiveListPortletController extends PortletController {
 	@Override
 	protected void populateModel(HttpServletRequest request, Map<String, Object> model) {
 		Patient patient = Context.getPatientService().getPatient((Integer) model.get("patientId"));
-		model.put("today", Context.getDateFormat().format(new Date()));
+		model.put("today", Context.getDateFormatter().format(new Date()));
 		
 		String type = (String) model.get("type");
 		if ("allergy".equals(type)) {
@@ -0,0 +1,318 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.web.controller;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.openmrs.Concept;
+import org.openmrs.DrugOrder;
+import org.openmrs.Encounter;
+import org.openmrs.Obs;
+import org.openmrs.Patient;
+import org.openmrs.PatientProgram;
+import org.openmrs.Person;
+import org.openmrs.Relationship;
+import org.openmrs.RelationshipType;
+import org.openmrs.Visit;
+import org.openmrs.api.context.Context;
+
+/**
+ * The data about one patient that is shown by the portlets on a dashboard. A single snapshot is
+ * shared by all of the portlets included in one request, so each part of it is loaded at most once
+ * per page view, and only if some portlet asks for it. Values derived from a part (e.g. the current
+ * drug orders or the latest obs for a concept) are computed in the same pass that loads it.
+ *
+ * @see PortletController
+ * @since 1.10
+ */
+public class PatientSnapshot {
+	
+	private final Patient patient;
+	
+	private final Set<Concept> prefetchedConcepts;
+	
+	private final Date now = new Date();
+	
+	private List<Encounter> encounters;
+	
+	private List<Visit> visits;
+	
+	private List<Visit> activeVisits;
+	
+	private List<Obs> obs;
+	
+	private boolean obsIndexed = false;
+	
+	private Map<Integer, List<Obs>> obsByConceptId = new HashMap<Integer, List<Obs>>();
+	
+	private List<DrugOrder> drugOrders;
+	
+	private List<DrugOrder> currentDrugOrders;
+	
+	private List<DrugOrder> completedDrugOrders;
+	
+	private List<PatientProgram> patientPrograms;
+	
+	private List<PatientProgram> currentPatientPrograms;
+	
+	private List<Relationship> relationships;
+	
+	private Map<RelationshipType, List<Relationship>> relationshipsByType;
+	
+	/**
+	 * @param patient the patient to hold the data of
+	 * @param prefetchedConcepts concepts whose obs should be loaded together with one query the
+	 *            first time the obs of any single concept are asked for
+	 */
+	public PatientSnapshot(Patient patient, Concept... prefetchedConcepts) {
+		this.patient = patient;
+		this.prefetchedConcepts = new LinkedHashSet<Concept>();
+		for (Concept concept : prefetchedConcepts) {
+			if (concept != null)
+				this.prefetchedConcepts.add(concept);
+		}
+	}
+	
+	/**
+	 * @return the patient
+	 */
+	public Patient getPatient() {
+		return patient;
+	}
+	
+	/**
+	 * @return the encounters of the patient
+	 */
+	public List<Encounter> getEncounters() {
+		if (encounters == null)
+			encounters = Context.getEncounterService().getEncountersByPatient(patient);
+		return encounters;
+	}
+	
+	/**
+	 * @return all of the visits of the patient
+	 */
+	public List<Visit> getVisits() {
+		if (visits == null)
+			visits = Context.getVisitService().getVisitsByPatient(patient);
+		return visits;
+	}
+	
+	/**
+	 * @return the visits of the patient that have not stopped yet
+	 * @should return the visits that have not stopped
+	 */
+	public List<Visit> getActiveVisits() {
+		if (activeVisits == null) {
+			activeVisits = new ArrayList<Visit>();
+			for (Visit visit : getVisits()) {
+				if (visit.getStopDatetime() == null || visit.getStopDatetime().after(now))
+					activeVisits.add(visit);
+			}
+		}
+		return activeVisits;
+	}
+	
+	/**
+	 * @return all of the obs of the patient
+	 */
+	public List<Obs> getObs() {
+		if (obs == null)
+			obs = Context.getObsService().getObservationsByPerson(patient);
+		return obs;
+	}
+	
+	/**
+	 * Gets the obs of the patient for one concept. If all of the obs of the patient have been loaded
+	 * already they are grouped by concept, otherwise the obs for this concept and all of the
+	 * prefetched concepts are loaded with one query.
+	 *
+	 * @param concept the question concept
+	 * @return the obs for the concept, most recent first
+	 * @should return the obs for the given concept most recent first
+	 * @should return an empty list for a concept without obs
+	 */
+	public List<Obs> getObs(Concept concept) {
+		if (concept == null)
+			return Collections.emptyList();
+		
+		if (obs != null && !obsIndexed) {
+			// everything has been loaded already, so group it all in one pass
+			obsByConceptId.clear();
+			for (Obs o : obs) {
+				List<Obs> forConcept = obsByConceptId.get(o.getConcept().getConceptId());
+				if (forConcept == null) {
+					forConcept = new ArrayList<Obs>();
+					obsByConceptId.put(o.getConcept().getConceptId(), forConcept);
+				}
+				forConcept.add(o);
+			}
+			for (List<Obs> forConcept : obsByConceptId.values())
+				Collections.sort(forConcept, new MostRecentFirst());
+			obsIndexed = true;
+		}
+		
+		if (!obsIndexed && !obsByConceptId.containsKey(concept.getConceptId()))
+			loadObs(concept);
+		
+		List<Obs> ret = obsByConceptId.get(concept.getConceptId());
+		if (ret == null)
+			return Collections.emptyList();
+		return ret;
+	}
+	
+	/**
+	 * @param concept the question concept
+	 * @return the most recent obs of the patient for the concept or null if there is none
+	 */
+	public Obs getLatestObs(Concept concept) {
+		List<Obs> forConcept = getObs(concept);
+		return forConcept.isEmpty() ? null : forConcept.get(0);
+	}
+	
+	/**
+	 * @return the drug orders of the patient
+	 */
+	public List<DrugOrder> getDrugOrders() {
+		if (drugOrders == null) {
+			drugOrders = Context.getOrderService().getDrugOrdersByPatient(patient);
+			currentDrugOrders = new ArrayList<DrugOrder>();
+			completedDrugOrders = new ArrayList<DrugOrder>();
+			for (DrugOrder drugOrder : drugOrders) {
+				if (drugOrder.isCurrent() || drugOrder.isFuture())
+					currentDrugOrders.add(drugOrder);
+				if (drugOrder.isDiscontinued(now))
+					completedDrugOrders.add(drugOrder);
+			}
+		}
+		return drugOrders;
+	}
+	
+	/**
+	 * @return the drug orders of the patient that are current or start in the future
+	 */
+	public List<DrugOrder> getCurrentDrugOrders() {
+		getDrugOrders();
+		return currentDrugOrders;
+	}
+	
+	/**
+	 * @return the drug orders of the patient that have been discontinued
+	 */
+	public List<DrugOrder> getCompletedDrugOrders() {
+		getDrugOrders();
+		return completedDrugOrders;
+	}
+	
+	/**
+	 * @return the non voided programs the patient has been enrolled in
+	 */
+	public List<PatientProgram> getPatientPrograms() {
+		if (patientPrograms == null)
+			patientPrograms = Context.getProgramWorkflowService().getPatientPrograms(patient, null, null, null, null,
+			    null, false);
+		return patientPrograms;
+	}
+	
+	/**
+	 * @return the programs the patient is enrolled in right now
+	 * @should return the programs that have been enrolled in and not completed
+	 */
+	public List<PatientProgram> getCurrentPatientPrograms() {
+		if (currentPatientPrograms == null) {
+			currentPatientPrograms = new ArrayList<PatientProgram>();
+			for (PatientProgram patientProgram : getPatientPrograms()) {
+				if (patientProgram.getDateEnrolled() != null && !patientProgram.getDateEnrolled().after(now)
+				        && (patientProgram.getDateCompleted() == null || !patientProgram.getDateCompleted().before(now)))
+					currentPatientPrograms.add(patientProgram);
+			}
+		}
+		return currentPatientPrograms;
+	}
+	
+	/**
+	 * @return the relationships the patient is in
+	 */
+	public List<Relationship> getRelationships() {
+		if (relationships == null) {
+			relationships = new ArrayList<Relationship>();
+			relationships.addAll(Context.getPersonService().getRelationshipsByPerson(patient));
+			relationshipsByType = new HashMap<RelationshipType, List<Relationship>>();
+			for (Relationship rel : relationships) {
+				List<Relationship> list = relationshipsByType.get(rel.getRelationshipType());
+				if (list == null) {
+					list = new ArrayList<Relationship>();
+					relationshipsByType.put(rel.getRelationshipType(), list);
+				}
+				list.add(rel);
+			}
+		}
+		return relationships;
+	}
+	
+	/**
+	 * @return the relationships the patient is in, by type
+	 */
+	public Map<RelationshipType, List<Relationship>> getRelationshipsByType() {
+		getRelationships();
+		return relationshipsByType;
+	}
+	
+	/**
+	 * Loads the obs for the given concept and for all prefetched concepts that have not been loaded
+	 * yet with a single query
+	 */
+	private void loadObs(Concept concept) {
+		List<Concept> questions = new ArrayList<Concept>();
+		questions.add(concept);
+		for (Concept prefetched : prefetchedConcepts) {
+			if (!prefetched.equals(concept) && !obsByConceptId.containsKey(prefetched.getConceptId()))
+				questions.add(prefetched);
+		}
+		
+		for (Concept question : questions)
+			obsByConceptId.put(question.getConceptId(), new ArrayList<Obs>());
+		
+		// these come back most recent first
+		List<Obs> loaded = Context.getObsService().getObservations(Collections.singletonList((Person) patient), null,
+		    questions, null, null, null, null, null, null, null, null, false);
+		for (Obs o : loaded) {
+			List<Obs> forConcept = obsByConceptId.get(o.getConcept().getConceptId());
+			if (forConcept != null)
+				forConcept.add(o);
+		}
+	}
+	
+	/**
+	 * Sorts obs by their obs datetime, most recent first
+	 */
+	private static class MostRecentFirst implements Comparator<Obs> {
+		
+		public int compare(Obs left, Obs right) {
+			if (left.getObsDatetime() == null)
+				return right.getObsDatetime() == null ? 0 : 1;
+			if (right.getObsDatetime() == null)
+				return -1;
+			return right.getObsDatetime().compareTo(left.getObsDatetime());
+		}
+	}
+}
@@ -14,13 +14,14 @@
 package org.openmrs.web.controller;
 
 import java.io.IOException;
+import java.io.ObjectStreamException;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 import javax.servlet.ServletException;
@@ -33,7 +34,6 @@ import org.apache.commons.logging.LogFactory;
 import org.openmrs.Cohort;
 import org.openmrs.Concept;
 import org.openmrs.ConceptNumeric;
-import org.openmrs.DrugOrder;
 import org.openmrs.Encounter;
 import org.openmrs.Obs;
 import org.openmrs.Patient;
@@ -68,9 +68,10 @@ public class PortletController implements Controller {
 	 *          (other parameters)
 	 *     (if there's currently an authenticated user)
 	 *          (User) authenticatedUser
-	 *     (if the request has a patientId attribute)
+	 *     (if the request has a patientId attribute, loaded from the patient snapshot when first used)
 	 *          (Integer) patientId
 	 *          (Patient) patient
+	 *          (PatientSnapshot) patientSnapshot
 	 *          (List<Obs>) patientObs
 	 *          (List<Encounter>) patientEncounters
 	 *          (List<Visit>) patientVisits
@@ -106,27 +107,30 @@ public class PortletController implements Controller {
 	 * 
 	 * @should calculate bmi into patientBmiAsString
 	 * @should not fail with empty height and weight properties
+	 * @should share the patient data between the portlets of one request
+	 * @should serialize the loaded values of the model
 	 */
 	@SuppressWarnings("unchecked")
 	public ModelAndView handleRequest(HttpServletRequest request, HttpServletResponse response) throws ServletException,
 	        IOException {
 		
-		AdministrationService as = Context.getAdministrationService();
 		ConceptService cs = Context.getConceptService();
 		
 		// find the portlet that was identified in the openmrs:portlet taglib
 		Object uri = request.getAttribute("javax.servlet.include.servlet_path");
 		String portletPath = "";
-		Map<String, Object> model = null;
+		PortletModel model = null;
 		{
 			HttpSession session = request.getSession();
 			String uniqueRequestId = (String) request.getAttribute(WebConstants.INIT_REQ_UNIQUE_ID);
 			String lastRequestId = (String) session.getAttribute(WebConstants.OPENMRS_PORTLET_LAST_REQ_ID);
 			if (uniqueRequestId.equals(lastRequestId)) {
-				model = (Map<String, Object>) session.getAttribute(WebConstants.OPENMRS_PORTLET_CACHED_MODEL);
+				Object cachedModel = session.getAttribute(WebConstants.OPENMRS_PORTLET_CACHED_MODEL);
+				if (cachedModel instanceof PortletModel)
+					model = (PortletModel) cachedModel;
 				
 				// remove cached parameters 
-				List<String> parameterKeys = (List<String>) model.get("parameterKeys");
+				List<String> parameterKeys = model == null ? null : (List<String>) model.get("parameterKeys");
 				if (parameterKeys != null) {
 					for (String key : parameterKeys) {
 						model.remove(key);
@@ -135,7 +139,7 @@ public class PortletController implements Controller {
 			}
 			if (model == null) {
 				log.debug("creating new portlet model");
-				model = new HashMap<String, Object>();
+				model = new PortletModel();
 				session.setAttribute(WebConstants.OPENMRS_PORTLET_LAST_REQ_ID, uniqueRequestId);
 				session.setAttribute(WebConstants.OPENMRS_PORTLET_CACHED_MODEL, model);
 			}
@@ -182,7 +186,6 @@ public class PortletController implements Controller {
 			// if a patient id is available, put patient data documented above in the model
 			Object o = request.getAttribute("org.openmrs.portlet.patientId");
 			if (o != null) {
-				String patientVariation = "";
 				Integer patientId = (Integer) o;
 				if (!model.containsKey("patient")) {
 					// we can't continue if the user can't view patients
@@ -190,149 +193,47 @@ public class PortletController implements Controller {
 						Patient p = Context.getPatientService().getPatient(patientId);
 						model.put("patient", p);
 						
+						// the patient data is only loaded once a portlet asks for it, and then shared by
+						// all of the portlets in this request
+						PatientSnapshot snapshot = new PatientSnapshot(p, model.getWeightConcept(), model
+						        .getHeightConcept(), model.getReasonForExitConcept());
+						model.setPatientSnapshot(snapshot);
+						model.put("patientSnapshot", snapshot);
+						
 						// add encounters if this user can view them
 						if (Context.hasPrivilege(PrivilegeConstants.VIEW_ENCOUNTERS))
-							model.put("patientEncounters", Context.getEncounterService().getEncountersByPatient(p));
+							model.putLazily("patientEncounters");
 						
 						// add visits if this user can view them
 						if (Context.hasPrivilege(PrivilegeConstants.VIEW_VISITS)) {
 							model.put("person", p);
 							PortletControllerUtil.addFormToEditAndViewUrlMaps(model);
-							model.put("patientVisits", Context.getVisitService().getVisitsByPatient(p));
-							model.put("activeVisits", Context.getVisitService().getActiveVisitsByPatient(p));
+							model.putLazily("patientVisits", "activeVisits");
 						}
 						
 						if (Context.hasPrivilege(PrivilegeConstants.VIEW_OBS)) {
-							List<Obs> patientObs = Context.getObsService().getObservationsByPerson(p);
-							model.put("patientObs", patientObs);
-							Obs latestWeight = null;
-							Obs latestHeight = null;
-							String bmiAsString = "?";
-							try {
-								String weightString = as.getGlobalProperty("concept.weight");
-								ConceptNumeric weightConcept = null;
-								if (StringUtils.hasLength(weightString))
-									weightConcept = cs.getConceptNumeric(cs.getConcept(Integer.valueOf(weightString))
-									        .getConceptId());
-								String heightString = as.getGlobalProperty("concept.height");
-								ConceptNumeric heightConcept = null;
-								if (StringUtils.hasLength(heightString))
-									heightConcept = cs.getConceptNumeric(cs.getConcept(Integer.valueOf(heightString))
-									        .getConceptId());
-								for (Obs obs : patientObs) {
-									if (obs.getConcept().equals(weightConcept)) {
-										if (latestWeight == null
-										        || obs.getObsDatetime().compareTo(latestWeight.getObsDatetime()) > 0)
-											latestWeight = obs;
-									} else if (obs.getConcept().equals(heightConcept)) {
-										if (latestHeight == null
-										        || obs.getObsDatetime().compareTo(latestHeight.getObsDatetime()) > 0)
-											latestHeight = obs;
-									}
-								}
-								if (latestWeight != null)
-									model.put("patientWeight", latestWeight);
-								if (latestHeight != null)
-									model.put("patientHeight", latestHeight);
-								if (latestWeight != null && latestHeight != null) {
-									double weightInKg;
-									double heightInM;
-									if (weightConcept.getUnits().equals("kg"))
-										weightInKg = latestWeight.getValueNumeric();
-									else if (weightConcept.getUnits().equals("lb"))
-										weightInKg = latestWeight.getValueNumeric() * 0.45359237;
-									else
-										throw new IllegalArgumentException("Can't handle units of weight concept: "
-										        + weightConcept.getUnits());
-									if (heightConcept.getUnits().equals("cm"))
-										heightInM = latestHeight.getValueNumeric() / 100;
-									else if (heightConcept.getUnits().equals("m"))
-										heightInM = latestHeight.getValueNumeric();
-									else if (heightConcept.getUnits().equals("in"))
-										heightInM = latestHeight.getValueNumeric() * 0.0254;
-									else
-										throw new IllegalArgumentException("Can't handle units of height concept: "
-										        + heightConcept.getUnits());
-									double bmi = weightInKg / (heightInM * heightInM);
-									model.put("patientBmi", bmi);
-									String temp = "" + bmi;
-									bmiAsString = temp.substring(0, temp.indexOf('.') + 2);
-								}
-							}
-							catch (Exception ex) {
-								if (latestWeight != null && latestHeight != null)
-									log.error("Failed to calculate BMI even though a weight and height were found", ex);
-							}
-							model.put("patientBmiAsString", bmiAsString);
+							model.putLazily("patientObs", "patientWeight", "patientHeight", "patientBmi",
+							    "patientBmiAsString");
 						} else {
 							model.put("patientObs", new HashSet<Obs>());
 						}
 						
 						// information about whether or not the patient has exited care
-						Obs reasonForExitObs = null;
-						String reasonForExitConceptString = as.getGlobalProperty("concept.reasonExitedCare");
-						if (StringUtils.hasLength(reasonForExitConceptString)) {
-							Concept reasonForExitConcept = cs.getConcept(reasonForExitConceptString);
-							if (reasonForExitConcept != null) {
-								List<Obs> patientExitObs = Context.getObsService().getObservationsByPersonAndConcept(p,
-								    reasonForExitConcept);
-								if (patientExitObs != null) {
-									log.debug("Exit obs is size " + patientExitObs.size());
-									if (patientExitObs.size() == 1) {
-										reasonForExitObs = patientExitObs.iterator().next();
-										Concept exitReason = reasonForExitObs.getValueCoded();
-										Date exitDate = reasonForExitObs.getObsDatetime();
-										if (exitReason != null && exitDate != null) {
-											patientVariation = "Exited";
-										}
-									} else {
-										if (patientExitObs.size() == 0) {
-											log.debug("Patient has no reason for exit");
-										} else {
-											log.error("Too many reasons for exit - not putting data into model");
-										}
-									}
-								}
-							}
-						}
-						model.put("patientReasonForExit", reasonForExitObs);
+						model.putLazily("patientReasonForExit", "patientVariation");
 						
-						if (Context.hasPrivilege(PrivilegeConstants.VIEW_ORDERS)) {
-							List<DrugOrder> drugOrderList = Context.getOrderService().getDrugOrdersByPatient(p);
-							model.put("patientDrugOrders", drugOrderList);
-							List<DrugOrder> currentDrugOrders = new ArrayList<DrugOrder>();
-							List<DrugOrder> discontinuedDrugOrders = new ArrayList<DrugOrder>();
-							Date rightNow = new Date();
-							for (Iterator<DrugOrder> iter = drugOrderList.iterator(); iter.hasNext();) {
-								DrugOrder next = iter.next();
-								if (next.isCurrent() || next.isFuture())
-									currentDrugOrders.add(next);
-								if (next.isDiscontinued(rightNow))
-									discontinuedDrugOrders.add(next);
-							}
-							model.put("currentDrugOrders", currentDrugOrders);
-							model.put("completedDrugOrders", discontinuedDrugOrders);
-							
-							List<RegimenSuggestion> standardRegimens = Context.getOrderService().getStandardRegimens();
-							if (standardRegimens != null)
-								model.put("standardRegimens", standardRegimens);
-						}
+						if (Context.hasPrivilege(PrivilegeConstants.VIEW_ORDERS))
+							model.putLazily("patientDrugOrders", "currentDrugOrders", "completedDrugOrders",
+							    "standardRegimens");
 						
 						if (Context.hasPrivilege(PrivilegeConstants.VIEW_PROGRAMS)
-						        && Context.hasPrivilege(PrivilegeConstants.VIEW_PATIENT_PROGRAMS)) {
-							model.put("patientPrograms", Context.getProgramWorkflowService().getPatientPrograms(p, null,
-							    null, null, null, null, false));
-							model.put("patientCurrentPrograms", Context.getProgramWorkflowService().getPatientPrograms(p,
-							    null, null, new Date(), new Date(), null, false));
-						}
+						        && Context.hasPrivilege(PrivilegeConstants.VIEW_PATIENT_PROGRAMS))
+							model.putLazily("patientPrograms", "patientCurrentPrograms");
 						
 						model.put("patientId", patientId);
 						if (p != null) {
 							personId = p.getPatientId();
 							model.put("personId", personId);
 						}
-						
-						model.put("patientVariation", patientVariation);
 					}
 				}
 			}
@@ -352,7 +253,10 @@ public class PortletController implements Controller {
 						p = Context.getPersonService().getPerson(personId);
 					model.put("person", p);
 					
-					if (Context.hasPrivilege(PrivilegeConstants.VIEW_RELATIONSHIPS)) {
+					if (Context.hasPrivilege(PrivilegeConstants.VIEW_RELATIONSHIPS) && model.getPatientSnapshot() != null
+					        && p != null && p.equals(model.getPatientSnapshot().getPatient())) {
+						model.putLazily("personRelationships", "personRelationshipsByType");
+					} else if (Context.hasPrivilege(PrivilegeConstants.VIEW_RELATIONSHIPS)) {
 						List<Relationship> relationships = new ArrayList<Relationship>();
 						relationships.addAll(Context.getPersonService().getRelationshipsByPerson(p));
 						Map<RelationshipType, List<Relationship>> relationshipsByType = new HashMap<RelationshipType, List<Relationship>>();
@@ -445,4 +349,254 @@ public class PortletController implements Controller {
 	protected void populateModel(HttpServletRequest request, Map<String, Object> model) {
 	}
 	
+	/**
+	 * The model of the portlets included in one request. The patient data documented on
+	 * {@link PortletController#handleRequest(HttpServletRequest, HttpServletResponse)} is put in
+	 * lazily: the keys are known up front, but the values are only loaded from the
+	 * {@link PatientSnapshot} once a portlet asks for one of them. The snapshot only lives as long
+	 * as the request, so when the session is serialized the model is replaced by a plain map of the
+	 * values loaded so far.
+	 */
+	private static class PortletModel extends HashMap<String, Object> {
+		
+		private static final long serialVersionUID = 1L;
+		
+		private static final Log log = LogFactory.getLog(PortletController.class);
+		
+		private final transient Set<String> lazyKeys = new HashSet<String>();
+		
+		private transient PatientSnapshot patientSnapshot;
+		
+		private transient ConceptNumeric weightConcept;
+		
+		private transient ConceptNumeric heightConcept;
+		
+		private transient Concept reasonForExitConcept;
+		
+		private transient boolean conceptsLoaded = false;
+		
+		public PatientSnapshot getPatientSnapshot() {
+			return patientSnapshot;
+		}
+		
+		public void setPatientSnapshot(PatientSnapshot patientSnapshot) {
+			this.patientSnapshot = patientSnapshot;
+		}
+		
+		/**
+		 * Marks the given keys as present in the model, to be loaded once one of them is asked for
+		 */
+		public void putLazily(String... keys) {
+			for (String key : keys) {
+				super.remove(key);
+				lazyKeys.add(key);
+			}
+		}
+		
+		/**
+		 * @see java.util.HashMap#get(java.lang.Object)
+		 */
+		@Override
+		public Object get(Object key) {
+			if (lazyKeys.contains(key))
+				load((String) key);
+			return super.get(key);
+		}
+		
+		/**
+		 * @see java.util.HashMap#containsKey(java.lang.Object)
+		 */
+		@Override
+		public boolean containsKey(Object key) {
+			return lazyKeys.contains(key) || super.containsKey(key);
+		}
+		
+		/**
+		 * @see java.util.HashMap#put(java.lang.Object, java.lang.Object)
+		 */
+		@Override
+		public Object put(String key, Object value) {
+			lazyKeys.remove(key);
+			return super.put(key, value);
+		}
+		
+		/**
+		 * @see java.util.HashMap#remove(java.lang.Object)
+		 */
+		@Override
+		public Object remove(Object key) {
+			lazyKeys.remove(key);
+			return super.remove(key);
+		}
+		
+		/**
+		 * Serializes the values that have been loaded, leaving out the lazy keys and the snapshot
+		 * they would be loaded from
+		 */
+		private Object writeReplace() throws ObjectStreamException {
+			Map<String, Object> eagerValues = new HashMap<String, Object>();
+			for (Map.Entry<String, Object> e : entrySet()) {
+				if (!(e.getValue() instanceof PatientSnapshot))
+					eagerValues.put(e.getKey(), e.getValue());
+			}
+			return eagerValues;
+		}
+		
+		public ConceptNumeric getWeightConcept() {
+			loadConcepts();
+			return weightConcept;
+		}
+		
+		public ConceptNumeric getHeightConcept() {
+			loadConcepts();
+			return heightConcept;
+		}
+		
+		public Concept getReasonForExitConcept() {
+			loadConcepts();
+			return reasonForExitConcept;
+		}
+		
+		/**
+		 * Loads the value of the given key, along with the other keys that are computed from the same
+		 * data
+		 */
+		private void load(String key) {
+			PatientSnapshot s = patientSnapshot;
+			if ("patientEncounters".equals(key)) {
+				put(key, s.getEncounters());
+			} else if ("patientVisits".equals(key) || "activeVisits".equals(key)) {
+				put("patientVisits", s.getVisits());
+				put("activeVisits", s.getActiveVisits());
+			} else if ("patientObs".equals(key)) {
+				put(key, s.getObs());
+			} else if (key.startsWith("patientWeight") || key.startsWith("patientHeight") || key.startsWith("patientBmi")) {
+				loadBmi();
+			} else if ("patientReasonForExit".equals(key) || "patientVariation".equals(key)) {
+				loadReasonForExit();
+			} else if ("patientDrugOrders".equals(key) || "currentDrugOrders".equals(key)
+			        || "completedDrugOrders".equals(key)) {
+				put("patientDrugOrders", s.getDrugOrders());
+				put("currentDrugOrders", s.getCurrentDrugOrders());
+				put("completedDrugOrders", s.getCompletedDrugOrders());
+			} else if ("standardRegimens".equals(key)) {
+				List<RegimenSuggestion> standardRegimens = Context.getOrderService().getStandardRegimens();
+				if (standardRegimens != null)
+					put(key, standardRegimens);
+				else
+					remove(key);
+			} else if ("patientPrograms".equals(key) || "patientCurrentPrograms".equals(key)) {
+				put("patientPrograms", s.getPatientPrograms());
+				put("patientCurrentPrograms", s.getCurrentPatientPrograms());
+			} else if ("personRelationships".equals(key) || "personRelationshipsByType".equals(key)) {
+				put("personRelationships", s.getRelationships());
+				put("personRelationshipsByType", s.getRelationshipsByType());
+			} else {
+				remove(key);
+			}
+		}
+		
+		/**
+		 * Puts the most recent weight and height and the BMI computed from them in the model
+		 */
+		private void loadBmi() {
+			Obs latestWeight = patientSnapshot.getLatestObs(getWeightConcept());
+			Obs latestHeight = patientSnapshot.getLatestObs(getHeightConcept());
+			for (String key : new String[] { "patientWeight", "patientHeight", "patientBmi" })
+				remove(key);
+			
+			String bmiAsString = "?";
+			try {
+				if (latestWeight != null)
+					put("patientWeight", latestWeight);
+				if (latestHeight != null)
+					put("patientHeight", latestHeight);
+				if (latestWeight != null && latestHeight != null) {
+					ConceptNumeric weightConcept = getWeightConcept();
+					ConceptNumeric heightConcept = getHeightConcept();
+					double weightInKg;
+					double heightInM;
+					if (weightConcept.getUnits().equals("kg"))
+						weightInKg = latestWeight.getValueNumeric();
+					else if (weightConcept.getUnits().equals("lb"))
+						weightInKg = latestWeight.getValueNumeric() * 0.45359237;
+					else
+						throw new IllegalArgumentException("Can't handle units of weight concept: "
+						        + weightConcept.getUnits());
+					if (heightConcept.getUnits().equals("cm"))
+						heightInM = latestHeight.getValueNumeric() / 100;
+					else if (heightConcept.getUnits().equals("m"))
+						heightInM = latestHeight.getValueNumeric();
+					else if (heightConcept.getUnits().equals("in"))
+						heightInM = latestHeight.getValueNumeric() * 0.0254;
+					else
+						throw new IllegalArgumentException("Can't handle units of height concept: "
+						        + heightConcept.getUnits());
+					double bmi = weightInKg / (heightInM * heightInM);
+					put("patientBmi", bmi);
+					String temp = "" + bmi;
+					bmiAsString = temp.substring(0, temp.indexOf('.') + 2);
+				}
+			}
+			catch (Exception ex) {
+				if (latestWeight != null && latestHeight != null)
+					log.error("Failed to calculate BMI even though a weight and height were found", ex);
+			}
+			put("patientBmiAsString", bmiAsString);
+		}
+		
+		/**
+		 * Puts the reason the patient exited care, if there is exactly one, in the model
+		 */
+		private void loadReasonForExit() {
+			Obs reasonForExitObs = null;
+			String patientVariation = "";
+			if (getReasonForExitConcept() != null) {
+				List<Obs> patientExitObs = patientSnapshot.getObs(getReasonForExitConcept());
+				log.debug("Exit obs is size " + patientExitObs.size());
+				if (patientExitObs.size() == 1) {
+					reasonForExitObs = patientExitObs.get(0);
+					Concept exitReason = reasonForExitObs.getValueCoded();
+					Date exitDate = reasonForExitObs.getObsDatetime();
+					if (exitReason != null && exitDate != null) {
+						patientVariation = "Exited";
+					}
+				} else if (patientExitObs.size() == 0) {
+					log.debug("Patient has no reason for exit");
+				} else {
+					log.error("Too many reasons for exit - not putting data into model");
+				}
+			}
+			put("patientReasonForExit", reasonForExitObs);
+			put("patientVariation", patientVariation);
+		}
+		
+		/**
+		 * Looks up the concepts named by the 'concept.weight', 'concept.height' and
+		 * 'concept.reasonExitedCare' global properties
+		 */
+		private void loadConcepts() {
+			if (conceptsLoaded)
+				return;
+			conceptsLoaded = true;
+			
+			AdministrationService as = Context.getAdministrationService();
+			ConceptService cs = Context.getConceptService();
+			try {
+				String weightString = as.getGlobalProperty("concept.weight");
+				if (StringUtils.hasLength(weightString))
+					weightConcept = cs.getConceptNumeric(cs.getConcept(Integer.valueOf(weightString)).getConceptId());
+				String heightString = as.getGlobalProperty("concept.height");
+				if (StringUtils.hasLength(heightString))
+					heightConcept = cs.getConceptNumeric(cs.getConcept(Integer.valueOf(heightString)).getConceptId());
+			}
+			catch (Exception ex) {
+				log.debug("Unable to find the weight and height concepts", ex);
+			}
+			
+			String reasonForExitConceptString = as.getGlobalProperty("concept.reasonExitedCare");
+			if (StringUtils.hasLength(reasonForExitConceptString))
+				reasonForExitConcept = cs.getConcept(reasonForExitConceptString);
+		}
+	}
 }
@@ -0,0 +1,126 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.web.controller.remotecommunication;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openmrs.api.context.Context;
+import org.openmrs.hl7.HL7BatchReader;
+import org.openmrs.hl7.HL7InQueue;
+import org.openmrs.hl7.HL7Service;
+import org.openmrs.hl7.HL7Source;
+import org.springframework.util.StringUtils;
+import org.springframework.web.servlet.ModelAndView;
+import org.springframework.web.servlet.mvc.Controller;
+
+/**
+ * Queues all messages of an hl7 batch file, or of several messages one after the other, in one
+ * request. The messages are either in the 'hl7Messages' parameter or, when the request is not a
+ * form post, in the body of the request, which is split into messages while it is read. All
+ * messages are queued in one transaction, and the model holds an acknowledgement for each message.
+ *
+ * @see PostHl7Controller
+ * @see HL7BatchReader
+ * @since 1.10
+ */
+public class PostHl7BatchController implements Controller {
+	
+	protected final Log log = LogFactory.getLog(getClass());
+	
+	private String formView;
+	
+	public ModelAndView handleRequest(HttpServletRequest request, HttpServletResponse response) throws Exception {
+		Map<String, Object> model = new HashMap<String, Object>();
+		Boolean success = false;
+		if (!Context.isAuthenticated()) {
+			String username = request.getParameter("username");
+			String password = request.getParameter("password");
+			if (StringUtils.hasText(username) && StringUtils.hasText(password)) {
+				Context.authenticate(username, password);
+			} else {
+				model.put("error", "PostHl7.missingAuthentication");
+			}
+		}
+		if (Context.isAuthenticated()) {
+			String hl7Source = request.getParameter("source");
+			HL7Service service = Context.getHL7Service();
+			HL7Source source = StringUtils.hasText(hl7Source) ? service.getHL7SourceByName(hl7Source) : null;
+			
+			String messages = request.getParameter("hl7Messages");
+			Reader reader = null;
+			if (StringUtils.hasText(messages))
+				reader = new StringReader(messages);
+			else if (!isFormPost(request))
+				reader = request.getReader();
+			
+			if (source == null || reader == null) {
+				model.put("error", "PostHl7.sourceAndhl7MessagesParametersRequired");
+			} else {
+				List<HL7InQueue> hl7InQueues = new ArrayList<HL7InQueue>();
+				List<Map<String, Object>> acknowledgements = new ArrayList<Map<String, Object>>();
+				
+				HL7BatchReader batchReader = new HL7BatchReader(reader);
+				String message;
+				while ((message = batchReader.nextMessage()) != null) {
+					HL7InQueue hl7InQueue = new HL7InQueue();
+					hl7InQueue.setHL7Data(message);
+					hl7InQueue.setHL7Source(source);
+					hl7InQueues.add(hl7InQueue);
+					
+					Map<String, Object> acknowledgement = new HashMap<String, Object>();
+					acknowledgement.put("controlId", HL7BatchReader.getMessageControlId(message));
+					acknowledgement.put("uuid", hl7InQueue.getUuid());
+					acknowledgements.add(acknowledgement);
+				}
+				
+				if (log.isDebugEnabled())
+					log.debug("source: " + hl7Source + " , messages: " + hl7InQueues.size());
+				service.saveHL7InQueues(hl7InQueues);
+				
+				model.put("acknowledgements", acknowledgements);
+				success = true;
+			}
+		}
+		model.put("success", success);
+		return new ModelAndView(formView, "model", model);
+	}
+	
+	/**
+	 * @return true if the body of the request holds its parameters, and so no messages
+	 */
+	private boolean isFormPost(HttpServletRequest request) {
+		String contentType = request.getContentType();
+		return contentType != null
+		        && (contentType.startsWith("application/x-www-form-urlencoded") || contentType.startsWith("multipart/"));
+	}
+	
+	public String getFormView() {
+		return formView;
+	}
+	
+	public void setFormView(String formView) {
+		this.formView = formView;
+	}
+	
+}
@@ -101,10 +101,10 @@ public class VisitListController {
 				row.put("visitActive", Boolean.toString(isActive(visit.getStartDatetime(), visit.getStopDatetime())));
 				row.put("visitType", visit.getVisitType().getName());
 				row.put("visitLocation", (visit.getLocation() != null) ? visit.getLocation().getName() : "");
-				row.put("visitFrom", Context.getDateFormat().format(visit.getStartDatetime()));
+				row.put("visitFrom", Context.getDateFormatter().format(visit.getStartDatetime()));
 				
 				if (visit.getStopDatetime() != null) {
-					row.put("visitTo", Context.getDateFormat().format(visit.getStopDatetime()));
+					row.put("visitTo", Context.getDateFormatter().format(visit.getStopDatetime()));
 				}
 				
 				if (visit.getIndication() != null && visit.getIndication().getName() != null) {
@@ -127,7 +127,7 @@ public class VisitListController {
 			
 			if (encounter.getId() != null) { //If it is not mocked encounter
 				row.put("encounterId", encounter.getId().toString());
-				row.put("encounterDate", Context.getDateFormat().format(encounter.getEncounterDatetime()));
+				row.put("encounterDate", Context.getDateFormatter().format(encounter.getEncounterDatetime()));
 				row.put("encounterType", encounter.getEncounterType().getName());
 				row.put("encounterProviders", getProviders(encounter));
 				row.put("encounterLocation", (encounter.getLocation() != null) ? encounter.getLocation().getName() : "");
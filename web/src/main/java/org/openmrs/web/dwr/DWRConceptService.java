@@ -15,6 +15,7 @@ package org.openmrs.web.dwr;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
@@ -37,6 +38,7 @@ import org.openmrs.ConceptSet;
 import org.openmrs.ConceptSource;
 import org.openmrs.Drug;
 import org.openmrs.Field;
+import org.openmrs.OpenmrsMetadata;
 import org.openmrs.User;
 import org.openmrs.api.APIException;
 import org.openmrs.api.ConceptService;
@@ -46,6 +48,8 @@ import org.openmrs.api.context.Context;
 import org.openmrs.messagesource.MessageSourceService;
 import org.openmrs.util.OpenmrsConstants;
 import org.openmrs.util.OpenmrsUtil;
+import org.openmrs.util.PagedSearch;
+import org.openmrs.util.PagedSearchResult;
 import org.openmrs.validator.ConceptReferenceTermValidator;
 import org.springframework.validation.BindException;
 import org.springframework.validation.Errors;
@@ -275,7 +279,7 @@ public class DWRConceptService {
 		Locale locale = Context.getLocale();
 		ConceptService cs = Context.getConceptService();
 		
-		Concept concept = cs.getConcept(conceptId);
+		Concept concept = getConceptWithDetails(conceptId);
 		
 		if (concept == null)
 			throw new Exception("Unable to find a concept with id: " + conceptId);
@@ -307,10 +311,9 @@ public class DWRConceptService {
 	
 	public List<Object> getConceptSet(Integer conceptId) {
 		Locale locale = Context.getLocale();
-		ConceptService cs = Context.getConceptService();
 		FormService fs = Context.getFormService();
 		
-		Concept concept = cs.getConcept(conceptId);
+		Concept concept = getConceptWithDetails(conceptId);
 		
 		List<Object> returnList = new Vector<Object>();
 		
@@ -429,7 +432,7 @@ public class DWRConceptService {
 	
 	public List<ConceptListItem> getAnswersForQuestion(Integer conceptId) {
 		Vector<ConceptListItem> ret = new Vector<ConceptListItem>();
-		Concept c = Context.getConceptService().getConcept(conceptId);
+		Concept c = getConceptWithDetails(conceptId);
 		Collection<ConceptAnswer> answers = c.getAnswers(false);
 		// TODO: deal with concept answers (e.g. drug) whose answer concept is null. (Not sure if this actually ever happens)
 		Locale locale = Context.getLocale();
@@ -441,6 +444,20 @@ public class DWRConceptService {
 		return ret;
 	}
 	
+	/**
+	 * Gets a concept with its names, answers and set members, and the names of its answers and set
+	 * members, loaded in a few queries
+	 * 
+	 * @param conceptId the id of the concept
+	 * @return the concept or null if there is none with the id
+	 */
+	private Concept getConceptWithDetails(Integer conceptId) {
+		if (conceptId == null)
+			return null;
+		List<Concept> concepts = Context.getConceptService().getConceptsWithDetails(Collections.singleton(conceptId));
+		return concepts.isEmpty() ? null : concepts.get(0);
+	}
+	
 	/**
 	 * Converts the datatype of a concept that already has Obs referencing it from boolean to coded
 	 * to support addition of more coded answers
@@ -564,25 +581,31 @@ public class DWRConceptService {
 				
 				int matchCount = 0;
 				if (getMatchCount) {
-					//get the count of matches
-					matchCount += cs.getCountOfConcepts(phrase, localesToSearchOn, includeRetired, includeClasses,
-					    excludeClasses, includeDatatypes, excludeDatatypes, null);
+					// load the page first, it tells the count if it is the last one
+					PagedSearchResult<ConceptSearchResult> result = new ConceptSearch(phrase, localesToSearchOn,
+					        includeRetired, includeClasses, excludeClasses, includeDatatypes, excludeDatatypes).search(
+					    start, length, false);
+					matchCount += result.getCount();
+					
+					List<ConceptSearchResult> searchResults = new Vector<ConceptSearchResult>();
 					if (phrase.matches("\\d+")) {
 						// user searched on a number. Insert concept with
 						// corresponding conceptId
 						Concept c = cs.getConcept(Integer.valueOf(phrase));
-						if (c != null && (!c.isRetired() || includeRetired))
+						if (c != null && (!c.isRetired() || includeRetired)) {
 							matchCount++;
-						
+							searchResults.add(new ConceptSearchResult(phrase, c, c.getName(defaultLocale)));
+						}
 					}
+					searchResults.addAll(result.getResults());
 					
 					//if (includeDrugs)
 					//	matchCount += cs.getCountOfDrugs(phrase, null, false, includeRetired);
-				}
-				
-				//if we have any matches or this isn't the first ajax call when the caller
-				//requests for the count
-				if (matchCount > 0 || !getMatchCount) {
+					
+					for (ConceptSearchResult searchResult : searchResults)
+						objectList.add(new ConceptListItem(searchResult));
+				} else {
+					//this isn't the first ajax call when the caller requests for the count
 					objectList.addAll(findBatchOfConcepts(phrase, includeRetired, includeClassNames, excludeClassNames,
 					    includeDatatypeNames, excludeDatatypeNames, start, length));
 				}
@@ -747,4 +770,56 @@ public class DWRConceptService {
 		
 		return errors;
 	}
+	
+	/**
+	 * A concept search whose count is only run if the page of concepts does not tell it
+	 */
+	private static class ConceptSearch extends PagedSearch<ConceptSearchResult> {
+		
+		private final String phrase;
+		
+		private final List<Locale> locales;
+		
+		private final boolean includeRetired;
+		
+		private final List<ConceptClass> requireClasses;
+		
+		private final List<ConceptClass> excludeClasses;
+		
+		private final List<ConceptDatatype> requireDatatypes;
+		
+		private final List<ConceptDatatype> excludeDatatypes;
+		
+		public ConceptSearch(String phrase, List<Locale> locales, boolean includeRetired, List<ConceptClass> requireClasses,
+		    List<ConceptClass> excludeClasses, List<ConceptDatatype> requireDatatypes, List<ConceptDatatype> excludeDatatypes) {
+			super("concepts", phrase, locales, includeRetired, getIds(requireClasses), getIds(excludeClasses),
+			    getIds(requireDatatypes), getIds(excludeDatatypes));
+			this.phrase = phrase;
+			this.locales = locales;
+			this.includeRetired = includeRetired;
+			this.requireClasses = requireClasses;
+			this.excludeClasses = excludeClasses;
+			this.requireDatatypes = requireDatatypes;
+			this.excludeDatatypes = excludeDatatypes;
+		}
+		
+		@Override
+		protected List<ConceptSearchResult> getPage(Integer start, Integer length) {
+			return Context.getConceptService().getConcepts(phrase, locales, includeRetired, requireClasses, excludeClasses,
+			    requireDatatypes, excludeDatatypes, null, start, length);
+		}
+		
+		@Override
+		protected int getCount() {
+			return Context.getConceptService().getCountOfConcepts(phrase, locales, includeRetired, requireClasses,
+			    excludeClasses, requireDatatypes, excludeDatatypes, null);
+		}
+		
+		private static List<Integer> getIds(List<? extends OpenmrsMetadata> metadata) {
+			List<Integer> ids = new Vector<Integer>();
+			for (OpenmrsMetadata m : metadata)
+				ids.add(m == null ? null : m.getId());
+			return ids;
+		}
+	}
 }
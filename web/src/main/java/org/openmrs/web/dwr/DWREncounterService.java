@@ -27,6 +27,8 @@ import org.openmrs.api.EncounterService;
 import org.openmrs.api.LocationService;
 import org.openmrs.api.context.Context;
 import org.openmrs.messagesource.MessageSourceService;
+import org.openmrs.util.PagedSearch;
+import org.openmrs.util.PagedSearchResult;
 
 public class DWREncounterService {
 	
@@ -68,37 +70,19 @@ public class DWREncounterService {
 		MessageSourceService mss = Context.getMessageSourceService();
 		
 		try {
-			EncounterService es = Context.getEncounterService();
-			List<Encounter> encs = new Vector<Encounter>();
-			
 			if (phrase == null) {
 				objectList.add(mss.getMessage("Encounter.searchPhraseCannotBeNull"));
 				return objectList;
 			}
 			
-			if (phrase.matches("\\d+")) {
-				// user searched on a number.  Insert concept with corresponding encounterId
-				Encounter e = es.getEncounter(Integer.valueOf(phrase));
-				if (e != null) {
-					if (!e.isVoided() || includeVoided == true)
-						encs.add(e);
-				}
-			}
-			
-			if (phrase == null || phrase.equals("")) {
+			List<Encounter> matches = null;
+			if (phrase.equals("")) {
 				//TODO get all concepts for testing purposes?
 			} else {
-				encs.addAll(es.getEncounters(phrase, start, length, includeVoided));
+				matches = Context.getEncounterService().getEncounters(phrase, start, length, includeVoided);
 			}
 			
-			if (encs.size() == 0) {
-				objectList.add(mss.getMessage("Encounter.noMatchesFound", new Object[] { phrase }, Context.getLocale()));
-			} else {
-				objectList = new Vector<Object>(encs.size());
-				for (Encounter e : encs) {
-					objectList.add(new EncounterListItem(e));
-				}
-			}
+			objectList = getEncounterListItems(phrase, includeVoided, matches);
 		}
 		catch (Exception e) {
 			log.error("Error while searching for encounters", e);
@@ -107,6 +91,43 @@ public class DWREncounterService {
 		return objectList;
 	}
 	
+	/**
+	 * Turns the encounters found for a phrase into list items, with the encounter whose id is the
+	 * phrase first
+	 * 
+	 * @param phrase patient name or identifier
+	 * @param includeVoided Specifies if voided encounters should be included or not
+	 * @param matches the matching encounters, may be null
+	 * @return list of the matching encounters, or a message if there are none
+	 */
+	private Vector<Object> getEncounterListItems(String phrase, boolean includeVoided, List<Encounter> matches) {
+		Vector<Object> objectList = new Vector<Object>();
+		List<Encounter> encs = new Vector<Encounter>();
+		
+		if (phrase.matches("\\d+")) {
+			// user searched on a number.  Insert concept with corresponding encounterId
+			Encounter e = Context.getEncounterService().getEncounter(Integer.valueOf(phrase));
+			if (e != null) {
+				if (!e.isVoided() || includeVoided == true)
+					encs.add(e);
+			}
+		}
+		
+		if (matches != null)
+			encs.addAll(matches);
+		
+		if (encs.size() == 0) {
+			objectList.add(Context.getMessageSourceService().getMessage("Encounter.noMatchesFound",
+			    new Object[] { phrase }, Context.getLocale()));
+		} else {
+			objectList = new Vector<Object>(encs.size());
+			for (Encounter e : encs) {
+				objectList.add(new EncounterListItem(e));
+			}
+		}
+		return objectList;
+	}
+	
 	/**
 	 * Returns a map of results with the values as count of matches and a partial list of the
 	 * matching encounters (depending on values of start and length parameters) while the keys are
@@ -128,10 +149,28 @@ public class DWREncounterService {
 		Map<String, Object> resultsMap = new HashMap<String, Object>();
 		Vector<Object> objectList = new Vector<Object>();
 		try {
-			EncounterService es = Context.getEncounterService();
+			final EncounterService es = Context.getEncounterService();
 			int encounterCount = 0;
 			if (getMatchCount) {
-				encounterCount += es.getCountOfEncounters(phrase, includeVoided);
+				// load the page first, it tells the count if it is the last one
+				final String searchPhrase = phrase;
+				final boolean searchVoided = includeVoided;
+				PagedSearchResult<Encounter> result = new PagedSearch<Encounter>("encounters", phrase, includeVoided) {
+					
+					@Override
+					protected List<Encounter> getPage(Integer start, Integer length) {
+						if (searchPhrase.equals(""))
+							return new Vector<Encounter>();
+						return es.getEncounters(searchPhrase, start, length, searchVoided);
+					}
+					
+					@Override
+					protected int getCount() {
+						return es.getCountOfEncounters(searchPhrase, searchVoided);
+					}
+				}.search(start, length, false);
+				
+				encounterCount += result.getCount();
 				if (phrase.matches("\\d+")) {
 					// user searched on a number
 					Encounter e = es.getEncounter(Integer.valueOf(phrase));
@@ -140,12 +179,13 @@ public class DWREncounterService {
 							encounterCount++;
 					}
 				}
-			}
-			
-			//If we have any matches, load them or if this is not the first ajax call
-			//for displaying the results on the first page, the getMatchCount is expected to be zero
-			if (encounterCount > 0 || !getMatchCount)
+				
+				if (encounterCount > 0)
+					objectList = getEncounterListItems(phrase, includeVoided, result.getResults());
+			} else {
+				//this is not the first ajax call for displaying the results on the first page
 				objectList = findBatchOfEncounters(phrase, includeVoided, start, length);
+			}
 			
 			resultsMap.put("count", encounterCount);
 			resultsMap.put("objectList", objectList);
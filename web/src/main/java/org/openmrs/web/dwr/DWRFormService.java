@@ -13,12 +13,15 @@
  */
 package org.openmrs.web.dwr;
 
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.Vector;
@@ -100,6 +103,7 @@ public class DWRFormService {
 	public List<FormFieldListItem> getFormFields(Integer formId) {
 		List<FormFieldListItem> formFields = new Vector<FormFieldListItem>();
 		Form form = Context.getFormService().getForm(formId);
+		loadConcepts(form.getFormFields());
 		for (FormField ff : form.getFormFields())
 			formFields.add(new FormFieldListItem(ff, Context.getLocale()));
 		return formFields;
@@ -177,10 +181,27 @@ public class DWRFormService {
 	
 	public String getJSTree(Integer formId) {
 		Form form = Context.getFormService().getForm(formId);
-		TreeMap<Integer, TreeSet<FormField>> formFields = FormUtil.getFormStructure(form);
+		TreeMap<Integer, TreeSet<FormField>> formFields = FormUtil.getFormStructure(form, Context.getFormService().getFormStructure(form));
+		loadConcepts(form.getFormFields());
 		return generateJSTree(formFields, 0, Context.getLocale());
 	}
 	
+	/**
+	 * Loads the concepts of the given form fields with their names in a few queries, instead of
+	 * one query per concept while rendering the form
+	 */
+	private void loadConcepts(Collection<FormField> formFields) {
+		if (formFields == null)
+			return;
+		
+		Set<Integer> conceptIds = new HashSet<Integer>();
+		for (FormField ff : formFields) {
+			if (ff.getField() != null && ff.getField().getConcept() != null)
+				conceptIds.add(ff.getField().getConcept().getConceptId());
+		}
+		Context.getConceptService().getConceptsWithDetails(conceptIds);
+	}
+	
 	public Integer[] saveFormField(Integer fieldId, String name, String fieldDesc, Integer fieldTypeId, Integer conceptId,
 	        String table, String attr, String defaultValue, boolean multiple, Integer formFieldId, Integer formId,
 	        Integer parent, Integer number, String part, Integer page, Integer min, Integer max, boolean required,
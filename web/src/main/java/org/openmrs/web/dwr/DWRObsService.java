@@ -16,7 +16,9 @@ package org.openmrs.web.dwr;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 import java.util.Set;
 import java.util.Vector;
 
@@ -40,6 +42,11 @@ public class DWRObsService {
 	
 	protected final Log log = LogFactory.getLog(getClass());
 	
+	/**
+	 * The number of obs on a page if no page size is given
+	 */
+	public static final int DEFAULT_OBS_PAGE_SIZE = 50;
+	
 	/**
 	 * Void the given observation
 	 * 
@@ -292,6 +299,60 @@ public class DWRObsService {
 		return ret;
 	}
 	
+	/**
+	 * Gets one page of the obs of a person, optionally only those for one concept, most recent
+	 * first. The next page is asked for with the id of the last obs on the previous page.
+	 * 
+	 * @param personId the id of the person
+	 * @param conceptId the id or name of the question concept (optional)
+	 * @param afterObsId the id of the last obs of the previous page, or null for the first page
+	 * @param pageSize the largest number of obs to return, {@link #DEFAULT_OBS_PAGE_SIZE} if null
+	 * @return the obs on the page
+	 * @should return the next page after the given obs
+	 * @should return an empty page after an unknown obs
+	 */
+	public Vector<ObsListItem> getObsPageByPatientConcept(String personId, String conceptId, Integer afterObsId,
+	        Integer pageSize) {
+		Vector<ObsListItem> ret = new Vector<ObsListItem>();
+		
+		Person p = null;
+		try {
+			p = Context.getPersonService().getPerson(Integer.valueOf(personId));
+		}
+		catch (NumberFormatException nfe) {
+			log.debug("Invalid person id: " + personId);
+		}
+		if (p == null)
+			return ret;
+		
+		List<Concept> questions = null;
+		if (conceptId != null && conceptId.length() > 0) {
+			Concept c = OpenmrsUtil.getConceptByIdOrName(conceptId);
+			if (c == null)
+				return ret;
+			questions = Collections.singletonList(c);
+		}
+		
+		Obs after = null;
+		if (afterObsId != null) {
+			after = Context.getObsService().getObs(afterObsId);
+			// starting over from the first page would never let the caller finish paging
+			if (after == null) {
+				log.debug("Invalid obs id to page after: " + afterObsId);
+				return ret;
+			}
+		}
+		
+		if (pageSize == null || pageSize <= 0)
+			pageSize = DEFAULT_OBS_PAGE_SIZE;
+		
+		for (Obs obs : Context.getObsService().getObservationsPage(Collections.singletonList(p), null, questions, null,
+		    null, null, after, pageSize, false))
+			ret.add(new ObsListItem(obs, Context.getLocale()));
+		
+		return ret;
+	}
+	
 	/**
 	 * Auto generated method comment
 	 * 
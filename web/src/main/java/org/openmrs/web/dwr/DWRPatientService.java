@@ -53,6 +53,8 @@ import org.openmrs.api.context.Context;
 import org.openmrs.patient.IdentifierValidator;
 import org.openmrs.patient.UnallowedIdentifierException;
 import org.openmrs.util.OpenmrsConstants;
+import org.openmrs.util.PagedSearch;
+import org.openmrs.util.PagedSearchResult;
 
 /**
  * DWR patient methods. The methods in here are used in the webapp to get data from the database via
@@ -98,7 +100,6 @@ public class DWRPatientService implements GlobalPropertyListener {
 	 * @return Collection<Object> of PatientListItem or String
 	 * @since 1.8
 	 */
-	@SuppressWarnings("unchecked")
 	public Collection<Object> findBatchOfPatients(String searchValue, boolean includeVoided, Integer start, Integer length) {
 		if (maximumResults == null)
 			maximumResults = getMaximumSearchResults();
@@ -119,7 +120,24 @@ public class DWRPatientService implements GlobalPropertyListener {
 			return patientList;
 		}
 		
-		patientList = new Vector<Object>(patients.size());
+		return getPatientListItems(searchValue, start, length, patients);
+	}
+	
+	/**
+	 * Turns the patients found for a search into list items. If only a few were found, the patients
+	 * found with the first characters of each word are returned too.
+	 * 
+	 * @param searchValue string to be looked for
+	 * @param start The starting index for the results to return
+	 * @param length The number of results of return
+	 * @param patients the patients found
+	 * @return Collection<Object> of PatientListItem or String
+	 */
+	@SuppressWarnings("unchecked")
+	private Collection<Object> getPatientListItems(String searchValue, Integer start, Integer length,
+	        Collection<Patient> patients) {
+		PatientService ps = Context.getPatientService();
+		List<Object> patientList = new Vector<Object>(patients.size());
 		for (Patient p : patients)
 			patientList.add(new PatientListItem(p, searchValue));
 		// if the length wasn't limited to less than 3 or this is the second ajax call
@@ -211,11 +229,33 @@ public class DWRPatientService implements GlobalPropertyListener {
 		Map<String, Object> resultsMap = new HashMap<String, Object>();
 		Collection<Object> objectList = new Vector<Object>();
 		try {
-			PatientService ps = Context.getPatientService();
+			final PatientService ps = Context.getPatientService();
 			int patientCount = 0;
+			List<Patient> firstPage = null;
 			//if this is the first call
 			if (getMatchCount) {
-				patientCount += ps.getCountOfPatients(searchValue);
+				// load the page first, it tells the count if it is the last one
+				if (maximumResults == null)
+					maximumResults = getMaximumSearchResults();
+				Integer pageLength = length;
+				if (pageLength != null && pageLength > maximumResults)
+					pageLength = maximumResults;
+				
+				final String search = searchValue;
+				PagedSearchResult<Patient> result = new PagedSearch<Patient>("patients", searchValue) {
+					
+					@Override
+					protected List<Patient> getPage(Integer start, Integer length) {
+						return ps.getPatients(search, start, length);
+					}
+					
+					@Override
+					protected int getCount() {
+						return ps.getCountOfPatients(search);
+					}
+				}.search(start, pageLength, false);
+				firstPage = result.getResults();
+				patientCount += result.getCount();
 				
 				// if only 2 results found and a number was not in the
 				// search, then do a decapitated search: trim each word
@@ -302,7 +342,10 @@ public class DWRPatientService implements GlobalPropertyListener {
 			
 			//if we have any matches or this isn't the first ajax call when the caller
 			//requests for the count
-			if (patientCount > 0 || !getMatchCount)
+			if (firstPage != null) {
+				if (patientCount > 0)
+					objectList = getPatientListItems(searchValue, start, length, firstPage);
+			} else
 				objectList = findBatchOfPatients(searchValue, false, start, length);
 			
 			resultsMap.put("count", patientCount);
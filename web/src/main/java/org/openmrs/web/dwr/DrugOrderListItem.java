@@ -13,8 +13,7 @@
  */
 package org.openmrs.web.dwr;
 
-import java.text.SimpleDateFormat;
-
+import org.apache.commons.lang3.time.FastDateFormat;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.openmrs.DrugOrder;
@@ -95,7 +94,7 @@ public class DrugOrderListItem {
 		}
 		instructions = drugOrder.getInstructions();
 		
-		SimpleDateFormat sdf = Context.getDateFormat();
+		FastDateFormat sdf = Context.getDateFormatter();
 		
 		if (drugOrder.getStartDate() != null)
 			startDate = sdf.format(drugOrder.getStartDate());
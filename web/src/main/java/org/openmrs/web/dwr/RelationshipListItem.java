@@ -78,11 +78,11 @@ public class RelationshipListItem {
 		
 		Date startDate = r.getStartDate();
 		if (startDate != null) {
-			this.startDate = Context.getDateFormat().format(startDate);
+			this.startDate = Context.getDateFormatter().format(startDate);
 		}
 		Date endDate = r.getEndDate();
 		if (endDate != null) {
-			this.endDate = Context.getDateFormat().format(endDate);
+			this.endDate = Context.getDateFormatter().format(endDate);
 		}
 	}
 	
@@ -26,6 +26,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.openmrs.User;
 import org.openmrs.api.context.Context;
+import org.openmrs.api.context.FlushPolicy;
 import org.openmrs.api.context.UserContext;
 import org.openmrs.util.OpenmrsClassLoader;
 import org.openmrs.web.WebConstants;
@@ -106,12 +107,18 @@ public class OpenmrsFilter extends OncePerRequestFilter {
 		
 		log.debug("before chain.Filter");
 		
+		// count the session flushes of this request
+		FlushPolicy.resetStatistics();
+		
 		// continue the filter chain (going on to spring, authorization, etc)
 		try {
 			chain.doFilter(httpRequest, httpResponse);
 		}
 		finally {
 			Context.clearUserContext();
+			if (log.isDebugEnabled())
+				log.debug("requestURI " + httpRequest.getRequestURI() + " flushed the session "
+				        + FlushPolicy.getFlushCount() + " times in " + FlushPolicy.getFlushTime() + " ms");
 		}
 		
 		log.debug("after chain.doFilter");
@@ -90,7 +90,7 @@ public class SampleFlowsheetServlet extends HttpServlet {
 			obsDate.setTime(obs.getObsDatetime());
 			if (Math.abs(obsDate.getTimeInMillis() - date.getTimeInMillis()) > 86400000) {
 				date = obsDate;
-				out.println("<tr><td class=header colspan=2>" + Context.getDateFormat().format(date.getTime())
+				out.println("<tr><td class=header colspan=2>" + Context.getDateFormatter().format(date.getTime())
 				        + "</td></tr>");
 			}
 			StringBuffer s = new StringBuffer("<tr><td class=label>");
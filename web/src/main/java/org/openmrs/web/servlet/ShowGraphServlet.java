@@ -17,10 +17,13 @@ import java.awt.Color;
 import java.awt.Font;
 import java.io.IOException;
 import java.text.SimpleDateFormat;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
@@ -48,10 +51,11 @@ import org.jfree.data.time.TimeSeries;
 import org.jfree.data.time.TimeSeriesCollection;
 import org.openmrs.Concept;
 import org.openmrs.ConceptNumeric;
-import org.openmrs.Obs;
 import org.openmrs.Patient;
 import org.openmrs.api.APIException;
+import org.openmrs.api.ObsService;
 import org.openmrs.api.context.Context;
+import org.openmrs.util.TimeSeriesDownsampler;
 
 /**
  * This servlet returns an image graphing the numeric values for given concept(s). <br/>
@@ -81,6 +85,28 @@ public class ShowGraphServlet extends HttpServlet {
 	
 	private static final Color COLOR_ERROR = new Color(255, 28, 28, 64);
 	
+	private static final int DEFAULT_WIDTH = 500;
+	
+	private static final int MAX_CACHED_SERIES = 100;
+	
+	// obs can be purged without changing their last modified date, so don't keep series forever
+	private static final long MAX_CACHED_SERIES_AGE = 5 * 60 * 1000;
+	
+	/**
+	 * The most recently drawn obs values by patient, concept and the time those obs last changed,
+	 * so that redrawing a graph doesn't have to load them again
+	 */
+	private static final Map<String, ObsTimeSeries> seriesCache = Collections
+	        .synchronizedMap(new LinkedHashMap<String, ObsTimeSeries>(16, 0.75f, true) {
+		        
+		        private static final long serialVersionUID = 1L;
+		        
+		        @Override
+		        protected boolean removeEldestEntry(Map.Entry<String, ObsTimeSeries> eldest) {
+			        return size() > MAX_CACHED_SERIES;
+		        }
+	        });
+	
 	/**
 	 * @see javax.servlet.http.HttpServlet#doGet(javax.servlet.http.HttpServletRequest,
 	 *      javax.servlet.http.HttpServletResponse)
@@ -91,15 +117,10 @@ public class ShowGraphServlet extends HttpServlet {
 			JFreeChart chart = getChart(request);
 			
 			// get the height and width of the graph
-			String widthString = request.getParameter("width");
 			String heightString = request.getParameter("height");
 			
-			Integer width;
+			Integer width = getWidth(request);
 			Integer height;
-			if (widthString != null && widthString.length() > 0)
-				width = Integer.parseInt(widthString);
-			else
-				width = 500;
 			if (heightString != null && heightString.length() > 0)
 				height = Integer.parseInt(heightString);
 			else
@@ -167,10 +188,11 @@ public class ShowGraphServlet extends HttpServlet {
 		
 		String hideDate = request.getParameter("hideDate");
 		
+		int width = getWidth(request);
+		
 		Patient patient = Context.getPatientService().getPatient(Integer.parseInt(patientId));
 		
 		// Set date range to passed values, otherwise set a default date range to the last 12 months
-		Calendar cal = Calendar.getInstance();
 		Date fromDate = getFromDate(request.getParameter("fromDate"));
 		Date toDate = getToDate(request.getParameter("toDate"));
 		
@@ -194,15 +216,15 @@ public class ShowGraphServlet extends HttpServlet {
 		boolean userSpecifiedMinRange = false;
 		
 		// Fetching obs
-		List<Obs> observations1 = new ArrayList<Obs>();
-		List<Obs> observations2 = new ArrayList<Obs>();
+		ObsTimeSeries observations1 = null;
+		ObsTimeSeries observations2 = null;
 		Concept concept1 = null, concept2 = null;
 		if (conceptId1 != null)
 			concept1 = Context.getConceptService().getConcept(Integer.parseInt(conceptId1));
 		if (conceptId2 != null)
 			concept2 = Context.getConceptService().getConcept(Integer.parseInt(conceptId2));
 		if (concept1 != null) {
-			observations1 = Context.getObsService().getObservationsByPersonAndConcept(patient, concept1);
+			observations1 = getObsTimeSeries(patient, concept1);
 			chartTitle = concept1.getName().getName();
 			rangeAxisTitle = ((ConceptNumeric) concept1).getUnits();
 			minRange = ((ConceptNumeric) concept1).getLowAbsolute();
@@ -216,7 +238,7 @@ public class ShowGraphServlet extends HttpServlet {
 			if (concept2 != null) {
 				String concept2Units = ((ConceptNumeric) concept2).getUnits();
 				if (concept2Units != null && concept2Units.equals(rangeAxisTitle)) {
-					observations2 = Context.getObsService().getObservationsByPersonAndConcept(patient, concept2);
+					observations2 = getObsTimeSeries(patient, concept2);
 					chartTitle += " + " + concept2.getName().getName();
 					if (((ConceptNumeric) concept2).getHiAbsolute() != null
 					        && ((ConceptNumeric) concept2).getHiAbsolute() > maxRange)
@@ -284,44 +306,10 @@ public class ShowGraphServlet extends HttpServlet {
 			series2 = new TimeSeries(concept2.getName().getName(), timeScale);
 		
 		// Add data points for concept1
-		for (Obs obs : observations1) {
-			if (obs.getValueNumeric() != null && obs.getObsDatetime().getTime() >= fromDate.getTime()
-			        && obs.getObsDatetime().getTime() < toDate.getTime()) {
-				cal.setTime(obs.getObsDatetime());
-				if (timeScale == Minute.class) {
-					Minute min = new Minute(cal.get(Calendar.MINUTE), cal.get(Calendar.HOUR_OF_DAY), cal
-					        .get(Calendar.DAY_OF_MONTH), cal.get(Calendar.MONTH) + 1, cal.get(Calendar.YEAR));
-					series1.addOrUpdate(min, obs.getValueNumeric());
-				} else if (timeScale == Hour.class) {
-					Hour hour = new Hour(cal.get(Calendar.HOUR_OF_DAY), cal.get(Calendar.DAY_OF_MONTH), cal
-					        .get(Calendar.MONTH) + 1, cal.get(Calendar.YEAR));
-					series1.addOrUpdate(hour, obs.getValueNumeric());
-				} else {
-					Day day = new Day(cal.get(Calendar.DAY_OF_MONTH), cal.get(Calendar.MONTH) + 1, cal.get(Calendar.YEAR));
-					series1.addOrUpdate(day, obs.getValueNumeric());
-				}
-			}
-		}
+		addDataPoints(series1, timeScale, observations1, fromDate, toDate, width);
 		
 		// Add data points for concept2
-		for (Obs obs : observations2) {
-			if (obs.getValueNumeric() != null && obs.getObsDatetime().getTime() >= fromDate.getTime()
-			        && obs.getObsDatetime().getTime() < toDate.getTime()) {
-				cal.setTime(obs.getObsDatetime());
-				if (timeScale == Minute.class) {
-					Minute min = new Minute(cal.get(Calendar.MINUTE), cal.get(Calendar.HOUR_OF_DAY), cal
-					        .get(Calendar.DAY_OF_MONTH), cal.get(Calendar.MONTH) + 1, cal.get(Calendar.YEAR));
-					series2.addOrUpdate(min, obs.getValueNumeric());
-				} else if (timeScale == Hour.class) {
-					Hour hour = new Hour(cal.get(Calendar.HOUR_OF_DAY), cal.get(Calendar.DAY_OF_MONTH), cal
-					        .get(Calendar.MONTH) + 1, cal.get(Calendar.YEAR));
-					series2.addOrUpdate(hour, obs.getValueNumeric());
-				} else {
-					Day day = new Day(cal.get(Calendar.DAY_OF_MONTH), cal.get(Calendar.MONTH) + 1, cal.get(Calendar.YEAR));
-					series2.addOrUpdate(day, obs.getValueNumeric());
-				}
-			}
-		}
+		addDataPoints(series2, timeScale, observations2, fromDate, toDate, width);
 		
 		// Add series to dataset
 		dataset.addSeries(series1);
@@ -423,6 +411,84 @@ public class ShowGraphServlet extends HttpServlet {
 		return chart;
 	}
 	
+	/**
+	 * Adds the given obs values within the given dates to the series, leaving out as many as
+	 * possible without changing the shape of the line when there are more values than the graph is
+	 * pixels wide.
+	 * 
+	 * @param series the series to add to
+	 * @param timeScale the time period each data point is drawn for
+	 * @param observations the obs values (can be null)
+	 * @param fromDate the earliest obs date to add
+	 * @param toDate the date to add obs before
+	 * @param width the width of the graph in pixels
+	 */
+	private void addDataPoints(TimeSeries series, Class<? extends RegularTimePeriod> timeScale,
+	        ObsTimeSeries observations, Date fromDate, Date toDate, int width) {
+		if (observations == null)
+			return;
+		
+		// the values are sorted by time, so the ones to draw are a single range
+		int from = observations.indexOf(fromDate.getTime());
+		int to = observations.indexOf(toDate.getTime());
+		long[] times = Arrays.copyOfRange(observations.times, from, to);
+		double[] values = Arrays.copyOfRange(observations.values, from, to);
+		
+		Calendar cal = Calendar.getInstance();
+		for (int i : TimeSeriesDownsampler.largestTriangleThreeBuckets(times, values, Math.max(width, 3))) {
+			cal.setTimeInMillis(times[i]);
+			if (timeScale == Minute.class) {
+				Minute min = new Minute(cal.get(Calendar.MINUTE), cal.get(Calendar.HOUR_OF_DAY), cal
+				        .get(Calendar.DAY_OF_MONTH), cal.get(Calendar.MONTH) + 1, cal.get(Calendar.YEAR));
+				series.addOrUpdate(min, values[i]);
+			} else if (timeScale == Hour.class) {
+				Hour hour = new Hour(cal.get(Calendar.HOUR_OF_DAY), cal.get(Calendar.DAY_OF_MONTH),
+				        cal.get(Calendar.MONTH) + 1, cal.get(Calendar.YEAR));
+				series.addOrUpdate(hour, values[i]);
+			} else {
+				Day day = new Day(cal.get(Calendar.DAY_OF_MONTH), cal.get(Calendar.MONTH) + 1, cal.get(Calendar.YEAR));
+				series.addOrUpdate(day, values[i]);
+			}
+		}
+	}
+	
+	/**
+	 * Gets the numeric obs values of the given patient for the given concept. The values are only
+	 * loaded from the database if none are cached since those obs were last changed.
+	 * 
+	 * @param patient the patient to get the values of
+	 * @param concept the question concept of the obs
+	 * @return the obs values ordered by obs datetime
+	 * @should load the values of the given patient and concept
+	 * @should return cached values if the obs have not changed
+	 * @should load the values again if an obs was voided
+	 */
+	protected ObsTimeSeries getObsTimeSeries(Patient patient, Concept concept) {
+		ObsService os = Context.getObsService();
+		Date lastModified = os.getLastModifiedObsDate(patient, concept);
+		String key = patient.getPatientId() + ":" + concept.getConceptId() + ":"
+		        + (lastModified == null ? "" : lastModified.getTime());
+		
+		ObsTimeSeries observations = seriesCache.get(key);
+		if (observations == null || System.currentTimeMillis() - observations.loaded > MAX_CACHED_SERIES_AGE) {
+			observations = new ObsTimeSeries(os.getNumericObsTimeSeries(patient, concept, null, null));
+			seriesCache.put(key, observations);
+		}
+		
+		return observations;
+	}
+	
+	/**
+	 * @param request the current request
+	 * @return the requested width of the graph in pixels
+	 */
+	private int getWidth(HttpServletRequest request) {
+		String widthString = request.getParameter("width");
+		if (widthString != null && widthString.length() > 0)
+			return Integer.parseInt(widthString);
+		return DEFAULT_WIDTH;
+	}
+	
 	/**
 	 * Get the FromDate object from the given string that is the time in milliseconds. If
 	 * dateFromRequest is null, return 1 year ago from today.
@@ -480,4 +546,52 @@ public class ShowGraphServlet extends HttpServlet {
 	protected void doPost(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
 		doGet(request, response);
 	}
+	
+	/**
+	 * The obsDatetime and valueNumeric of a patient's obs for a concept, ordered by obsDatetime
+	 */
+	protected static class ObsTimeSeries {
+		
+		private final long[] times;
+		
+		private final double[] values;
+		
+		private final long loaded = System.currentTimeMillis();
+		
+		/**
+		 * @param rows the {obsDatetime, valueNumeric} pairs ordered by obsDatetime
+		 */
+		public ObsTimeSeries(List<Object[]> rows) {
+			times = new long[rows.size()];
+			values = new double[rows.size()];
+			for (int i = 0; i < times.length; i++) {
+				times[i] = ((Date) rows.get(i)[0]).getTime();
+				values[i] = ((Number) rows.get(i)[1]).doubleValue();
+			}
+		}
+		
+		/**
+		 * @return the number of values
+		 */
+		public int size() {
+			return times.length;
+		}
+		
+		/**
+		 * @param time the time in milliseconds
+		 * @return the index of the first value at or after the given time
+		 */
+		private int indexOf(long time) {
+			int low = 0;
+			int high = times.length;
+			while (low < high) {
+				int middle = (low + high) >>> 1;
+				if (times[middle] < time)
+					low = middle + 1;
+				else
+					high = middle;
+			}
+			return low;
+		}
+	}
 }
@@ -343,7 +343,7 @@ public class FormatTag extends TagSupport {
 	 * @param date
 	 */
 	private void printDate(StringBuilder sb, Date date) {
-		sb.append(Context.getDateFormat().format(date));
+		sb.append(Context.getDateFormatter().format(date));
 	}
 	
 	/**
@@ -14,7 +14,6 @@
 package org.openmrs.web.taglib;
 
 import java.io.IOException;
-import java.text.DateFormat;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -34,6 +33,7 @@ import java.util.TreeSet;
 import javax.servlet.jsp.JspWriter;
 import javax.servlet.jsp.tagext.TagSupport;
 
+import org.apache.commons.lang3.time.FastDateFormat;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.openmrs.Concept;
@@ -223,7 +223,7 @@ public class ObsTableWidget extends TagSupport {
 	
 	public int doStartTag() {
 		Locale loc = Context.getLocale();
-		DateFormat df = Context.getDateFormat();
+		FastDateFormat df = Context.getDateFormatter();
 		//DateFormat.getDateInstance(DateFormat.SHORT, loc);
 		
 		// determine which concepts we care about
@@ -0,0 +1,176 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.web.filter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.servlet.Filter;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.openmrs.test.Verifies;
+
+/**
+ * Tests the {@link ModuleFilterMatcher} class
+ */
+public class ModuleFilterMatcherTest {
+	
+	private List<ModuleFilterMapping> mappings;
+	
+	private Map<String, Filter> filtersByName;
+	
+	@Before
+	public void before() {
+		mappings = new ArrayList<ModuleFilterMapping>();
+		filtersByName = new HashMap<String, Filter>();
+	}
+	
+	/**
+	 * @see {@link ModuleFilterMatcher#getFilters(String)}
+	 */
+	@Test
+	@Verifies(value = "should return the filters of mappings with a matching exact path", method = "getFilters(String)")
+	public void getFilters_shouldReturnTheFiltersOfMappingsWithAMatchingExactPath() throws Exception {
+		Filter filter = addMapping("exact", "/patientDashboard.form", null);
+		ModuleFilterMatcher matcher = new ModuleFilterMatcher(mappings, filtersByName);
+		
+		Assert.assertEquals(Arrays.asList(filter), matcher.getFilters("/patientDashboard.form"));
+	}
+	
+	/**
+	 * @see {@link ModuleFilterMatcher#getFilters(String)}
+	 */
+	@Test
+	@Verifies(value = "should return the filters of mappings with a matching path prefix", method = "getFilters(String)")
+	public void getFilters_shouldReturnTheFiltersOfMappingsWithAMatchingPathPrefix() throws Exception {
+		Filter filter = addMapping("prefix", "/admin/patients/*", null);
+		ModuleFilterMatcher matcher = new ModuleFilterMatcher(mappings, filtersByName);
+		
+		Assert.assertEquals(Arrays.asList(filter), matcher.getFilters("/admin/patients"));
+		Assert.assertEquals(Arrays.asList(filter), matcher.getFilters("/admin/patients/"));
+		Assert.assertEquals(Arrays.asList(filter), matcher.getFilters("/admin/patients/index.htm"));
+		Assert.assertTrue(matcher.getFilters("/admin/patientsList.htm").isEmpty());
+	}
+	
+	/**
+	 * @see {@link ModuleFilterMatcher#getFilters(String)}
+	 */
+	@Test
+	@Verifies(value = "should return the filters of mappings with a matching extension", method = "getFilters(String)")
+	public void getFilters_shouldReturnTheFiltersOfMappingsWithAMatchingExtension() throws Exception {
+		Filter filter = addMapping("extension", "*.form", null);
+		ModuleFilterMatcher matcher = new ModuleFilterMatcher(mappings, filtersByName);
+		
+		Assert.assertEquals(Arrays.asList(filter), matcher.getFilters("/admin/index.form"));
+		Assert.assertTrue(matcher.getFilters("/admin/index.formx").isEmpty());
+		Assert.assertTrue(matcher.getFilters("/admin.form/index").isEmpty());
+	}
+	
+	/**
+	 * @see {@link ModuleFilterMatcher#getFilters(String)}
+	 */
+	@Test
+	@Verifies(value = "should return the filters of mappings with a matching servlet name", method = "getFilters(String)")
+	public void getFilters_shouldReturnTheFiltersOfMappingsWithAMatchingServletName() throws Exception {
+		Filter named = addMapping("named", null, "moduleServlet");
+		Filter all = addMapping("all", null, "*");
+		ModuleFilterMatcher matcher = new ModuleFilterMatcher(mappings, filtersByName);
+		
+		Assert.assertEquals(Arrays.asList(named, all), matcher.getFilters("moduleServlet"));
+		Assert.assertEquals(Arrays.asList(all), matcher.getFilters("/index.htm"));
+	}
+	
+	/**
+	 * @see {@link ModuleFilterMatcher#getFilters(String)}
+	 */
+	@Test
+	@Verifies(value = "should return the filters in the order of their mappings", method = "getFilters(String)")
+	public void getFilters_shouldReturnTheFiltersInTheOrderOfTheirMappings() throws Exception {
+		Filter first = addMapping("first", "*.form", null);
+		Filter second = addMapping("second", "/*", null);
+		Filter third = addMapping("third", "/admin/*", null);
+		Filter fourth = addMapping("fourth", "/admin/index.form", null);
+		ModuleFilterMatcher matcher = new ModuleFilterMatcher(mappings, filtersByName);
+		
+		Assert.assertEquals(Arrays.asList(first, second, third, fourth), matcher.getFilters("/admin/index.form"));
+		Assert.assertEquals(Arrays.asList(second, third), matcher.getFilters("/admin/index.htm"));
+	}
+	
+	/**
+	 * @see {@link ModuleFilterMatcher#getFilters(String)}
+	 */
+	@Test
+	@Verifies(value = "should not return filters of mappings that do not match", method = "getFilters(String)")
+	public void getFilters_shouldNotReturnFiltersOfMappingsThatDoNotMatch() throws Exception {
+		addMapping("exact", "/index.htm", null);
+		addMapping("prefix", "/admin/*", null);
+		addMapping("extension", "*.form", null);
+		ModuleFilterMatcher matcher = new ModuleFilterMatcher(mappings, filtersByName);
+		
+		Assert.assertTrue(matcher.getFilters("/patientDashboard.htm").isEmpty());
+		Assert.assertTrue(matcher.getFilters("/administration/index.htm").isEmpty());
+		Assert.assertTrue(matcher.getFilters(null).isEmpty());
+	}
+	
+	/**
+	 * @see {@link ModuleFilterMatcher#getFilters(String)}
+	 */
+	@Test
+	@Verifies(value = "should match the same paths as the filter mappings", method = "getFilters(String)")
+	public void getFilters_shouldMatchTheSamePathsAsTheFilterMappings() throws Exception {
+		String[] patterns = { "*", "/*", "/", "//*", "/admin/*", "/admin/patients/*", "/admin/index.htm", "*.form",
+		        "*.htm", "/module/*", "/module/xforms/*", "moduleServlet" };
+		for (int i = 0; i < patterns.length; i++)
+			addMapping("filter" + i, patterns[i], null);
+		addMapping("servlet", null, "moduleServlet");
+		ModuleFilterMatcher matcher = new ModuleFilterMatcher(mappings, filtersByName);
+		
+		String[] paths = { "", "/", "/admin", "/admin/", "/admin/index.htm", "/admin/patients/patient.form",
+		        "/administration/index.htm", "/module/xforms", "/module/xforms/xform.form", "/module/xformsx/a.htm",
+		        "/index.form.htm", "/dir.form/index", "/index.", "moduleServlet", "/moduleServlet" };
+		for (String path : paths) {
+			List<Filter> expected = new ArrayList<Filter>();
+			for (ModuleFilterMapping mapping : mappings) {
+				if (ModuleFilterMapping.filterMappingPasses(mapping, path))
+					expected.add(filtersByName.get(mapping.getFilterName()));
+			}
+			Assert.assertEquals("Filters for " + path, expected, matcher.getFilters(path));
+			// and again from the cache
+			Assert.assertEquals("Filters for " + path, expected, matcher.getFilters(path));
+		}
+	}
+	
+	/**
+	 * Adds a mapping with the given url pattern and servlet name to a new filter
+	 */
+	private Filter addMapping(String filterName, String urlPattern, String servletName) {
+		ModuleFilterMapping mapping = new ModuleFilterMapping(null);
+		mapping.setFilterName(filterName);
+		if (urlPattern != null)
+			mapping.addUrlPattern(urlPattern);
+		if (servletName != null)
+			mapping.addServletName(servletName);
+		mappings.add(mapping);
+		
+		Filter filter = Mockito.mock(Filter.class);
+		filtersByName.put(filterName, filter);
+		return filter;
+	}
+}
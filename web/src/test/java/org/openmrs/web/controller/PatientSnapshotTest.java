@@ -0,0 +1,106 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.web.controller;
+
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.Concept;
+import org.openmrs.Obs;
+import org.openmrs.Patient;
+import org.openmrs.PatientProgram;
+import org.openmrs.Visit;
+import org.openmrs.api.context.Context;
+import org.openmrs.test.Verifies;
+import org.openmrs.web.test.BaseWebContextSensitiveTest;
+
+/**
+ * Tests the {@link PatientSnapshot} class
+ */
+public class PatientSnapshotTest extends BaseWebContextSensitiveTest {
+	
+	/**
+	 * @see {@link PatientSnapshot#getObs(Concept)}
+	 */
+	@Test
+	@Verifies(value = "should return the obs for the given concept most recent first", method = "getObs(Concept)")
+	public void getObs_shouldReturnTheObsForTheGivenConceptMostRecentFirst() throws Exception {
+		Patient patient = Context.getPatientService().getPatient(7);
+		Concept concept = Context.getConceptService().getConcept(5089);
+		
+		// once with a query for just the concept, once grouped from all of the obs
+		PatientSnapshot snapshot = new PatientSnapshot(patient, Context.getConceptService().getConcept(5497));
+		assertValues(snapshot.getObs(concept), 61.0, 55.0, 50.0);
+		Assert.assertEquals(2, snapshot.getObs(Context.getConceptService().getConcept(5497)).size());
+		
+		snapshot = new PatientSnapshot(patient);
+		snapshot.getObs();
+		assertValues(snapshot.getObs(concept), 61.0, 55.0, 50.0);
+		Assert.assertEquals(61.0, snapshot.getLatestObs(concept).getValueNumeric(), 0);
+	}
+	
+	/**
+	 * @see {@link PatientSnapshot#getObs(Concept)}
+	 */
+	@Test
+	@Verifies(value = "should return an empty list for a concept without obs", method = "getObs(Concept)")
+	public void getObs_shouldReturnAnEmptyListForAConceptWithoutObs() throws Exception {
+		PatientSnapshot snapshot = new PatientSnapshot(Context.getPatientService().getPatient(7));
+		
+		Assert.assertTrue(snapshot.getObs(Context.getConceptService().getConcept(3)).isEmpty());
+		Assert.assertNull(snapshot.getLatestObs(Context.getConceptService().getConcept(3)));
+	}
+	
+	/**
+	 * @see {@link PatientSnapshot#getActiveVisits()}
+	 */
+	@Test
+	@Verifies(value = "should return the visits that have not stopped", method = "getActiveVisits()")
+	public void getActiveVisits_shouldReturnTheVisitsThatHaveNotStopped() throws Exception {
+		Visit stopped = Context.getVisitService().getVisit(1);
+		stopped.setStopDatetime(new Date(System.currentTimeMillis() - 1000));
+		
+		PatientSnapshot snapshot = new PatientSnapshot(Context.getPatientService().getPatient(2));
+		
+		Assert.assertEquals(3, snapshot.getVisits().size());
+		List<Visit> activeVisits = snapshot.getActiveVisits();
+		Assert.assertEquals(2, activeVisits.size());
+		Assert.assertFalse(activeVisits.contains(stopped));
+	}
+	
+	/**
+	 * @see {@link PatientSnapshot#getCurrentPatientPrograms()}
+	 */
+	@Test
+	@Verifies(value = "should return the programs that have been enrolled in and not completed", method = "getCurrentPatientPrograms()")
+	public void getCurrentPatientPrograms_shouldReturnTheProgramsThatHaveBeenEnrolledInAndNotCompleted() throws Exception {
+		PatientProgram completed = Context.getProgramWorkflowService().getPatientProgram(1);
+		completed.setDateCompleted(new Date(System.currentTimeMillis() - 1000));
+		
+		PatientSnapshot snapshot = new PatientSnapshot(Context.getPatientService().getPatient(2));
+		
+		Assert.assertEquals(2, snapshot.getPatientPrograms().size());
+		List<PatientProgram> currentPrograms = snapshot.getCurrentPatientPrograms();
+		Assert.assertEquals(1, currentPrograms.size());
+		Assert.assertFalse(currentPrograms.contains(completed));
+	}
+	
+	private void assertValues(List<Obs> obs, double... values) {
+		Assert.assertEquals(values.length, obs.size());
+		for (int i = 0; i < values.length; i++)
+			Assert.assertEquals(values[i], obs.get(i).getValueNumeric(), 0);
+	}
+}
@@ -13,7 +13,12 @@
  */
 package org.openmrs.web.controller;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import javax.servlet.http.HttpServletRequest;
@@ -21,6 +26,7 @@ import javax.servlet.http.HttpServletResponse;
 
 import org.junit.Assert;
 import org.junit.Test;
+import org.openmrs.Obs;
 import org.openmrs.test.Verifies;
 import org.openmrs.web.WebConstants;
 import org.openmrs.web.test.BaseWebContextSensitiveTest;
@@ -75,4 +81,52 @@ public class PortletControllerTest extends BaseWebContextSensitiveTest {
 		Map<String, Object> modelmap = getModelFromController(7);
 		Assert.assertEquals("?", modelmap.get("patientBmiAsString"));
 	}
+	
+	/**
+	 * @see {@link PortletController#handleRequest(HttpServletRequest,HttpServletResponse)}
+	 */
+	@Test
+	@Verifies(value = "should share the patient data between the portlets of one request", method = "handleRequest(HttpServletRequest,HttpServletResponse)")
+	public void handleRequest_shouldShareThePatientDataBetweenThePortletsOfOneRequest() throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "");
+		request.setAttribute(WebConstants.INIT_REQ_UNIQUE_ID, "1");
+		request.setAttribute("javax.servlet.include.servlet_path", "testPortlet");
+		request.setAttribute("org.openmrs.portlet.parameters", new HashMap());
+		request.setAttribute("org.openmrs.portlet.patientId", 7);
+		
+		Map<String, Object> first = (Map<String, Object>) new PortletController().handleRequest(request,
+		    new MockHttpServletResponse()).getModel().get("model");
+		Assert.assertTrue(first.containsKey("patientObs"));
+		List<Obs> patientObs = (List<Obs>) first.get("patientObs");
+		Assert.assertFalse(patientObs.isEmpty());
+		
+		// the next portlet included in the same request
+		Map<String, Object> second = (Map<String, Object>) new PortletController().handleRequest(request,
+		    new MockHttpServletResponse()).getModel().get("model");
+		Assert.assertSame(first.get("patientSnapshot"), second.get("patientSnapshot"));
+		Assert.assertSame(patientObs, second.get("patientObs"));
+	}
+	
+	/**
+	 * @see {@link PortletController#handleRequest(HttpServletRequest,HttpServletResponse)}
+	 */
+	@Test
+	@Verifies(value = "should serialize the loaded values of the model", method = "handleRequest(HttpServletRequest,HttpServletResponse)")
+	public void handleRequest_shouldSerializeTheLoadedValuesOfTheModel() throws Exception {
+		Map<String, Object> model = getModelFromController(7);
+		Assert.assertEquals("?", model.get("patientBmiAsString"));
+		Assert.assertTrue(model.containsKey("patientEncounters"));
+		
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(model);
+		out.close();
+		Map<String, Object> deserialized = (Map<String, Object>) new ObjectInputStream(new ByteArrayInputStream(bytes
+		        .toByteArray())).readObject();
+		
+		Assert.assertEquals(model.get("patientId"), deserialized.get("patientId"));
+		Assert.assertEquals("?", deserialized.get("patientBmiAsString"));
+		Assert.assertFalse(deserialized.containsKey("patientSnapshot"));
+		Assert.assertFalse(deserialized.containsKey("patientEncounters"));
+	}
 }
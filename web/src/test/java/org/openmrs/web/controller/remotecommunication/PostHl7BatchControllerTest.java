@@ -0,0 +1,84 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.web.controller.remotecommunication;
+
+import java.util.List;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.api.context.Context;
+import org.openmrs.test.Verifies;
+import org.openmrs.web.test.BaseWebContextSensitiveTest;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.ModelAndView;
+
+/**
+ * Tests the {@link PostHl7BatchController}
+ */
+public class PostHl7BatchControllerTest extends BaseWebContextSensitiveTest {
+	
+	private static final String BATCH = "FHS|^~\\&|LAB\rBHS|^~\\&|LAB\r"
+	        + "MSH|^~\\&|LAB|AMRS.ELD|HL7LISTENER|AMRS.ELD|20080226102656||ORU^R01|ctrl1|P|2.5|1\rPID|||3^^^^||John3^Doe^\r"
+	        + "MSH|^~\\&|LAB|AMRS.ELD|HL7LISTENER|AMRS.ELD|20080226102656||ORU^R01|ctrl2|P|2.5|1\rPID|||3^^^^||John3^Doe^\r"
+	        + "BTS|2\rFTS|1\r";
+	
+	/**
+	 * @see {@link PostHl7BatchController#handleRequest(HttpServletRequest,HttpServletResponse)}
+	 */
+	@SuppressWarnings("unchecked")
+	@Test
+	@Verifies(value = "should queue each message in the body of the request", method = "handleRequest(HttpServletRequest,HttpServletResponse)")
+	public void handleRequest_shouldQueueEachMessageInTheBodyOfTheRequest() throws Exception {
+		int queued = Context.getHL7Service().getAllHL7InQueues().size();
+		
+		MockHttpServletRequest request = new MockHttpServletRequest("POST", "");
+		request.setContentType("application/hl7-v2");
+		request.addParameter("source", "LOCAL");
+		request.setContent(BATCH.getBytes("UTF-8"));
+		
+		ModelAndView mav = new PostHl7BatchController().handleRequest(request, new MockHttpServletResponse());
+		Map<String, Object> model = (Map<String, Object>) mav.getModel().get("model");
+		
+		Assert.assertEquals(true, model.get("success"));
+		List<Map<String, Object>> acknowledgements = (List<Map<String, Object>>) model.get("acknowledgements");
+		Assert.assertEquals(2, acknowledgements.size());
+		Assert.assertEquals("ctrl1", acknowledgements.get(0).get("controlId"));
+		Assert.assertEquals("ctrl2", acknowledgements.get(1).get("controlId"));
+		Assert.assertEquals(queued + 2, Context.getHL7Service().getAllHL7InQueues().size());
+		Assert.assertNotNull(Context.getHL7Service().getHL7InQueueByUuid((String) acknowledgements.get(0).get("uuid")));
+	}
+	
+	/**
+	 * @see {@link PostHl7BatchController#handleRequest(HttpServletRequest,HttpServletResponse)}
+	 */
+	@SuppressWarnings("unchecked")
+	@Test
+	@Verifies(value = "should fail if the source does not exist", method = "handleRequest(HttpServletRequest,HttpServletResponse)")
+	public void handleRequest_shouldFailIfTheSourceDoesNotExist() throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("POST", "");
+		request.addParameter("source", "no such source");
+		request.addParameter("hl7Messages", BATCH);
+		
+		ModelAndView mav = new PostHl7BatchController().handleRequest(request, new MockHttpServletResponse());
+		Map<String, Object> model = (Map<String, Object>) mav.getModel().get("model");
+		
+		Assert.assertEquals(false, model.get("success"));
+		Assert.assertEquals("PostHl7.sourceAndhl7MessagesParametersRequired", model.get("error"));
+	}
+}
@@ -0,0 +1,46 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.web.dwr;
+
+import java.util.Vector;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.web.test.BaseWebContextSensitiveTest;
+
+public class DWRObsServiceTest extends BaseWebContextSensitiveTest {
+	
+	/**
+	 * @see DWRObsService#getObsPageByPatientConcept(String,String,Integer,Integer)
+	 * @verifies return the next page after the given obs
+	 */
+	@Test
+	public void getObsPageByPatientConcept_shouldReturnTheNextPageAfterTheGivenObs() throws Exception {
+		Vector<ObsListItem> page = new DWRObsService().getObsPageByPatientConcept("7", null, 14, 3);
+		
+		Assert.assertEquals(3, page.size());
+		Assert.assertEquals(13, page.get(0).getObsId().intValue());
+		Assert.assertEquals(12, page.get(1).getObsId().intValue());
+		Assert.assertEquals(11, page.get(2).getObsId().intValue());
+	}
+	
+	/**
+	 * @see DWRObsService#getObsPageByPatientConcept(String,String,Integer,Integer)
+	 * @verifies return an empty page after an unknown obs
+	 */
+	@Test
+	public void getObsPageByPatientConcept_shouldReturnAnEmptyPageAfterAnUnknownObs() throws Exception {
+		Assert.assertTrue(new DWRObsService().getObsPageByPatientConcept("7", null, 999999, 3).isEmpty());
+	}
+}
@@ -21,7 +21,11 @@ import javax.servlet.http.HttpServletRequest;
 import org.jfree.chart.JFreeChart;
 import org.junit.Assert;
 import org.junit.Test;
+import org.openmrs.Concept;
+import org.openmrs.Patient;
+import org.openmrs.api.context.Context;
 import org.openmrs.test.Verifies;
+import org.openmrs.web.servlet.ShowGraphServlet.ObsTimeSeries;
 import org.openmrs.web.test.BaseWebContextSensitiveTest;
 import org.springframework.mock.web.MockHttpServletRequest;
 
@@ -61,6 +65,44 @@ public class ShowGraphServletTest extends BaseWebContextSensitiveTest {
 		Assert.assertEquals("cells/mmL", chart.getXYPlot().getRangeAxis().getLabel());
 	}
 	
+	/**
+	 * @see {@link ShowGraphServlet#getObsTimeSeries(Patient,Concept)}
+	 */
+	@Test
+	@Verifies(value = "should load the values of the given patient and concept", method = "getObsTimeSeries(Patient,Concept)")
+	public void getObsTimeSeries_shouldLoadTheValuesOfTheGivenPatientAndConcept() throws Exception {
+		ObsTimeSeries observations = new ShowGraphServlet().getObsTimeSeries(new Patient(7), new Concept(5497));
+		
+		Assert.assertEquals(2, observations.size());
+	}
+	
+	/**
+	 * @see {@link ShowGraphServlet#getObsTimeSeries(Patient,Concept)}
+	 */
+	@Test
+	@Verifies(value = "should return cached values if the obs have not changed", method = "getObsTimeSeries(Patient,Concept)")
+	public void getObsTimeSeries_shouldReturnCachedValuesIfTheObsHaveNotChanged() throws Exception {
+		ObsTimeSeries observations = new ShowGraphServlet().getObsTimeSeries(new Patient(7), new Concept(5497));
+		
+		Assert.assertSame(observations, new ShowGraphServlet().getObsTimeSeries(new Patient(7), new Concept(5497)));
+	}
+	
+	/**
+	 * @see {@link ShowGraphServlet#getObsTimeSeries(Patient,Concept)}
+	 */
+	@Test
+	@Verifies(value = "should load the values again if an obs was voided", method = "getObsTimeSeries(Patient,Concept)")
+	public void getObsTimeSeries_shouldLoadTheValuesAgainIfAnObsWasVoided() throws Exception {
+		ObsTimeSeries observations = new ShowGraphServlet().getObsTimeSeries(new Patient(7), new Concept(5497));
+		
+		Context.getObsService().voidObs(Context.getObsService().getObs(9), "testing graph cache");
+		Context.flushSession();
+		
+		ObsTimeSeries reloaded = new ShowGraphServlet().getObsTimeSeries(new Patient(7), new Concept(5497));
+		Assert.assertNotSame(observations, reloaded);
+		Assert.assertEquals(1, reloaded.size());
+	}
+	
 	/**
 	 * @see {@link ShowGraphServlet#getFromDate(String)}
 	 */
@@ -0,0 +1,21 @@
+<%@ include file="/WEB-INF/template/include.jsp"%>
+<%@ include file="/WEB-INF/template/header.jsp"%>
+
+<c:if test="${model.success}">
+	OK
+	<table>
+		<c:forEach var="acknowledgement" items="${model.acknowledgements}" varStatus="status">
+			<tr>
+				<td>${status.count}</td>
+				<td>AA</td>
+				<td><c:out value="${acknowledgement.controlId}" /></td>
+				<td>${acknowledgement.uuid}</td>
+			</tr>
+		</c:forEach>
+	</table>
+</c:if>
+<c:if test="${!model.success}">
+	<spring:message code="PostHl7.error" arguments="${model.error}" />
+</c:if>
+
+<%@ include file="/WEB-INF/template/footer.jsp" %>
\ No newline at end of file